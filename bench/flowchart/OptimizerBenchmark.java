@@ -0,0 +1,104 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Compares executing a flowchart with an {@link Interpreter} before and
+ * after {@link Optimizer} lays it out after a profile.
+ *
+ * <p>The flowchart is a sequence of stages. Each stage is a chain of
+ * decisions on independent predicates, all of which must hold for the
+ * stage's activity to run, laid out so the costliest predicate that
+ * rarely fails comes first; the no branches skip to the next stage. Every
+ * action increments a counter, and every predicate spins for a while and
+ * tests some bits of it.
+ *
+ * <p>Usage: {@code OptimizerBenchmark [stages] [executions]}
+ */
+public final class OptimizerBenchmark {
+	private static final class Counter {
+		long value;
+	}
+
+	private OptimizerBenchmark() {
+		throw new AssertionError("no instances");
+	}
+
+	public static void main(final String[] args) {
+		final int stages = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		final int executions = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+		final SymbolTable table = new SymbolTable();
+		final Map<Flowchart, Consumer<Counter>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<Counter>> predicates = new HashMap<>();
+		final Set<Flowchart> independent = new HashSet<>();
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart end = table.intern("end", Kind.END);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		Flowchart previous = start;
+		for (int i = 0; i < stages; i++) {
+			final Flowchart join = table.intern("j" + i, Kind.ACTIVITY);
+			final Flowchart work = table.intern("w" + i, Kind.ACTIVITY);
+			final Flowchart slow = table.intern("slow" + i, Kind.DECISION);
+			final Flowchart fast = table.intern("fast" + i, Kind.DECISION);
+			start.connectActivity(previous, slow);
+			// slow holds 15 times in 16, fast only once in 4
+			start.connectDecision(slow, fast, join);
+			start.connectDecision(fast, work, join);
+			start.connectActivity(work, join);
+			predicates.put(slow, counter -> spin(counter, 64) % 16 != 0);
+			predicates.put(fast, counter -> spin(counter, 1) % 4 == 0);
+			independent.add(slow);
+			independent.add(fast);
+			actions.put(work, counter -> counter.value += 3);
+			actions.put(join, counter -> counter.value++);
+			previous = join;
+		}
+		start.connectActivity(previous, end);
+
+		final Instrumentation instrumentation = new Instrumentation();
+		final Interpreter<Counter> profiling = new Interpreter<>(start, actions, predicates, instrumentation);
+		measure(profiling::run, executions / 10);
+		final Interpreter<Counter> interpreter = new Interpreter<>(start, actions, predicates);
+		final Interpreter<Counter> optimized = Optimizer.optimize(
+				start, actions, predicates, instrumentation.snapshot(), independent);
+		for (int round = 0; round < 5; round++) {
+			report("before", measure(interpreter::run, executions));
+			report("after", measure(optimized::run, executions));
+		}
+	}
+
+	/**
+	 * @return a hash of the counter after {@code rounds} rounds of mixing.
+	 */
+	private static long spin(final Counter counter, final int rounds) {
+		long x = counter.value;
+		for (int i = 0; i < rounds; i++) {
+			x = x * 6364136223846793005L + 1442695040888963407L;
+		}
+		return (x >>> 33) ^ counter.value;
+	}
+
+	private static long measure(final Consumer<Counter> execution, final int executions) {
+		final Counter counter = new Counter();
+		final long begin = System.nanoTime();
+		for (int i = 0; i < executions; i++) {
+			execution.accept(counter);
+		}
+		final long elapsed = System.nanoTime() - begin;
+		if (counter.value == 42) {
+			System.out.print("");
+		}
+		return elapsed / executions;
+	}
+
+	private static void report(final String name, final long nanos) {
+		System.out.printf("%-12s %8d ns/execution%n", name, nanos);
+	}
+}
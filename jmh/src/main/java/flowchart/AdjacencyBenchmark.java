@@ -0,0 +1,81 @@
+package flowchart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the latency of one adjacency query on a chart, for symbols
+ * picked at random so the queries miss the caches as real ones would.
+ *
+ * <p>{@code form} is {@code live} for the chart the symbols were connected
+ * in, and {@code frozen} for its {@link Flowchart#freeze() snapshot}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class AdjacencyBenchmark {
+	private static final int PROBES = 1 << 16;
+
+	@Param({"1000", "100000", "10000000"})
+	public int size;
+
+	@Param({"LINEAR", "FAN_IN", "NESTED"})
+	public String shape;
+
+	@Param({"live", "frozen"})
+	public String form;
+
+	private Flowchart chart;
+	private final Flowchart[] probes = new Flowchart[PROBES];
+	private int cursor;
+
+	@Setup
+	public void build() {
+		final Charts charts = Charts.of(Charts.Shape.valueOf(shape), size);
+		chart = form.equals("frozen") ? charts.start.freeze() : charts.start;
+		final Random random = new Random(42);
+		for (int i = 0; i < PROBES; i++) {
+			probes[i] = charts.table.symbol(random.nextInt(charts.size()));
+		}
+	}
+
+	private Flowchart probe() {
+		return probes[cursor++ & (PROBES - 1)];
+	}
+
+	@Benchmark
+	public Object getTargets() {
+		return chart.getTargets(probe());
+	}
+
+	@Benchmark
+	public Object getSources() {
+		return chart.getSources(probe());
+	}
+
+	@Benchmark
+	public void forEachTarget(final Blackhole blackhole) {
+		chart.forEachTarget(probe(), (target, slot) -> blackhole.consume(target));
+	}
+
+	@Benchmark
+	public void forEachSource(final Blackhole blackhole) {
+		chart.forEachSource(probe(), blackhole::consume);
+	}
+}
@@ -0,0 +1,152 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Synthetic flowcharts for the benchmarks.
+ *
+ * <p>A chart of a given shape and size has about {@code size} symbols in a
+ * table of its own, made of units repeated between start and end:
+ * <ul>
+ * <li>{@link Shape#LINEAR}: a line of activities.
+ * <li>{@link Shape#FAN_IN}: a line of decisions, the yes branch of each
+ * running an activity that goes to one join, so the join has a source for
+ * every other symbol.
+ * <li>{@link Shape#NESTED}: decisions nested in each other's yes branches,
+ * the no branch of each running an activity that goes to the join of the
+ * decision, and every join going to the join of the decision around it.
+ * </ul>
+ * Every action and predicate increments a counter, and every predicate
+ * answers so that an execution goes on down the chart: it runs through all
+ * the decisions before it reaches end.
+ */
+final class Charts {
+	/**
+	 * How the symbols of a chart are connected.
+	 */
+	enum Shape {
+		LINEAR(1), FAN_IN(2), NESTED(3);
+
+		final int unit;
+
+		Shape(final int unit) {
+			this.unit = unit;
+		}
+	}
+
+	/**
+	 * The context of an execution.
+	 */
+	static final class Counter {
+		long value;
+	}
+
+	private static final Consumer<Counter> STEP = counter -> counter.value++;
+	// the counter never overflows, but the compiler cannot know
+	private static final Predicate<Counter> NO = counter -> counter.value++ < 0;
+	private static final Predicate<Counter> YES = counter -> counter.value++ >= 0;
+
+	final Shape shape;
+	final SymbolTable table = new SymbolTable();
+	final Symbol start = table.intern("start", Kind.START);
+	final Symbol end = table.intern("end", Kind.END);
+	final Map<Flowchart, Consumer<Counter>> actions = new HashMap<>();
+	final Map<Flowchart, Predicate<Counter>> predicates = new HashMap<>();
+	private final Symbol[] units;
+	private final Symbol join;
+
+	// Abstraction Function
+	//	represents the chart of shape from start through units to end, run
+	//	with actions and predicates; unit k is units[k * shape.unit ..
+	//	(k + 1) * shape.unit), and join is the join of a FAN_IN chart.
+	//
+	// Representation Invariant
+	//	- units.length is a positive multiple of shape.unit.
+	//
+	// Safety from Exposure
+	//	- package-private, for the benchmarks.
+
+	private Charts(final Shape shape, final int size) {
+		this.shape = shape;
+		final int count = Math.max(1, (size - 2) / shape.unit);
+		this.units = new Symbol[count * shape.unit];
+		for (int i = 0; i < units.length; i++) {
+			final boolean decision = shape != Shape.LINEAR && i % shape.unit == 0;
+			units[i] = table.intern("s" + i, decision ? Kind.DECISION : Kind.ACTIVITY);
+			if (decision) {
+				predicates.put(units[i], shape == Shape.FAN_IN ? NO : YES);
+			} else {
+				actions.put(units[i], STEP);
+			}
+		}
+		this.join = shape == Shape.FAN_IN ? table.intern("join", Kind.ACTIVITY) : null;
+		start.setStart(start, false);
+		end.setEnd(end, false);
+	}
+
+	/**
+	 * @return the symbols of a chart of {@code shape} with about {@code size}
+	 *     symbols, not connected yet.
+	 */
+	static Charts symbols(final Shape shape, final int size) {
+		return new Charts(shape, size);
+	}
+
+	/**
+	 * @return a chart of {@code shape} with about {@code size} symbols.
+	 */
+	static Charts of(final Shape shape, final int size) {
+		final Charts charts = new Charts(shape, size);
+		charts.connect();
+		return charts;
+	}
+
+	/**
+	 * @return the number of symbols.
+	 */
+	int size() {
+		return table.size();
+	}
+
+	/**
+	 * Connects the symbols of this chart.
+	 *
+	 * @return the number of connections made.
+	 */
+	int connect() {
+		final int count = units.length / shape.unit;
+		switch (shape) {
+		case LINEAR:
+			start.connectActivity(start, units[0]);
+			for (int k = 0; k + 1 < count; k++) {
+				start.connectActivity(units[k], units[k + 1]);
+			}
+			start.connectActivity(units[count - 1], end);
+			return count + 1;
+		case FAN_IN:
+			start.connectActivity(start, units[0]);
+			for (int k = 0; k < count; k++) {
+				final Symbol decision = units[2 * k];
+				final Symbol activity = units[2 * k + 1];
+				start.connectDecision(decision, activity, k + 1 < count ? units[2 * k + 2] : join);
+				start.connectActivity(activity, join);
+			}
+			start.connectActivity(join, end);
+			return 2 * count + 2;
+		default:
+			start.connectActivity(start, units[0]);
+			for (int k = 0; k < count; k++) {
+				final Symbol decision = units[3 * k];
+				final Symbol no = units[3 * k + 1];
+				final Symbol join = units[3 * k + 2];
+				start.connectDecision(decision, k + 1 < count ? units[3 * k + 3] : join, no);
+				start.connectActivity(no, join);
+				start.connectActivity(join, k > 0 ? units[3 * k - 1] : end);
+			}
+			return 3 * count + 1;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares one execution of a flowchart by an {@link Interpreter} and by
+ * the class generated by {@link Compiler}.
+ *
+ * <p>The flowchart is a sequence of {@code diamonds}: a decision whose
+ * branches run two activities each and then join. The activities run two
+ * different actions, so the single call site of the interpreter sees three
+ * receivers with the empty action of start, while every call site of the
+ * compiled class sees one. Every predicate tests one bit of the counter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CompilerBenchmark {
+	@Param({"8", "64"})
+	public int diamonds;
+
+	private final Charts.Counter counter = new Charts.Counter();
+	private Interpreter<Charts.Counter> interpreter;
+	private Consumer<Charts.Counter> compiled;
+
+	@Setup
+	public void build() {
+		final SymbolTable table = new SymbolTable();
+		final Map<Flowchart, Consumer<Charts.Counter>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<Charts.Counter>> predicates = new HashMap<>();
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart end = table.intern("end", Kind.END);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		Flowchart previous = start;
+		for (int i = 0; i < diamonds; i++) {
+			final Flowchart decision = table.intern("d" + i, Kind.DECISION);
+			final Flowchart join = table.intern("j" + i, Kind.ACTIVITY);
+			final Flowchart yes = chain(table, "y" + i, join, actions);
+			final Flowchart no = chain(table, "n" + i, join, actions);
+			start.connectActivity(previous, decision);
+			start.connectDecision(decision, yes, no);
+			final long bit = 1L << (i % 63);
+			predicates.put(decision, counter -> (counter.value & bit) != 0);
+			actions.put(join, counter -> counter.value++);
+			previous = join;
+		}
+		start.connectActivity(previous, end);
+		interpreter = new Interpreter<>(start, actions, predicates);
+		compiled = Compiler.compile(start, actions, predicates);
+	}
+
+	private static Flowchart chain(
+			final SymbolTable table,
+			final String label,
+			final Flowchart next,
+			final Map<Flowchart, Consumer<Charts.Counter>> actions) {
+		final Flowchart second = table.intern(label + ".1", Kind.ACTIVITY);
+		final Flowchart first = table.intern(label + ".0", Kind.ACTIVITY);
+		first.connectActivity(first, second);
+		first.connectActivity(second, next);
+		actions.put(first, counter -> counter.value += 3);
+		actions.put(second, counter -> counter.value += 3);
+		return first;
+	}
+
+	@Benchmark
+	public void interpret(final Blackhole blackhole) {
+		interpreter.run(counter);
+		blackhole.consume(counter.value);
+	}
+
+	@Benchmark
+	public void compiled(final Blackhole blackhole) {
+		compiled.accept(counter);
+		blackhole.consume(counter.value);
+	}
+}
@@ -0,0 +1,52 @@
+package flowchart;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures connecting the symbols of a chart with
+ * {@link Flowchart#connectActivity} and {@link Flowchart#connectDecision}.
+ *
+ * <p>Every invocation builds a chart of its own: {@link #intern} interns
+ * the symbols of the chart, and {@link #internAndConnect} interns and
+ * connects them. The cost of the connections is the difference between the
+ * two; divide it by the connections a chart of the shape has, about its
+ * size, for the cost of one. There is no setup per invocation: JMH would
+ * have to take timestamps around every invocation, which distorts the
+ * timings of the small charts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class ConstructionBenchmark {
+	@Param({"1000", "100000", "10000000"})
+	public int size;
+
+	@Param({"LINEAR", "FAN_IN", "NESTED"})
+	public String shape;
+
+	@Benchmark
+	public Charts intern() {
+		return Charts.symbols(Charts.Shape.valueOf(shape), size);
+	}
+
+	@Benchmark
+	public Charts internAndConnect() {
+		final Charts charts = Charts.symbols(Charts.Shape.valueOf(shape), size);
+		charts.connect();
+		return charts;
+	}
+}
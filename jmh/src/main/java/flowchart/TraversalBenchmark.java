@@ -0,0 +1,110 @@
+package flowchart;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures whole-chart work: a breadth-first traversal from the start
+ * symbol through {@link Flowchart#getTargets} and through
+ * {@link Flowchart#forEachTarget}, freezing a snapshot, and one execution
+ * by an {@link Interpreter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class TraversalBenchmark {
+	@Param({"1000", "100000", "10000000"})
+	public int size;
+
+	@Param({"LINEAR", "FAN_IN", "NESTED"})
+	public String shape;
+
+	private Charts charts;
+	private Flowchart frozen;
+	private Interpreter<Charts.Counter> interpreter;
+	private boolean[] visited;
+	private int[] queue;
+	private int tail;
+
+	private final ObjIntConsumer<Flowchart> visit = (target, slot) -> {
+		final int id = ((Symbol) target).id();
+		if (!visited[id]) {
+			visited[id] = true;
+			queue[tail++] = id;
+		}
+	};
+
+	@Setup
+	public void build() {
+		charts = Charts.of(Charts.Shape.valueOf(shape), size);
+		frozen = charts.start.freeze();
+		interpreter = new Interpreter<>(charts.start, charts.actions, charts.predicates);
+		visited = new boolean[charts.size()];
+		queue = new int[charts.size()];
+	}
+
+	/**
+	 * @return the number of symbols reached from the start of {@code chart}.
+	 */
+	private int traverse(final Flowchart chart, final boolean lists) {
+		Arrays.fill(visited, false);
+		tail = 0;
+		visit.accept(charts.start, 0);
+		for (int head = 0; head < tail; head++) {
+			final Symbol symbol = charts.table.symbol(queue[head]);
+			if (lists) {
+				for (Flowchart target : chart.getTargets(symbol)) {
+					if (target != null) {
+						visit.accept(target, 0);
+					}
+				}
+			} else {
+				chart.forEachTarget(symbol, visit);
+			}
+		}
+		return tail;
+	}
+
+	@Benchmark
+	public int traverseGetTargets() {
+		return traverse(charts.start, true);
+	}
+
+	@Benchmark
+	public int traverseForEachTarget() {
+		return traverse(charts.start, false);
+	}
+
+	@Benchmark
+	public int traverseFrozen() {
+		return traverse(frozen, false);
+	}
+
+	@Benchmark
+	public Object freeze() {
+		return FrozenFlowchart.of(charts.start);
+	}
+
+	@Benchmark
+	public long execute() {
+		final Charts.Counter counter = new Charts.Counter();
+		interpreter.run(counter);
+		return counter.value;
+	}
+}
@@ -0,0 +1,461 @@
+package flowchart;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Executes a flowchart whose actions complete asynchronously.
+ *
+ * <p>The action of an activity returns a {@link CompletionStage} instead of
+ * running to completion, and an execution goes on to the next symbol when
+ * that stage completes, on the thread that completes it. An execution
+ * waiting for a stage holds no thread, so the number of executions in
+ * flight is not bounded by the size of a thread pool, only by memory:
+ * every one costs a future and a few fields. Steps whose stages are already
+ * complete run in a loop, without growing the stack. Predicates are tested
+ * synchronously.
+ *
+ * <p>Admission is bounded. At most {@code maxInFlight} executions run at a
+ * time; up to {@code maxQueued} more wait, in submission order, for one to
+ * finish, and further submissions are rejected at once, so producers see
+ * backpressure instead of unbounded queues. An execution admitted at once
+ * starts on the thread that submits it, and one admitted from the queue on
+ * the thread that finishes the one it replaces. A timeout finishes an
+ * execution on the common pool of {@link CompletableFuture}, so the single
+ * timer thread only counts time and never runs executions. A thread that admits
+ * executions while it is starting others, because they finished at once,
+ * starts them after those, so it never goes deeper in the stack; other
+ * threads never wait for it.
+ *
+ * <p>Every execution is a {@link CompletableFuture}. Completing it early,
+ * by {@link CompletableFuture#cancel cancel} or by its timeout, which counts
+ * from submission, stops the execution: a queued execution leaves the
+ * queue, and a running one frees its place at once and takes no step after
+ * the one in progress, whose stage is left to complete.
+ *
+ * <p>Like an {@link Interpreter}, an asynchronous interpreter resolves its
+ * actions and predicates when it is created, and a subchart without an
+ * action of its own executes its flowchart asynchronously, with the same
+ * actions and predicates, outside the admission bounds of the parent.
+ *
+ * <p>This is the Java 8 counterpart of running every execution on a virtual
+ * thread: the continuation of an execution is its step index.
+ *
+ * @param <T> the type of the context an execution passes to every action
+ *     and predicate.
+ */
+public final class AsyncInterpreter<T> {
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+	/**
+	 * The executions the current thread has admitted while it was starting
+	 * others, still to be started; null if it is not starting any.
+	 */
+	private static final ThreadLocal<Deque<Runnable>> STARTING = new ThreadLocal<>();
+
+	private final Program program;
+	private final Function<? super T, ? extends CompletionStage<?>>[] actions;
+	private final Predicate<? super T>[] predicates;
+	private final int maxInFlight;
+	private final int maxQueued;
+
+	private final Object lock = new Object();
+	private Execution first = null;
+	private Execution last = null;
+	private int queued = 0;
+	private int inFlight = 0;
+
+	// Abstraction Function
+	//	represents the asynchronous execution of program in which the action
+	//	of symbol i is actions[i] and the predicate of decision i is
+	//	predicates[i], with inFlight executions admitted and the executions
+	//	linked from first through Execution.behind queued for admission.
+	//
+	// Representation Invariant
+	//	- actions, predicates have length program.size().
+	//	- for every symbol i reachable in program, predicates[i] != null iff i
+	//	  is a decision; otherwise actions[i] != null.
+	//	- 0 < maxInFlight; 0 <= maxQueued.
+	//	- first through behind to last, and last through ahead to first,
+	//	  link the same queued executions, with null at both ends; queued is
+	//	  how many; none of them is admitted.
+	//	- inFlight <= maxInFlight; queued <= maxQueued.
+	//	- queued == 0 unless inFlight == maxInFlight.
+	//
+	// Safety from Exposure
+	//	- all fields are private; the arrays and executions are never
+	//	  returned.
+	//
+	// Thread safety
+	//	- first, last, queued and inFlight are accessed only under lock.
+	//	- executions are started outside lock, each by the thread that
+	//	  admitted it; STARTING is confined to its thread.
+	//	- an execution takes its steps one at a time: each step is taken by
+	//	  the thread that completed the stage of the step before.
+
+	/**
+	 * Creates an asynchronous interpreter for a flowchart.
+	 *
+	 * <p>Later changes to {@code chart} are not reflected by the interpreter.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @param maxInFlight the most executions to run at a time.
+	 * @param maxQueued the most executions to keep waiting for admission.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, if a symbol reachable from the start other than the end
+	 *     has an unconnected target, if a reachable decision has no
+	 *     predicate, if {@code maxInFlight} is not positive or if
+	 *     {@code maxQueued} is negative.
+	 */
+	public AsyncInterpreter(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Function<? super T, ? extends CompletionStage<?>>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final int maxInFlight,
+			final int maxQueued) {
+		this(Program.of(chart), actions, predicates, maxInFlight, maxQueued);
+	}
+
+	@SuppressWarnings("unchecked")
+	private AsyncInterpreter(
+			final Program program,
+			final Map<? extends Flowchart, ? extends Function<? super T, ? extends CompletionStage<?>>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final int maxInFlight,
+			final int maxQueued) {
+		if (maxInFlight <= 0 || maxQueued < 0) {
+			throw new IllegalArgumentException("bounds: " + maxInFlight + ", " + maxQueued);
+		}
+		this.program = program;
+		this.maxInFlight = maxInFlight;
+		this.maxQueued = maxQueued;
+		this.actions = (Function<? super T, ? extends CompletionStage<?>>[]) new Function<?, ?>[program.size()];
+		this.predicates = (Predicate<? super T>[]) new Predicate<?>[program.size()];
+		final Map<Flowchart, Expansion<T>> expansions = new HashMap<>();
+		for (int i = 0; i < program.size(); i++) {
+			if (!program.isReachable(i)) {
+				continue;
+			}
+			final Flowchart symbol = program.symbol(i);
+			if (program.isDecision(i)) {
+				final Predicate<? super T> predicate = predicates.get(symbol);
+				if (predicate == null) {
+					throw new IllegalArgumentException("decision has no predicate: " + symbol);
+				}
+				this.predicates[i] = predicate;
+				continue;
+			}
+			Function<? super T, ? extends CompletionStage<?>> action = actions.get(symbol);
+			if (action == null && symbol instanceof Subchart) {
+				action = expansions.computeIfAbsent(((Subchart) symbol).chart(),
+						sub -> new Expansion<>(sub, actions, predicates));
+			}
+			this.actions[i] = action == null ? context -> DONE : action;
+		}
+	}
+
+	/**
+	 * Submits an execution of the flowchart, without a timeout.
+	 *
+	 * @param context passed to every action and predicate on the way.
+	 * @return a future completed with {@code context} when the execution has
+	 *     run the action of the end symbol, exceptionally with the exception
+	 *     of an action or predicate that failed, or with a
+	 *     {@link RejectedExecutionException} if the queue was full.
+	 */
+	public CompletableFuture<T> submit(final T context) {
+		return submit(context, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Submits an execution of the flowchart.
+	 *
+	 * <p>An execution never ends if the predicates keep choosing a loop,
+	 * unless it has a timeout.
+	 *
+	 * @param context passed to every action and predicate on the way.
+	 * @param timeout how long after submission to stop the execution; 0 or
+	 *     less for never.
+	 * @param unit the unit of {@code timeout}.
+	 * @return a future completed with {@code context} when the execution has
+	 *     run the action of the end symbol, exceptionally with the exception
+	 *     of an action or predicate that failed, with a
+	 *     {@link TimeoutException} if {@code timeout} elapsed first, or with
+	 *     a {@link RejectedExecutionException} if the queue was full.
+	 */
+	public CompletableFuture<T> submit(final T context, final long timeout, final TimeUnit unit) {
+		final Execution execution = new Execution(context);
+		synchronized (lock) {
+			if (inFlight < maxInFlight) {
+				inFlight++;
+				execution.admitted = true;
+			} else if (queued < maxQueued) {
+				enqueue(execution);
+			} else {
+				execution.future.completeExceptionally(new RejectedExecutionException(
+						maxInFlight + " executions in flight and " + maxQueued + " queued"));
+				return execution.future;
+			}
+		}
+		if (timeout > 0) {
+			execution.timer = Timer.INSTANCE.schedule(() -> CompletableFuture.runAsync(
+					() -> execution.future.completeExceptionally(new TimeoutException(timeout + " " + unit))),
+					timeout, unit);
+			if (execution.future.isDone()) {
+				// finished, by another thread, before it had a timer to cancel
+				execution.timer.cancel(false);
+			}
+		}
+		execution.future.whenComplete((result, failure) -> finished(execution));
+		if (execution.admitted) {
+			start(execution);
+		}
+		return execution.future;
+	}
+
+	/**
+	 * @return how many executions are admitted and not finished.
+	 */
+	public int getInFlightCount() {
+		synchronized (lock) {
+			return inFlight;
+		}
+	}
+
+	/**
+	 * @return how many executions are waiting for admission.
+	 */
+	public int getQueuedCount() {
+		synchronized (lock) {
+			return queued;
+		}
+	}
+
+	/**
+	 * Frees the place of a finished execution for the next one waiting, or
+	 * takes a finished execution out of the queue.
+	 */
+	private void finished(final Execution execution) {
+		final ScheduledFuture<?> timer = execution.timer;
+		if (timer != null) {
+			timer.cancel(false);
+		}
+		final Execution next;
+		synchronized (lock) {
+			if (!execution.admitted) {
+				unlink(execution);
+				return;
+			}
+			next = first;
+			if (next == null) {
+				inFlight--;
+				return;
+			}
+			unlink(next);
+			next.admitted = true;
+		}
+		start(next);
+	}
+
+	/**
+	 * Queues an execution after the others; requires lock.
+	 */
+	private void enqueue(final Execution execution) {
+		execution.ahead = last;
+		if (last == null) {
+			first = execution;
+		} else {
+			last.behind = execution;
+		}
+		last = execution;
+		queued++;
+	}
+
+	/**
+	 * Takes a queued execution out of the queue; requires lock.
+	 */
+	private void unlink(final Execution execution) {
+		if (execution.ahead == null) {
+			first = execution.behind;
+		} else {
+			execution.ahead.behind = execution.behind;
+		}
+		if (execution.behind == null) {
+			last = execution.ahead;
+		} else {
+			execution.behind.ahead = execution.ahead;
+		}
+		execution.ahead = null;
+		execution.behind = null;
+		queued--;
+	}
+
+	/**
+	 * Starts an admitted execution on the current thread, or, if the thread
+	 * is already starting executions, after them: executions that finish as
+	 * soon as they start would otherwise admit the next ones deeper and
+	 * deeper in the stack.
+	 */
+	private void start(final Execution execution) {
+		final Runnable run = () -> execution.step(program.start());
+		final Deque<Runnable> deferred = STARTING.get();
+		if (deferred != null) {
+			deferred.add(run);
+			return;
+		}
+		final Deque<Runnable> starting = new ArrayDeque<>();
+		STARTING.set(starting);
+		try {
+			for (Runnable next = run; next != null; next = starting.poll()) {
+				next.run();
+			}
+		} finally {
+			STARTING.remove();
+		}
+	}
+
+	/**
+	 * Runs an execution outside the admission bounds.
+	 */
+	private CompletableFuture<T> execute(final T context) {
+		final Execution execution = new Execution(context);
+		execution.step(program.start());
+		return execution.future;
+	}
+
+	/**
+	 * One execution of the flowchart.
+	 */
+	private final class Execution {
+		final T context;
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		boolean admitted = false;
+		Execution ahead = null;
+		Execution behind = null;
+		volatile ScheduledFuture<?> timer = null;
+
+		// Abstraction Function
+		//	represents the execution of the flowchart with context, finished
+		//	once future is done; admitted if it has left the queue, and
+		//	queued between ahead and behind while it is in the queue.
+		//
+		// Thread safety
+		//	- admitted, ahead and behind are accessed only under lock.
+
+		Execution(final T context) {
+			this.context = context;
+		}
+
+		/**
+		 * Takes the steps from {@code symbol} on, until the execution ends,
+		 * is stopped, or waits for a stage.
+		 */
+		void step(final int symbol) {
+			final int end = program.end();
+			int at = symbol;
+			try {
+				while (!future.isDone()) {
+					final Predicate<? super T> predicate = predicates[at];
+					if (predicate != null) {
+						at = predicate.test(context) ? program.next(at) : program.alt(at);
+						continue;
+					}
+					final CompletableFuture<?> stage = actions[at].apply(context).toCompletableFuture();
+					final int next = at == end ? end : program.next(at);
+					final boolean last = at == end;
+					if (!stage.isDone()) {
+						stage.whenComplete((result, failure) -> {
+							if (failure != null) {
+								future.completeExceptionally(failure);
+							} else if (last) {
+								future.complete(context);
+							} else {
+								step(next);
+							}
+						});
+						return;
+					}
+					stage.join();
+					if (last) {
+						future.complete(context);
+						return;
+					}
+					at = next;
+				}
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Executes a flowchart by an asynchronous interpreter created the first
+	 * time it is needed.
+	 */
+	private static final class Expansion<T> implements Function<T, CompletionStage<?>> {
+		private final Flowchart chart;
+		private final Map<? extends Flowchart, ? extends Function<? super T, ? extends CompletionStage<?>>> actions;
+		private final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates;
+		private volatile AsyncInterpreter<T> interpreter = null;
+
+		// Abstraction Function
+		//	represents running chart with actions and predicates.
+		//
+		// Thread safety
+		//	- interpreter is made at most once, under the lock on this, and
+		//	  published through the volatile field.
+
+		Expansion(final Flowchart chart,
+				final Map<? extends Flowchart, ? extends Function<? super T, ? extends CompletionStage<?>>> actions,
+				final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates) {
+			this.chart = chart;
+			this.actions = actions;
+			this.predicates = predicates;
+		}
+
+		@Override
+		public CompletionStage<?> apply(final T context) {
+			AsyncInterpreter<T> interpreter = this.interpreter;
+			if (interpreter == null) {
+				synchronized (this) {
+					interpreter = this.interpreter;
+					if (interpreter == null) {
+						interpreter = new AsyncInterpreter<>(chart, actions, predicates, 1, 0);
+						this.interpreter = interpreter;
+					}
+				}
+			}
+			return interpreter.execute(context);
+		}
+	}
+
+	/**
+	 * The daemon thread that stops executions whose timeouts elapse.
+	 */
+	private static final class Timer {
+		static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, task -> {
+			final Thread thread = new Thread(task, "flowchart-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		static {
+			// executions that finish in time take their timeouts out at once
+			INSTANCE.setRemoveOnCancelPolicy(true);
+		}
+	}
+}
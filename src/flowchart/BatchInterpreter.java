@@ -0,0 +1,302 @@
+package flowchart;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Executes a flowchart over a batch of records at once.
+ *
+ * <p>All records enter at the start symbol. Every activity processes the
+ * records that reach it as one sub-batch, and every decision evaluates its
+ * predicate over its whole sub-batch and splits it into the records that
+ * follow the yes branch and those that follow the no branch. A record
+ * leaves the execution at the end symbol.
+ *
+ * <p>Sub-batches are described by selection vectors: arrays of indices into
+ * the batch. Symbols are visited in an order in which,
+ * for flowcharts without loops, every symbol comes after all of its
+ * sources, so all the records reaching a symbol along different paths are
+ * processed together. Records that go round a loop are processed again
+ * with the records that reach the loop after them.
+ *
+ * <p>A {@link Flowchart#instantiateSubchart subchart} without an action of
+ * its own executes its flowchart over its sub-batch, with the same actions
+ * and conditions, by a batch interpreter created when a sub-batch first
+ * reaches it.
+ *
+ * @param <T> the type of the records.
+ */
+public final class BatchInterpreter<T> {
+	/**
+	 * Processes a sub-batch of records at an activity.
+	 *
+	 * @param <T> the type of the records.
+	 */
+	public interface Action<T> {
+		/**
+		 * @param records the whole batch.
+		 * @param selection the indices of the records of the sub-batch in
+		 *     {@code selection[0..count)}.
+		 * @param count the number of records in the sub-batch.
+		 */
+		void apply(T[] records, int[] selection, int count);
+
+		/**
+		 * @param <T> the type of the records.
+		 * @param action applied to one record at a time.
+		 * @return a batch action applying {@code action} to every selected record.
+		 */
+		static <T> Action<T> of(final Consumer<? super T> action) {
+			return (records, selection, count) -> {
+				for (int i = 0; i < count; i++) {
+					action.accept(records[selection[i]]);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Evaluates the predicate of a decision over a sub-batch of records.
+	 *
+	 * @param <T> the type of the records.
+	 */
+	public interface Condition<T> {
+		/**
+		 * @param records the whole batch.
+		 * @param selection the indices of the records of the sub-batch in
+		 *     {@code selection[0..count)}.
+		 * @param count the number of records in the sub-batch.
+		 * @param results receives in {@code results[i]} whether the predicate
+		 *     holds for {@code records[selection[i]]}, for {@code i < count}.
+		 */
+		void test(T[] records, int[] selection, int count, boolean[] results);
+
+		/**
+		 * @param <T> the type of the records.
+		 * @param predicate evaluated for one record at a time.
+		 * @return a condition evaluating {@code predicate} for every selected record.
+		 */
+		static <T> Condition<T> of(final Predicate<? super T> predicate) {
+			return (records, selection, count, results) -> {
+				for (int i = 0; i < count; i++) {
+					results[i] = predicate.test(records[selection[i]]);
+				}
+			};
+		}
+	}
+
+	private static final Action<Object> NOTHING = (records, selection, count) -> { };
+
+	private final Program program;
+	private final int[] order;
+	private final int[] ranks;
+	private final Action<? super T>[] actions;
+	private final Condition<? super T>[] conditions;
+
+	// Abstraction Function
+	//	represents the batch execution of program in which the action of
+	//	symbol i is actions[i] and the condition of decision i is conditions[i],
+	//	visiting symbols in the order given by order.
+	//
+	// Representation Invariant
+	//	- order holds every symbol reachable in program exactly once, in
+	//	  reverse post-order from the start symbol; order[ranks[i]] == i.
+	//	- actions, conditions have length program.size().
+	//	- for every reachable symbol i, conditions[i] != null iff i is a
+	//	  decision; otherwise actions[i] != null.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned.
+
+	/**
+	 * Creates a batch interpreter for a flowchart.
+	 *
+	 * <p>Later changes to {@code chart} are not reflected by the interpreter.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param conditions the condition of each decision.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, if a symbol reachable from the start other than the end
+	 *     has an unconnected target, or if a reachable decision has no
+	 *     condition.
+	 */
+	@SuppressWarnings("unchecked")
+	public BatchInterpreter(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Action<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Condition<? super T>> conditions) {
+		this.program = Program.of(chart);
+		this.order = reversePostOrder(program);
+		this.ranks = new int[program.size()];
+		for (int rank = 0; rank < order.length; rank++) {
+			ranks[order[rank]] = rank;
+		}
+		this.actions = (Action<? super T>[]) new Action<?>[program.size()];
+		this.conditions = (Condition<? super T>[]) new Condition<?>[program.size()];
+		final Map<Flowchart, Action<T>> expansions = new HashMap<>();
+		for (int i : order) {
+			final Flowchart symbol = program.chart().symbol(i);
+			if (program.isDecision(i)) {
+				final Condition<? super T> condition = conditions.get(symbol);
+				if (condition == null) {
+					throw new IllegalArgumentException("decision has no condition: " + symbol);
+				}
+				this.conditions[i] = condition;
+			} else {
+				Action<? super T> action = actions.get(symbol);
+				if (action == null && symbol instanceof Subchart) {
+					final Flowchart sub = ((Subchart) symbol).chart();
+					action = expansions.computeIfAbsent(sub, c -> new Expansion<>(c, actions, conditions));
+				}
+				this.actions[i] = action == null ? NOTHING : action;
+			}
+		}
+	}
+
+	/**
+	 * Executes a flowchart over a sub-batch by a batch interpreter created
+	 * the first time it is needed.
+	 */
+	private static final class Expansion<T> implements Action<T> {
+		private final Flowchart chart;
+		private final Map<? extends Flowchart, ? extends Action<? super T>> actions;
+		private final Map<? extends Flowchart, ? extends Condition<? super T>> conditions;
+		private volatile BatchInterpreter<T> interpreter = null;
+
+		// Abstraction Function
+		//	represents running the batch interpreter of chart with actions and
+		//	conditions over the selected records.
+		//
+		// Thread safety
+		//	- interpreter is made at most once, under the lock on this, and
+		//	  published through the volatile field.
+
+		Expansion(final Flowchart chart,
+				final Map<? extends Flowchart, ? extends Action<? super T>> actions,
+				final Map<? extends Flowchart, ? extends Condition<? super T>> conditions) {
+			this.chart = chart;
+			this.actions = actions;
+			this.conditions = conditions;
+		}
+
+		@Override
+		public void apply(final T[] records, final int[] selection, final int count) {
+			BatchInterpreter<T> interpreter = this.interpreter;
+			if (interpreter == null) {
+				synchronized (this) {
+					interpreter = this.interpreter;
+					if (interpreter == null) {
+						interpreter = new BatchInterpreter<>(chart, actions, conditions);
+						this.interpreter = interpreter;
+					}
+				}
+			}
+			final T[] batch = Arrays.copyOf(records, count);
+			for (int i = 0; i < count; i++) {
+				batch[i] = records[selection[i]];
+			}
+			interpreter.run(batch);
+		}
+	}
+
+	private static int[] reversePostOrder(final Program program) {
+		final int n = program.size();
+		final boolean[] visited = new boolean[n];
+		final int[] stack = new int[n];
+		final int[] slot = new int[n];
+		final int[] order = new int[n];
+		int size = n;
+		int top = 0;
+		stack[top++] = program.start();
+		visited[program.start()] = true;
+		while (top > 0) {
+			final int symbol = stack[top - 1];
+			final int target = program.successor(symbol, slot[symbol]++);
+			if (target == FrozenFlowchart.NONE) {
+				order[--size] = symbol;
+				top--;
+			} else if (!visited[target]) {
+				visited[target] = true;
+				stack[top++] = target;
+			}
+		}
+		return Arrays.copyOfRange(order, size, n);
+	}
+
+	/**
+	 * Executes the flowchart once for every record of a batch.
+	 *
+	 * <p>An execution never ends if the conditions keep choosing a loop
+	 * for some record.
+	 *
+	 * @param records the batch; may be empty.
+	 */
+	public void run(final T[] records) {
+		if (records.length == 0) {
+			return;
+		}
+		final int[][] pending = new int[program.size()][];
+		final int[] counts = new int[program.size()];
+		final int[] work = new int[records.length];
+		final boolean[] results = new boolean[records.length];
+		pending[program.start()] = new int[records.length];
+		for (int i = 0; i < records.length; i++) {
+			pending[program.start()][i] = i;
+		}
+		counts[program.start()] = records.length;
+
+		boolean more = true;
+		while (more) {
+			more = false;
+			for (int symbol : order) {
+				final int count = counts[symbol];
+				if (count == 0) {
+					continue;
+				}
+				System.arraycopy(pending[symbol], 0, work, 0, count);
+				counts[symbol] = 0;
+				if (conditions[symbol] != null) {
+					conditions[symbol].test(records, work, count, results);
+					final int yes = program.next(symbol);
+					final int no = program.alt(symbol);
+					for (int i = 0; i < count; i++) {
+						final int target = results[i] ? yes : no;
+						append(pending, counts, target, work[i], records.length);
+					}
+					more |= isBehind(yes, symbol) || isBehind(no, symbol);
+				} else {
+					actions[symbol].apply(records, work, count);
+					if (symbol != program.end()) {
+						final int next = program.next(symbol);
+						for (int i = 0; i < count; i++) {
+							append(pending, counts, next, work[i], records.length);
+						}
+						more |= isBehind(next, symbol);
+					}
+				}
+			}
+		}
+	}
+
+	private static void append(
+			final int[][] pending, final int[] counts,
+			final int symbol, final int record, final int capacity) {
+		if (pending[symbol] == null) {
+			pending[symbol] = new int[capacity];
+		}
+		pending[symbol][counts[symbol]++] = record;
+	}
+
+	/**
+	 * @return true iff {@code target} is visited before {@code source} in a
+	 *     sweep, so records sent to it wait for the next sweep.
+	 */
+	private boolean isBehind(final int target, final int source) {
+		return ranks[target] <= ranks[source];
+	}
+}
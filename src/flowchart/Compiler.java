@@ -0,0 +1,428 @@
+package flowchart;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Compiles a flowchart into a class of its own.
+ *
+ * <p>The generated class implements {@link Consumer} with a single method
+ * that executes the flowchart: every decision becomes a conditional jump,
+ * a run of activities becomes straight-line calls to their actions and a
+ * loop becomes a backward jump. Each action and predicate is called from a
+ * call site of its own, so the JIT sees a single receiver at every call
+ * and can inline the actions and predicates into the method, which
+ * an {@link Interpreter} dispatching every step through one call site
+ * cannot.
+ *
+ * <p>Each generated class is defined by a class loader of its own, and is
+ * unloaded once the consumer returned for it is no longer reachable.
+ * Flowcharts whose method would be longer than {@link #MAX_CODE_LENGTH}
+ * bytes are executed by an {@link Interpreter} instead.
+ */
+public final class Compiler {
+	/**
+	 * The longest method generated, in bytes of bytecode. HotSpot does not
+	 * JIT-compile longer methods unless run with -XX:-DontCompileHugeMethods,
+	 * and a branch offset has to fit in 16 bits.
+	 */
+	static final int MAX_CODE_LENGTH = 8000;
+
+	private static final String NAME = "flowchart/CompiledFlowchart";
+	private static final String CONSUMER = "java/util/function/Consumer";
+	private static final String PREDICATE = "java/util/function/Predicate";
+
+	private Compiler() {
+		throw new AssertionError("no instances");
+	}
+
+	/**
+	 * Compiles a flowchart.
+	 *
+	 * <p>Accepting the returned consumer executes the flowchart once, exactly
+	 * like {@link Interpreter#run} would. Later changes to {@code chart} are
+	 * not reflected by the result.
+	 *
+	 * @param <T> the type of the context passed to every action and predicate.
+	 * @param chart Flowchart to compile.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @return a consumer that executes {@code chart} with the given context.
+	 * @throws IllegalArgumentException under the same conditions as
+	 *     {@link Interpreter#Interpreter(Flowchart, Map, Map)}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Consumer<T> compile(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates) {
+		final Program program = Program.of(chart);
+		final Interpreter<T> interpreter = new Interpreter<>(program, actions, predicates);
+		final Subchart.Actions<T> resolved = new Subchart.Actions<>(actions, predicates, null);
+		final Object[] calls = new Object[program.size()];
+		for (int i = 0; i < program.size(); i++) {
+			if (program.isReachable(i)) {
+				final Flowchart symbol = program.symbol(i);
+				calls[i] = program.isDecision(i) ? predicates.get(symbol) : resolved.get(symbol);
+			}
+		}
+		final byte[] bytes = new Generator(program, calls).generate();
+		if (bytes == null) {
+			return interpreter::run;
+		}
+		try {
+			final Class<?> type = new Loader(Compiler.class.getClassLoader()).define(bytes);
+			final Object compiled = type.getConstructor().newInstance();
+			for (int i = 0; i < calls.length; i++) {
+				if (calls[i] != null) {
+					type.getField(field(program, i)).set(compiled, calls[i]);
+				}
+			}
+			return (Consumer<T>) compiled;
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("generated class is malformed", e);
+		}
+	}
+
+	/**
+	 * @return the name of the field holding the action or predicate of
+	 *     {@code symbol}.
+	 */
+	private static String field(final Program program, final int symbol) {
+		return (program.isDecision(symbol) ? "p" : "a") + symbol;
+	}
+
+	/**
+	 * Defines one generated class.
+	 */
+	private static final class Loader extends ClassLoader {
+		Loader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(final byte[] bytes) {
+			return defineClass(NAME.replace('/', '.'), bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Generates the class file of a compiled program.
+	 *
+	 * <p>The class file has version 49, which needs no stack map frames, so
+	 * jumps can go anywhere without describing the frame at their targets.
+	 */
+	private static final class Generator {
+		// opcodes
+		private static final int ALOAD_0 = 0x2a;
+		private static final int ALOAD_1 = 0x2b;
+		private static final int IFEQ = 0x99;
+		private static final int GOTO = 0xa7;
+		private static final int RETURN = 0xb1;
+		private static final int GETFIELD = 0xb4;
+		private static final int INVOKESPECIAL = 0xb7;
+		private static final int INVOKEINTERFACE = 0xb9;
+
+		// lengths of the code of a symbol
+		private static final int CALL = 10; // aload_0 getfield aload_1 invokeinterface
+		private static final int JUMP = 3;
+
+		private final Program program;
+		private final Object[] calls;
+		private final Bytes pool = new Bytes();
+		private final Map<String, Integer> constants = new HashMap<>();
+		private int count = 1;
+
+		Generator(final Program program, final Object[] calls) {
+			this.program = program;
+			this.calls = calls;
+		}
+
+		/**
+		 * @return the class file, or null if its method would be longer than
+		 *     MAX_CODE_LENGTH.
+		 */
+		byte[] generate() {
+			final int[] order = layout();
+			final int[] position = new int[program.size()];
+			final int[] follower = new int[program.size()];
+			Arrays.fill(follower, FrozenFlowchart.NONE);
+			int length = 0;
+			for (int i = 0; i < order.length; i++) {
+				final int symbol = order[i];
+				position[symbol] = length;
+				if (i + 1 < order.length) {
+					follower[symbol] = order[i + 1];
+				}
+				length += length(symbol, follower[symbol]);
+				if (length > MAX_CODE_LENGTH) {
+					return null;
+				}
+			}
+			final Bytes code = new Bytes();
+			for (int symbol : order) {
+				if (calls[symbol] != null) {
+					final boolean decision = program.isDecision(symbol);
+					code.u1(ALOAD_0);
+					code.u1(GETFIELD);
+					code.u2(fieldRef(NAME, field(program, symbol), decision ? PREDICATE : CONSUMER));
+					code.u1(ALOAD_1);
+					code.u1(INVOKEINTERFACE);
+					code.u2(decision
+							? methodRef(PREDICATE, "test", "(Ljava/lang/Object;)Z", true)
+							: methodRef(CONSUMER, "accept", "(Ljava/lang/Object;)V", true));
+					code.u1(2);
+					code.u1(0);
+				}
+				if (symbol == program.end()) {
+					code.u1(RETURN);
+					continue;
+				}
+				if (program.isDecision(symbol)) {
+					jump(code, IFEQ, position[program.alt(symbol)]);
+				}
+				if (program.next(symbol) != follower[symbol]) {
+					jump(code, GOTO, position[program.next(symbol)]);
+				}
+			}
+			return classFile(code);
+		}
+
+		/**
+		 * Orders the reachable symbols so that most of them are followed by
+		 * their next symbol: traces follow next symbols, and the no branch
+		 * of each decision starts a trace of its own.
+		 */
+		private int[] layout() {
+			final int n = program.size();
+			final boolean[] placed = new boolean[n];
+			final int[] order = new int[n];
+			final int[] pending = new int[n + 1];
+			int size = 0;
+			int top = 0;
+			pending[top++] = program.start();
+			while (top > 0) {
+				int symbol = pending[--top];
+				while (!placed[symbol]) {
+					placed[symbol] = true;
+					order[size++] = symbol;
+					if (symbol == program.end()) {
+						break;
+					}
+					if (program.isDecision(symbol)) {
+						pending[top++] = program.alt(symbol);
+					}
+					symbol = program.next(symbol);
+				}
+			}
+			return Arrays.copyOf(order, size);
+		}
+
+		/**
+		 * @return the length of the code of {@code symbol} when followed by
+		 *     {@code follower}.
+		 */
+		private int length(final int symbol, final int follower) {
+			int length = calls[symbol] == null ? 0 : CALL;
+			if (symbol == program.end()) {
+				return length + 1;
+			}
+			if (program.isDecision(symbol)) {
+				length += JUMP;
+			}
+			return program.next(symbol) == follower ? length : length + JUMP;
+		}
+
+		private static void jump(final Bytes code, final int opcode, final int target) {
+			final int offset = target - code.length();
+			code.u1(opcode);
+			code.u2(offset);
+		}
+
+		private byte[] classFile(final Bytes code) {
+			final int self = type(NAME);
+			final int object = type("java/lang/Object");
+			final int consumer = type(CONSUMER);
+			final int init = utf8("<init>");
+			final int accept = utf8("accept");
+			final int signature = utf8("(Ljava/lang/Object;)V");
+			final int constructor = utf8("()V");
+			final int attribute = utf8("Code");
+			final int superInit = methodRef("java/lang/Object", "<init>", "()V", false);
+			final int[][] fields = new int[calls.length][];
+			int fieldCount = 0;
+			for (int i = 0; i < calls.length; i++) {
+				if (calls[i] != null) {
+					fields[i] = new int[] {
+						utf8(field(program, i)),
+						utf8(program.isDecision(i) ? "L" + PREDICATE + ";" : "L" + CONSUMER + ";"),
+					};
+					fieldCount++;
+				}
+			}
+
+			final Bytes out = new Bytes();
+			out.u4(0xcafebabe);
+			out.u2(0);
+			out.u2(49);
+			out.u2(count);
+			out.bytes(pool);
+			out.u2(0x0001 | 0x0010 | 0x0020); // public final super
+			out.u2(self);
+			out.u2(object);
+			out.u2(1);
+			out.u2(consumer);
+
+			out.u2(fieldCount);
+			for (int[] field : fields) {
+				if (field != null) {
+					out.u2(0x0001); // public
+					out.u2(field[0]);
+					out.u2(field[1]);
+					out.u2(0);
+				}
+			}
+
+			out.u2(2);
+			final Bytes body = new Bytes();
+			body.u1(ALOAD_0);
+			body.u1(INVOKESPECIAL);
+			body.u2(superInit);
+			body.u1(RETURN);
+			method(out, init, constructor, attribute, 1, 1, body);
+			method(out, accept, signature, attribute, 2, 2, code);
+
+			out.u2(0);
+			return out.toArray();
+		}
+
+		private static void method(final Bytes out, final int name, final int descriptor,
+				final int attribute, final int maxStack, final int maxLocals, final Bytes code) {
+			out.u2(0x0001); // public
+			out.u2(name);
+			out.u2(descriptor);
+			out.u2(1);
+			out.u2(attribute);
+			out.u4(12 + code.length());
+			out.u2(maxStack);
+			out.u2(maxLocals);
+			out.u4(code.length());
+			out.bytes(code);
+			out.u2(0); // exceptions
+			out.u2(0); // attributes
+		}
+
+		// constant pool
+
+		private int utf8(final String value) {
+			final Integer index = constants.get("U" + value);
+			if (index != null) {
+				return index;
+			}
+			final byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+			pool.u1(1);
+			pool.u2(bytes.length);
+			pool.bytes(bytes);
+			return add("U" + value);
+		}
+
+		private int type(final String name) {
+			final Integer index = constants.get("C" + name);
+			if (index != null) {
+				return index;
+			}
+			final int utf8 = utf8(name);
+			pool.u1(7);
+			pool.u2(utf8);
+			return add("C" + name);
+		}
+
+		private int member(final int tag, final String owner, final String name, final String descriptor) {
+			final String key = tag + owner + "." + name + descriptor;
+			final Integer index = constants.get(key);
+			if (index != null) {
+				return index;
+			}
+			final int type = type(owner);
+			final int nameIndex = utf8(name);
+			final int descriptorIndex = utf8(descriptor);
+			final Integer nameAndType = constants.get("N" + name + descriptor);
+			final int pair;
+			if (nameAndType != null) {
+				pair = nameAndType;
+			} else {
+				pool.u1(12);
+				pool.u2(nameIndex);
+				pool.u2(descriptorIndex);
+				pair = add("N" + name + descriptor);
+			}
+			pool.u1(tag);
+			pool.u2(type);
+			pool.u2(pair);
+			return add(key);
+		}
+
+		private int fieldRef(final String owner, final String name, final String descriptor) {
+			return member(9, owner, name, "L" + descriptor + ";");
+		}
+
+		private int methodRef(final String owner, final String name, final String descriptor,
+				final boolean isInterface) {
+			return member(isInterface ? 11 : 10, owner, name, descriptor);
+		}
+
+		private int add(final String key) {
+			constants.put(key, count);
+			return count++;
+		}
+	}
+
+	/**
+	 * A growable big-endian byte buffer.
+	 */
+	private static final class Bytes {
+		private byte[] bytes = new byte[256];
+		private int length;
+
+		int length() {
+			return length;
+		}
+
+		void u1(final int value) {
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * length);
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void u2(final int value) {
+			u1(value >> 8);
+			u1(value);
+		}
+
+		void u4(final int value) {
+			u2(value >> 16);
+			u2(value);
+		}
+
+		void bytes(final byte[] values) {
+			for (byte value : values) {
+				u1(value);
+			}
+		}
+
+		void bytes(final Bytes values) {
+			for (int i = 0; i < values.length; i++) {
+				u1(values.bytes[i]);
+			}
+		}
+
+		byte[] toArray() {
+			return Arrays.copyOf(bytes, length);
+		}
+	}
+}
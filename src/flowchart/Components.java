@@ -0,0 +1,139 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of a frozen flowchart.
+ *
+ * <p>Components are found by Tarjan's algorithm, run iteratively over
+ * primitive arrays so that neither the depth of the flowchart nor its size
+ * is limited by the call stack. Components are numbered in the order the
+ * algorithm completes them, which is a reverse topological order: every
+ * connection leads to a component with the same or a smaller number.
+ */
+final class Components {
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private final FrozenFlowchart chart;
+	private final int[] component;
+	private final int[] sizes;
+
+	// Abstraction Function
+	//	represents the partition of the symbols of chart in which symbol i
+	//	belongs to component component[i], which has sizes[component[i]] symbols.
+	//
+	// Representation Invariant
+	//	- component has length chart.size(); 0 <= component[i] < sizes.length.
+	//	- i and j have the same component iff each is reachable from the other.
+	//	- if j is a target of i, component[j] <= component[i].
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned.
+
+	/**
+	 * Finds the strongly connected components of a frozen flowchart in
+	 * linear time.
+	 *
+	 * @param chart FrozenFlowchart to partition.
+	 */
+	Components(final FrozenFlowchart chart) {
+		this.chart = chart;
+		final int n = chart.size();
+		this.component = new int[n];
+		final int[] index = new int[n];
+		final int[] low = new int[n];
+		final int[] slot = new int[n];
+		final int[] stack = new int[n];
+		final int[] calls = new int[n];
+		final int[] counts = new int[n];
+		int count = 0;
+		int visited = 0;
+		int top = 0;
+		Arrays.fill(index, NONE);
+		for (int root = 0; root < n; root++) {
+			if (index[root] != NONE) {
+				continue;
+			}
+			int depth = 0;
+			calls[depth++] = root;
+			index[root] = low[root] = visited++;
+			stack[top++] = root;
+			component[root] = NONE;
+			while (depth > 0) {
+				final int symbol = calls[depth - 1];
+				if (slot[symbol] < chart.slots(symbol)) {
+					final int target = chart.target(symbol, slot[symbol]++);
+					if (target == NONE) {
+						continue;
+					}
+					if (index[target] == NONE) {
+						index[target] = low[target] = visited++;
+						stack[top++] = target;
+						component[target] = NONE;
+						calls[depth++] = target;
+					} else if (component[target] == NONE) {
+						// still on the stack
+						low[symbol] = Math.min(low[symbol], index[target]);
+					}
+					continue;
+				}
+				depth--;
+				if (low[symbol] == index[symbol]) {
+					int member;
+					do {
+						member = stack[--top];
+						component[member] = count;
+						counts[count]++;
+					} while (member != symbol);
+					count++;
+				}
+				if (depth > 0) {
+					final int caller = calls[depth - 1];
+					low[caller] = Math.min(low[caller], low[symbol]);
+				}
+			}
+		}
+		this.sizes = Arrays.copyOf(counts, count);
+		checkRep();
+	}
+
+	private void checkRep() {
+		assert component.length == chart.size();
+		for (int i = 0; i < component.length; i++) {
+			for (int slot = 0; slot < chart.slots(i); slot++) {
+				final int target = chart.target(i, slot);
+				assert target == NONE || component[target] <= component[i];
+			}
+		}
+	}
+
+	/**
+	 * @return the frozen flowchart partitioned.
+	 */
+	FrozenFlowchart chart() {
+		return chart;
+	}
+
+	/**
+	 * @return the number of components.
+	 */
+	int count() {
+		return sizes.length;
+	}
+
+	/**
+	 * @param symbol the index of a symbol.
+	 * @return the component of {@code symbol}.
+	 */
+	int of(final int symbol) {
+		return component[symbol];
+	}
+
+	/**
+	 * @param component a component.
+	 * @return the number of symbols in {@code component}.
+	 */
+	int size(final int component) {
+		return sizes[component];
+	}
+}
@@ -0,0 +1,492 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A flowchart that any number of threads can build and read concurrently.
+ *
+ * <p>Every target slot of every symbol is an atomic reference, so
+ * connecting a symbol only contends with threads connecting the same
+ * symbol. Each call that changes a single slot, and each call to
+ * {@link #setStart}, {@link #setStartIfAbsent}, {@link #setEnd} or
+ * {@link #setEndIfAbsent}, takes effect atomically: of two threads racing
+ * to {@link #connectActivityIfAbsent} the same source, exactly one
+ * succeeds. {@link #connectDecision} sets the two branches one after the
+ * other; if the start or end changes in between, it may set the yes branch
+ * and return null.
+ *
+ * <p>The checks that keep the start without sources and the end without
+ * targets are made under the same locks as the changes they guard: a
+ * connection holds the stripes of its source, its target and the target it
+ * replaces while it checks them against the start and end, sets the slot
+ * and updates the sources of both targets, and {@link #setStart}
+ * and {@link #setEnd} hold the stripe of the symbol while they check its
+ * sources or targets and set it. Of a thread connecting a symbol and a
+ * thread making the same symbol the start, exactly one succeeds.
+ *
+ * <p>The sources of a symbol are derived from the target slots and are
+ * brought up to date right after every change to a slot, under a lock
+ * striped by target symbol. A thread reading the sources of a symbol while
+ * another thread connects to it may or may not see the new source.
+ *
+ * <p>{@link #disconnect} holds the stripes of the source and the target
+ * while it clears the slots holding the target. {@link #removeSymbol} holds
+ * the stripes of the symbol and of every symbol connected to it or from it
+ * while it detaches the symbol and clears the slots holding it, so a
+ * connection to or from the symbol is made either before the removal,
+ * which undoes it, or after.
+ */
+public final class ConcurrentFlowchart implements Flowchart {
+	private static final int STRIPES = 64;
+	private static final Node EMPTY_ACTIVITY = new Node(Kind.ACTIVITY);
+	private static final Node EMPTY_DECISION = new Node(Kind.DECISION);
+	private static final Node EMPTY_END = new Node(Kind.END);
+
+	private final ConcurrentHashMap<Symbol, Node> nodes = new ConcurrentHashMap<>();
+	private final AtomicReference<Symbol> start = new AtomicReference<>();
+	private final AtomicReference<Symbol> end = new AtomicReference<>();
+	private final Object[] stripes = new Object[STRIPES];
+
+	// Abstraction Function
+	//	represents the flowchart whose symbols are the keys of nodes, in which
+	//	the target of symbol s in slot k is nodes.get(s).slots.get(k), whose
+	//	start symbol is start.get() and whose end symbol is end.get() (none if null).
+	//
+	// Representation Invariant
+	//	- nodes.get(s).slots has length s.kind().slots().
+	//	- the EMPTY nodes are never connected.
+	//	- once no slot is being changed, s is in nodes.get(t).sources iff t is
+	//	  in a slot of s.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; lists returned by getTargets and
+	//	  getSources are fresh copies.
+	//
+	// Thread safety
+	//	- slots, start and end are only changed atomically.
+	//	- the membership of s in nodes.get(t).sources is only changed while
+	//	  holding the stripe of t, after reading the slots of s.
+	//	- a slot of s is only changed while holding the stripes of s, of the
+	//	  target it held and of the target it gets, taken in index order;
+	//	  start only becomes s while holding the stripe of s, and end only
+	//	  becomes s while holding the stripe of s.
+	//	- a symbol is only removed from nodes while holding its stripe and
+	//	  the stripes of all its targets and sources, taken in index order.
+
+	/**
+	 * A symbol together with its connections.
+	 */
+	private static final class Node {
+		final AtomicReferenceArray<Symbol> slots;
+		final Set<Symbol> sources = ConcurrentHashMap.newKeySet();
+
+		Node(final Symbol symbol) {
+			this(symbol.kind());
+		}
+
+		Node(final Kind kind) {
+			this.slots = new AtomicReferenceArray<>(kind.slots());
+		}
+	}
+
+	/**
+	 * Creates an empty flowchart.
+	 */
+	public ConcurrentFlowchart() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	private static Symbol symbol(final Flowchart symbol) {
+		if (!(symbol instanceof Symbol)) {
+			throw new IllegalArgumentException("not a symbol: " + symbol);
+		}
+		return (Symbol) symbol;
+	}
+
+	private static int index(final Symbol symbol) {
+		return (symbol.hashCode() & 0x7fffffff) % STRIPES;
+	}
+
+	private Object stripe(final Symbol symbol) {
+		return stripes[index(symbol)];
+	}
+
+	private Node node(final Symbol symbol) {
+		final Node node = nodes.get(symbol);
+		return node != null ? node : nodes.computeIfAbsent(symbol, Node::new);
+	}
+
+	/**
+	 * @return the node of {@code symbol} if it has been connected, or an
+	 *     unconnected node of the same kind otherwise.
+	 */
+	private Node peek(final Symbol symbol) {
+		final Node node = nodes.get(symbol);
+		if (node != null) {
+			return node;
+		}
+		switch (symbol.kind()) {
+		case DECISION:
+			return EMPTY_DECISION;
+		case END:
+			return EMPTY_END;
+		default:
+			return EMPTY_ACTIVITY;
+		}
+	}
+
+	/**
+	 * Brings the membership of {@code source} in the sources of {@code target}
+	 * in line with the current slots of {@code source}.
+	 */
+	private void reconcile(final Symbol source, final Symbol target) {
+		if (target == null) {
+			return;
+		}
+		final Node from = node(source);
+		final Node to = node(target);
+		synchronized (stripe(target)) {
+			boolean connected = false;
+			for (int slot = 0; slot < from.slots.length(); slot++) {
+				connected |= from.slots.get(slot) == target;
+			}
+			if (connected) {
+				to.sources.add(source);
+			} else {
+				to.sources.remove(source);
+			}
+		}
+	}
+
+	private boolean canConnect(final Symbol source, final Symbol target) {
+		return target != source
+				&& target.kind() != Kind.START
+				&& target != start.get()
+				&& source != end.get();
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		final Symbol symbol = symbol(start);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("start must be an activity: " + start);
+		}
+		synchronized (stripe(symbol)) {
+			if (!peek(symbol).sources.isEmpty()) {
+				throw new IllegalArgumentException("start must have no sources: " + start);
+			}
+			if (reset) {
+				this.start.set(symbol);
+				return symbol;
+			}
+			return this.start.compareAndSet(null, symbol) ? symbol : this.start.get();
+		}
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		return setStart(start, false);
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		final Symbol symbol = symbol(end);
+		if (symbol.kind() != Kind.END && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("end must be an activity: " + end);
+		}
+		synchronized (stripe(symbol)) {
+			if (symbol.kind() == Kind.ACTIVITY && peek(symbol).slots.get(0) != null) {
+				throw new IllegalArgumentException("end must have no targets: " + end);
+			}
+			if (reset) {
+				this.end.set(symbol);
+				return symbol;
+			}
+			return this.end.compareAndSet(null, symbol) ? symbol : this.end.get();
+		}
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		return setEnd(end, false);
+	}
+
+	@Override
+	public Flowchart getStart() {
+		final Symbol symbol = start.get();
+		if (symbol == null) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return symbol;
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		final Symbol symbol = end.get();
+		if (symbol == null) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return symbol;
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		final AtomicReferenceArray<Symbol> slots = peek(symbol(source)).slots;
+		if (slots.length() == 1) {
+			return Collections.<Flowchart>singletonList(slots.get(0));
+		}
+		final List<Flowchart> targets = new ArrayList<>(slots.length());
+		for (int slot = 0; slot < slots.length(); slot++) {
+			targets.add(slots.get(slot));
+		}
+		return Collections.unmodifiableList(targets);
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		return Collections.unmodifiableList(new ArrayList<Flowchart>(peek(symbol(target)).sources));
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final AtomicReferenceArray<Symbol> slots = peek(symbol(source)).slots;
+		for (int slot = 0; slot < slots.length(); slot++) {
+			final Symbol target = slots.get(slot);
+			if (target != null) {
+				action.accept(target, slot);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		peek(symbol(target)).sources.forEach(action);
+	}
+
+	private Symbol activity(final Flowchart source) {
+		final Symbol symbol = symbol(source);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("source must be an activity: " + source);
+		}
+		return symbol;
+	}
+
+	private Symbol decision(final Flowchart source) {
+		final Symbol symbol = symbol(source);
+		if (symbol.kind() != Kind.DECISION) {
+			throw new IllegalArgumentException("source must be a decision: " + source);
+		}
+		return symbol;
+	}
+
+	/**
+	 * Sets a slot of {@code source} to {@code target}; if {@code reset} is
+	 * false, only if the slot is not connected.
+	 *
+	 * @return null if {@code source} cannot be connected to {@code target},
+	 *     otherwise whether the slot holds {@code target} after the call.
+	 */
+	private Boolean connect(final Symbol source, final int slot, final Symbol target, final boolean reset) {
+		while (true) {
+			final Symbol expected = peek(source).slots.get(slot);
+			final int[] order = {index(source), index(target), index(expected == null ? source : expected)};
+			Arrays.sort(order);
+			// a stripe taken twice is simply entered again
+			synchronized (stripes[order[0]]) {
+				synchronized (stripes[order[1]]) {
+					synchronized (stripes[order[2]]) {
+						final AtomicReferenceArray<Symbol> slots = node(source).slots;
+						final Symbol previous = slots.get(slot);
+						if (previous != expected) {
+							// replaced before the stripe of expected was held
+							continue;
+						}
+						if (!canConnect(source, target)) {
+							return null;
+						}
+						if (previous == target || previous != null && !reset) {
+							return previous == target;
+						}
+						slots.set(slot, target);
+						reconcile(source, target);
+						reconcile(source, previous);
+						return true;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = symbol(target);
+		return connect(from, 0, to, true) == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = symbol(target);
+		return Boolean.TRUE.equals(connect(from, 0, to, false)) ? this : null;
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		final Symbol from = decision(source);
+		final Symbol yes = symbol(yesBranch);
+		final Symbol no = symbol(noBranch);
+		if (!canConnect(from, yes) || !canConnect(from, no)) {
+			return null;
+		}
+		return connect(from, 0, yes, true) == null || connect(from, 1, no, true) == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 0, symbol(yesBranch), reset);
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 1, symbol(noBranch), reset);
+	}
+
+	private Flowchart connectBranch(
+			final Symbol source,
+			final int slot,
+			final Symbol branch,
+			final boolean reset) {
+		return connect(source, slot, branch, reset) == null ? null : this;
+	}
+
+	@Override
+	public Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		final Symbol from = symbol(source);
+		final Symbol to = symbol(target);
+		synchronized (stripes[Math.min(index(from), index(to))]) {
+			synchronized (stripes[Math.max(index(from), index(to))]) {
+				final Node node = nodes.get(from);
+				if (node == null) {
+					return null;
+				}
+				boolean disconnected = false;
+				for (int slot = 0; slot < node.slots.length(); slot++) {
+					disconnected |= node.slots.compareAndSet(slot, to, null);
+				}
+				if (!disconnected) {
+					return null;
+				}
+				reconcile(from, to);
+				return this;
+			}
+		}
+	}
+
+	@Override
+	public Flowchart removeSymbol(final Flowchart symbol) {
+		final Symbol removed = symbol(symbol);
+		while (true) {
+			final boolean[] held = neighbourhood(removed);
+			final Optional<Flowchart> result = holding(held, 0, () -> {
+				final boolean[] current = neighbourhood(removed);
+				for (int i = 0; i < STRIPES; i++) {
+					if (current[i] && !held[i]) {
+						// connected to a symbol whose stripe is not held
+						return null;
+					}
+				}
+				return Optional.ofNullable(detach(removed));
+			});
+			if (result != null) {
+				return result.orElse(null);
+			}
+		}
+	}
+
+	/**
+	 * @return which stripes belong to {@code symbol} and to the symbols in
+	 *     its slots and among its sources.
+	 */
+	private boolean[] neighbourhood(final Symbol symbol) {
+		final boolean[] stripes = new boolean[STRIPES];
+		stripes[index(symbol)] = true;
+		final Node node = peek(symbol);
+		for (int slot = 0; slot < node.slots.length(); slot++) {
+			final Symbol target = node.slots.get(slot);
+			if (target != null) {
+				stripes[index(target)] = true;
+			}
+		}
+		for (Symbol source : node.sources) {
+			stripes[index(source)] = true;
+		}
+		return stripes;
+	}
+
+	/**
+	 * Runs {@code body} while holding the stripes marked in {@code held} from
+	 * {@code from} on, taken in index order.
+	 */
+	private <R> R holding(final boolean[] held, final int from, final Supplier<R> body) {
+		for (int i = from; i < STRIPES; i++) {
+			if (held[i]) {
+				synchronized (stripes[i]) {
+					return holding(held, i + 1, body);
+				}
+			}
+		}
+		return body.get();
+	}
+
+	/**
+	 * Removes a symbol while holding the stripes of its neighbourhood.
+	 */
+	private Flowchart detach(final Symbol removed) {
+		final Node node = nodes.remove(removed);
+		final boolean start = this.start.compareAndSet(removed, null);
+		final boolean end = this.end.compareAndSet(removed, null);
+		if (node == null) {
+			return start || end ? this : null;
+		}
+		for (int slot = 0; slot < node.slots.length(); slot++) {
+			final Symbol target = node.slots.getAndSet(slot, null);
+			final Node to = target == null ? null : nodes.get(target);
+			if (to != null) {
+				to.sources.remove(removed);
+			}
+		}
+		for (Symbol source : node.sources) {
+			final Node from = nodes.get(source);
+			if (from != null) {
+				for (int slot = 0; slot < from.slots.length(); slot++) {
+					from.slots.compareAndSet(slot, removed, null);
+				}
+			}
+		}
+		return this;
+	}
+}
@@ -0,0 +1,270 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * The dominator and post-dominator trees of a flowchart.
+ *
+ * <p>A symbol a dominates a symbol b if every path from the start symbol to
+ * b goes through a, and post-dominates b if every path from b to the end
+ * symbol goes through a. Every symbol dominates and post-dominates itself.
+ * The immediate post-dominator of a decision is where its yes and no
+ * branches merge again.
+ *
+ * <p>Both trees are computed with the iterative algorithm of Cooper, Harvey
+ * and Kennedy, over a reverse post-order of the symbols, which converges in
+ * a few passes on the charts met in practice. The trees are then numbered
+ * depth-first so that {@link #dominates} and {@link #postDominates} compare
+ * two intervals.
+ */
+public final class Dominators {
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private final FrozenFlowchart chart;
+	private final Tree dominators;
+	private final Tree postDominators;
+
+	// Abstraction Function
+	//	represents the dominator tree dominators and the post-dominator tree
+	//	postDominators of chart.
+	//
+	// Representation Invariant
+	//	- dominators is rooted at chart.startIndex(), postDominators at
+	//	  chart.endIndex(); a tree is empty if its root is NONE.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final, and never returned.
+
+	/**
+	 * A dominator tree over the symbols reachable from a root, following
+	 * either targets or sources.
+	 */
+	private static final class Tree {
+		final int[] parent;
+		final int[] pre;
+		final int[] post;
+
+		// Abstraction Function
+		//	represents the tree in which the parent of symbol i is parent[i];
+		//	the root is its own parent, and symbols not in the tree have parent NONE.
+		//
+		// Representation Invariant
+		//	- for symbols in the tree, pre and post number the tree depth-first:
+		//	  a is an ancestor of b iff pre[a] <= pre[b] and post[b] <= post[a].
+
+		Tree(final FrozenFlowchart chart, final int root, final boolean forward) {
+			final int n = chart.size();
+			this.parent = new int[n];
+			this.pre = new int[n];
+			this.post = new int[n];
+			Arrays.fill(parent, NONE);
+			if (root == NONE) {
+				return;
+			}
+
+			// reverse post-order of the symbols reachable from root
+			final int[] order = new int[n];
+			final int[] rank = new int[n];
+			final int[] stack = new int[n];
+			final int[] next = new int[n];
+			Arrays.fill(rank, NONE);
+			int size = n;
+			int top = 0;
+			stack[top++] = root;
+			rank[root] = 0;
+			while (top > 0) {
+				final int symbol = stack[top - 1];
+				if (next[symbol] < degree(chart, symbol, forward)) {
+					final int successor = successor(chart, symbol, next[symbol]++, forward);
+					if (successor != NONE && rank[successor] == NONE) {
+						rank[successor] = 0;
+						stack[top++] = successor;
+					}
+					continue;
+				}
+				top--;
+				order[--size] = symbol;
+			}
+			final int reachable = n - size;
+			for (int k = size; k < n; k++) {
+				rank[order[k]] = k - size;
+			}
+
+			parent[root] = root;
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int k = size + 1; k < n; k++) {
+					final int symbol = order[k];
+					int dominator = NONE;
+					for (int p = 0; p < degree(chart, symbol, !forward); p++) {
+						final int predecessor = successor(chart, symbol, p, !forward);
+						if (predecessor == NONE || parent[predecessor] == NONE) {
+							continue;
+						}
+						dominator = dominator == NONE
+								? predecessor
+								: intersect(predecessor, dominator, rank);
+					}
+					if (parent[symbol] != dominator) {
+						parent[symbol] = dominator;
+						changed = true;
+					}
+				}
+			}
+			number(root, reachable);
+		}
+
+		/**
+		 * @return the nearest common ancestor of a and b in the tree built so
+		 *     far, walking up from the later in reverse post-order.
+		 */
+		private int intersect(int a, int b, final int[] rank) {
+			while (a != b) {
+				while (rank[a] > rank[b]) {
+					a = parent[a];
+				}
+				while (rank[b] > rank[a]) {
+					b = parent[b];
+				}
+			}
+			return a;
+		}
+
+		/**
+		 * Numbers the tree depth-first, from the children lists derived from parent.
+		 */
+		private void number(final int root, final int size) {
+			final int n = parent.length;
+			final int[] childOffsets = new int[n + 1];
+			for (int i = 0; i < n; i++) {
+				if (parent[i] != NONE && i != root) {
+					childOffsets[parent[i] + 1]++;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				childOffsets[i + 1] += childOffsets[i];
+			}
+			final int[] children = new int[childOffsets[n]];
+			final int[] next = Arrays.copyOf(childOffsets, n);
+			for (int i = 0; i < n; i++) {
+				if (parent[i] != NONE && i != root) {
+					children[next[parent[i]]++] = i;
+				}
+			}
+			final int[] stack = new int[size];
+			System.arraycopy(childOffsets, 0, next, 0, n);
+			int preorder = 0;
+			int postorder = 0;
+			int top = 0;
+			stack[top++] = root;
+			pre[root] = preorder++;
+			while (top > 0) {
+				final int symbol = stack[top - 1];
+				if (next[symbol] < childOffsets[symbol + 1]) {
+					final int child = children[next[symbol]++];
+					pre[child] = preorder++;
+					stack[top++] = child;
+				} else {
+					post[symbol] = postorder++;
+					top--;
+				}
+			}
+		}
+
+		boolean contains(final int symbol) {
+			return parent[symbol] != NONE;
+		}
+
+		boolean isAncestor(final int a, final int b) {
+			return contains(a) && contains(b) && pre[a] <= pre[b] && post[b] <= post[a];
+		}
+
+		int parent(final int symbol) {
+			return !contains(symbol) || parent[symbol] == symbol ? NONE : parent[symbol];
+		}
+	}
+
+	private static int degree(final FrozenFlowchart chart, final int symbol, final boolean forward) {
+		return forward ? chart.slots(symbol) : chart.sourceCount(symbol);
+	}
+
+	private static int successor(
+			final FrozenFlowchart chart,
+			final int symbol,
+			final int k,
+			final boolean forward) {
+		return forward ? chart.target(symbol, k) : chart.source(symbol, k);
+	}
+
+	private Dominators(final FrozenFlowchart chart) {
+		this.chart = chart;
+		this.dominators = new Tree(chart, chart.startIndex(), true);
+		this.postDominators = new Tree(chart, chart.endIndex(), false);
+	}
+
+	/**
+	 * Computes the dominators of a flowchart from its start symbol, and its
+	 * post-dominators from its end symbol.
+	 *
+	 * <p>The flowchart is the part of {@code chart} connected to its start or
+	 * end symbol, as {@link Flowchart#freeze()} snapshots it. Later changes
+	 * to {@code chart} are not reflected.
+	 *
+	 * @param chart Flowchart to analyse.
+	 * @return the dominators of {@code chart} as it is now.
+	 */
+	public static Dominators of(final Flowchart chart) {
+		return new Dominators(FrozenFlowchart.of(chart));
+	}
+
+	/**
+	 * @param a Flowchart representing a symbol.
+	 * @param b Flowchart representing a symbol.
+	 * @return true iff {@code a} and {@code b} are reachable from the start
+	 *     symbol and every path from the start symbol to {@code b} goes
+	 *     through {@code a}.
+	 */
+	public boolean dominates(final Flowchart a, final Flowchart b) {
+		final int i = chart.indexOf(a);
+		final int j = chart.indexOf(b);
+		return i != NONE && j != NONE && dominators.isAncestor(i, j);
+	}
+
+	/**
+	 * @param a Flowchart representing a symbol.
+	 * @param b Flowchart representing a symbol.
+	 * @return true iff {@code a} and {@code b} can reach the end symbol and
+	 *     every path from {@code b} to the end symbol goes through {@code a}.
+	 */
+	public boolean postDominates(final Flowchart a, final Flowchart b) {
+		final int i = chart.indexOf(a);
+		final int j = chart.indexOf(b);
+		return i != NONE && j != NONE && postDominators.isAncestor(i, j);
+	}
+
+	/**
+	 * @param symbol Flowchart representing a symbol.
+	 * @return the closest symbol other than {@code symbol} that dominates
+	 *     it, or null if there is none.
+	 */
+	public Flowchart getImmediateDominator(final Flowchart symbol) {
+		final int index = chart.indexOf(symbol);
+		return index == NONE ? null : symbolOrNull(dominators.parent(index));
+	}
+
+	/**
+	 * @param symbol Flowchart representing a symbol.
+	 * @return the closest symbol other than {@code symbol} that
+	 *     post-dominates it, or null if there is none. For a decision, this
+	 *     is where its two branches merge again.
+	 */
+	public Flowchart getImmediatePostDominator(final Flowchart symbol) {
+		final int index = chart.indexOf(symbol);
+		return index == NONE ? null : symbolOrNull(postDominators.parent(index));
+	}
+
+	private Flowchart symbolOrNull(final int index) {
+		return index == NONE ? null : chart.symbol(index);
+	}
+}
@@ -0,0 +1,221 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * The connections between the symbols of a {@link SymbolTable}, as indexed
+ * edge records.
+ *
+ * <p>Every connected target slot is an edge record: an index into parallel
+ * arrays holding its source, slot and target, and the links of a
+ * doubly-linked list that threads all the records into the same target.
+ * A symbol keeps the record of each of its slots and the first record into
+ * it, so adding or removing an edge takes constant time, and removing a
+ * symbol takes time proportional to its degree.
+ *
+ * <p>Records freed by {@link #remove} are reused, most recently freed first.
+ * In bulk mode they are not: they are left as holes until {@link #endBulk}
+ * closes them all in one pass, renumbering the remaining records in order
+ * and trimming the arrays.
+ */
+final class Edges {
+	static final int NONE = FrozenFlowchart.NONE;
+	private static final int CAPACITY = 16;
+
+	private Symbol[] sources = new Symbol[CAPACITY];
+	private Symbol[] targets = new Symbol[CAPACITY];
+	private byte[] slots = new byte[CAPACITY];
+	private int[] next = new int[CAPACITY];
+	private int[] previous = new int[CAPACITY];
+	private int size = 0;
+	private int live = 0;
+	private int free = NONE;
+	private int holes = 0;
+	private boolean bulk = false;
+
+	// Abstraction Function
+	//	represents the edges from sources[e], slot slots[e], to targets[e]
+	//	for every e in [0, size) with sources[e] != null.
+	//
+	// Representation Invariant
+	//	- for a live record e: sources[e].out(slots[e]) == e; previous[e] and
+	//	  next[e] are the records before and after e into targets[e], NONE at
+	//	  either end, and targets[e].in() is the first of them.
+	//	- a freed record has a null source and target; those not holes are
+	//	  linked from free through next.
+	//	- live is the number of live records among [0, size).
+	//	- holes == 0 unless bulk.
+	//
+	// Safety from Exposure
+	//	- all fields are private; symbols are only handed out one at a time.
+	//
+	// Thread safety
+	//	- not thread-safe; guarded like the symbols of its table.
+
+	/**
+	 * Adds the edge from slot {@code slot} of {@code source} to {@code target}.
+	 *
+	 * @param source a symbol whose slot {@code slot} is not connected.
+	 * @return the record of the new edge.
+	 */
+	int add(final Symbol source, final int slot, final Symbol target) {
+		assert source.out(slot) == NONE;
+		final int edge = allocate();
+		sources[edge] = source;
+		targets[edge] = target;
+		slots[edge] = (byte) slot;
+		final int first = target.in();
+		next[edge] = first;
+		previous[edge] = NONE;
+		if (first != NONE) {
+			previous[first] = edge;
+		}
+		target.in(edge);
+		source.out(slot, edge);
+		live++;
+		return edge;
+	}
+
+	private int allocate() {
+		if (free != NONE) {
+			final int edge = free;
+			free = next[edge];
+			return edge;
+		}
+		if (size == sources.length) {
+			final int capacity = size * 2;
+			sources = Arrays.copyOf(sources, capacity);
+			targets = Arrays.copyOf(targets, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+			next = Arrays.copyOf(next, capacity);
+			previous = Arrays.copyOf(previous, capacity);
+		}
+		return size++;
+	}
+
+	/**
+	 * Removes an edge, leaving the slot of its source unconnected.
+	 *
+	 * @param edge the record of a live edge.
+	 */
+	void remove(final int edge) {
+		final Symbol target = targets[edge];
+		if (previous[edge] != NONE) {
+			next[previous[edge]] = next[edge];
+		} else {
+			target.in(next[edge]);
+		}
+		if (next[edge] != NONE) {
+			previous[next[edge]] = previous[edge];
+		}
+		sources[edge].out(slots[edge], NONE);
+		sources[edge] = null;
+		targets[edge] = null;
+		live--;
+		if (bulk) {
+			holes++;
+		} else {
+			next[edge] = free;
+			free = edge;
+		}
+	}
+
+	/**
+	 * @return the source of a live edge.
+	 */
+	Symbol source(final int edge) {
+		return sources[edge];
+	}
+
+	/**
+	 * @return the target of a live edge.
+	 */
+	Symbol target(final int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @return the slot of its source a live edge leaves from.
+	 */
+	int slot(final int edge) {
+		return slots[edge];
+	}
+
+	/**
+	 * @return the next record into the target of a live edge, or NONE.
+	 */
+	int next(final int edge) {
+		return next[edge];
+	}
+
+	/**
+	 * @return the number of live edges.
+	 */
+	int size() {
+		return live;
+	}
+
+	/**
+	 * @return the number of records, live or freed.
+	 */
+	int capacity() {
+		return size;
+	}
+
+	/**
+	 * Starts leaving freed records as holes, for {@link #endBulk} to close.
+	 */
+	void beginBulk() {
+		bulk = true;
+	}
+
+	/**
+	 * Stops bulk mode, closing every freed record in one pass.
+	 */
+	void endBulk() {
+		bulk = false;
+		if (holes > 0) {
+			compact();
+		}
+	}
+
+	/**
+	 * Renumbers the live records from zero in order, dropping every freed
+	 * record, and points their symbols at their new numbers.
+	 */
+	private void compact() {
+		// each record's new number, computed before any record moves since
+		// the links of a record can point past it
+		final int[] renumbered = new int[size];
+		int count = 0;
+		for (int edge = 0; edge < size; edge++) {
+			renumbered[edge] = sources[edge] != null ? count++ : NONE;
+		}
+		for (int edge = 0; edge < size; edge++) {
+			final int to = renumbered[edge];
+			if (to == NONE) {
+				continue;
+			}
+			sources[to] = sources[edge];
+			targets[to] = targets[edge];
+			slots[to] = slots[edge];
+			next[to] = next[edge] == NONE ? NONE : renumbered[next[edge]];
+			previous[to] = previous[edge] == NONE ? NONE : renumbered[previous[edge]];
+			sources[to].out(slots[to], to);
+			if (previous[to] == NONE) {
+				targets[to].in(to);
+			}
+		}
+		final int capacity = Math.max(CAPACITY, Integer.highestOneBit(Math.max(1, live)) * 2);
+		sources = Arrays.copyOf(sources, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		slots = Arrays.copyOf(slots, capacity);
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+		Arrays.fill(sources, live, capacity, null);
+		Arrays.fill(targets, live, capacity, null);
+		size = live;
+		free = NONE;
+		holes = 0;
+	}
+}
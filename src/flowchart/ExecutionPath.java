@@ -0,0 +1,182 @@
+package flowchart;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A path of an execution from the start symbol to the end symbol of a
+ * flowchart.
+ *
+ * <p>A path is stored as the choices made at the decisions along it, one
+ * bit per decision, set for a no branch: the symbols of the path follow
+ * from the flowchart. {@link #all} enumerates the paths lazily, and
+ * {@link #count} counts them without enumerating them.
+ */
+public final class ExecutionPath {
+	private final Program program;
+	private final long[] choices;
+	private final int decisions;
+
+	// Abstraction Function
+	//	represents the path of program from its start symbol that takes, at
+	//	its k-th decision, the no branch if bit k of choices is set and the yes
+	//	branch otherwise, and that reaches the end symbol after decisions
+	//	decisions.
+	//
+	// Representation Invariant
+	//	- choices.length == (decisions + 63) / 64; bits from decisions on are 0.
+	//	- following the choices from the start reaches the end after exactly
+	//	  decisions decisions.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; choices is never returned.
+
+	ExecutionPath(final Program program, final long[] choices, final int decisions) {
+		this.program = program;
+		this.choices = choices;
+		this.decisions = decisions;
+	}
+
+	/**
+	 * Enumerates lazily the paths from the start symbol to the end symbol of
+	 * a flowchart that pass through no symbol twice.
+	 *
+	 * <p>Paths are found depth-first, yes branches before no branches. The
+	 * stream can be made parallel: its spliterator splits the search at the
+	 * decision closest to the start whose no branch is still to be
+	 * searched, so every part of a split holds a whole subtree of choices.
+	 * The number of paths can grow exponentially with the number of
+	 * decisions; {@link #count} counts them without enumerating them.
+	 *
+	 * <p>Later changes to {@code chart} are not reflected by the stream.
+	 *
+	 * @param chart Flowchart whose paths to enumerate.
+	 * @return a stream of the paths of {@code chart}.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, or if a symbol reachable from the start other than the end
+	 *     has an unconnected target.
+	 */
+	public static Stream<ExecutionPath> all(final Flowchart chart) {
+		return StreamSupport.stream(new PathSpliterator(Program.of(chart)), false);
+	}
+
+	/**
+	 * Counts the paths from the start symbol to the end symbol of a
+	 * flowchart without loops, in time linear in its size.
+	 *
+	 * @param chart Flowchart whose paths to count.
+	 * @return the number of paths {@link #all} would enumerate.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, if a symbol reachable from the start other than the end
+	 *     has an unconnected target, or if a loop is reachable from the start.
+	 */
+	public static BigInteger count(final Flowchart chart) {
+		final Program program = Program.of(chart);
+		final FrozenFlowchart frozen = program.chart();
+		final Components components = new Components(frozen);
+		// without loops every component is one symbol, numbered after its targets
+		final int[] order = new int[components.count()];
+		for (int symbol = 0; symbol < frozen.size(); symbol++) {
+			if (program.isReachable(symbol) && (components.size(components.of(symbol)) > 1
+					|| program.next(symbol) == symbol || program.alt(symbol) == symbol)) {
+				throw new IllegalArgumentException("a loop is reachable from " + frozen.symbol(symbol));
+			}
+			order[components.of(symbol)] = symbol;
+		}
+		final BigInteger[] counts = new BigInteger[frozen.size()];
+		for (int symbol : order) {
+			if (!program.isReachable(symbol)) {
+				continue;
+			}
+			if (symbol == program.end()) {
+				counts[symbol] = BigInteger.ONE;
+				continue;
+			}
+			BigInteger count = counts[program.next(symbol)];
+			if (program.isDecision(symbol)) {
+				count = count.add(counts[program.alt(symbol)]);
+			}
+			counts[symbol] = count;
+		}
+		return counts[program.start()];
+	}
+
+	/**
+	 * @return the number of decisions along this path.
+	 */
+	public int getDecisionCount() {
+		return decisions;
+	}
+
+	/**
+	 * @param k the position of a decision along this path, from 0.
+	 * @return true iff this path takes the yes branch of its k-th decision.
+	 * @throws IndexOutOfBoundsException if {@code k} is not in
+	 *     {@code [0, getDecisionCount())}.
+	 */
+	public boolean isYes(final int k) {
+		if (k < 0 || k >= decisions) {
+			throw new IndexOutOfBoundsException("decision: " + k);
+		}
+		return (choices[k >>> 6] & (1L << k)) == 0;
+	}
+
+	/**
+	 * @return the symbols of this path, from the start symbol to the end symbol.
+	 */
+	public List<Flowchart> getSymbols() {
+		final List<Flowchart> symbols = new ArrayList<>();
+		int symbol = program.start();
+		int k = 0;
+		symbols.add(program.symbol(symbol));
+		while (symbol != program.end()) {
+			if (program.isDecision(symbol)) {
+				symbol = isYes(k++) ? program.next(symbol) : program.alt(symbol);
+			} else {
+				symbol = program.next(symbol);
+			}
+			symbols.add(program.symbol(symbol));
+		}
+		return Collections.unmodifiableList(symbols);
+	}
+
+	/**
+	 * Two paths are equal if they take the same choices through the same
+	 * snapshot of a flowchart, so paths enumerated from one
+	 * {@link Flowchart#freeze() frozen} flowchart compare by their choices.
+	 */
+	@Override
+	public boolean equals(final Object that) {
+		if (!(that instanceof ExecutionPath)) {
+			return false;
+		}
+		final ExecutionPath path = (ExecutionPath) that;
+		return path.program.chart() == program.chart()
+				&& path.decisions == decisions
+				&& Arrays.equals(path.choices, choices);
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(program.chart()) * 31 * 31
+				+ Arrays.hashCode(choices) * 31 + decisions;
+	}
+
+	/**
+	 * @return the choices of this path, {@code Y} for a yes branch and
+	 *     {@code N} for a no branch.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder text = new StringBuilder(decisions);
+		for (int k = 0; k < decisions; k++) {
+			text.append(isYes(k) ? 'Y' : 'N');
+		}
+		return text.toString();
+	}
+}
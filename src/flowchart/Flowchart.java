@@ -1,7 +1,10 @@
 package flowchart;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A flowchart abstraction that represents the steps as boxes 
@@ -29,14 +32,90 @@ import java.util.NoSuchElementException;
 public interface Flowchart {    
     // TODO: strengthen the preconditions. The client is being asked for a lot.
     // TODO: design for extensibility and contraction
-    // TODO: add methods to remove symbols
 	// Datatype definition:
 	//     Flowchart = Start(label:String) 
 	//				   + Activity(label:String) 
 	//				   + Decision(label:String) 
 	//				   + End(label:String)
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as an activity
+	 * symbol if it doesn't exist.
+	 * 
+	 * <p>Symbols are interned: every call with the same label returns the
+	 * same symbol, whatever its kind, without allocating. All the symbols
+	 * created by the static {@code instantiate} methods belong to one
+	 * flowchart, in a table shared by the whole process: a label means the
+	 * same symbol to every caller, and the symbols are never released. A
+	 * caller whose labels must not collide with other callers', or whose
+	 * charts are dropped, should instantiate its symbols in a
+	 * {@link SymbolTable} of its own instead.
+	 * 
+	 * @param label String that identifies the symbol. It must contain at least
+	 *     one non-whitespace character.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 */
 	public static Flowchart instantiate(final String label) {
-		throw new RuntimeException("unimplemented");
+		return SymbolTable.shared().intern(label, Kind.ACTIVITY);
+	}
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as a start
+	 * symbol if it doesn't exist.
+	 * 
+	 * @param label String that identifies the symbol.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 * @see #instantiate(String)
+	 */
+	public static Flowchart instantiateStart(final String label) {
+		return SymbolTable.shared().intern(label, Kind.START);
+	}
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as a decision
+	 * symbol if it doesn't exist.
+	 * 
+	 * @param label String that identifies the symbol.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 * @see #instantiate(String)
+	 */
+	public static Flowchart instantiateDecision(final String label) {
+		return SymbolTable.shared().intern(label, Kind.DECISION);
+	}
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as an end
+	 * symbol if it doesn't exist.
+	 * 
+	 * @param label String that identifies the symbol.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 * @see #instantiate(String)
+	 */
+	public static Flowchart instantiateEnd(final String label) {
+		return SymbolTable.shared().intern(label, Kind.END);
+	}
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as a subchart
+	 * of {@code chart} if it doesn't exist.
+	 * 
+	 * <p>A subchart is an activity standing for a whole flowchart: it is
+	 * connected, traversed and frozen like any activity, and executing it
+	 * executes {@code chart} from its start to its end symbol. The
+	 * {@link Interpreter} resolves {@code chart} the first time an execution
+	 * reaches a subchart of it, unless the subchart has an action of its own;
+	 * {@code chart} itself is shared, never copied, by all the subcharts
+	 * referencing it.
+	 * 
+	 * @param label String that identifies the symbol.
+	 * @param chart Flowchart the subchart stands for, having a start and an
+	 *     end symbol by the time it is executed.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank, or
+	 *     if {@code chart} is null.
+	 * @see #instantiate(String)
+	 */
+	public static Flowchart instantiateSubchart(final String label, final Flowchart chart) {
+		return SymbolTable.shared().subchart(label, chart);
 	}
 	/**
 	 * Sets or resets an activity as the start symbol.
@@ -151,6 +230,47 @@ public interface Flowchart {
 	 *     if {@code target} has no sources.
 	 */
 	public List<Flowchart> getSources(final Flowchart target);
+	/**
+	 * Performs an action for every connected target of a source.
+	 * 
+	 * <p>Unlike {@link #getTargets}, unconnected slots are skipped rather
+	 * than reported as null, and implementations walk their own structure
+	 * without allocating a list. The action receives the target and its
+	 * slot: 0 for the target of an activity or the yes branch of a
+	 * decision, 1 for the no branch. The action must not change this
+	 * flowchart.
+	 * 
+	 * @param source Flowchart representing symbol having zero or more targets.
+	 * @param action called with every connected target of {@code source}
+	 *     and its slot, in slot order.
+	 */
+	public default void forEachTarget(
+			final Flowchart source, 
+			final ObjIntConsumer<? super Flowchart> action) {
+		final List<Flowchart> targets = getTargets(source);
+		for (int slot = 0; slot < targets.size(); slot++) {
+			final Flowchart target = targets.get(slot);
+			if (target != null) {
+				action.accept(target, slot);
+			}
+		}
+	}
+	/**
+	 * Performs an action for every source of a target.
+	 * 
+	 * <p>Implementations walk their own structure without copying the
+	 * sources into a list, as {@link #getSources} does. The action must
+	 * not change this flowchart.
+	 * 
+	 * @param target Flowchart representing symbol having zero or more sources.
+	 * @param action called with every source of {@code target}, in no
+	 *     particular order.
+	 */
+	public default void forEachSource(
+			final Flowchart target, 
+			final Consumer<? super Flowchart> action) {
+		getSources(target).forEach(action);
+	}
 	/**
 	 * Connects a source symbol to a target symbol
 	 * 
@@ -256,4 +376,93 @@ public interface Flowchart {
 			final Flowchart source, 
 			final Flowchart noBranch, 
 			final boolean reset);
+	/**
+	 * Disconnects a source symbol from a target symbol.
+	 * 
+	 * <p>Every target slot of {@code source} holding {@code target} is left
+	 * unconnected: both branches of a decision whose branches both go to
+	 * {@code target}. Neither symbol is removed.
+	 * 
+	 * <p>This operation is optional; flowcharts that can't remove connections
+	 * throw {@link UnsupportedOperationException}.
+	 * 
+	 * @param source Flowchart representing a symbol having zero or more targets.
+	 * @param target Flowchart representing a symbol having zero or more sources.
+	 * @return the Flowchart made from disconnecting {@code source} from
+	 *     {@code target}, or {@code null} if {@code source} was not connected
+	 *     to {@code target}.
+	 * @throws IllegalArgumentException if either symbol is not a symbol of
+	 *     this flowchart.
+	 * @throws UnsupportedOperationException if this flowchart can't remove
+	 *     connections.
+	 */
+	public default Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		throw new UnsupportedOperationException("cannot remove connections");
+	}
+	/**
+	 * Removes a symbol together with all of its connections.
+	 * 
+	 * <p>Every source of {@code symbol} is left with an unconnected slot where
+	 * {@code symbol} was. If {@code symbol} is the start or the end symbol,
+	 * this flowchart is left without one.
+	 * 
+	 * <p>This operation is optional; flowcharts that can't remove symbols
+	 * throw {@link UnsupportedOperationException}.
+	 * 
+	 * @param symbol Flowchart representing the symbol to remove.
+	 * @return the Flowchart made from removing {@code symbol}, or {@code null}
+	 *     if it had been removed already.
+	 * @throws IllegalArgumentException if {@code symbol} is not a symbol of
+	 *     this flowchart.
+	 * @throws UnsupportedOperationException if this flowchart can't remove
+	 *     symbols.
+	 */
+	public default Flowchart removeSymbol(final Flowchart symbol) {
+		throw new UnsupportedOperationException("cannot remove symbols");
+	}
+	/**
+	 * Removes a number of symbols together with all of their connections, as
+	 * {@link #removeSymbol} would one after the other.
+	 * 
+	 * <p>Implementations may defer the clean-up of their storage to the end
+	 * of the call, so removing many symbols at once can be cheaper than
+	 * removing them one by one.
+	 * 
+	 * @param symbols the symbols to remove.
+	 * @return the Flowchart made from removing {@code symbols}, or {@code null}
+	 *     if all of them had been removed already.
+	 * @throws IllegalArgumentException if one of {@code symbols} is not a
+	 *     symbol of this flowchart.
+	 * @throws UnsupportedOperationException if this flowchart can't remove
+	 *     symbols.
+	 */
+	public default Flowchart removeSymbols(final Collection<? extends Flowchart> symbols) {
+		Flowchart result = null;
+		Flowchart chart = this;
+		for (Flowchart symbol : symbols) {
+			final Flowchart removed = chart.removeSymbol(symbol);
+			if (removed != null) {
+				result = removed;
+				chart = removed;
+			}
+		}
+		return result;
+	}
+	/**
+	 * Returns an immutable snapshot of this flowchart.
+	 * 
+	 * <p>The snapshot holds every symbol connected to the start or the end
+	 * symbol of this flowchart, together with their connections, in flat
+	 * int-indexed arrays. It answers {@link #getStart}, {@link #getEnd},
+	 * {@link #getTargets} and {@link #getSources} like this flowchart did at
+	 * the time of the call; every other method throws
+	 * {@link UnsupportedOperationException}.
+	 * 
+	 * <p>Later changes to this flowchart are not reflected in the snapshot.
+	 * 
+	 * @return an immutable snapshot of this flowchart.
+	 */
+	public default Flowchart freeze() {
+		return FrozenFlowchart.of(this);
+	}
 }
@@ -0,0 +1,328 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds an immutable flowchart from connections given in bulk.
+ *
+ * <p>Connections are staged as symbol ids in primitive buffers and are not
+ * checked as they are added. {@link #build()} checks all of them against
+ * the assumptions of {@link Flowchart} in a single pass, and reports every
+ * violation at once:
+ * <ul>
+ * <li>only activities are connected with {@link #connectActivity} and only
+ *     decisions with {@link #connectDecision};
+ * <li>no symbol is connected more than once, and none is its own target;
+ * <li>nothing is connected to the start symbol, nor from the end symbol;
+ * <li>there is a start symbol and an end symbol;
+ * <li>every symbol but the start has a source, and every symbol but the
+ *     end has all of its targets.
+ * </ul>
+ *
+ * <p>All the symbols given to a builder must come from the same table.
+ */
+public final class FlowchartBuilder {
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private SymbolTable table = null;
+	private final IntList activitySources = new IntList();
+	private final IntList activityTargets = new IntList();
+	private final IntList decisionSources = new IntList();
+	private final IntList yesBranches = new IntList();
+	private final IntList noBranches = new IntList();
+	private Symbol start = null;
+	private Symbol end = null;
+
+	// Abstraction Function
+	//	represents the flowchart of the symbols of table whose start is start,
+	//	whose end is end, in which activity id activitySources[k] is connected to
+	//	id activityTargets[k] and decision id decisionSources[k] to yesBranches[k]
+	//	and noBranches[k], for every k.
+	//
+	// Representation Invariant
+	//	- table is null iff nothing has been staged; every staged id is the
+	//	  id of a symbol of table.
+	//	- activitySources, activityTargets have the same size;
+	//	  decisionSources, yesBranches, noBranches have the same size.
+	//
+	// Safety from Exposure
+	//	- all fields are private; the buffers are never returned.
+
+	/**
+	 * Checks that a symbol can be staged together with the symbols of a table.
+	 *
+	 * <p>Nothing is staged until every symbol of a call has been checked, so
+	 * a call that throws leaves the builder as it was.
+	 *
+	 * @param expected the table of the symbols staged or checked so far, or
+	 *     null if there are none.
+	 * @param symbol Flowchart to check.
+	 * @return the table of {@code symbol}.
+	 * @throws IllegalArgumentException if {@code symbol} is not a symbol, has
+	 *     been removed, or comes from another table than {@code expected}.
+	 */
+	private static SymbolTable check(final SymbolTable expected, final Flowchart symbol) {
+		if (!(symbol instanceof Symbol)) {
+			throw new IllegalArgumentException("not a symbol: " + symbol);
+		}
+		final Symbol member = (Symbol) symbol;
+		if (expected != null && member.table() != expected) {
+			throw new IllegalArgumentException("not a symbol of this flowchart: " + symbol);
+		}
+		if (member.isRemoved()) {
+			throw new IllegalArgumentException("removed symbol: " + symbol);
+		}
+		return member.table();
+	}
+
+	private static int id(final Flowchart checked) {
+		return ((Symbol) checked).id();
+	}
+
+	/**
+	 * Stages a connection from an activity to its target.
+	 *
+	 * @param source Flowchart representing an activity symbol.
+	 * @param target Flowchart representing any symbol.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if a symbol comes from another table
+	 *     or has been removed; nothing is staged then.
+	 */
+	public FlowchartBuilder connectActivity(final Flowchart source, final Flowchart target) {
+		table = check(check(table, source), target);
+		activitySources.add(id(source));
+		activityTargets.add(id(target));
+		return this;
+	}
+
+	/**
+	 * Stages connections from activities to their targets, from
+	 * {@code sources[i]} to {@code targets[i]} for every i.
+	 *
+	 * @param sources Flowcharts representing activity symbols.
+	 * @param targets Flowcharts representing any symbols.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 *     or if a symbol comes from another table or has been removed;
+	 *     nothing is staged then.
+	 */
+	public FlowchartBuilder connectActivities(final Flowchart[] sources, final Flowchart[] targets) {
+		if (sources.length != targets.length) {
+			throw new IllegalArgumentException("as many sources as targets expected");
+		}
+		SymbolTable checked = table;
+		for (int i = 0; i < sources.length; i++) {
+			checked = check(check(checked, sources[i]), targets[i]);
+		}
+		table = checked;
+		for (int i = 0; i < sources.length; i++) {
+			activitySources.add(id(sources[i]));
+			activityTargets.add(id(targets[i]));
+		}
+		return this;
+	}
+
+	/**
+	 * Stages the connection of a decision to both of its branches.
+	 *
+	 * @param source Flowchart representing a decision symbol.
+	 * @param yesBranch Flowchart representing the target of the 'yes' path.
+	 * @param noBranch Flowchart representing the target of the 'no' path.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if a symbol comes from another table
+	 *     or has been removed; nothing is staged then.
+	 */
+	public FlowchartBuilder connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		table = check(check(check(table, source), yesBranch), noBranch);
+		decisionSources.add(id(source));
+		yesBranches.add(id(yesBranch));
+		noBranches.add(id(noBranch));
+		return this;
+	}
+
+	/**
+	 * Stages connections of decisions to their branches, from
+	 * {@code sources[i]} to {@code yesBranches[i]} and {@code noBranches[i]}
+	 * for every i.
+	 *
+	 * @param sources Flowcharts representing decision symbols.
+	 * @param yesBranches Flowcharts representing the targets of the 'yes' paths.
+	 * @param noBranches Flowcharts representing the targets of the 'no' paths.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if the arrays have different lengths
+	 *     or if a symbol comes from another table or has been removed;
+	 *     nothing is staged then.
+	 */
+	public FlowchartBuilder connectDecisions(
+			final Flowchart[] sources,
+			final Flowchart[] yesBranches,
+			final Flowchart[] noBranches) {
+		if (sources.length != yesBranches.length || sources.length != noBranches.length) {
+			throw new IllegalArgumentException("as many sources as branches expected");
+		}
+		SymbolTable checked = table;
+		for (int i = 0; i < sources.length; i++) {
+			checked = check(check(check(checked, sources[i]), yesBranches[i]), noBranches[i]);
+		}
+		table = checked;
+		for (int i = 0; i < sources.length; i++) {
+			decisionSources.add(id(sources[i]));
+			this.yesBranches.add(id(yesBranches[i]));
+			this.noBranches.add(id(noBranches[i]));
+		}
+		return this;
+	}
+
+	/**
+	 * @param start Flowchart representing the start symbol.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if {@code start} comes from another
+	 *     table or has been removed.
+	 */
+	public FlowchartBuilder setStart(final Flowchart start) {
+		table = check(table, start);
+		this.start = (Symbol) start;
+		return this;
+	}
+
+	/**
+	 * @param end Flowchart representing the end symbol.
+	 * @return this builder.
+	 * @throws IllegalArgumentException if {@code end} comes from another
+	 *     table or has been removed.
+	 */
+	public FlowchartBuilder setEnd(final Flowchart end) {
+		table = check(table, end);
+		this.end = (Symbol) end;
+		return this;
+	}
+
+	/**
+	 * Checks the staged connections and builds the flowchart they make.
+	 *
+	 * <p>The builder can be used again afterwards; the flowchart built does
+	 * not change with it.
+	 *
+	 * @return an immutable flowchart, like the ones returned by
+	 *     {@link Flowchart#freeze()}.
+	 * @throws InvalidFlowchartException listing every violation found.
+	 */
+	public Flowchart build() {
+		final List<String> violations = new ArrayList<>();
+		final int ids = table == null ? 0 : table.size();
+		final int[] yes = new int[ids];
+		final int[] no = new int[ids];
+		final boolean[] present = new boolean[ids];
+		final boolean[] targeted = new boolean[ids];
+		Arrays.fill(yes, NONE);
+		Arrays.fill(no, NONE);
+		final int startId = start == null ? NONE : start.id();
+		final int endId = end == null ? NONE : end.id();
+
+		for (int k = 0; k < activitySources.size(); k++) {
+			final int source = activitySources.get(k);
+			final Kind kind = table.symbol(source).kind();
+			if (kind != Kind.START && kind != Kind.ACTIVITY) {
+				violations.add("connected as an activity: " + table.symbol(source));
+			}
+			stage(source, 0, activityTargets.get(k), yes, startId, endId, violations);
+			present[source] = true;
+			present[activityTargets.get(k)] = true;
+			targeted[activityTargets.get(k)] = true;
+		}
+		for (int k = 0; k < decisionSources.size(); k++) {
+			final int source = decisionSources.get(k);
+			if (table.symbol(source).kind() != Kind.DECISION) {
+				violations.add("connected as a decision: " + table.symbol(source));
+			}
+			stage(source, 0, yesBranches.get(k), yes, startId, endId, violations);
+			stage(source, 1, noBranches.get(k), no, startId, endId, violations);
+			present[source] = true;
+			present[yesBranches.get(k)] = true;
+			present[noBranches.get(k)] = true;
+			targeted[yesBranches.get(k)] = true;
+			targeted[noBranches.get(k)] = true;
+		}
+
+		if (start == null) {
+			violations.add("no start symbol");
+		} else {
+			present[startId] = true;
+			if (start.kind() != Kind.START && start.kind() != Kind.ACTIVITY) {
+				violations.add("start is not an activity: " + start);
+			}
+		}
+		if (end == null) {
+			violations.add("no end symbol");
+		} else {
+			present[endId] = true;
+			if (end.kind() != Kind.END && end.kind() != Kind.ACTIVITY) {
+				violations.add("end is not an activity: " + end);
+			}
+		}
+
+		final int[] indices = new int[ids];
+		final IntList order = new IntList();
+		for (int id = 0; id < ids; id++) {
+			indices[id] = NONE;
+			if (!present[id]) {
+				continue;
+			}
+			final Symbol symbol = table.symbol(id);
+			if (!targeted[id] && id != startId) {
+				violations.add("has no source: " + symbol);
+			}
+			if (id != endId && (slotMissing(symbol, 0, yes[id]) || slotMissing(symbol, 1, no[id]))) {
+				violations.add("has an unconnected target: " + symbol);
+			}
+			indices[id] = order.size();
+			order.add(id);
+		}
+		if (!violations.isEmpty()) {
+			throw new InvalidFlowchartException(violations);
+		}
+
+		final Symbol[] symbols = new Symbol[order.size()];
+		final IntList targets = new IntList(order.size() * 2);
+		for (int i = 0; i < symbols.length; i++) {
+			final int id = order.get(i);
+			symbols[i] = table.symbol(id);
+			for (int slot = 0; slot < symbols[i].kind().slots(); slot++) {
+				final int target = slot == 0 ? yes[id] : no[id];
+				targets.add(target == NONE ? NONE : indices[target]);
+			}
+		}
+		return FrozenFlowchart.of(symbols, targets.toArray(), indices[startId], indices[endId]);
+	}
+
+	/**
+	 * Records that slot {@code slot} of {@code source} holds {@code target},
+	 * adding any violation to {@code violations}.
+	 */
+	private void stage(
+			final int source, final int slot, final int target, final int[] slots,
+			final int startId, final int endId, final List<String> violations) {
+		if (slots[source] != NONE) {
+			violations.add("connected more than once: " + table.symbol(source));
+		}
+		if (target == source) {
+			violations.add("connected to itself: " + table.symbol(source));
+		}
+		if (target == startId || table.symbol(target).kind() == Kind.START) {
+			violations.add("connected to the start: " + table.symbol(source));
+		}
+		if (source == endId) {
+			violations.add("the end is connected: " + table.symbol(source));
+		}
+		slots[source] = target;
+	}
+
+	private static boolean slotMissing(final Symbol symbol, final int slot, final int target) {
+		return slot < symbol.kind().slots() && target == NONE;
+	}
+}
@@ -0,0 +1,572 @@
+package flowchart;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads Graphviz DOT or Mermaid text into a flowchart.
+ *
+ * <p>The text is parsed one statement at a time and every statement is
+ * applied to the flowchart at once, with {@link Flowchart#connectActivity},
+ * {@link Flowchart#connectToYesBranch}, {@link Flowchart#connectToNoBranch},
+ * {@link Flowchart#setStart} and {@link Flowchart#setEnd}. Nothing but the
+ * current statement is kept, apart from the map from Mermaid node ids to
+ * symbols, so the memory used does not grow with the length of the text.
+ *
+ * <p>The kind of a symbol comes from the shape of the first statement that
+ * mentions it, as {@link FlowchartWriter} writes them; a symbol first
+ * mentioned as the source of a connection labelled {@code yes} or
+ * {@code no} is a decision, and any other symbol an activity. A connection
+ * from a decision without a branch label takes the yes branch if it is
+ * free, the no branch otherwise.
+ *
+ * <p>Only the statements that describe symbols and connections are
+ * understood; graph attributes, default attributes, styles and subgraph
+ * boundaries are skipped.
+ */
+public final class FlowchartReader {
+	private final SymbolTable table;
+	private final Flowchart chart;
+	private final Map<String, Symbol> nodes = new HashMap<>();
+
+	// Abstraction Function
+	//	represents a reader connecting symbols of table into chart, where the
+	//	Mermaid node id k names the symbol nodes.get(k).
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; readers are only used inside the
+	//	  static read methods.
+
+	private FlowchartReader(final SymbolTable table, final Flowchart chart) {
+		this.table = table;
+		this.chart = chart;
+	}
+
+	/**
+	 * Reads a Graphviz DOT digraph into a flowchart, using the node ids as
+	 * labels of symbols of {@link Flowchart#instantiate(String) the shared table}.
+	 *
+	 * @param in the text to read.
+	 * @param chart Flowchart to connect the symbols into; it must support
+	 *     {@link Flowchart#setStart} and {@link Flowchart#setEnd}.
+	 * @throws IOException if {@code in} throws it.
+	 * @throws IllegalArgumentException if the text is not a DOT digraph, or
+	 *     describes a connection {@code chart} rejects.
+	 */
+	public static void readDot(final Reader in, final Flowchart chart) throws IOException {
+		readDot(in, chart, SymbolTable.shared());
+	}
+
+	/**
+	 * Reads a Graphviz DOT digraph into a flowchart, like
+	 * {@link #readDot(Reader, Flowchart)}, using the node ids as labels of
+	 * symbols of {@code table}.
+	 *
+	 * @param in the text to read.
+	 * @param chart Flowchart to connect the symbols into.
+	 * @param table the table to instantiate the symbols in.
+	 * @throws IOException if {@code in} throws it.
+	 * @throws IllegalArgumentException if the text is not a DOT digraph, or
+	 *     describes a connection {@code chart} rejects.
+	 */
+	public static void readDot(final Reader in, final Flowchart chart, final SymbolTable table) throws IOException {
+		new FlowchartReader(table, chart).dot(new Lexer(in));
+	}
+
+	/**
+	 * Reads a Mermaid flowchart into a flowchart, using the labels of the
+	 * nodes, or their ids if they have none, as labels of symbols of
+	 * {@link Flowchart#instantiate(String) the shared table}.
+	 *
+	 * @param in the text to read.
+	 * @param chart Flowchart to connect the symbols into; it must support
+	 *     {@link Flowchart#setStart} and {@link Flowchart#setEnd}.
+	 * @throws IOException if {@code in} throws it.
+	 * @throws IllegalArgumentException if the text is not a Mermaid
+	 *     flowchart, or describes a connection {@code chart} rejects.
+	 */
+	public static void readMermaid(final Reader in, final Flowchart chart) throws IOException {
+		readMermaid(in, chart, SymbolTable.shared());
+	}
+
+	/**
+	 * Reads a Mermaid flowchart into a flowchart, like
+	 * {@link #readMermaid(Reader, Flowchart)}, using symbols of {@code table}.
+	 *
+	 * @param in the text to read.
+	 * @param chart Flowchart to connect the symbols into.
+	 * @param table the table to instantiate the symbols in.
+	 * @throws IOException if {@code in} throws it.
+	 * @throws IllegalArgumentException if the text is not a Mermaid
+	 *     flowchart, or describes a connection {@code chart} rejects.
+	 */
+	public static void readMermaid(final Reader in, final Flowchart chart, final SymbolTable table) throws IOException {
+		new FlowchartReader(table, chart).mermaid(new BufferedReader(in));
+	}
+
+	/**
+	 * Connects {@code source} to {@code target}, along the branch named by
+	 * {@code branch} if {@code source} is a decision.
+	 */
+	private void connect(final Symbol source, final Symbol target, final String branch) {
+		final Flowchart result;
+		if (source.kind() != Kind.DECISION) {
+			result = chart.connectActivity(source, target);
+		} else if ("yes".equalsIgnoreCase(branch)) {
+			result = chart.connectToYesBranch(source, target, true);
+		} else if ("no".equalsIgnoreCase(branch)) {
+			result = chart.connectToNoBranch(source, target, true);
+		} else if (chart.getTargets(source).get(0) == null) {
+			result = chart.connectToYesBranch(source, target, true);
+		} else {
+			result = chart.connectToNoBranch(source, target, true);
+		}
+		if (result == null) {
+			throw new IllegalArgumentException("cannot connect " + source + " to " + target);
+		}
+	}
+
+	private void mark(final Symbol symbol, final boolean start, final boolean end) {
+		if (start) {
+			chart.setStart(symbol, true);
+		}
+		if (end) {
+			chart.setEnd(symbol, true);
+		}
+	}
+
+	private static boolean isBranch(final String label) {
+		return "yes".equalsIgnoreCase(label) || "no".equalsIgnoreCase(label);
+	}
+
+	// DOT
+
+	/**
+	 * Splits DOT text into tokens: ids, quoted strings, and the punctuation
+	 * {@code { } [ ] ; , = ->}, skipping whitespace and comments.
+	 */
+	private static final class Lexer {
+		private final Reader in;
+		private final StringBuilder text = new StringBuilder();
+		private int next = -2;
+		private String pushed = null;
+		private boolean pushedQuoted = false;
+		/** whether the last token returned was a quoted string. */
+		boolean quoted = false;
+
+		Lexer(final Reader in) {
+			this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+		}
+
+		private int read() throws IOException {
+			if (next != -2) {
+				final int c = next;
+				next = -2;
+				return c;
+			}
+			return in.read();
+		}
+
+		private void unread(final int c) {
+			next = c;
+		}
+
+		void push(final String token) {
+			pushed = token;
+			pushedQuoted = quoted;
+		}
+
+		/**
+		 * @return the next token, or null at the end of the text.
+		 */
+		String next() throws IOException {
+			if (pushed != null) {
+				final String token = pushed;
+				pushed = null;
+				quoted = pushedQuoted;
+				return token;
+			}
+			quoted = false;
+			int c = read();
+			while (true) {
+				while (c != -1 && Character.isWhitespace(c)) {
+					c = read();
+				}
+				if (c == '#') {
+					c = skipLine();
+				} else if (c == '/') {
+					final int d = read();
+					if (d == '/') {
+						c = skipLine();
+					} else if (d == '*') {
+						int previous = 0;
+						c = read();
+						while (c != -1 && !(previous == '*' && c == '/')) {
+							previous = c;
+							c = read();
+						}
+						c = read();
+					} else {
+						throw new IllegalArgumentException("unexpected '/'");
+					}
+				} else {
+					break;
+				}
+			}
+			if (c == -1) {
+				return null;
+			}
+			text.setLength(0);
+			if (c == '"') {
+				quoted = true;
+				for (c = read(); c != '"'; c = read()) {
+					if (c == -1) {
+						throw new IllegalArgumentException("unterminated string");
+					}
+					if (c == '\\') {
+						c = read();
+						if (c != '"' && c != '\\') {
+							text.append('\\');
+						}
+					}
+					text.append((char) c);
+				}
+				return text.toString();
+			}
+			if ("{}[];,=".indexOf(c) >= 0) {
+				return String.valueOf((char) c);
+			}
+			if (c == '-') {
+				final int d = read();
+				if (d == '>' || d == '-') {
+					return d == '>' ? "->" : "--";
+				}
+				unread(d);
+			}
+			while (c != -1 && (Character.isLetterOrDigit(c) || c == '_' || c == '.')) {
+				text.append((char) c);
+				c = read();
+			}
+			if (text.length() == 0) {
+				throw new IllegalArgumentException("unexpected '" + (char) c + "'");
+			}
+			unread(c);
+			return text.toString();
+		}
+
+		private int skipLine() throws IOException {
+			int c = read();
+			while (c != -1 && c != '\n') {
+				c = read();
+			}
+			return c;
+		}
+	}
+
+	private void dot(final Lexer lexer) throws IOException {
+		String token = lexer.next();
+		if ("strict".equalsIgnoreCase(token)) {
+			token = lexer.next();
+		}
+		if (!"digraph".equalsIgnoreCase(token)) {
+			throw new IllegalArgumentException("not a DOT digraph");
+		}
+		token = lexer.next();
+		if (!"{".equals(token)) {
+			token = lexer.next();
+		}
+		if (!"{".equals(token)) {
+			throw new IllegalArgumentException("expected '{'");
+		}
+		final Map<String, String> attributes = new HashMap<>();
+		final List<String> ids = new ArrayList<>();
+		// the number of subgraphs and blocks open; the digraph ends at a '}' outside them
+		int depth = 0;
+		for (token = lexer.next(); depth > 0 || !"}".equals(token) || lexer.quoted; token = lexer.next()) {
+			if (token == null) {
+				throw new IllegalArgumentException("expected '}'");
+			}
+			if (";".equals(token) || ",".equals(token)) {
+				continue;
+			}
+			final boolean quoted = lexer.quoted;
+			if (!quoted && ("graph".equalsIgnoreCase(token)
+					|| "node".equalsIgnoreCase(token)
+					|| "edge".equalsIgnoreCase(token))) {
+				attributes(lexer, attributes);
+				continue;
+			}
+			if (!quoted && "subgraph".equalsIgnoreCase(token)) {
+				// the statements of a subgraph are read as if they were outside it
+				while (!"{".equals(token = lexer.next())) {
+					if (token == null) {
+						throw new IllegalArgumentException("expected '{'");
+					}
+				}
+				depth++;
+				continue;
+			}
+			if (!quoted && "{".equals(token)) {
+				depth++;
+				continue;
+			}
+			if (!quoted && "}".equals(token)) {
+				depth--;
+				continue;
+			}
+			ids.clear();
+			ids.add(token);
+			String next = lexer.next();
+			if ("=".equals(next)) {
+				// graph attribute
+				lexer.next();
+				continue;
+			}
+			while ("->".equals(next) || "--".equals(next)) {
+				ids.add(lexer.next());
+				next = lexer.next();
+			}
+			lexer.push(next);
+			attributes(lexer, attributes);
+			if (ids.size() == 1) {
+				declare(ids.get(0), attributes);
+				continue;
+			}
+			final String label = attributes.get("label");
+			for (int k = 0; k + 1 < ids.size(); k++) {
+				final Symbol source = dotSymbol(ids.get(k), k == 0 && isBranch(label));
+				connect(source, dotSymbol(ids.get(k + 1), false), label);
+			}
+		}
+	}
+
+	/**
+	 * Reads an attribute list if there is one.
+	 *
+	 * @param attributes receives the attributes read, replacing its contents.
+	 */
+	private static void attributes(final Lexer lexer, final Map<String, String> attributes) throws IOException {
+		attributes.clear();
+		String token = lexer.next();
+		while ("[".equals(token)) {
+			for (token = lexer.next(); !"]".equals(token) || lexer.quoted; token = lexer.next()) {
+				if (token == null) {
+					throw new IllegalArgumentException("expected ']'");
+				}
+				if (",".equals(token) || ";".equals(token)) {
+					continue;
+				}
+				final String name = token;
+				token = lexer.next();
+				if ("=".equals(token)) {
+					attributes.put(name, lexer.next());
+				} else {
+					attributes.put(name, "true");
+					lexer.push(token);
+				}
+			}
+			token = lexer.next();
+		}
+		lexer.push(token);
+	}
+
+	private Symbol dotSymbol(final String id, final boolean decision) {
+		return table.intern(id, decision ? Kind.DECISION : Kind.ACTIVITY);
+	}
+
+	private void declare(final String id, final Map<String, String> attributes) {
+		final String shape = attributes.get("shape");
+		final Kind kind;
+		if ("Mdiamond".equals(shape)) {
+			kind = Kind.START;
+		} else if ("diamond".equals(shape)) {
+			kind = Kind.DECISION;
+		} else if ("Msquare".equals(shape)) {
+			kind = Kind.END;
+		} else {
+			kind = Kind.ACTIVITY;
+		}
+		mark(table.intern(id, kind),
+				"true".equals(attributes.get("start")),
+				"true".equals(attributes.get("end")));
+	}
+
+	// Mermaid
+
+	/**
+	 * The position of the Mermaid parser within the current line.
+	 */
+	private static final class Line {
+		final String text;
+		int position = 0;
+
+		Line(final String text) {
+			this.text = text;
+		}
+
+		void skipSpaces() {
+			while (position < text.length() && text.charAt(position) == ' ') {
+				position++;
+			}
+		}
+
+		boolean consume(final String token) {
+			if (text.startsWith(token, position)) {
+				position += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		boolean atEnd() {
+			skipSpaces();
+			return position >= text.length() || text.charAt(position) == ';';
+		}
+	}
+
+	// longest opening brackets first
+	private static final String[][] MERMAID_SHAPES = {
+			{"(((", ")))"}, {"([", "])"}, {"((", "))"}, {"[", "]"}, {"{", "}"}, {"(", ")"}};
+	private static final Kind[] MERMAID_KINDS = {
+			Kind.END, Kind.START, Kind.ACTIVITY, Kind.ACTIVITY, Kind.DECISION, Kind.ACTIVITY};
+
+	private void mermaid(final BufferedReader in) throws IOException {
+		String text = in.readLine();
+		while (text != null && (text.trim().isEmpty() || text.trim().startsWith("%%"))) {
+			text = in.readLine();
+		}
+		if (text == null || !(text.trim().startsWith("flowchart") || text.trim().startsWith("graph"))) {
+			throw new IllegalArgumentException("not a Mermaid flowchart");
+		}
+		for (text = in.readLine(); text != null; text = in.readLine()) {
+			statement(new Line(text.replace('\t', ' ').trim()));
+		}
+	}
+
+	private void statement(final Line line) {
+		final String text = line.text;
+		final String keyword = text.split(" ", 2)[0];
+		if (text.isEmpty() || text.startsWith("%%")
+				|| keyword.equals("classDef") || keyword.equals("style")
+				|| keyword.equals("linkStyle") || keyword.equals("subgraph")
+				|| keyword.equals("end") || keyword.equals("direction")
+				|| keyword.equals("click")) {
+			return;
+		}
+		if (keyword.equals("class")) {
+			final String[] parts = text.split(" +");
+			if (parts.length >= 3) {
+				for (String id : parts[1].split(",")) {
+					final Symbol symbol = nodes.get(id);
+					if (symbol != null) {
+						mark(symbol,
+								parts[2].equals(FlowchartWriter.START_CLASS),
+								parts[2].equals(FlowchartWriter.END_CLASS));
+					}
+				}
+			}
+			return;
+		}
+		String id = node(line);
+		if (line.atEnd()) {
+			symbol(id, false);
+		}
+		while (!line.atEnd()) {
+			String label = null;
+			if (line.consume("-->")) {
+				line.skipSpaces();
+				if (line.consume("|")) {
+					final int close = text.indexOf('|', line.position);
+					if (close < 0) {
+						throw new IllegalArgumentException("unterminated link label: " + text);
+					}
+					label = text.substring(line.position, close).trim();
+					line.position = close + 1;
+				}
+			} else if (line.consume("--")) {
+				final int arrow = text.indexOf("-->", line.position);
+				if (arrow < 0) {
+					throw new IllegalArgumentException("expected '-->': " + text);
+				}
+				label = text.substring(line.position, arrow).trim();
+				line.position = arrow + 3;
+			} else {
+				throw new IllegalArgumentException("expected a link: " + text);
+			}
+			final Symbol source = symbol(id, isBranch(label));
+			id = node(line);
+			connect(source, symbol(id, false), label);
+		}
+	}
+
+	/**
+	 * @return the symbol of the node {@code id}, creating it as a decision
+	 *     or an activity if the node has not been mentioned with a shape.
+	 */
+	private Symbol symbol(final String id, final boolean decision) {
+		Symbol symbol = nodes.get(id);
+		if (symbol == null) {
+			symbol = table.intern(id, decision ? Kind.DECISION : Kind.ACTIVITY);
+			nodes.put(id, symbol);
+		}
+		return symbol;
+	}
+
+	/**
+	 * Reads a node reference with its optional shape and label, creating
+	 * its symbol the first time the node is mentioned with a shape.
+	 *
+	 * @return the id of the node.
+	 */
+	private String node(final Line line) {
+		line.skipSpaces();
+		final String text = line.text;
+		final int from = line.position;
+		while (line.position < text.length()) {
+			final char c = text.charAt(line.position);
+			if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+				break;
+			}
+			line.position++;
+		}
+		if (line.position == from) {
+			throw new IllegalArgumentException("expected a node id: " + text);
+		}
+		final String id = text.substring(from, line.position);
+		for (int s = 0; s < MERMAID_SHAPES.length; s++) {
+			if (!line.consume(MERMAID_SHAPES[s][0])) {
+				continue;
+			}
+			final String close = MERMAID_SHAPES[s][1];
+			final String label;
+			if (line.consume("\"")) {
+				final int quote = text.indexOf('"', line.position);
+				if (quote < 0) {
+					throw new IllegalArgumentException("unterminated label: " + text);
+				}
+				label = text.substring(line.position, quote);
+				line.position = quote + 1;
+				if (!line.consume(close)) {
+					throw new IllegalArgumentException("expected '" + close + "': " + text);
+				}
+			} else {
+				final int end = text.indexOf(close, line.position);
+				if (end < 0) {
+					throw new IllegalArgumentException("expected '" + close + "': " + text);
+				}
+				label = text.substring(line.position, end).trim();
+				line.position = end + close.length();
+			}
+			if (!nodes.containsKey(id)) {
+				nodes.put(id, table.intern(label.replace("#quot;", "\""), MERMAID_KINDS[s]));
+			}
+			return id;
+		}
+		return id;
+	}
+}
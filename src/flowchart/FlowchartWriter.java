@@ -0,0 +1,162 @@
+package flowchart;
+
+import java.io.IOException;
+
+/**
+ * Writes flowcharts as Graphviz DOT or Mermaid text.
+ *
+ * <p>The text is appended statement by statement as a snapshot of the
+ * flowchart is walked, so writing to a {@link java.io.Writer} never builds
+ * the whole text in memory. Both formats first declare every symbol with a
+ * shape telling its kind, then list the connections, labelling the
+ * branches of decisions {@code yes} and {@code no}:
+ * <table>
+ * <caption>Shapes of the symbols</caption>
+ * <tr><th>kind</th><th>DOT</th><th>Mermaid</th></tr>
+ * <tr><td>start</td><td>{@code shape=Mdiamond}</td><td>{@code id(["label"])}</td></tr>
+ * <tr><td>activity</td><td>{@code shape=box}</td><td>{@code id["label"]}</td></tr>
+ * <tr><td>decision</td><td>{@code shape=diamond}</td><td>{@code id{"label"}}</td></tr>
+ * <tr><td>end</td><td>{@code shape=Msquare}</td><td>{@code id((("label")))}</td></tr>
+ * </table>
+ * The start and end symbols of the flowchart are marked with the DOT
+ * attributes {@code start=true} and {@code end=true}, and the Mermaid
+ * classes {@value #START_CLASS} and {@value #END_CLASS}.
+ * {@link FlowchartReader} reads both formats back.
+ */
+public final class FlowchartWriter {
+	static final String START_CLASS = "startSymbol";
+	static final String END_CLASS = "endSymbol";
+	private static final String[] BRANCHES = {"yes", "no"};
+	// indexed by Kind ordinal
+	private static final String[][] MERMAID_SHAPES = {
+			{"([", "])"}, {"[", "]"}, {"{", "}"}, {"(((", ")))"}};
+
+	private FlowchartWriter() {
+	}
+
+	/**
+	 * Writes a flowchart as a Graphviz DOT digraph whose node ids are the
+	 * labels of the symbols.
+	 *
+	 * <p>The symbols written are those connected to the start or the end
+	 * symbol of {@code chart}, as {@link Flowchart#freeze()} finds them.
+	 *
+	 * @param chart Flowchart to write.
+	 * @param out where to append the text.
+	 * @throws IOException if {@code out} throws it.
+	 */
+	public static void writeDot(final Flowchart chart, final Appendable out) throws IOException {
+		final FrozenFlowchart frozen = FrozenFlowchart.of(chart);
+		out.append("digraph flowchart {\n");
+		for (int i = 0; i < frozen.size(); i++) {
+			out.append("\t");
+			dotId(frozen.label(i), out);
+			out.append(" [shape=").append(dotShape(frozen.kind(i)));
+			if (i == frozen.startIndex()) {
+				out.append(", start=true");
+			}
+			if (i == frozen.endIndex()) {
+				out.append(", end=true");
+			}
+			out.append("];\n");
+		}
+		for (int i = 0; i < frozen.size(); i++) {
+			final boolean decision = frozen.kind(i) == Kind.DECISION;
+			for (int slot = 0; slot < frozen.slots(i); slot++) {
+				final int target = frozen.target(i, slot);
+				if (target == FrozenFlowchart.NONE) {
+					continue;
+				}
+				out.append("\t");
+				dotId(frozen.label(i), out);
+				out.append(" -> ");
+				dotId(frozen.label(target), out);
+				if (decision) {
+					out.append(" [label=").append(BRANCHES[slot]).append("]");
+				}
+				out.append(";\n");
+			}
+		}
+		out.append("}\n");
+	}
+
+	private static String dotShape(final Kind kind) {
+		switch (kind) {
+		case START:
+			return "Mdiamond";
+		case DECISION:
+			return "diamond";
+		case END:
+			return "Msquare";
+		default:
+			return "box";
+		}
+	}
+
+	private static void dotId(final String label, final Appendable out) throws IOException {
+		out.append('"');
+		for (int k = 0; k < label.length(); k++) {
+			final char c = label.charAt(k);
+			if (c == '"' || c == '\\') {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+
+	/**
+	 * Writes a flowchart as a Mermaid flowchart whose node ids are
+	 * {@code n} followed by a number, labelled with the labels of the
+	 * symbols.
+	 *
+	 * <p>The symbols written are those connected to the start or the end
+	 * symbol of {@code chart}, as {@link Flowchart#freeze()} finds them.
+	 *
+	 * @param chart Flowchart to write.
+	 * @param out where to append the text.
+	 * @throws IOException if {@code out} throws it.
+	 */
+	public static void writeMermaid(final Flowchart chart, final Appendable out) throws IOException {
+		final FrozenFlowchart frozen = FrozenFlowchart.of(chart);
+		out.append("flowchart TD\n");
+		for (int i = 0; i < frozen.size(); i++) {
+			final String[] shape = MERMAID_SHAPES[frozen.kind(i).ordinal()];
+			out.append("\tn").append(Integer.toString(i)).append(shape[0]).append('"');
+			final String label = frozen.label(i);
+			for (int k = 0; k < label.length(); k++) {
+				final char c = label.charAt(k);
+				if (c == '"') {
+					out.append("#quot;");
+				} else if (c == '\n') {
+					out.append(' ');
+				} else {
+					out.append(c);
+				}
+			}
+			out.append('"').append(shape[1]).append('\n');
+		}
+		if (frozen.startIndex() != FrozenFlowchart.NONE) {
+			out.append("\tclass n").append(Integer.toString(frozen.startIndex()))
+					.append(' ').append(START_CLASS).append('\n');
+		}
+		if (frozen.endIndex() != FrozenFlowchart.NONE) {
+			out.append("\tclass n").append(Integer.toString(frozen.endIndex()))
+					.append(' ').append(END_CLASS).append('\n');
+		}
+		for (int i = 0; i < frozen.size(); i++) {
+			final boolean decision = frozen.kind(i) == Kind.DECISION;
+			for (int slot = 0; slot < frozen.slots(i); slot++) {
+				final int target = frozen.target(i, slot);
+				if (target == FrozenFlowchart.NONE) {
+					continue;
+				}
+				out.append("\tn").append(Integer.toString(i)).append(" -->");
+				if (decision) {
+					out.append('|').append(BRANCHES[slot]).append('|');
+				}
+				out.append(" n").append(Integer.toString(target)).append('\n');
+			}
+		}
+	}
+}
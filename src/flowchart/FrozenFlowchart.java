@@ -0,0 +1,540 @@
+package flowchart;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable snapshot of a flowchart.
+ *
+ * <p>The symbols of the snapshot are numbered densely from zero and the
+ * connections between them are stored as compressed sparse rows: the
+ * targets of every symbol occupy a contiguous run of {@code targets} and
+ * the sources of every symbol a contiguous run of {@code sources}. The
+ * read methods of {@link Flowchart} are answered from these arrays, every
+ * other method throws {@link UnsupportedOperationException}.
+ *
+ * <p>The symbols of a snapshot are either the {@link Symbol}s of a table, or
+ * the handles of a {@link HandleFlowchart}, which the snapshot refers to by
+ * number and makes when a method returns them.
+ */
+final class FrozenFlowchart implements Flowchart {
+	static final int NONE = -1;
+
+	private final Symbol[] symbols;
+	private final HandleFlowchart handles;
+	private final int[] numbers;
+	private final byte[] kinds;
+	private final int[] targetOffsets;
+	private final int[] targets;
+	private final int[] sourceOffsets;
+	private final int[] sources;
+	private final int start;
+	private final int end;
+	private final SymbolTable table;
+	private final int[] indexByNumber;
+
+	// Abstraction Function
+	//	represents the flowchart whose i-th symbol is symbol(i), of kind
+	//	Kind.of(kinds[i]), whose targets are targets[targetOffsets[i]..targetOffsets[i+1])
+	//	and whose sources are sources[sourceOffsets[i]..sourceOffsets[i+1]).
+	//	The start symbol is symbol(start) and the end symbol is symbol(end);
+	//	symbol(i) is symbols[i], or handle numbers[i] of handles if symbols
+	//	is null.
+	//
+	// Representation Invariant
+	//	- exactly one of symbols, handles is null.
+	//	- numbers, kinds and symbols (unless null) have the same length n;
+	//	  numbers[i] is symbols[i].id() or a distinct number of handles.
+	//	- targetOffsets, sourceOffsets have length n + 1, start at 0 and are non-decreasing.
+	//	- targetOffsets[i+1] - targetOffsets[i] == Kind.of(kinds[i]).slots();
+	//	  for a decision the yes branch comes first, then the no branch.
+	//	- every entry of targets is NONE or a symbol index; every entry of
+	//	  sources is a symbol index.
+	//	- j appears in the sources of i exactly once iff i is a target of j.
+	//	- start, end are NONE or symbol indices.
+	//	- all symbols belong to table, which is null iff there are no symbols.
+	//	- indexByNumber[numbers[i]] == i for every i; every other entry is NONE.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final.
+	//	- the arrays are never returned; lists returned by getTargets and
+	//	  getSources are unmodifiable views.
+
+	private FrozenFlowchart(
+			final Symbol[] symbols, final HandleFlowchart handles,
+			final int[] numbers, final byte[] kinds,
+			final int[] targetOffsets, final int[] targets,
+			final int start, final int end) {
+		this.symbols = symbols;
+		this.handles = handles;
+		this.numbers = numbers;
+		this.kinds = kinds;
+		this.targetOffsets = targetOffsets;
+		this.targets = targets;
+		this.start = start;
+		this.end = end;
+
+		final int n = numbers.length;
+		this.sourceOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			for (int t = targetOffsets[i]; t < targetOffsets[i + 1]; t++) {
+				if (targets[t] != NONE && !isRepeatedBranch(t, i)) {
+					sourceOffsets[targets[t] + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			sourceOffsets[i + 1] += sourceOffsets[i];
+		}
+		this.sources = new int[sourceOffsets[n]];
+		final int[] cursor = Arrays.copyOf(sourceOffsets, n);
+		for (int i = 0; i < n; i++) {
+			for (int t = targetOffsets[i]; t < targetOffsets[i + 1]; t++) {
+				if (targets[t] != NONE && !isRepeatedBranch(t, i)) {
+					sources[cursor[targets[t]]++] = i;
+				}
+			}
+		}
+
+		this.table = symbols == null || n == 0 ? null : symbols[0].table();
+		int count = 0;
+		for (int number : numbers) {
+			count = Math.max(count, number + 1);
+		}
+		this.indexByNumber = new int[count];
+		Arrays.fill(indexByNumber, NONE);
+		for (int i = 0; i < n; i++) {
+			indexByNumber[numbers[i]] = i;
+		}
+		checkRep();
+	}
+
+	private boolean isRepeatedBranch(final int slot, final int source) {
+		return slot > targetOffsets[source] && targets[slot] == targets[slot - 1];
+	}
+
+	private void checkRep() {
+		assert (symbols == null) != (handles == null);
+		assert symbols == null || symbols.length == numbers.length;
+		assert kinds.length == numbers.length;
+		assert targetOffsets.length == numbers.length + 1;
+		assert sourceOffsets.length == numbers.length + 1;
+		assert start == NONE || (start >= 0 && start < numbers.length);
+		assert end == NONE || (end >= 0 && end < numbers.length);
+	}
+
+	/**
+	 * Compiles a flowchart into an immutable snapshot.
+	 *
+	 * <p>The snapshot contains every symbol connected, directly or not,
+	 * to the start or the end symbol of {@code chart}.
+	 *
+	 * @param chart Flowchart to compile.
+	 * @return an immutable snapshot of {@code chart}; {@code chart} itself
+	 *     if it already is a snapshot.
+	 */
+	static FrozenFlowchart of(final Flowchart chart) {
+		if (chart instanceof FrozenFlowchart) {
+			return (FrozenFlowchart) chart;
+		}
+		final HandleFlowchart handles = HandleFlowchart.of(chart);
+		if (handles != null) {
+			return handles.snapshot();
+		}
+		final Discovery symbols = new Discovery();
+		final Flowchart start = startOf(chart);
+		final Flowchart end = endOf(chart);
+		if (start != null) {
+			symbols.add(start);
+		}
+		if (end != null) {
+			symbols.add(end);
+		}
+		// symbols doubles as the breadth-first queue; the slots of symbol i
+		// start at base[0] while it is being visited
+		final IntList targets = new IntList();
+		final int[] base = new int[1];
+		final ObjIntConsumer<Flowchart> target = (symbol, slot) -> {
+			symbols.add(symbol);
+			targets.set(base[0] + slot, symbols.indexOf(symbol));
+		};
+		final Consumer<Flowchart> source = symbols::add;
+		for (int i = 0; i < symbols.size(); i++) {
+			final Symbol symbol = symbols.get(i);
+			base[0] = targets.size();
+			for (int k = 0; k < symbol.kind().slots(); k++) {
+				targets.add(NONE);
+			}
+			chart.forEachTarget(symbol, target);
+			chart.forEachSource(symbol, source);
+		}
+		return of(symbols.toArray(), targets.toArray(),
+				start == null ? NONE : symbols.indexOf(start),
+				end == null ? NONE : symbols.indexOf(end));
+	}
+
+	/**
+	 * Makes a snapshot from its symbols and their targets.
+	 *
+	 * @param symbols the symbols of the snapshot, all from the same table,
+	 *     each appearing once; symbols[i] gets index i.
+	 * @param targets the indices of the targets of every symbol in order,
+	 *     {@code symbols[i].kind().slots()} entries for symbol i (yes branch
+	 *     before no branch), {@link #NONE} for an unconnected slot. The array
+	 *     is owned by the snapshot afterwards.
+	 * @param start the index of the start symbol, or {@link #NONE}.
+	 * @param end the index of the end symbol, or {@link #NONE}.
+	 * @return the snapshot.
+	 */
+	static FrozenFlowchart of(
+			final Symbol[] symbols, final int[] targets, final int start, final int end) {
+		final int n = symbols.length;
+		final int[] ids = new int[n];
+		final byte[] kinds = new byte[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = symbols[i].id();
+			kinds[i] = (byte) symbols[i].kind().ordinal();
+		}
+		return new FrozenFlowchart(symbols, null, ids, kinds, offsets(kinds, targets), targets, start, end);
+	}
+
+	/**
+	 * Makes a snapshot of a handle-based flowchart from the numbers, kinds
+	 * and targets of its symbols.
+	 *
+	 * @param handles the flowchart whose handles the snapshot answers.
+	 * @param numbers the distinct numbers of the symbols of the snapshot in
+	 *     {@code handles}; symbol numbers[i] gets index i.
+	 * @param kinds the ordinals of the kinds of the symbols, in the same
+	 *     order.
+	 * @param targets as for {@link #of(Symbol[], int[], int, int)}.
+	 * @param start the index of the start symbol, or {@link #NONE}.
+	 * @param end the index of the end symbol, or {@link #NONE}.
+	 * @return the snapshot.
+	 */
+	static FrozenFlowchart of(
+			final HandleFlowchart handles, final int[] numbers, final byte[] kinds,
+			final int[] targets, final int start, final int end) {
+		return new FrozenFlowchart(null, handles, numbers, kinds, offsets(kinds, targets), targets, start, end);
+	}
+
+	private static int[] offsets(final byte[] kinds, final int[] targets) {
+		final int n = kinds.length;
+		final int[] targetOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			targetOffsets[i + 1] = targetOffsets[i] + Kind.of(kinds[i]).slots();
+		}
+		if (targetOffsets[n] != targets.length) {
+			throw new IllegalArgumentException("expected " + targetOffsets[n] + " target slots");
+		}
+		return targetOffsets;
+	}
+
+	/**
+	 * The symbols discovered so far while compiling a flowchart, numbered
+	 * in order of discovery.
+	 */
+	private static final class Discovery {
+		private Symbol[] symbols = new Symbol[16];
+		private int[] indexById = new int[0];
+		private int size = 0;
+
+		void add(final Flowchart flowchart) {
+			if (!(flowchart instanceof Symbol)) {
+				throw new IllegalArgumentException("not a symbol: " + flowchart);
+			}
+			final Symbol symbol = (Symbol) flowchart;
+			if (size > 0 && symbol.table() != symbols[0].table()) {
+				throw new IllegalArgumentException("symbols of different flowcharts: " + symbol);
+			}
+			if (symbol.id() >= indexById.length) {
+				final int length = indexById.length;
+				indexById = Arrays.copyOf(indexById, Math.max(symbol.id() + 1, length * 2));
+				Arrays.fill(indexById, length, indexById.length, NONE);
+			}
+			if (indexById[symbol.id()] == NONE) {
+				if (size == symbols.length) {
+					symbols = Arrays.copyOf(symbols, size * 2);
+				}
+				indexById[symbol.id()] = size;
+				symbols[size++] = symbol;
+			}
+		}
+
+		int indexOf(final Flowchart symbol) {
+			return indexById[((Symbol) symbol).id()];
+		}
+
+		Symbol get(final int index) {
+			return symbols[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		Symbol[] toArray() {
+			return Arrays.copyOf(symbols, size);
+		}
+	}
+
+	private static Flowchart startOf(final Flowchart chart) {
+		try {
+			return chart.getStart();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Flowchart endOf(final Flowchart chart) {
+		try {
+			return chart.getEnd();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of symbols in this snapshot.
+	 */
+	int size() {
+		return numbers.length;
+	}
+
+	/**
+	 * @param symbol Flowchart representing a symbol.
+	 * @return the index of {@code symbol}, or {@link #NONE} if it is not
+	 *     part of this snapshot.
+	 */
+	int indexOf(final Flowchart symbol) {
+		final int number;
+		if (handles != null) {
+			number = handles.number(symbol);
+		} else if (symbol instanceof Symbol && ((Symbol) symbol).table() == table) {
+			number = ((Symbol) symbol).id();
+		} else {
+			number = NONE;
+		}
+		return number >= 0 && number < indexByNumber.length ? indexByNumber[number] : NONE;
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @return the symbol at {@code index}.
+	 */
+	Flowchart symbol(final int index) {
+		return symbols == null ? handles.handle(numbers[index]) : symbols[index];
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @return the label of the symbol at {@code index}.
+	 */
+	String label(final int index) {
+		return symbols == null ? handles.labelOf(numbers[index]) : symbols[index].label();
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @return the kind of the symbol at {@code index}.
+	 */
+	Kind kind(final int index) {
+		return Kind.of(kinds[index]);
+	}
+
+	/**
+	 * @return the index of the start symbol, or {@link #NONE}.
+	 */
+	int startIndex() {
+		return start;
+	}
+
+	/**
+	 * @return the index of the end symbol, or {@link #NONE}.
+	 */
+	int endIndex() {
+		return end;
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @return the number of target slots of the symbol at {@code index}.
+	 */
+	int slots(final int index) {
+		return targetOffsets[index + 1] - targetOffsets[index];
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @param slot a target slot of the symbol, 0 for the target of an
+	 *     activity or the yes branch of a decision, 1 for the no branch.
+	 * @return the index of the target in {@code slot}, or {@link #NONE}
+	 *     if the slot is not connected.
+	 */
+	int target(final int index, final int slot) {
+		return targets[targetOffsets[index] + slot];
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @return the number of distinct sources of the symbol at {@code index}.
+	 */
+	int sourceCount(final int index) {
+		return sourceOffsets[index + 1] - sourceOffsets[index];
+	}
+
+	/**
+	 * @param index the index of a symbol.
+	 * @param k a number in {@code [0, sourceCount(index))}.
+	 * @return the index of the k-th source of the symbol at {@code index}.
+	 */
+	int source(final int index, final int k) {
+		return sources[sourceOffsets[index] + k];
+	}
+
+	private int require(final Flowchart symbol) {
+		final int index = indexOf(symbol);
+		if (index == NONE) {
+			throw new IllegalArgumentException("not part of this flowchart: " + symbol);
+		}
+		return index;
+	}
+
+	@Override
+	public Flowchart freeze() {
+		return this;
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart getStart() {
+		if (start == NONE) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return symbol(start);
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		if (end == NONE) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return symbol(end);
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		final int index = require(source);
+		return new Slice(targets, targetOffsets[index], targetOffsets[index + 1]);
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		final int index = require(target);
+		return new Slice(sources, sourceOffsets[index], sourceOffsets[index + 1]);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final int index = require(source);
+		for (int t = targetOffsets[index]; t < targetOffsets[index + 1]; t++) {
+			if (targets[t] != NONE) {
+				action.accept(symbol(targets[t]), t - targetOffsets[index]);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		final int index = require(target);
+		for (int s = sourceOffsets[index]; s < sourceOffsets[index + 1]; s++) {
+			action.accept(symbol(sources[s]));
+		}
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		throw new UnsupportedOperationException("frozen flowchart");
+	}
+
+	/**
+	 * An unmodifiable view of a run of symbol indices.
+	 */
+	private final class Slice extends AbstractList<Flowchart> {
+		private final int[] array;
+		private final int from;
+		private final int to;
+
+		Slice(final int[] array, final int from, final int to) {
+			this.array = array;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Flowchart get(final int index) {
+			if (index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException("index: " + index);
+			}
+			final int symbol = array[from + index];
+			return symbol == NONE ? null : symbol(symbol);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package flowchart;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A symbol of a {@link HandleFlowchart}: just the flowchart and the number
+ * of the symbol.
+ *
+ * <p>Handles are made whenever a method returns a symbol and are equal to
+ * every other handle of the same symbol. Calling a method on a handle calls
+ * it on its flowchart, as calling it on a symbol of a {@link SymbolTable}
+ * does.
+ */
+final class Handle implements Flowchart {
+	private final HandleFlowchart chart;
+	private final int symbol;
+
+	// Abstraction Function
+	//	represents symbol number symbol of chart.
+	//
+	// Representation Invariant
+	//	- symbol is the number of a symbol of chart.
+	//
+	// Safety from Exposure
+	//	- all fields are private, final and immutable.
+
+	Handle(final HandleFlowchart chart, final int symbol) {
+		this.chart = chart;
+		this.symbol = symbol;
+	}
+
+	/**
+	 * @return the chart this symbol belongs to.
+	 */
+	HandleFlowchart chart() {
+		return chart;
+	}
+
+	/**
+	 * @return the number of this symbol in its chart.
+	 */
+	int symbol() {
+		return symbol;
+	}
+
+	/**
+	 * @return the kind of this symbol.
+	 */
+	Kind kind() {
+		return chart.kindOf(symbol);
+	}
+
+	@Override
+	public boolean equals(final Object that) {
+		return that instanceof Handle
+				&& ((Handle) that).chart == chart
+				&& ((Handle) that).symbol == symbol;
+	}
+
+	@Override
+	public int hashCode() {
+		return symbol;
+	}
+
+	@Override
+	public String toString() {
+		return chart.labelOf(symbol);
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		return chart.setStart(start, reset);
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		return chart.setStartIfAbsent(start);
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		return chart.setEnd(end, reset);
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		return chart.setEndIfAbsent(end);
+	}
+
+	@Override
+	public Flowchart getStart() {
+		return chart.getStart();
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		return chart.getEnd();
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		return chart.getTargets(source);
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		return chart.getSources(target);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		chart.forEachTarget(source, action);
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		chart.forEachSource(target, action);
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		return chart.connectActivity(source, target);
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		return chart.connectActivityIfAbsent(source, target);
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		return chart.connectDecision(source, yesBranch, noBranch);
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		return chart.connectToYesBranch(source, yesBranch, reset);
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		return chart.connectToNoBranch(source, noBranch, reset);
+	}
+
+	@Override
+	public Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		return chart.disconnect(source, target);
+	}
+
+	@Override
+	public Flowchart removeSymbol(final Flowchart symbol) {
+		return chart.removeSymbol(symbol);
+	}
+
+	@Override
+	public Flowchart freeze() {
+		return chart.freeze();
+	}
+}
@@ -0,0 +1,77 @@
+package flowchart;
+
+/**
+ * A flowchart whose symbols are numbered densely and passed to and from the
+ * {@link Flowchart} methods as flyweight {@link Handle}s instead of
+ * {@link Symbol}s of a {@link SymbolTable}.
+ *
+ * <p>A handle-based flowchart keeps its symbols in a representation of its
+ * own, and only has to tell the kind and label of a symbol by number, and
+ * make a {@link FrozenFlowchart} of itself. The snapshot answers the same
+ * handles as the chart, so actions, predicates and analysis results keyed by
+ * handles work on it like those keyed by symbols on a snapshot of symbols.
+ */
+abstract class HandleFlowchart implements Flowchart {
+	/**
+	 * @param symbol the number of a symbol of this flowchart.
+	 * @return the kind of the symbol.
+	 */
+	abstract Kind kindOf(int symbol);
+
+	/**
+	 * @param symbol the number of a symbol of this flowchart.
+	 * @return the label of the symbol.
+	 */
+	abstract String labelOf(int symbol);
+
+	/**
+	 * Makes a snapshot of this flowchart whose symbols are handles of this
+	 * flowchart.
+	 *
+	 * <p>The snapshot holds every symbol connected, directly or not, to the
+	 * start or the end symbol, as {@link FrozenFlowchart#of(Flowchart)}
+	 * finds them.
+	 *
+	 * @return a snapshot of this flowchart.
+	 */
+	abstract FrozenFlowchart snapshot();
+
+	/**
+	 * @param symbol the number of a symbol of this flowchart.
+	 * @return the handle of the symbol.
+	 */
+	Flowchart handle(final int symbol) {
+		return new Handle(this, symbol);
+	}
+
+	/**
+	 * @param symbol Flowchart representing a symbol.
+	 * @return the number of {@code symbol}, or {@link FrozenFlowchart#NONE}
+	 *     if it isn't a handle of this flowchart.
+	 */
+	int number(final Flowchart symbol) {
+		return symbol instanceof Handle && ((Handle) symbol).chart() == this
+				? ((Handle) symbol).symbol()
+				: FrozenFlowchart.NONE;
+	}
+
+	/**
+	 * @param chart a flowchart or a symbol.
+	 * @return {@code chart} if it is handle-based, the flowchart of
+	 *     {@code chart} if it is a handle, or null.
+	 */
+	static HandleFlowchart of(final Flowchart chart) {
+		if (chart instanceof HandleFlowchart) {
+			return (HandleFlowchart) chart;
+		}
+		if (chart instanceof Handle) {
+			return ((Handle) chart).chart();
+		}
+		return null;
+	}
+
+	@Override
+	public Flowchart freeze() {
+		return snapshot();
+	}
+}
@@ -0,0 +1,272 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Counts the branches taken at decisions and times the actions of
+ * activities while flowcharts execute.
+ *
+ * <p>An {@link Interpreter} created with an instrumentation wraps the
+ * predicate of every reachable decision in one that counts its yes and no
+ * answers, and records how long every predicate and every action ran into a
+ * latency histogram of its symbol. The wrapping is done
+ * when the interpreter is created, so an interpreter created without an
+ * instrumentation runs exactly as before, and an instrumented step does no
+ * lookup. Counts are kept per symbol: interpreters sharing an
+ * instrumentation and a symbol add to the same counts.
+ *
+ * <p>Counters are {@link LongAdder}s, which spread contended updates over
+ * cells. A histogram has log-linear buckets in the manner of HdrHistogram:
+ * {@value #SUB_BUCKETS} buckets for every power of two, so a recorded
+ * latency is known to within 1/{@value #SUB_BUCKETS} of its value.
+ *
+ * <p>{@link #snapshot()} reads the counts while executions go on. A
+ * snapshot is not atomic: updates made while it is taken may be partly
+ * reflected.
+ */
+public final class Instrumentation {
+	private static final int SUB_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BITS;
+	static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+	private final ConcurrentMap<Flowchart, Branches> branches = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Flowchart, Recorder> latencies = new ConcurrentHashMap<>();
+
+	// Abstraction Function
+	//	represents the counts of the yes and no answers of every decision in
+	//	branches, and the latencies recorded for every symbol in latencies.
+	//
+	// Representation Invariant
+	//	- true
+	//
+	// Safety from Exposure
+	//	- the maps are private and final and never returned; snapshots copy them.
+	//
+	// Thread safety
+	//	- the maps are concurrent and their values are made of LongAdders and
+	//	  AtomicLongArrays.
+
+	/**
+	 * Yes and no counts of a decision.
+	 */
+	private static final class Branches {
+		final LongAdder yes = new LongAdder();
+		final LongAdder no = new LongAdder();
+	}
+
+	/**
+	 * Latency histogram of a symbol.
+	 */
+	static final class Recorder {
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+		void record(final long nanos) {
+			counts.incrementAndGet(bucket(nanos));
+		}
+
+		Histogram snapshot() {
+			final long[] copy = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				copy[i] = counts.get(i);
+			}
+			return new Histogram(copy);
+		}
+	}
+
+	/**
+	 * @return the bucket of {@code value}, clamped to 0 from below.
+	 */
+	static int bucket(final long value) {
+		if (value < SUB_BUCKETS) {
+			return value < 0 ? 0 : (int) value;
+		}
+		final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @return the largest value in {@code bucket}.
+	 */
+	static long highest(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + ((1L << shift) - 1);
+	}
+
+	<T> Predicate<T> count(final Flowchart decision, final Predicate<? super T> predicate) {
+		final Branches counts = branches.computeIfAbsent(decision, symbol -> new Branches());
+		final Recorder recorder = latencies.computeIfAbsent(decision, symbol -> new Recorder());
+		return context -> {
+			final long began = System.nanoTime();
+			final boolean yes = predicate.test(context);
+			recorder.record(System.nanoTime() - began);
+			(yes ? counts.yes : counts.no).increment();
+			return yes;
+		};
+	}
+
+	<T> Consumer<T> time(final Flowchart activity, final Consumer<? super T> action) {
+		final Recorder recorder = latencies.computeIfAbsent(activity, symbol -> new Recorder());
+		return context -> {
+			final long began = System.nanoTime();
+			try {
+				action.accept(context);
+			} finally {
+				recorder.record(System.nanoTime() - began);
+			}
+		};
+	}
+
+	/**
+	 * Reads the counts recorded so far, without stopping executions.
+	 *
+	 * @return the counts recorded so far.
+	 */
+	public Snapshot snapshot() {
+		final Map<Flowchart, long[]> branchCounts = new HashMap<>();
+		for (Map.Entry<Flowchart, Branches> entry : branches.entrySet()) {
+			final Branches counts = entry.getValue();
+			branchCounts.put(entry.getKey(), new long[] {counts.yes.sum(), counts.no.sum()});
+		}
+		final Map<Flowchart, Histogram> histograms = new HashMap<>();
+		for (Map.Entry<Flowchart, Recorder> entry : latencies.entrySet()) {
+			histograms.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return new Snapshot(branchCounts, histograms);
+	}
+
+	/**
+	 * The counts of an instrumentation at some point of time.
+	 */
+	public static final class Snapshot {
+		private final Map<Flowchart, long[]> branches;
+		private final Map<Flowchart, Histogram> latencies;
+
+		// Abstraction Function
+		//	represents the yes count branches.get(d)[0] and the no count
+		//	branches.get(d)[1] of every decision d, and the latency histogram of
+		//	every symbol in latencies.
+		//
+		// Representation Invariant
+		//	- every value of branches has length 2.
+		//
+		// Safety from Exposure
+		//	- the maps are private and final and never returned.
+
+		private Snapshot(final Map<Flowchart, long[]> branches, final Map<Flowchart, Histogram> latencies) {
+			this.branches = branches;
+			this.latencies = latencies;
+		}
+
+		/**
+		 * @param decision a decision symbol.
+		 * @return how many times the predicate of {@code decision} held; 0 if
+		 *     it was never instrumented.
+		 */
+		public long getYesCount(final Flowchart decision) {
+			final long[] counts = branches.get(decision);
+			return counts == null ? 0 : counts[0];
+		}
+
+		/**
+		 * @param decision a decision symbol.
+		 * @return how many times the predicate of {@code decision} did not
+		 *     hold; 0 if it was never instrumented.
+		 */
+		public long getNoCount(final Flowchart decision) {
+			final long[] counts = branches.get(decision);
+			return counts == null ? 0 : counts[1];
+		}
+
+		/**
+		 * @param symbol a symbol.
+		 * @return the latencies of the action of {@code symbol}, or of its
+		 *     predicate if it is a decision, in nanoseconds; empty if it was
+		 *     never instrumented.
+		 */
+		public Histogram getLatency(final Flowchart symbol) {
+			final Histogram histogram = latencies.get(symbol);
+			return histogram == null ? Histogram.EMPTY : histogram;
+		}
+	}
+
+	/**
+	 * An immutable histogram of latencies in nanoseconds.
+	 */
+	public static final class Histogram {
+		static final Histogram EMPTY = new Histogram(new long[BUCKETS]);
+
+		private final long[] counts;
+		private final long total;
+
+		// Abstraction Function
+		//	represents counts[i] values in bucket i, for every bucket i.
+		//
+		// Representation Invariant
+		//	- counts.length == BUCKETS; total is the sum of counts.
+		//
+		// Safety from Exposure
+		//	- counts is private and final and never returned.
+
+		Histogram(final long[] counts) {
+			this.counts = counts;
+			long total = 0;
+			for (long count : counts) {
+				total += count;
+			}
+			this.total = total;
+		}
+
+		/**
+		 * @return the number of values recorded.
+		 */
+		public long getCount() {
+			return total;
+		}
+
+		/**
+		 * @param percentile in [0, 100].
+		 * @return the smallest value, rounded up to the end of its bucket, that
+		 *     at least {@code percentile} percent of the values are at most;
+		 *     0 if no value was recorded.
+		 * @throws IllegalArgumentException if {@code percentile} is not in [0, 100].
+		 */
+		public long getValueAtPercentile(final double percentile) {
+			if (!(percentile >= 0 && percentile <= 100)) {
+				throw new IllegalArgumentException("percentile: " + percentile);
+			}
+			final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the largest value recorded, rounded up to the end of its
+		 *     bucket; 0 if no value was recorded.
+		 */
+		public long getMaxValue() {
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] != 0) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+	}
+}
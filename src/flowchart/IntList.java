@@ -0,0 +1,82 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, without boxing.
+ */
+final class IntList {
+	private int[] values;
+	private int size = 0;
+
+	// Abstraction Function
+	//	represents the list values[0..size).
+	//
+	// Representation Invariant
+	//	- 0 <= size <= values.length.
+	//
+	// Safety from Exposure
+	//	- values is private and only ever returned as a copy.
+
+	IntList() {
+		this(16);
+	}
+
+	IntList(final int capacity) {
+		this.values = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Appends {@code value} to the end of this list.
+	 */
+	void add(final int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @param index in {@code [0, size())}.
+	 * @return the value at {@code index}.
+	 */
+	int get(final int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index);
+		}
+		return values[index];
+	}
+
+	/**
+	 * Replaces the value at {@code index} with {@code value}.
+	 *
+	 * @param index in {@code [0, size())}.
+	 */
+	void set(final int index, final int value) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index);
+		}
+		values[index] = value;
+	}
+
+	/**
+	 * @return the number of values in this list.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all values from this list.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the values of this list, in a new array.
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
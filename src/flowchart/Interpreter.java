@@ -0,0 +1,163 @@
+package flowchart;
+
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Executes a flowchart.
+ *
+ * <p>An execution starts at the start symbol and runs the action bound to
+ * every activity it reaches. At a decision it evaluates the bound
+ * predicate and follows the yes branch if it holds, the no branch otherwise.
+ * It stops after running the action of the end symbol.
+ *
+ * <p>Actions and predicates are resolved into arrays indexed like the jump
+ * table of the flowchart when the interpreter is created, so an execution
+ * allocates nothing per step. An interpreter is immutable and can run any
+ * number of executions concurrently, as long as its actions and predicates
+ * can.
+ *
+ * <p>An interpreter created with an {@link Instrumentation} records the
+ * branches its executions take and the latencies of their actions there.
+ *
+ * <p>A {@link Flowchart#instantiateSubchart subchart} without an action of
+ * its own executes its flowchart, with the same actions, predicates and
+ * instrumentation. That flowchart is resolved when an execution first
+ * reaches the subchart, and then shared by every subchart of it.
+ *
+ * @param <T> the type of the context an execution passes to every action
+ *     and predicate.
+ */
+public final class Interpreter<T> {
+	private static final Consumer<Object> NOTHING = context -> { };
+
+	private final Program program;
+	private final Consumer<? super T>[] actions;
+	private final Predicate<? super T>[] predicates;
+
+	// Abstraction Function
+	//	represents the execution of program in which the action of symbol i
+	//	is actions[i] and the predicate of decision i is predicates[i].
+	//
+	// Representation Invariant
+	//	- actions, predicates have length program.size().
+	//	- for every symbol i reachable in program, predicates[i] != null iff i
+	//	  is a decision; otherwise actions[i] != null.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned.
+
+	/**
+	 * Creates an interpreter for a flowchart.
+	 *
+	 * <p>Later changes to {@code chart} are not reflected by the interpreter.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, if a symbol reachable from the start other than the end
+	 *     has an unconnected target, or if a reachable decision has no
+	 *     predicate.
+	 */
+	public Interpreter(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates) {
+		this(Program.of(chart), actions, predicates, null);
+	}
+
+	/**
+	 * Creates an interpreter for a flowchart whose executions record their
+	 * decisions and the latencies of their activities in an instrumentation.
+	 *
+	 * <p>Later changes to {@code chart} are not reflected by the interpreter.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @param instrumentation where to record the executions.
+	 * @throws IllegalArgumentException if {@code chart} has no start or end
+	 *     symbol, if a symbol reachable from the start other than the end
+	 *     has an unconnected target, or if a reachable decision has no
+	 *     predicate.
+	 */
+	public Interpreter(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final Instrumentation instrumentation) {
+		this(Program.of(chart), actions, predicates, instrumentation);
+	}
+
+	Interpreter(
+			final Program program,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates) {
+		this(program, actions, predicates, null);
+	}
+
+	/**
+	 * @param instrumentation null to execute without recording anything.
+	 */
+	@SuppressWarnings("unchecked")
+	Interpreter(
+			final Program program,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final Instrumentation instrumentation) {
+		this.program = program;
+		final Subchart.Actions<T> resolved = new Subchart.Actions<>(actions, predicates, instrumentation);
+		this.actions = (Consumer<? super T>[]) new Consumer<?>[program.size()];
+		this.predicates = (Predicate<? super T>[]) new Predicate<?>[program.size()];
+		for (int i = 0; i < program.size(); i++) {
+			if (!program.isReachable(i)) {
+				continue;
+			}
+			final Flowchart symbol = program.symbol(i);
+			if (program.isDecision(i)) {
+				final Predicate<? super T> predicate = predicates.get(symbol);
+				if (predicate == null) {
+					throw new IllegalArgumentException("decision has no predicate: " + symbol);
+				}
+				this.predicates[i] = instrumentation == null
+						? predicate : instrumentation.count(symbol, predicate);
+			} else {
+				final Consumer<? super T> action = resolved.get(symbol);
+				this.actions[i] = instrumentation == null
+						? (action == null ? NOTHING : action)
+						: instrumentation.time(symbol, action == null ? NOTHING : action);
+			}
+		}
+	}
+
+	/**
+	 * Executes the flowchart once, from its start to its end symbol.
+	 *
+	 * <p>An execution never ends if the predicates keep choosing a loop.
+	 *
+	 * @param context passed to every action and predicate on the way.
+	 */
+	public void run(final T context) {
+		final Program program = this.program;
+		final Consumer<? super T>[] actions = this.actions;
+		final Predicate<? super T>[] predicates = this.predicates;
+		final int end = program.end();
+		int symbol = program.start();
+		while (symbol != end) {
+			final Predicate<? super T> predicate = predicates[symbol];
+			if (predicate == null) {
+				actions[symbol].accept(context);
+				symbol = program.next(symbol);
+			} else if (predicate.test(context)) {
+				symbol = program.next(symbol);
+			} else {
+				symbol = program.alt(symbol);
+			}
+		}
+		actions[end].accept(context);
+	}
+}
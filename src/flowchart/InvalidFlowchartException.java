@@ -0,0 +1,43 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a flowchart breaks one or more of the assumptions made by
+ * {@link Flowchart}. Carries every violation found, not only the first.
+ */
+public class InvalidFlowchartException extends IllegalArgumentException {
+	private static final long serialVersionUID = 1L;
+	private static final int REPORTED = 10;
+
+	private final List<String> violations;
+
+	/**
+	 * @param violations the description of every violation found; not empty.
+	 */
+	public InvalidFlowchartException(final List<String> violations) {
+		super(summarize(violations));
+		this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+	}
+
+	private static String summarize(final List<String> violations) {
+		final StringBuilder message = new StringBuilder();
+		message.append(violations.size()).append(" violation(s)");
+		for (int i = 0; i < Math.min(REPORTED, violations.size()); i++) {
+			message.append(i == 0 ? ": " : "; ").append(violations.get(i));
+		}
+		if (violations.size() > REPORTED) {
+			message.append("; ...");
+		}
+		return message.toString();
+	}
+
+	/**
+	 * @return the description of every violation found.
+	 */
+	public List<String> getViolations() {
+		return violations;
+	}
+}
@@ -0,0 +1,56 @@
+package flowchart;
+
+/**
+ * The kinds of symbols a flowchart is made of.
+ *
+ * <p>Each kind determines the number of target slots a symbol has:
+ * a start or an activity has exactly one target slot, a decision has
+ * two (the yes branch followed by the no branch) and an end has none.
+ */
+enum Kind {
+	START(1),
+	ACTIVITY(1),
+	DECISION(2),
+	END(0);
+
+	private static final Kind[] VALUES = values();
+
+	private final int slots;
+
+	Kind(final int slots) {
+		this.slots = slots;
+	}
+
+	/**
+	 * @return the number of target slots of a symbol of this kind.
+	 */
+	int slots() {
+		return slots;
+	}
+
+	/**
+	 * @param ordinal the ordinal of a kind.
+	 * @return the kind having {@code ordinal}.
+	 */
+	static Kind of(final int ordinal) {
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * Returns the kind of a symbol.
+	 *
+	 * @param symbol Flowchart representing a single symbol.
+	 * @return the kind of {@code symbol}.
+	 * @throws IllegalArgumentException if {@code symbol} is not a
+	 *     start, activity, decision or end symbol.
+	 */
+	static Kind of(final Flowchart symbol) {
+		if (symbol instanceof Handle) {
+			return ((Handle) symbol).kind();
+		}
+		if (!(symbol instanceof Symbol)) {
+			throw new IllegalArgumentException("not a symbol: " + symbol);
+		}
+		return ((Symbol) symbol).kind();
+	}
+}
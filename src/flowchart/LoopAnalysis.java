@@ -0,0 +1,246 @@
+package flowchart;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The loops of a flowchart.
+ *
+ * <p>A loop is a maximal set of two or more symbols each of which can reach
+ * all the others: a strongly connected component of the flowchart. Loops
+ * nested in a larger loop are part of it. For every loop, the analysis
+ * finds
+ * <ul>
+ * <li>its headers: the symbols of the loop that are the start symbol or
+ *     the target of a symbol outside the loop, through which executions
+ *     enter it;
+ * <li>its exits: the decisions of the loop with a branch leading out of it.
+ *     An execution can only leave a loop through one of its exits, so a
+ *     reachable loop without exits never terminates.
+ * </ul>
+ *
+ * <p>The analysis runs in time linear in the size of the flowchart, without
+ * recursion, and keeps its results in a few int arrays.
+ */
+public final class LoopAnalysis {
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private final FrozenFlowchart chart;
+	private final int[] loopOf;
+	private final int[] symbolOffsets;
+	private final int[] symbols;
+	private final int[] headerOffsets;
+	private final int[] headers;
+	private final int[] exitOffsets;
+	private final int[] exits;
+
+	// Abstraction Function
+	//	represents the loops of chart, where loop l has the symbols
+	//	symbols[symbolOffsets[l]..symbolOffsets[l+1]), the headers
+	//	headers[headerOffsets[l]..headerOffsets[l+1]) and the exits
+	//	exits[exitOffsets[l]..exitOffsets[l+1]); symbol i is in loop loopOf[i],
+	//	or in none if loopOf[i] == NONE.
+	//
+	// Representation Invariant
+	//	- the offset arrays have the same length, the number of loops plus one,
+	//	  start at 0 and are non-decreasing.
+	//	- symbolOffsets[l+1] - symbolOffsets[l] >= 2.
+	//	- loopOf[i] == l iff i is in symbols[symbolOffsets[l]..symbolOffsets[l+1]).
+	//	- headers and exits of a loop are symbols of that loop.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned and
+	//	  the lists returned by Loop are unmodifiable views.
+
+	/**
+	 * A loop of the flowchart.
+	 */
+	public final class Loop {
+		private final int loop;
+
+		private Loop(final int loop) {
+			this.loop = loop;
+		}
+
+		/**
+		 * @return the symbols of this loop, in no particular order.
+		 */
+		public List<Flowchart> getSymbols() {
+			return new Slice(symbols, symbolOffsets[loop], symbolOffsets[loop + 1]);
+		}
+
+		/**
+		 * @return the symbols through which executions enter this loop.
+		 */
+		public List<Flowchart> getHeaders() {
+			return new Slice(headers, headerOffsets[loop], headerOffsets[loop + 1]);
+		}
+
+		/**
+		 * @return the decisions of this loop with a branch leading out of it;
+		 *     empty if executions entering this loop never leave it.
+		 */
+		public List<Flowchart> getExits() {
+			return new Slice(exits, exitOffsets[loop], exitOffsets[loop + 1]);
+		}
+
+		@Override
+		public boolean equals(final Object that) {
+			return that instanceof Loop
+					&& ((Loop) that).analysis() == LoopAnalysis.this
+					&& ((Loop) that).loop == loop;
+		}
+
+		@Override
+		public int hashCode() {
+			return loop;
+		}
+
+		private LoopAnalysis analysis() {
+			return LoopAnalysis.this;
+		}
+
+		@Override
+		public String toString() {
+			return "loop " + getHeaders() + " " + getSymbols() + " exits " + getExits();
+		}
+	}
+
+	/**
+	 * An unmodifiable view of a range of symbol indices.
+	 */
+	private final class Slice extends AbstractList<Flowchart> {
+		private final int[] indices;
+		private final int from;
+		private final int to;
+
+		Slice(final int[] indices, final int from, final int to) {
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Flowchart get(final int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index: " + index);
+			}
+			return chart.symbol(indices[from + index]);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+
+	private LoopAnalysis(final FrozenFlowchart chart) {
+		this.chart = chart;
+		final int n = chart.size();
+		final Components components = new Components(chart);
+		final int[] loopOfComponent = new int[components.count()];
+		int loops = 0;
+		for (int c = 0; c < components.count(); c++) {
+			loopOfComponent[c] = components.size(c) > 1 ? loops++ : NONE;
+		}
+		this.loopOf = new int[n];
+		this.symbolOffsets = new int[loops + 1];
+		for (int i = 0; i < n; i++) {
+			loopOf[i] = loopOfComponent[components.of(i)];
+			if (loopOf[i] != NONE) {
+				symbolOffsets[loopOf[i] + 1]++;
+			}
+		}
+		for (int l = 0; l < loops; l++) {
+			symbolOffsets[l + 1] += symbolOffsets[l];
+		}
+		this.symbols = new int[symbolOffsets[loops]];
+		final int[] next = new int[loops];
+		System.arraycopy(symbolOffsets, 0, next, 0, loops);
+		for (int i = 0; i < n; i++) {
+			if (loopOf[i] != NONE) {
+				symbols[next[loopOf[i]]++] = i;
+			}
+		}
+
+		// symbols are grouped by loop, so headers and exits come out grouped too
+		this.headerOffsets = new int[loops + 1];
+		this.exitOffsets = new int[loops + 1];
+		final IntList headers = new IntList();
+		final IntList exits = new IntList();
+		for (int l = 0; l < loops; l++) {
+			for (int k = symbolOffsets[l]; k < symbolOffsets[l + 1]; k++) {
+				final int symbol = symbols[k];
+				if (isHeader(symbol)) {
+					headers.add(symbol);
+				}
+				if (isExit(symbol)) {
+					exits.add(symbol);
+				}
+			}
+			headerOffsets[l + 1] = headers.size();
+			exitOffsets[l + 1] = exits.size();
+		}
+		this.headers = headers.toArray();
+		this.exits = exits.toArray();
+	}
+
+	/**
+	 * Finds the loops of a flowchart.
+	 *
+	 * <p>The flowchart is the part of {@code chart} connected to its start or
+	 * end symbol, as {@link Flowchart#freeze()} snapshots it. Later changes
+	 * to {@code chart} are not reflected by the analysis.
+	 *
+	 * @param chart Flowchart to analyse.
+	 * @return the loops of {@code chart} as it is now.
+	 */
+	public static LoopAnalysis of(final Flowchart chart) {
+		return new LoopAnalysis(FrozenFlowchart.of(chart));
+	}
+
+	private boolean isHeader(final int symbol) {
+		if (symbol == chart.startIndex()) {
+			return true;
+		}
+		for (int k = 0; k < chart.sourceCount(symbol); k++) {
+			if (loopOf[chart.source(symbol, k)] != loopOf[symbol]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isExit(final int symbol) {
+		for (int slot = 0; slot < chart.slots(symbol); slot++) {
+			final int target = chart.target(symbol, slot);
+			if (target != NONE && loopOf[target] != loopOf[symbol]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the loops of the flowchart, in no particular order.
+	 */
+	public List<Loop> getLoops() {
+		final List<Loop> loops = new ArrayList<>(symbolOffsets.length - 1);
+		for (int l = 0; l + 1 < symbolOffsets.length; l++) {
+			loops.add(new Loop(l));
+		}
+		return Collections.unmodifiableList(loops);
+	}
+
+	/**
+	 * @param symbol Flowchart representing a symbol.
+	 * @return the loop containing {@code symbol}, or null if it isn't in a
+	 *     loop or isn't in the flowchart.
+	 */
+	public Loop getLoop(final Flowchart symbol) {
+		final int index = chart.indexOf(symbol);
+		return index == NONE || loopOf[index] == NONE ? null : new Loop(loopOf[index]);
+	}
+}
@@ -0,0 +1,441 @@
+package flowchart;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A read-only flowchart answered straight from a file in a binary format.
+ *
+ * <p>{@link #write} stores a snapshot of a flowchart in one sequential pass
+ * and {@link #open} maps the file into memory with {@link FileChannel#map}.
+ * Nothing is deserialized when the file is opened: every query reads the
+ * mapped bytes, and symbols are passed to and from the {@link Flowchart}
+ * methods as flyweight handles: a handle is just the chart and the number
+ * of a symbol, equal to every other handle of the same symbol. Opening a chart therefore costs about as
+ * much as the page faults of the parts that are read, and no query keeps
+ * objects alive for the symbols it returns.
+ *
+ * <p>The file holds, after a header, the kind of every symbol, the
+ * compressed sparse rows of the targets (yes branch before no branch) and
+ * of the sources, the UTF-8 labels and a hash index of the labels. All ints
+ * are big-endian. A file is limited to 2 GB, the largest buffer
+ * {@link FileChannel#map} returns.
+ *
+ * <p>Like {@link Flowchart#freeze() snapshots}, a mapped flowchart throws
+ * {@link UnsupportedOperationException} from every method that would
+ * change it. Any number of threads can read it.
+ *
+ * <p>Interpreting, analysing or freezing a mapped flowchart reads the kinds
+ * and targets of its symbols into a snapshot of primitive arrays, which
+ * answers the same handles as the chart; no symbol objects are made.
+ */
+public final class MappedFlowchart extends HandleFlowchart {
+	static final int MAGIC = 0x464c4f57;
+	static final int VERSION = 1;
+	private static final int NONE = FrozenFlowchart.NONE;
+	private static final int HEADER = 9 * Integer.BYTES;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int start;
+	private final int end;
+	private final int hashCapacity;
+	private final int kinds;
+	private final int targetOffsets;
+	private final int targets;
+	private final int sourceOffsets;
+	private final int sources;
+	private final int labelOffsets;
+	private final int hashes;
+	private final int index;
+	private final int labels;
+
+	// Abstraction Function
+	//	represents the flowchart stored in buffer, whose symbol i has the kind
+	//	Kind.of(byte at kinds + i), the targets at the ints
+	//	[targetOffsets[i]..targetOffsets[i+1]) of the targets section, the
+	//	sources at [sourceOffsets[i]..sourceOffsets[i+1]) of the sources
+	//	section and the label at [labelOffsets[i]..labelOffsets[i+1]) of the
+	//	labels section. The start symbol is start and the end symbol end (none
+	//	if NONE).
+	//
+	// Representation Invariant
+	//	- kinds, targetOffsets, ... labels are the positions in buffer of the
+	//	  sections of the format, in that order.
+	//	- the hash index holds at hash(label) or after it, by linear probing,
+	//	  i + 1 for every symbol i; other entries are 0.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; buffer is read-only and never
+	//	  returned; lists returned by getTargets and getSources are views.
+	//
+	// Thread safety
+	//	- buffer is only read with absolute gets; every other field is final
+	//	  and immutable.
+
+	private MappedFlowchart(final ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("not a flowchart file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("unsupported flowchart file version: " + buffer.getInt(4));
+		}
+		this.size = buffer.getInt(8);
+		final int targetCount = buffer.getInt(12);
+		final int sourceCount = buffer.getInt(16);
+		final int labelBytes = buffer.getInt(20);
+		this.hashCapacity = buffer.getInt(24);
+		this.start = buffer.getInt(28);
+		this.end = buffer.getInt(32);
+		this.kinds = HEADER;
+		this.targetOffsets = align(kinds + size);
+		this.targets = targetOffsets + (size + 1) * Integer.BYTES;
+		this.sourceOffsets = targets + targetCount * Integer.BYTES;
+		this.sources = sourceOffsets + (size + 1) * Integer.BYTES;
+		this.labelOffsets = sources + sourceCount * Integer.BYTES;
+		this.hashes = labelOffsets + (size + 1) * Integer.BYTES;
+		this.index = hashes + size * Integer.BYTES;
+		this.labels = index + hashCapacity * Integer.BYTES;
+		if ((long) labels + labelBytes > buffer.capacity()) {
+			throw new IllegalArgumentException("truncated flowchart file");
+		}
+	}
+
+	private static int align(final int position) {
+		return (position + Integer.BYTES - 1) & -Integer.BYTES;
+	}
+
+	/**
+	 * Writes a snapshot of a flowchart to a file, sequentially.
+	 *
+	 * <p>The file holds every symbol connected to the start or the end
+	 * symbol of {@code chart}, as {@link Flowchart#freeze()} does.
+	 *
+	 * @param chart Flowchart to write.
+	 * @param path the file to create or replace.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void write(final Flowchart chart, final Path path) throws IOException {
+		final FrozenFlowchart frozen = FrozenFlowchart.of(chart);
+		final int n = frozen.size();
+		final byte[][] encoded = new byte[n][];
+		int targetCount = 0;
+		int sourceCount = 0;
+		int labelBytes = 0;
+		for (int i = 0; i < n; i++) {
+			encoded[i] = frozen.label(i).getBytes(StandardCharsets.UTF_8);
+			targetCount += frozen.slots(i);
+			sourceCount += frozen.sourceCount(i);
+			labelBytes += encoded[i].length;
+		}
+		int capacity = 1;
+		while (capacity < 2 * n) {
+			capacity <<= 1;
+		}
+		final int[] index = new int[capacity];
+		for (int i = 0; i < n; i++) {
+			int slot = frozen.label(i).hashCode() & (capacity - 1);
+			while (index[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			index[slot] = i + 1;
+		}
+
+		try (OutputStream file = Files.newOutputStream(path);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(targetCount);
+			out.writeInt(sourceCount);
+			out.writeInt(labelBytes);
+			out.writeInt(capacity);
+			out.writeInt(frozen.startIndex());
+			out.writeInt(frozen.endIndex());
+			for (int i = 0; i < n; i++) {
+				out.writeByte(frozen.kind(i).ordinal());
+			}
+			for (int pad = align(HEADER + n) - HEADER - n; pad > 0; pad--) {
+				out.writeByte(0);
+			}
+			int offset = 0;
+			for (int i = 0; i < n; i++) {
+				out.writeInt(offset);
+				offset += frozen.slots(i);
+			}
+			out.writeInt(offset);
+			for (int i = 0; i < n; i++) {
+				for (int slot = 0; slot < frozen.slots(i); slot++) {
+					out.writeInt(frozen.target(i, slot));
+				}
+			}
+			offset = 0;
+			for (int i = 0; i < n; i++) {
+				out.writeInt(offset);
+				offset += frozen.sourceCount(i);
+			}
+			out.writeInt(offset);
+			for (int i = 0; i < n; i++) {
+				for (int k = 0; k < frozen.sourceCount(i); k++) {
+					out.writeInt(frozen.source(i, k));
+				}
+			}
+			offset = 0;
+			for (int i = 0; i < n; i++) {
+				out.writeInt(offset);
+				offset += encoded[i].length;
+			}
+			out.writeInt(offset);
+			for (int i = 0; i < n; i++) {
+				out.writeInt(frozen.label(i).hashCode());
+			}
+			for (int slot : index) {
+				out.writeInt(slot);
+			}
+			for (byte[] label : encoded) {
+				out.write(label);
+			}
+		}
+	}
+
+	/**
+	 * Maps a file written by {@link #write} into memory.
+	 *
+	 * <p>The mapping stays valid after the file is closed, until the
+	 * returned flowchart is garbage collected.
+	 *
+	 * @param path the file to map.
+	 * @return the flowchart stored in {@code path}.
+	 * @throws IOException if the file cannot be read.
+	 * @throws IllegalArgumentException if {@code path} is not a flowchart
+	 *     file of a supported version.
+	 */
+	public static MappedFlowchart open(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new MappedFlowchart(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return the number of symbols in this flowchart.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param label String that identifies the symbol.
+	 * @return the symbol of this flowchart labelled {@code label}.
+	 * @throws NoSuchElementException if there is none.
+	 */
+	public Flowchart getSymbol(final String label) {
+		final int hash = label.hashCode();
+		for (int slot = hash & (hashCapacity - 1); ; slot = (slot + 1) & (hashCapacity - 1)) {
+			final int entry = buffer.getInt(index + slot * Integer.BYTES);
+			if (entry == 0) {
+				throw new NoSuchElementException("no symbol labelled " + label);
+			}
+			final int i = entry - 1;
+			if (hash(i) == hash && labelOf(i).equals(label)) {
+				return handle(i);
+			}
+		}
+	}
+
+	private int intAt(final int section, final int k) {
+		return buffer.getInt(section + k * Integer.BYTES);
+	}
+
+	private int hash(final int i) {
+		return intAt(hashes, i);
+	}
+
+	@Override
+	String labelOf(final int i) {
+		final int from = intAt(labelOffsets, i);
+		final byte[] bytes = new byte[intAt(labelOffsets, i + 1) - from];
+		for (int k = 0; k < bytes.length; k++) {
+			bytes[k] = buffer.get(labels + from + k);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	Kind kindOf(final int i) {
+		return Kind.of(buffer.get(kinds + i));
+	}
+
+	private int require(final Flowchart symbol) {
+		final int i = number(symbol);
+		if (i == NONE) {
+			throw new IllegalArgumentException("not part of this flowchart: " + symbol);
+		}
+		return i;
+	}
+
+	@Override
+	public Flowchart getStart() {
+		if (start == NONE) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return handle(start);
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		if (end == NONE) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return handle(end);
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		final int i = require(source);
+		return new Slice(targets, intAt(targetOffsets, i), intAt(targetOffsets, i + 1));
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		final int i = require(target);
+		return new Slice(sources, intAt(sourceOffsets, i), intAt(sourceOffsets, i + 1));
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final int i = require(source);
+		final int from = intAt(targetOffsets, i);
+		final int to = intAt(targetOffsets, i + 1);
+		for (int t = from; t < to; t++) {
+			final int target = intAt(targets, t);
+			if (target != NONE) {
+				action.accept(handle(target), t - from);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		final int i = require(target);
+		for (int s = intAt(sourceOffsets, i); s < intAt(sourceOffsets, i + 1); s++) {
+			action.accept(handle(intAt(sources, s)));
+		}
+	}
+
+	/**
+	 * Reads the kinds and targets of every symbol into a snapshot; symbol i
+	 * of the snapshot is symbol i of this chart, as the file holds only
+	 * connected symbols.
+	 */
+	@Override
+	FrozenFlowchart snapshot() {
+		final int[] numbers = new int[size];
+		final byte[] kindOrdinals = new byte[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = i;
+			kindOrdinals[i] = buffer.get(kinds + i);
+		}
+		final int[] slots = new int[intAt(targetOffsets, size)];
+		for (int t = 0; t < slots.length; t++) {
+			slots[t] = intAt(targets, t);
+		}
+		return FrozenFlowchart.of(this, numbers, kindOrdinals, slots, start, end);
+	}
+
+	/**
+	 * An unmodifiable view of a run of symbol indices in the buffer.
+	 */
+	private final class Slice extends AbstractList<Flowchart> {
+		private final int section;
+		private final int from;
+		private final int to;
+
+		Slice(final int section, final int from, final int to) {
+			this.section = section;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Flowchart get(final int k) {
+			if (k < 0 || k >= to - from) {
+				throw new IndexOutOfBoundsException("index: " + k);
+			}
+			final int symbol = intAt(section, from + k);
+			return symbol == NONE ? null : handle(symbol);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		throw new UnsupportedOperationException("mapped flowchart");
+	}
+}
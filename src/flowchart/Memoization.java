@@ -0,0 +1,266 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Caches the results of activities whose actions are pure functions of
+ * part of the context.
+ *
+ * <p>An activity is made cacheable by {@link #cache}, which splits its action
+ * in three: the key it reads from the context, the expensive function of
+ * that key, and how the result is written back to the context. The action
+ * returned computes the function once per key while the key stays in the
+ * cache, and writes the cached result back every time; it can be bound to
+ * the activity in any {@link Interpreter}, {@link Compiler},
+ * {@link Simplifier} or {@link BatchInterpreter}, which run it like any other.
+ *
+ * <p>Every cacheable activity has a cache of its own, bounded by the number
+ * of results it keeps. A cache is split into stripes by the hash of the key,
+ * each a map in least-recently-used order under a lock of its own, so
+ * executions reading different keys seldom wait on each other. A cache has
+ * one stripe for every {@value #STRIPE_SIZE} results it keeps, up to
+ * {@value #MAX_STRIPES}, so a small cache is a single LRU map and keys
+ * that share a stripe do not push each other out while the cache has room.
+ * When a stripe is full, adding a result evicts its least recently used
+ * one. The function runs outside the lock: executions missing the same key
+ * at the same time may both compute it, and the last result is kept.
+ *
+ * <p>Hits, misses and evictions are counted per activity, in the manner of
+ * {@link Instrumentation}, and read by {@link #snapshot()} while executions
+ * go on.
+ */
+public final class Memoization {
+	private static final Object NULL = new Object();
+	private static final int MAX_STRIPES = 16;
+	private static final int STRIPE_SIZE = 64;
+
+	private final ConcurrentMap<Flowchart, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+
+	// Abstraction Function
+	//	represents the cache of every cacheable activity a in caches.get(a).
+	//
+	// Representation Invariant
+	//	- every key of caches is an activity.
+	//
+	// Safety from Exposure
+	//	- caches is private and final and never returned; snapshots copy it.
+	//
+	// Thread safety
+	//	- caches is concurrent, and every cache guards its stripes with locks
+	//	  and counts with LongAdders.
+
+	/**
+	 * Makes an activity cacheable.
+	 *
+	 * <p>The action returned, run with context {@code c}, computes
+	 * {@code k = key.apply(c)}, takes the result {@code v} cached for {@code k}
+	 * or computes {@code v = function.apply(k)} and caches it, and then calls
+	 * {@code apply.accept(c, v)}. Keys are compared with equals and must not
+	 * change while they are cached; results can be null. Caching again an
+	 * activity already cacheable replaces its cache and counts.
+	 *
+	 * @param activity the activity to cache the results of.
+	 * @param capacity the most results to keep for {@code activity}.
+	 * @param key reads the input of the function from the context.
+	 * @param function the pure function {@code activity} computes.
+	 * @param apply writes a result of the function to the context.
+	 * @return the action to bind to {@code activity}.
+	 * @throws IllegalArgumentException if {@code activity} is not an activity
+	 *     or {@code capacity} is not positive.
+	 */
+	public <T, K, V> Consumer<T> cache(
+			final Flowchart activity,
+			final int capacity,
+			final Function<? super T, ? extends K> key,
+			final Function<? super K, ? extends V> function,
+			final BiConsumer<? super T, ? super V> apply) {
+		if (Kind.of(activity) != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("not an activity: " + activity);
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity: " + capacity);
+		}
+		final Cache<K, V> cache = new Cache<>(capacity, function);
+		caches.put(activity, cache);
+		return context -> apply.accept(context, cache.get(key.apply(context)));
+	}
+
+	/**
+	 * Reads the counts recorded so far, without stopping executions.
+	 *
+	 * @return the counts recorded so far.
+	 */
+	public Snapshot snapshot() {
+		final Map<Flowchart, long[]> counts = new HashMap<>();
+		for (Map.Entry<Flowchart, Cache<?, ?>> entry : caches.entrySet()) {
+			final Cache<?, ?> cache = entry.getValue();
+			counts.put(entry.getKey(), new long[] {
+					cache.hits.sum(), cache.misses.sum(), cache.evictions.sum(), cache.size()});
+		}
+		return new Snapshot(counts);
+	}
+
+	/**
+	 * The bounded cache of the results of one activity.
+	 */
+	private static final class Cache<K, V> {
+		private final Function<? super K, ? extends V> function;
+		private final Stripe[] stripes;
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		final LongAdder evictions = new LongAdder();
+
+		// Abstraction Function
+		//	represents the results of function cached for the keys of every
+		//	stripe, NULL standing for a null result.
+		//
+		// Representation Invariant
+		//	- stripes.length is a power of two; key k is in stripe
+		//	  spread(k.hashCode()) & (stripes.length - 1).
+		//
+		// Thread safety
+		//	- every stripe is accessed only under its own lock.
+
+		Cache(final int capacity, final Function<? super K, ? extends V> function) {
+			this.function = function;
+			final int count = Integer.highestOneBit(
+					Math.min(MAX_STRIPES, Math.max(1, capacity / STRIPE_SIZE)));
+			this.stripes = new Stripe[count];
+			for (int i = 0; i < count; i++) {
+				// the first capacity % count stripes keep one more result
+				stripes[i] = new Stripe(capacity / count + (i < capacity % count ? 1 : 0));
+			}
+		}
+
+		private Stripe stripe(final Object key) {
+			final int hash = key == null ? 0 : key.hashCode();
+			return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+		}
+
+		@SuppressWarnings("unchecked")
+		V get(final K key) {
+			final Stripe stripe = stripe(key);
+			Object value;
+			synchronized (stripe) {
+				value = stripe.get(key);
+			}
+			if (value != null) {
+				hits.increment();
+				return value == NULL ? null : (V) value;
+			}
+			misses.increment();
+			final V result = function.apply(key);
+			synchronized (stripe) {
+				stripe.put(key, result == null ? NULL : result);
+				if (stripe.evicted) {
+					stripe.evicted = false;
+					evictions.increment();
+				}
+			}
+			return result;
+		}
+
+		long size() {
+			long size = 0;
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					size += stripe.size();
+				}
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * A map in access order that evicts its least recently used entry when
+	 * it outgrows its capacity.
+	 */
+	private static final class Stripe extends LinkedHashMap<Object, Object> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		boolean evicted = false;
+
+		Stripe(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Object, Object> eldest) {
+			evicted = size() > capacity;
+			return evicted;
+		}
+	}
+
+	/**
+	 * The counts of a memoization at some point of time.
+	 */
+	public static final class Snapshot {
+		private final Map<Flowchart, long[]> counts;
+
+		// Abstraction Function
+		//	represents the hits counts.get(a)[0], misses counts.get(a)[1],
+		//	evictions counts.get(a)[2] and size counts.get(a)[3] of the cache
+		//	of every cacheable activity a.
+		//
+		// Representation Invariant
+		//	- every value of counts has length 4.
+		//
+		// Safety from Exposure
+		//	- counts is private and final and never returned.
+
+		private Snapshot(final Map<Flowchart, long[]> counts) {
+			this.counts = counts;
+		}
+
+		private long count(final Flowchart activity, final int index) {
+			final long[] count = counts.get(activity);
+			return count == null ? 0 : count[index];
+		}
+
+		/**
+		 * @param activity an activity.
+		 * @return how many times the action of {@code activity} found its
+		 *     result cached; 0 if it is not cacheable.
+		 */
+		public long getHitCount(final Flowchart activity) {
+			return count(activity, 0);
+		}
+
+		/**
+		 * @param activity an activity.
+		 * @return how many times the action of {@code activity} computed its
+		 *     result; 0 if it is not cacheable.
+		 */
+		public long getMissCount(final Flowchart activity) {
+			return count(activity, 1);
+		}
+
+		/**
+		 * @param activity an activity.
+		 * @return how many results of {@code activity} were evicted to make
+		 *     room for others; 0 if it is not cacheable.
+		 */
+		public long getEvictionCount(final Flowchart activity) {
+			return count(activity, 2);
+		}
+
+		/**
+		 * @param activity an activity.
+		 * @return how many results of {@code activity} are cached; 0 if it is
+		 *     not cacheable.
+		 */
+		public long getSize(final Flowchart activity) {
+			return count(activity, 3);
+		}
+	}
+}
@@ -0,0 +1,804 @@
+package flowchart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A flowchart whose symbols and connections live outside the heap.
+ *
+ * <p>The kind, label and connections of every symbol are stored in
+ * {@link Segments} of direct memory, or of files mapped into memory with
+ * {@link #map}, so a chart puts no per-symbol objects in front of the
+ * garbage collector. Direct memory is bounded by
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size:
+ * a chart that may grow as large as the heap should be {@link #map mapped}
+ * instead of {@link #allocate allocated}, as only mapped files can exceed
+ * both. Symbols are
+ * numbered densely in order of creation and passed to and from the
+ * {@link Flowchart} methods as flyweight handles: a handle is just the
+ * chart and a number, created when a method returns a symbol and equal to
+ * every other handle of the same symbol. Calling a method on a handle
+ * calls it on its chart, as calling it on a symbol of a {@link SymbolTable}
+ * does.
+ *
+ * <p>Symbols are made with {@link #instantiate} and its siblings, and are
+ * interned by label like those of a table. Connections are kept as edge
+ * records like those of a table's {@link Edges}: the edges into a symbol
+ * form a doubly-linked list threaded through the slots of its sources, so
+ * removing a connection takes constant time and removing a symbol time
+ * proportional to its degree.
+ *
+ * <p>A chart makes at most {@value #MAX_SIZE} symbols, counting removed
+ * ones, whose numbers are not reused: edges are numbered twice the number
+ * of their source plus their slot, and the label index needs twice as many
+ * int slots as symbols, both within the range of an int.
+ *
+ * <p>{@link #freeze}, and every interpreter, writer or analysis given an
+ * off-heap chart, copies the kinds and targets of the symbols connected to
+ * the start or the end into a snapshot of primitive arrays on the heap.
+ * The snapshot answers the handles of this chart, so actions and
+ * predicates are bound to the symbols {@link #instantiate} returned.
+ *
+ * <p>An off-heap flowchart is not thread-safe; a chart shared between
+ * threads must be guarded by the caller.
+ */
+public final class OffHeapFlowchart extends HandleFlowchart implements Closeable {
+	static final int MAGIC = 0x464c4f48;
+	static final int VERSION = 1;
+	private static final int NONE = FrozenFlowchart.NONE;
+	private static final byte REMOVED = -1;
+	private static final int SEGMENT_BITS = 22;
+	private static final int INDEX_CAPACITY = 16;
+	static final int MAX_SIZE = 1 << 29;
+
+	// header, at the start of the records
+	private static final long HEADER = 64;
+	private static final long H_MAGIC = 0;
+	private static final long H_VERSION = 4;
+	private static final long H_SIZE = 8;
+	private static final long H_START = 12;
+	private static final long H_END = 16;
+	private static final long H_CAPACITY = 20;
+	private static final long H_LABELS = 24;
+	private static final long H_LENGTH = 32;
+
+	// fields of a symbol record
+	private static final long RECORD = 48;
+	private static final long KIND = 0;
+	private static final long LABEL_LENGTH = 4;
+	private static final long LABEL = 8;
+	private static final long TARGETS = 16;
+	private static final long NEXT = 24;
+	private static final long PREVIOUS = 32;
+	private static final long FIRST = 40;
+	private static final long HASH = 44;
+
+	private final Segments records;
+	private final Segments labels;
+	private final Segments index;
+	private int size;
+	private int start;
+	private int end;
+	private int capacity;
+	private int labelled;
+	private long length;
+
+	// Abstraction Function
+	//	represents the flowchart whose symbol i, for i in [0, size) whose kind
+	//	byte is not REMOVED, is of kind Kind.of(kind byte of record i), is
+	//	labelled by the UTF-8 bytes [label, label + label length) of labels,
+	//	and has in slot k the target symbol (int at TARGETS + 4k of record i),
+	//	none if NONE. The start symbol is start and the end symbol end (none
+	//	if NONE).
+	//
+	// Representation Invariant
+	//	- size <= MAX_SIZE.
+	//	- record i is at HEADER + i * RECORD of records; the header holds
+	//	  MAGIC, VERSION, size, start, end, capacity, labelled and length.
+	//	- edge e is slot (e & 1) of symbol (e >>> 1); the edges into symbol t
+	//	  form a list from FIRST of t through NEXT of the slot of each edge,
+	//	  PREVIOUS linking back, NONE at either end.
+	//	- index is an open-addressing table of capacity ints, a power of two
+	//	  at least twice labelled; every symbol not removed appears in it as
+	//	  i + 1 at the slot its HASH mixes to or after it, by linear probing;
+	//	  other entries are 0. labelled is the number of symbols not removed.
+	//	- a removed symbol has no edges and is neither start nor end.
+	//	- labels holds length bytes.
+	//
+	// Safety from Exposure
+	//	- all fields are private; the segments are never returned and
+	//	  handles only hold the chart and a symbol number.
+	//
+	// Thread safety
+	//	- not thread-safe.
+
+	private OffHeapFlowchart(final Segments records, final Segments labels, final Segments index) {
+		this.records = records;
+		this.labels = labels;
+		this.index = index;
+	}
+
+	/**
+	 * Makes an empty flowchart in direct memory, which counts against
+	 * {@code -XX:MaxDirectMemorySize}; see {@link #map} for charts as large
+	 * as the heap.
+	 *
+	 * @return a new, empty flowchart in direct memory.
+	 */
+	public static OffHeapFlowchart allocate() {
+		final OffHeapFlowchart chart = new OffHeapFlowchart(
+				new Segments(SEGMENT_BITS), new Segments(SEGMENT_BITS), new Segments(SEGMENT_BITS));
+		chart.initialize();
+		return chart;
+	}
+
+	/**
+	 * Opens the flowchart stored in a directory, creating an empty one if
+	 * the directory holds none.
+	 *
+	 * <p>The chart is kept in three files of the directory mapped into
+	 * memory, which the operating system pages in and out as needed. Changes
+	 * are written back to the files at the latest by {@link #close}.
+	 *
+	 * @param directory Path of an existing directory.
+	 * @return the flowchart stored in {@code directory}.
+	 * @throws IOException if the files cannot be opened, or hold no
+	 *     flowchart of this version.
+	 */
+	public static OffHeapFlowchart map(final Path directory) throws IOException {
+		final FileChannel symbols = open(directory.resolve("symbols"));
+		final boolean exists = symbols.size() >= HEADER;
+		final OffHeapFlowchart chart = new OffHeapFlowchart(
+				new Segments(SEGMENT_BITS, symbols),
+				new Segments(SEGMENT_BITS, open(directory.resolve("labels"))),
+				new Segments(SEGMENT_BITS, open(directory.resolve("index"))));
+		if (!exists) {
+			chart.initialize();
+			return chart;
+		}
+		final Segments records = chart.records;
+		if (records.getInt(H_MAGIC) != MAGIC || records.getInt(H_VERSION) != VERSION) {
+			chart.close();
+			throw new IOException("not an off-heap flowchart of version " + VERSION + ": " + directory);
+		}
+		chart.size = records.getInt(H_SIZE);
+		chart.start = records.getInt(H_START);
+		chart.end = records.getInt(H_END);
+		chart.capacity = records.getInt(H_CAPACITY);
+		chart.labelled = records.getInt(H_LABELS);
+		chart.length = records.getLong(H_LENGTH);
+		return chart;
+	}
+
+	private static FileChannel open(final Path file) throws IOException {
+		return FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private void initialize() {
+		records.putInt(H_MAGIC, MAGIC);
+		records.putInt(H_VERSION, VERSION);
+		size = 0;
+		start = NONE;
+		end = NONE;
+		length = 0;
+		labelled = 0;
+		capacity = INDEX_CAPACITY;
+		index.clear(0, (long) capacity * Integer.BYTES);
+		writeHeader();
+	}
+
+	private void writeHeader() {
+		records.putInt(H_SIZE, size);
+		records.putInt(H_START, start);
+		records.putInt(H_END, end);
+		records.putInt(H_CAPACITY, capacity);
+		records.putInt(H_LABELS, labelled);
+		records.putLong(H_LENGTH, length);
+	}
+
+	/**
+	 * @return the number of symbols made so far, including removed ones.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the changes made so far back to the files of a mapped chart;
+	 * does nothing for a chart in direct memory.
+	 */
+	public void force() {
+		records.force();
+		labels.force();
+		index.force();
+	}
+
+	/**
+	 * Writes a mapped chart back to its files and closes them. Handles of
+	 * a closed chart must not be used.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			records.close();
+		} finally {
+			try {
+				labels.close();
+			} finally {
+				index.close();
+			}
+		}
+	}
+
+	private static long record(final int symbol) {
+		return HEADER + symbol * RECORD;
+	}
+
+	private byte kind(final int symbol) {
+		return records.getByte(record(symbol) + KIND);
+	}
+
+	private int target(final int symbol, final int slot) {
+		return records.getInt(record(symbol) + TARGETS + slot * Integer.BYTES);
+	}
+
+	private int next(final int edge) {
+		return records.getInt(record(edge >>> 1) + NEXT + (edge & 1) * Integer.BYTES);
+	}
+
+	private void next(final int edge, final int next) {
+		records.putInt(record(edge >>> 1) + NEXT + (edge & 1) * Integer.BYTES, next);
+	}
+
+	private int previous(final int edge) {
+		return records.getInt(record(edge >>> 1) + PREVIOUS + (edge & 1) * Integer.BYTES);
+	}
+
+	private void previous(final int edge, final int previous) {
+		records.putInt(record(edge >>> 1) + PREVIOUS + (edge & 1) * Integer.BYTES, previous);
+	}
+
+	private int first(final int symbol) {
+		return records.getInt(record(symbol) + FIRST);
+	}
+
+	private void first(final int symbol, final int edge) {
+		records.putInt(record(symbol) + FIRST, edge);
+	}
+
+	private byte[] labelBytes(final int symbol) {
+		final long record = record(symbol);
+		final byte[] bytes = new byte[records.getInt(record + LABEL_LENGTH)];
+		labels.get(records.getLong(record + LABEL), bytes);
+		return bytes;
+	}
+
+	@Override
+	Kind kindOf(final int symbol) {
+		return Kind.of(kind(symbol));
+	}
+
+	@Override
+	String labelOf(final int symbol) {
+		return new String(labelBytes(symbol), StandardCharsets.UTF_8);
+	}
+
+	private static int mix(final int hash) {
+		final int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the slot of the index holding {@code label}, or the empty
+	 *     slot where it would go.
+	 */
+	private long find(final byte[] label, final int hash) {
+		final int mask = capacity - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			final int entry = index.getInt((long) slot * Integer.BYTES);
+			if (entry == 0) {
+				return slot;
+			}
+			final int symbol = entry - 1;
+			if (records.getInt(record(symbol) + HASH) == hash && Arrays.equals(labelBytes(symbol), label)) {
+				return slot;
+			}
+		}
+	}
+
+	private void rehash(final int capacity) {
+		this.capacity = capacity;
+		index.clear(0, (long) capacity * Integer.BYTES);
+		final int mask = capacity - 1;
+		for (int symbol = 0; symbol < size; symbol++) {
+			if (kind(symbol) == REMOVED) {
+				continue;
+			}
+			int slot = mix(records.getInt(record(symbol) + HASH)) & mask;
+			while (index.getInt((long) slot * Integer.BYTES) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			index.putInt((long) slot * Integer.BYTES, symbol + 1);
+		}
+	}
+
+	/**
+	 * @return the symbol labelled {@code label}, made as a symbol of kind
+	 *     {@code kind} if it doesn't exist.
+	 */
+	private Flowchart intern(final String label, final Kind kind) {
+		if (label == null || label.trim().isEmpty()) {
+			throw new IllegalArgumentException("label must contain a non-whitespace character");
+		}
+		final byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+		final int hash = label.hashCode();
+		final long slot = find(bytes, hash);
+		final int entry = index.getInt(slot * Integer.BYTES);
+		if (entry != 0) {
+			return handle(entry - 1);
+		}
+		if (size == MAX_SIZE) {
+			throw new IllegalStateException("an off-heap flowchart makes at most " + MAX_SIZE + " symbols");
+		}
+		final int symbol = size++;
+		final long record = record(symbol);
+		records.putByte(record + KIND, (byte) kind.ordinal());
+		records.putInt(record + LABEL_LENGTH, bytes.length);
+		records.putLong(record + LABEL, length);
+		records.putInt(record + TARGETS, NONE);
+		records.putInt(record + TARGETS + Integer.BYTES, NONE);
+		records.putInt(record + FIRST, NONE);
+		records.putInt(record + HASH, hash);
+		labels.put(length, bytes);
+		length += bytes.length;
+		index.putInt(slot * Integer.BYTES, symbol + 1);
+		labelled++;
+		if (2 * labelled > capacity) {
+			rehash(2 * capacity);
+		}
+		writeHeader();
+		return handle(symbol);
+	}
+
+	/**
+	 * Returns the symbol of this chart labelled {@code label}, making it as
+	 * an activity symbol if it doesn't exist.
+	 *
+	 * <p>Like {@link Flowchart#instantiate(String)}, but for this chart:
+	 * every call with the same label returns a handle of the same symbol,
+	 * whatever its kind.
+	 *
+	 * @param label String that identifies the symbol.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 * @throws IllegalStateException if the symbol doesn't exist and this
+	 *     chart has made {@value #MAX_SIZE} symbols already.
+	 */
+	public Flowchart instantiate(final String label) {
+		return intern(label, Kind.ACTIVITY);
+	}
+
+	/**
+	 * Returns the symbol of this chart labelled {@code label}, making it as
+	 * a start symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateStart(final String label) {
+		return intern(label, Kind.START);
+	}
+
+	/**
+	 * Returns the symbol of this chart labelled {@code label}, making it as
+	 * a decision symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateDecision(final String label) {
+		return intern(label, Kind.DECISION);
+	}
+
+	/**
+	 * Returns the symbol of this chart labelled {@code label}, making it as
+	 * an end symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateEnd(final String label) {
+		return intern(label, Kind.END);
+	}
+
+	/**
+	 * Returns the number of {@code symbol} in this chart.
+	 *
+	 * @throws IllegalArgumentException if {@code symbol} is not a symbol
+	 *     of this flowchart.
+	 */
+	private int member(final Flowchart symbol) {
+		final int number = number(symbol);
+		if (number == NONE || kind(number) == REMOVED) {
+			throw new IllegalArgumentException("not a symbol of this flowchart: " + symbol);
+		}
+		return number;
+	}
+
+	private Flowchart handleOrNull(final int symbol) {
+		return symbol == NONE ? null : handle(symbol);
+	}
+
+	private boolean canConnect(final int source, final int target) {
+		return target != source
+				&& kind(target) != Kind.START.ordinal()
+				&& target != start
+				&& source != end;
+	}
+
+	/**
+	 * Sets a target slot of {@code source} to {@code target}, moving its
+	 * edge from the sources of the previous target to those of the new one.
+	 */
+	private void connect(final int source, final int slot, final int target) {
+		final int previous = target(source, slot);
+		if (previous == target) {
+			return;
+		}
+		final int edge = 2 * source + slot;
+		if (previous != NONE) {
+			unlink(edge, previous);
+		}
+		records.putInt(record(source) + TARGETS + slot * Integer.BYTES, target);
+		final int first = first(target);
+		next(edge, first);
+		previous(edge, NONE);
+		if (first != NONE) {
+			previous(first, edge);
+		}
+		first(target, edge);
+	}
+
+	/**
+	 * Removes {@code edge} from the sources of {@code target}, leaving its
+	 * slot unconnected.
+	 */
+	private void unlink(final int edge, final int target) {
+		final int previous = previous(edge);
+		final int next = next(edge);
+		if (previous != NONE) {
+			next(previous, next);
+		} else {
+			first(target, next);
+		}
+		if (next != NONE) {
+			previous(next, previous);
+		}
+		records.putInt(record(edge >>> 1) + TARGETS + (edge & 1) * Integer.BYTES, NONE);
+	}
+
+	/**
+	 * Performs an action for every source of {@code target}, once each.
+	 */
+	private void forEachSourceOf(final int target, final Consumer<? super Flowchart> action) {
+		for (int edge = first(target); edge != NONE; edge = next(edge)) {
+			final int source = edge >>> 1;
+			// a decision whose branches both go here is linked twice
+			if ((edge & 1) == 0 || target(source, 0) != target) {
+				action.accept(handle(source));
+			}
+		}
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		final int symbol = member(start);
+		final byte kind = kind(symbol);
+		if (kind != Kind.START.ordinal() && kind != Kind.ACTIVITY.ordinal()) {
+			throw new IllegalArgumentException("start must be an activity: " + start);
+		}
+		if (first(symbol) != NONE) {
+			throw new IllegalArgumentException("start must have no sources: " + start);
+		}
+		if (this.start != NONE && !reset) {
+			return handleOrNull(this.start);
+		}
+		this.start = symbol;
+		writeHeader();
+		return handleOrNull(symbol);
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		return setStart(start, false);
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		final int symbol = member(end);
+		final byte kind = kind(symbol);
+		if (kind != Kind.END.ordinal() && kind != Kind.ACTIVITY.ordinal()) {
+			throw new IllegalArgumentException("end must be an activity: " + end);
+		}
+		if (kind == Kind.ACTIVITY.ordinal() && target(symbol, 0) != NONE) {
+			throw new IllegalArgumentException("end must have no targets: " + end);
+		}
+		if (this.end != NONE && !reset) {
+			return handleOrNull(this.end);
+		}
+		this.end = symbol;
+		writeHeader();
+		return handleOrNull(symbol);
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		return setEnd(end, false);
+	}
+
+	@Override
+	public Flowchart getStart() {
+		if (start == NONE) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return handleOrNull(start);
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		if (end == NONE) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return handleOrNull(end);
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		final int symbol = member(source);
+		switch (Kind.of(kind(symbol))) {
+		case START:
+		case ACTIVITY:
+			return Collections.<Flowchart>singletonList(handleOrNull(target(symbol, 0)));
+		case DECISION:
+			return Collections.unmodifiableList(
+					Arrays.<Flowchart>asList(handleOrNull(target(symbol, 0)), handleOrNull(target(symbol, 1))));
+		default:
+			return Collections.emptyList();
+		}
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		final List<Flowchart> sources = new ArrayList<>();
+		forEachSourceOf(member(target), sources::add);
+		return Collections.unmodifiableList(sources);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final int symbol = member(source);
+		final int slots = Kind.of(kind(symbol)).slots();
+		for (int slot = 0; slot < slots; slot++) {
+			final int target = target(symbol, slot);
+			if (target != NONE) {
+				action.accept(handle(target), slot);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		forEachSourceOf(member(target), action);
+	}
+
+	private int activity(final Flowchart source) {
+		final int symbol = member(source);
+		final byte kind = kind(symbol);
+		if (kind != Kind.START.ordinal() && kind != Kind.ACTIVITY.ordinal()) {
+			throw new IllegalArgumentException("source must be an activity: " + source);
+		}
+		return symbol;
+	}
+
+	private int decision(final Flowchart source) {
+		final int symbol = member(source);
+		if (kind(symbol) != Kind.DECISION.ordinal()) {
+			throw new IllegalArgumentException("source must be a decision: " + source);
+		}
+		return symbol;
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		final int from = activity(source);
+		final int to = member(target);
+		if (!canConnect(from, to)) {
+			return null;
+		}
+		connect(from, 0, to);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		final int from = activity(source);
+		final int to = member(target);
+		if (!canConnect(from, to)) {
+			return null;
+		}
+		final int current = target(from, 0);
+		if (current != NONE) {
+			return current == to ? this : null;
+		}
+		connect(from, 0, to);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		final int from = decision(source);
+		final int yes = member(yesBranch);
+		final int no = member(noBranch);
+		if (!canConnect(from, yes) || !canConnect(from, no)) {
+			return null;
+		}
+		connect(from, 0, yes);
+		connect(from, 1, no);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 0, member(yesBranch), reset);
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 1, member(noBranch), reset);
+	}
+
+	private Flowchart connectBranch(
+			final int source,
+			final int slot,
+			final int branch,
+			final boolean reset) {
+		if (!canConnect(source, branch)) {
+			return null;
+		}
+		if (target(source, slot) == NONE || reset) {
+			connect(source, slot, branch);
+		}
+		return this;
+	}
+
+	@Override
+	public Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		final int from = member(source);
+		final int to = member(target);
+		boolean disconnected = false;
+		for (int slot = 0; slot < Kind.of(kind(from)).slots(); slot++) {
+			if (target(from, slot) == to) {
+				unlink(2 * from + slot, to);
+				disconnected = true;
+			}
+		}
+		return disconnected ? this : null;
+	}
+
+	@Override
+	public Flowchart removeSymbol(final Flowchart symbol) {
+		final int number = number(symbol);
+		if (number != NONE && kind(number) == REMOVED) {
+			return null;
+		}
+		final int removed = member(symbol);
+		for (int slot = 0; slot < Kind.of(kind(removed)).slots(); slot++) {
+			final int target = target(removed, slot);
+			if (target != NONE) {
+				unlink(2 * removed + slot, target);
+			}
+		}
+		for (int edge = first(removed); edge != NONE; edge = first(removed)) {
+			unlink(edge, removed);
+		}
+		unindex(removed);
+		records.putByte(record(removed) + KIND, REMOVED);
+		if (start == removed) {
+			start = NONE;
+		}
+		if (end == removed) {
+			end = NONE;
+		}
+		writeHeader();
+		return this;
+	}
+
+	/**
+	 * Deletes {@code symbol} from the index, shifting back the entries
+	 * after it that would no longer be found.
+	 */
+	private void unindex(final int symbol) {
+		final int mask = capacity - 1;
+		int hole = (int) find(labelBytes(symbol), records.getInt(record(symbol) + HASH));
+		for (int slot = (hole + 1) & mask;; slot = (slot + 1) & mask) {
+			final int entry = index.getInt((long) slot * Integer.BYTES);
+			if (entry == 0) {
+				break;
+			}
+			final int home = mix(records.getInt(record(entry - 1) + HASH)) & mask;
+			// the entry may move to the hole iff its home is not cyclically in (hole, slot]
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				index.putInt((long) hole * Integer.BYTES, entry);
+				hole = slot;
+			}
+		}
+		index.putInt((long) hole * Integer.BYTES, 0);
+		labelled--;
+	}
+
+	/**
+	 * Copies the kinds and targets of the symbols connected to the start or
+	 * the end into a snapshot on the heap, which answers the handles of
+	 * this chart.
+	 */
+	@Override
+	FrozenFlowchart snapshot() {
+		final int[] number = new int[size];
+		Arrays.fill(number, NONE);
+		final IntList found = new IntList();
+		for (int root : new int[] {start, end}) {
+			if (root == NONE || number[root] != NONE) {
+				continue;
+			}
+			number[root] = found.size();
+			found.add(root);
+			for (int head = found.size() - 1; head < found.size(); head++) {
+				final int symbol = found.get(head);
+				for (int slot = 0; slot < Kind.of(kind(symbol)).slots(); slot++) {
+					final int target = target(symbol, slot);
+					if (target != NONE && number[target] == NONE) {
+						number[target] = found.size();
+						found.add(target);
+					}
+				}
+				for (int edge = first(symbol); edge != NONE; edge = next(edge)) {
+					final int source = edge >>> 1;
+					if (number[source] == NONE) {
+						number[source] = found.size();
+						found.add(source);
+					}
+				}
+			}
+		}
+		final byte[] kinds = new byte[found.size()];
+		final IntList targets = new IntList();
+		for (int i = 0; i < kinds.length; i++) {
+			final int symbol = found.get(i);
+			kinds[i] = kind(symbol);
+			for (int slot = 0; slot < Kind.of(kinds[i]).slots(); slot++) {
+				final int target = target(symbol, slot);
+				targets.add(target == NONE ? NONE : number[target]);
+			}
+		}
+		return FrozenFlowchart.of(this, found.toArray(), kinds, targets.toArray(),
+				start == NONE ? NONE : number[start], end == NONE ? NONE : number[end]);
+	}
+}
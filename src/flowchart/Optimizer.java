@@ -0,0 +1,289 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Lays out the jump table of a flowchart after the branches its executions
+ * took, as recorded by an {@link Instrumentation}.
+ *
+ * <p>The symbols are numbered again along traces: from the start, each
+ * symbol is followed by its target, and a decision by the branch it took
+ * more often. The branch it took less often starts a trace of its own
+ * later, the hottest such branch first. Hot paths then read adjacent
+ * entries of the arrays an {@link Interpreter} steps through.
+ *
+ * <p>Chains of decisions on independent predicates are evaluated in a
+ * better order too. In a chain every decision but the first is reached
+ * only from the decision before it, the same branch of each leads on to
+ * the next, and the other branch of each goes to the same symbol: a
+ * short-circuit {@code and} or {@code or} of the predicates. If the
+ * predicates have no side effects and are independent of each other,
+ * their order does not change which symbol the chain leads to, so they
+ * are ordered by ascending cost over probability of leaving the chain
+ * early, which minimizes the expected cost of the chain. Costs are the
+ * median latencies of the predicates in the profile.
+ */
+public final class Optimizer {
+
+	private Optimizer() {
+	}
+
+	/**
+	 * Creates an interpreter for a flowchart laid out after a profile.
+	 *
+	 * <p>Executions by the interpreter run the same actions in the same order
+	 * as executions by {@code new Interpreter<>(chart, actions, predicates)}.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @param profile branches taken by earlier executions of {@code chart}.
+	 * @return an interpreter for {@code chart}.
+	 * @throws IllegalArgumentException as {@link Interpreter} does.
+	 */
+	public static <T> Interpreter<T> optimize(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final Instrumentation.Snapshot profile) {
+		return optimize(chart, actions, predicates, profile, Collections.<Flowchart>emptySet());
+	}
+
+	/**
+	 * Creates an interpreter for a flowchart laid out after a profile, whose
+	 * chains of decisions among {@code independent} may be reordered.
+	 *
+	 * <p>Executions by the interpreter run the same actions in the same order
+	 * as executions by {@code new Interpreter<>(chart, actions, predicates)},
+	 * as long as the predicates of {@code independent} have no side effects
+	 * and the result of none depends on whether another was evaluated.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @param profile branches taken by earlier executions of {@code chart},
+	 *     and latencies of the predicates.
+	 * @param independent decisions whose predicates can be evaluated in any order.
+	 * @return an interpreter for {@code chart}.
+	 * @throws IllegalArgumentException as {@link Interpreter} does.
+	 */
+	public static <T> Interpreter<T> optimize(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final Instrumentation.Snapshot profile,
+			final Set<? extends Flowchart> independent) {
+		return new Interpreter<>(plan(Program.of(chart), profile, independent), actions, predicates);
+	}
+
+	/**
+	 * @param program a program numbered like its chart.
+	 * @return {@code program} with its chains reordered and laid out again.
+	 */
+	static Program plan(
+			final Program program,
+			final Instrumentation.Snapshot profile,
+			final Set<? extends Flowchart> independent) {
+		final int n = program.size();
+		final int[] next = new int[n];
+		final int[] alt = new int[n];
+		for (int i = 0; i < n; i++) {
+			next[i] = program.isReachable(i) ? program.next(i) : FrozenFlowchart.NONE;
+			alt[i] = program.isReachable(i) ? program.alt(i) : FrozenFlowchart.NONE;
+		}
+		reorderChains(program, next, alt, profile, independent);
+		return layOut(program, next, alt, profile);
+	}
+
+	/**
+	 * @return the target of {@code symbol} in {@code slot}.
+	 */
+	private static int successor(final int[] next, final int[] alt, final int symbol, final int slot) {
+		return slot == 0 ? next[symbol] : alt[symbol];
+	}
+
+	private static void setSuccessor(
+			final int[] next, final int[] alt, final int symbol, final int slot, final int target) {
+		if (slot == 0) {
+			next[symbol] = target;
+		} else {
+			alt[symbol] = target;
+		}
+	}
+
+	/**
+	 * Reorders the chains of independent decisions of a jump table in place.
+	 */
+	private static void reorderChains(
+			final Program program, final int[] next, final int[] alt,
+			final Instrumentation.Snapshot profile,
+			final Set<? extends Flowchart> independent) {
+		final int n = program.size();
+		final boolean[] candidate = new boolean[n];
+		final int[] sources = new int[n];
+		final int[] source = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (!program.isReachable(i) || i == program.end()) {
+				continue;
+			}
+			candidate[i] = program.isDecision(i) && independent.contains(program.symbol(i));
+			for (int slot = 0; slot < (program.isDecision(i) ? 2 : 1); slot++) {
+				final int target = successor(next, alt, i, slot);
+				sources[target]++;
+				source[target] = i;
+			}
+		}
+		// find every chain before changing any
+		final boolean[] chained = new boolean[n];
+		final List<int[]> chains = new ArrayList<>();
+		final IntList slots = new IntList();
+		final IntList chain = new IntList();
+		for (int head = 0; head < n; head++) {
+			for (int slot = 0; slot < 2; slot++) {
+				if (!candidate[head] || chained[head] || sources[head] == 1
+						&& links(next, alt, candidate, sources, source[head], slot)
+						&& successor(next, alt, source[head], slot) == head) {
+					continue;
+				}
+				chain.clear();
+				chain.add(head);
+				int last = head;
+				while (links(next, alt, candidate, sources, last, slot)
+						&& !chained[successor(next, alt, last, slot)]) {
+					last = successor(next, alt, last, slot);
+					chain.add(last);
+				}
+				if (chain.size() > 1) {
+					for (int k = 0; k < chain.size(); k++) {
+						chained[chain.get(k)] = true;
+					}
+					chains.add(chain.toArray());
+					slots.add(slot);
+				}
+			}
+		}
+		for (int k = 0; k < chains.size(); k++) {
+			reorder(program, next, alt, profile, chains.get(k), slots.get(k));
+		}
+	}
+
+	/**
+	 * @return true iff decision {@code symbol} leads on through {@code slot}
+	 *     to a decision reached from nothing else that leaves the chain to
+	 *     the same symbol.
+	 */
+	private static boolean links(
+			final int[] next, final int[] alt,
+			final boolean[] candidate, final int[] sources,
+			final int symbol, final int slot) {
+		if (!candidate[symbol]) {
+			return false;
+		}
+		final int target = successor(next, alt, symbol, slot);
+		return target != symbol && candidate[target] && sources[target] == 1
+				&& successor(next, alt, target, 1 - slot) == successor(next, alt, symbol, 1 - slot);
+	}
+
+	/**
+	 * Reorders the decisions of a chain that lead on through {@code slot},
+	 * unless one of them was never profiled.
+	 */
+	private static void reorder(
+			final Program program, final int[] next, final int[] alt,
+			final Instrumentation.Snapshot profile,
+			final int[] chain, final int slot) {
+		final int length = chain.length;
+		final Integer[] order = new Integer[length];
+		final double[] rank = new double[next.length];
+		for (int k = 0; k < length; k++) {
+			final int decision = chain[k];
+			final Flowchart symbol = program.symbol(decision);
+			final long on = slot == 0 ? profile.getYesCount(symbol) : profile.getNoCount(symbol);
+			final long off = slot == 0 ? profile.getNoCount(symbol) : profile.getYesCount(symbol);
+			if (on + off == 0) {
+				// no evidence to reorder by
+				return;
+			}
+			final long cost = Math.max(1, profile.getLatency(symbol).getValueAtPercentile(50));
+			rank[decision] = off == 0 ? Double.POSITIVE_INFINITY : cost * (double) (on + off) / off;
+			order[k] = decision;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(rank[a], rank[b]));
+		final int head = chain[0];
+		final int first = order[0];
+		final int exit = successor(next, alt, head, 1 - slot);
+		final int after = successor(next, alt, chain[length - 1], slot);
+		for (int i = 0; i < next.length; i++) {
+			if (next[i] == head) {
+				next[i] = first;
+			}
+			if (alt[i] == head) {
+				alt[i] = first;
+			}
+		}
+		for (int k = 0; k < length; k++) {
+			setSuccessor(next, alt, order[k], slot, k + 1 < length ? order[k + 1] : after == head ? first : after);
+			setSuccessor(next, alt, order[k], 1 - slot, exit == head ? first : exit);
+		}
+	}
+
+	/**
+	 * Numbers the symbols of a jump table along traces of hot branches.
+	 */
+	private static Program layOut(
+			final Program program, final int[] next, final int[] alt,
+			final Instrumentation.Snapshot profile) {
+		final int n = program.size();
+		final int[] position = new int[n];
+		Arrays.fill(position, FrozenFlowchart.NONE);
+		final IntList origin = new IntList();
+		// {count, symbol}: hottest first
+		final PriorityQueue<long[]> pending = new PriorityQueue<>((a, b) -> Long.compare(b[0], a[0]));
+		pending.add(new long[] {0, program.start()});
+		while (!pending.isEmpty()) {
+			int symbol = (int) pending.remove()[1];
+			while (position[symbol] == FrozenFlowchart.NONE) {
+				position[symbol] = origin.size();
+				origin.add(symbol);
+				if (symbol == program.end()) {
+					break;
+				}
+				if (!program.isDecision(symbol)) {
+					symbol = next[symbol];
+					continue;
+				}
+				final long yes = profile.getYesCount(program.symbol(symbol));
+				final long no = profile.getNoCount(program.symbol(symbol));
+				if (no > yes) {
+					pending.add(new long[] {yes, next[symbol]});
+					symbol = alt[symbol];
+				} else {
+					pending.add(new long[] {no, alt[symbol]});
+					symbol = next[symbol];
+				}
+			}
+		}
+		final int size = origin.size();
+		final int[] laidNext = new int[size];
+		final int[] laidAlt = new int[size];
+		final int[] laidOrigin = new int[size];
+		for (int i = 0; i < size; i++) {
+			final int symbol = origin.get(i);
+			laidOrigin[i] = symbol;
+			laidNext[i] = symbol == program.end() ? FrozenFlowchart.NONE : position[next[symbol]];
+			laidAlt[i] = program.isDecision(symbol) ? position[alt[symbol]] : FrozenFlowchart.NONE;
+		}
+		return new Program(program.chart(), laidOrigin, laidNext, laidAlt,
+				position[program.start()], position[program.end()]);
+	}
+}
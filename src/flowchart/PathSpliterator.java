@@ -0,0 +1,161 @@
+package flowchart;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the paths of a program from its start symbol to its
+ * end symbol that pass through no symbol twice.
+ *
+ * <p>The paths are searched depth-first with an explicit stack, so a
+ * search holds one path at a time and no path is found before it is asked
+ * for. {@link #trySplit} hands over the no branch of the decision closest
+ * to the start whose no branch is still to be searched, together with a
+ * copy of the stack below it.
+ *
+ * <p>If the start symbol is also the end symbol, the only path is the one
+ * that takes no step; there is nothing to search.
+ */
+final class PathSpliterator implements Spliterator<ExecutionPath> {
+	private final Program program;
+	private final int[] path;
+	private final int[] stage;
+	private final int[] limit;
+	private final boolean[] onPath;
+	private final int floor;
+	private int depth;
+	private boolean single;
+
+	// Abstraction Function
+	//	represents the path that takes no step if single; otherwise the paths still to be returned of the search tree of program
+	//	below path[0..floor): the search is at path[0..depth), has taken branch
+	//	stage[p] - 1 at every position p of it, and will take branches up to
+	//	limit[p] - 1 there before backing up.
+	//
+	// Representation Invariant
+	//	- 1 <= floor; depth <= program.size().
+	//	- if single, the start is the end and depth == 0.
+	//	- path[0] is the start; path[p + 1] is target stage[p] - 1 of path[p]
+	//	  for every p < depth - 1; no path[p] is the end.
+	//	- 0 <= stage[p] <= limit[p] <= the number of targets of path[p].
+	//	- onPath[i] iff i is in path[0..depth).
+	//
+	// Safety from Exposure
+	//	- all fields are private; the arrays are never returned.
+
+	PathSpliterator(final Program program) {
+		final int n = program.size();
+		this.program = program;
+		this.path = new int[n];
+		this.stage = new int[n];
+		this.limit = new int[n];
+		this.onPath = new boolean[n];
+		this.floor = 1;
+		this.single = program.start() == program.end();
+		if (single) {
+			this.depth = 0;
+			return;
+		}
+		this.depth = 1;
+		path[0] = program.start();
+		limit[0] = slots(program.start());
+		onPath[program.start()] = true;
+	}
+
+	private PathSpliterator(final PathSpliterator parent, final int split) {
+		this.program = parent.program;
+		this.path = parent.path.clone();
+		this.stage = parent.stage.clone();
+		this.limit = parent.limit.clone();
+		this.onPath = new boolean[path.length];
+		for (int p = 0; p <= split; p++) {
+			onPath[path[p]] = true;
+		}
+		this.floor = split + 1;
+		this.depth = split + 1;
+		this.single = false;
+	}
+
+	private int slots(final int symbol) {
+		return program.isDecision(symbol) ? 2 : 1;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super ExecutionPath> action) {
+		if (single) {
+			single = false;
+			action.accept(new ExecutionPath(program, new long[0], 0));
+			return true;
+		}
+		while (depth >= floor) {
+			final int top = depth - 1;
+			final int symbol = path[top];
+			if (stage[top] == limit[top]) {
+				onPath[symbol] = false;
+				depth--;
+				continue;
+			}
+			final int target = stage[top]++ == 0 ? program.next(symbol) : program.alt(symbol);
+			if (target == program.end()) {
+				action.accept(current());
+				return true;
+			}
+			if (!onPath[target]) {
+				onPath[target] = true;
+				path[depth] = target;
+				stage[depth] = 0;
+				limit[depth] = slots(target);
+				depth++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the path that goes through path[0..depth) and then to the end.
+	 */
+	private ExecutionPath current() {
+		int decisions = 0;
+		for (int p = 0; p < depth; p++) {
+			if (program.isDecision(path[p])) {
+				decisions++;
+			}
+		}
+		final long[] choices = new long[(decisions + 63) >>> 6];
+		int k = 0;
+		for (int p = 0; p < depth; p++) {
+			if (program.isDecision(path[p])) {
+				if (stage[p] == 2) {
+					choices[k >>> 6] |= 1L << k;
+				}
+				k++;
+			}
+		}
+		return new ExecutionPath(program, choices, decisions);
+	}
+
+	@Override
+	public Spliterator<ExecutionPath> trySplit() {
+		for (int p = floor; p < depth; p++) {
+			if (stage[p] == 1 && limit[p] == 2) {
+				final PathSpliterator child = new PathSpliterator(this, p);
+				limit[p] = 1;
+				return child;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		if (single) {
+			return 1;
+		}
+		return depth >= floor ? Long.MAX_VALUE : 0;
+	}
+
+	@Override
+	public int characteristics() {
+		return NONNULL | IMMUTABLE | DISTINCT;
+	}
+}
@@ -0,0 +1,397 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable flowchart whose changes make new versions.
+ *
+ * <p>Every {@code connect} method leaves this flowchart as it is and
+ * returns the new flowchart made from the connection, as {@link Flowchart}
+ * specifies. The new version shares all of its structure with this one
+ * except the O(log n) trie nodes on the paths to the symbols that changed,
+ * so any number of readers can hold on to a version without locking while
+ * writers derive new ones.
+ *
+ * <p>{@link #disconnect}, {@link #removeSymbol} and {@link #removeSymbols}
+ * likewise return the new version without the connections or symbols
+ * removed; a symbol removed from a version stays in its table, so it can
+ * be connected again in a later one.
+ *
+ * <p>The start and end symbols of a version are changed with
+ * {@link #withStart} and {@link #withEnd}; {@link #setStart} and
+ * {@link #setEnd} cannot return the new version without breaking their
+ * contract, so they throw {@link UnsupportedOperationException}.
+ *
+ * <p>All the symbols of a persistent flowchart must come from the same
+ * {@link Flowchart#instantiate(String) table}, since they are keyed by id.
+ */
+public final class PersistentFlowchart implements Flowchart {
+	private static final PersistentFlowchart EMPTY =
+			new PersistentFlowchart(null, PersistentIntMap.<Node>empty(), null, null);
+
+	private final SymbolTable table;
+	private final PersistentIntMap<Node> nodes;
+	private final Symbol start;
+	private final Symbol end;
+
+	// Abstraction Function
+	//	represents the flowchart in which symbol s has the targets
+	//	nodes.get(s.id()).slots and the sources nodes.get(s.id()).sources, or no
+	//	connections if nodes has no entry for s; whose start symbol is start and
+	//	whose end symbol is end (none if null).
+	//
+	// Representation Invariant
+	//	- table is null iff nodes is empty and start, end are null; otherwise
+	//	  every symbol of this flowchart belongs to table.
+	//	- nodes.get(s.id()).slots has length s.kind().slots().
+	//	- t is in nodes.get(s.id()).sources iff s is in a slot of t.
+	//
+	// Safety from Exposure
+	//	- all fields are private, final and immutable; lists returned by
+	//	  getTargets and getSources are fresh copies.
+
+	/**
+	 * The connections of a symbol in one version.
+	 */
+	private static final class Node {
+		final Symbol[] slots;
+		final PersistentIntMap<Symbol> sources;
+
+		Node(final Symbol[] slots, final PersistentIntMap<Symbol> sources) {
+			this.slots = slots;
+			this.sources = sources;
+		}
+	}
+
+	private PersistentFlowchart(
+			final SymbolTable table,
+			final PersistentIntMap<Node> nodes,
+			final Symbol start,
+			final Symbol end) {
+		this.table = table;
+		this.nodes = nodes;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @return the empty persistent flowchart.
+	 */
+	public static PersistentFlowchart empty() {
+		return EMPTY;
+	}
+
+	private Symbol symbol(final Flowchart symbol) {
+		if (!(symbol instanceof Symbol)
+				|| (table != null && ((Symbol) symbol).table() != table)) {
+			throw new IllegalArgumentException("not a symbol of this flowchart: " + symbol);
+		}
+		return (Symbol) symbol;
+	}
+
+	private Node node(final Symbol symbol) {
+		final Node node = nodes.get(symbol.id());
+		return node != null
+				? node
+				: new Node(new Symbol[symbol.kind().slots()], PersistentIntMap.<Symbol>empty());
+	}
+
+	private boolean canConnect(final Symbol source, final Symbol target) {
+		return target != source
+				&& target.kind() != Kind.START
+				&& target != start
+				&& source != end;
+	}
+
+	/**
+	 * Returns the version in which the start symbol is {@code start}.
+	 *
+	 * @param start Flowchart representing an activity symbol.
+	 * @param reset boolean that determines if the current start should be reset.
+	 * @return the version whose start symbol is {@code start}; this version
+	 *     if it already has a start symbol and {@code reset} is false.
+	 * @throws IllegalArgumentException if {@code start} is not an activity
+	 *     or if {@code start} is a target of at least one source.
+	 */
+	public PersistentFlowchart withStart(final Flowchart start, final boolean reset) {
+		final Symbol symbol = symbol(start);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("start must be an activity: " + start);
+		}
+		if (node(symbol).sources.size() > 0) {
+			throw new IllegalArgumentException("start must have no sources: " + start);
+		}
+		if ((this.start != null && !reset) || this.start == symbol) {
+			return this;
+		}
+		return new PersistentFlowchart(symbol.table(), nodes, symbol, end);
+	}
+
+	/**
+	 * Returns the version in which the end symbol is {@code end}.
+	 *
+	 * @param end Flowchart representing an activity symbol.
+	 * @param reset boolean that determines if the current end should be reset.
+	 * @return the version whose end symbol is {@code end}; this version
+	 *     if it already has an end symbol and {@code reset} is false.
+	 * @throws IllegalArgumentException if {@code end} is not an activity
+	 *     or if {@code end} is a source of at least one target.
+	 */
+	public PersistentFlowchart withEnd(final Flowchart end, final boolean reset) {
+		final Symbol symbol = symbol(end);
+		if (symbol.kind() != Kind.END && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("end must be an activity: " + end);
+		}
+		if (symbol.kind() == Kind.ACTIVITY && node(symbol).slots[0] != null) {
+			throw new IllegalArgumentException("end must have no targets: " + end);
+		}
+		if ((this.end != null && !reset) || this.end == symbol) {
+			return this;
+		}
+		return new PersistentFlowchart(symbol.table(), nodes, start, symbol);
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		throw new UnsupportedOperationException("persistent flowchart, use withStart");
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		throw new UnsupportedOperationException("persistent flowchart, use withStart");
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		throw new UnsupportedOperationException("persistent flowchart, use withEnd");
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		throw new UnsupportedOperationException("persistent flowchart, use withEnd");
+	}
+
+	@Override
+	public Flowchart getStart() {
+		if (start == null) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return start;
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		if (end == null) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return end;
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		return Collections.unmodifiableList(Arrays.<Flowchart>asList(node(symbol(source)).slots.clone()));
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		final List<Flowchart> sources = new ArrayList<>();
+		node(symbol(target)).sources.forEachValue(sources::add);
+		return Collections.unmodifiableList(sources);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final Symbol[] slots = node(symbol(source)).slots;
+		for (int slot = 0; slot < slots.length; slot++) {
+			if (slots[slot] != null) {
+				action.accept(slots[slot], slot);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		node(symbol(target)).sources.forEachValue(action);
+	}
+
+	/**
+	 * @return the version in which slot {@code slot} of {@code source} holds
+	 *     {@code target}.
+	 */
+	private PersistentFlowchart connect(final Symbol source, final int slot, final Symbol target) {
+		final Node from = node(source);
+		final Symbol previous = from.slots[slot];
+		if (previous == target) {
+			return this;
+		}
+		final Symbol[] slots = from.slots.clone();
+		slots[slot] = target;
+		PersistentIntMap<Node> updated = nodes.put(source.id(), new Node(slots, from.sources));
+		if (previous != null && !Arrays.asList(slots).contains(previous)) {
+			final Node node = updated.get(previous.id());
+			updated = updated.put(previous.id(), new Node(node.slots, node.sources.remove(source.id())));
+		}
+		final Node to = updated.get(target.id());
+		final Node node = to != null ? to : node(target);
+		updated = updated.put(target.id(), new Node(node.slots, node.sources.put(source.id(), source)));
+		return new PersistentFlowchart(source.table(), updated, start, end);
+	}
+
+	private Symbol activity(final Flowchart source) {
+		final Symbol symbol = symbol(source);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("source must be an activity: " + source);
+		}
+		return symbol;
+	}
+
+	private Symbol decision(final Flowchart source) {
+		final Symbol symbol = symbol(source);
+		if (symbol.kind() != Kind.DECISION) {
+			throw new IllegalArgumentException("source must be a decision: " + source);
+		}
+		return symbol;
+	}
+
+	@Override
+	public PersistentFlowchart connectActivity(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = symbol(target);
+		return canConnect(from, to) ? connect(from, 0, to) : null;
+	}
+
+	@Override
+	public PersistentFlowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = symbol(target);
+		if (!canConnect(from, to)) {
+			return null;
+		}
+		final Symbol current = node(from).slots[0];
+		if (current != null) {
+			return current == to ? this : null;
+		}
+		return connect(from, 0, to);
+	}
+
+	@Override
+	public PersistentFlowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		final Symbol from = decision(source);
+		final Symbol yes = symbol(yesBranch);
+		final Symbol no = symbol(noBranch);
+		if (!canConnect(from, yes) || !canConnect(from, no)) {
+			return null;
+		}
+		return connect(from, 0, yes).connect(from, 1, no);
+	}
+
+	@Override
+	public PersistentFlowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 0, symbol(yesBranch), reset);
+	}
+
+	@Override
+	public PersistentFlowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 1, symbol(noBranch), reset);
+	}
+
+	private PersistentFlowchart connectBranch(
+			final Symbol source,
+			final int slot,
+			final Symbol branch,
+			final boolean reset) {
+		if (!canConnect(source, branch)) {
+			return null;
+		}
+		if (node(source).slots[slot] != null && !reset) {
+			return this;
+		}
+		return connect(source, slot, branch);
+	}
+
+	@Override
+	public PersistentFlowchart disconnect(final Flowchart source, final Flowchart target) {
+		final Symbol from = symbol(source);
+		final Symbol to = symbol(target);
+		final Node node = node(from);
+		final Symbol[] slots = node.slots.clone();
+		boolean disconnected = false;
+		for (int slot = 0; slot < slots.length; slot++) {
+			if (slots[slot] == to) {
+				slots[slot] = null;
+				disconnected = true;
+			}
+		}
+		if (!disconnected) {
+			return null;
+		}
+		final Node into = nodes.get(to.id());
+		final PersistentIntMap<Node> updated = nodes
+				.put(from.id(), new Node(slots, node.sources))
+				.put(to.id(), new Node(into.slots, into.sources.remove(from.id())));
+		return new PersistentFlowchart(table, updated, start, end);
+	}
+
+	@Override
+	public PersistentFlowchart removeSymbol(final Flowchart symbol) {
+		final Symbol removed = symbol(symbol);
+		final Node node = nodes.get(removed.id());
+		if (node == null && removed != start && removed != end) {
+			return null;
+		}
+		PersistentIntMap<Node> updated = nodes;
+		if (node != null) {
+			for (Symbol target : node.slots) {
+				final Node into = target == null ? null : updated.get(target.id());
+				if (into != null) {
+					updated = updated.put(target.id(), new Node(into.slots, into.sources.remove(removed.id())));
+				}
+			}
+			final List<Flowchart> sources = new ArrayList<>();
+			node.sources.forEachValue(sources::add);
+			for (Flowchart source : sources) {
+				final Node from = updated.get(((Symbol) source).id());
+				final Symbol[] slots = from.slots.clone();
+				for (int slot = 0; slot < slots.length; slot++) {
+					if (slots[slot] == removed) {
+						slots[slot] = null;
+					}
+				}
+				updated = updated.put(((Symbol) source).id(), new Node(slots, from.sources));
+			}
+			updated = updated.remove(removed.id());
+		}
+		final Symbol start = this.start == removed ? null : this.start;
+		final Symbol end = this.end == removed ? null : this.end;
+		if (updated.size() == 0 && start == null && end == null) {
+			return EMPTY;
+		}
+		return new PersistentFlowchart(table, updated, start, end);
+	}
+
+	@Override
+	public PersistentFlowchart removeSymbols(final Collection<? extends Flowchart> symbols) {
+		PersistentFlowchart version = this;
+		for (Flowchart symbol : symbols) {
+			final PersistentFlowchart removed = version.removeSymbol(symbol);
+			version = removed != null ? removed : version;
+		}
+		return version == this ? null : version;
+	}
+}
@@ -0,0 +1,229 @@
+package flowchart;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * An immutable map from int keys to values, as a hash array mapped trie.
+ *
+ * <p>Adding or removing a key returns a new map that shares all but the
+ * O(log32 n) nodes on the path to the key with this map, so keeping every
+ * version of a map costs little more memory than keeping the latest.
+ *
+ * <p>Keys are used as their own hash: every five bits of a key, from the
+ * lowest, select a branch one level deeper. Dense keys such as symbol ids
+ * therefore give a balanced trie of full nodes.
+ *
+ * @param <V> the type of the values.
+ */
+final class PersistentIntMap<V> {
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	private static final PersistentIntMap<Object> EMPTY = new PersistentIntMap<>(null, 0);
+
+	private final Node root;
+	private final int size;
+
+	// Abstraction Function
+	//	represents the map holding the entries reachable from root, or no
+	//	entries if root is null.
+	//
+	// Representation Invariant
+	//	- size is the number of entries reachable from root.
+	//	- in a node at depth d, the child for bit b holds exactly the keys
+	//	  whose d-th group of five bits is b; children.length == bitCount(bitmap).
+	//	- no node other than root is empty.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; nodes and entries are never
+	//	  returned and never changed after construction.
+
+	private PersistentIntMap(final Node root, final int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * @param <V> the type of the values.
+	 * @return the empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	static <V> PersistentIntMap<V> empty() {
+		return (PersistentIntMap<V>) EMPTY;
+	}
+
+	/**
+	 * @return the number of entries in this map.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param key any int.
+	 * @return the value mapped to {@code key}, or null if none is.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(final int key) {
+		Node node = root;
+		int shift = 0;
+		while (node != null) {
+			final int bit = 1 << ((key >>> shift) & MASK);
+			if ((node.bitmap & bit) == 0) {
+				return null;
+			}
+			final Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+			if (child instanceof Entry) {
+				final Entry entry = (Entry) child;
+				return entry.key == key ? (V) entry.value : null;
+			}
+			node = (Node) child;
+			shift += BITS;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key any int.
+	 * @param value non-null value to map to {@code key}.
+	 * @return a map equal to this map except that {@code key} maps to
+	 *     {@code value}; this map if it already did.
+	 */
+	PersistentIntMap<V> put(final int key, final V value) {
+		final Node node = root == null ? Node.EMPTY : root;
+		final boolean[] added = new boolean[1];
+		final Node updated = node.put(key, value, 0, added);
+		return updated == node ? this : new PersistentIntMap<>(updated, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * @param key any int.
+	 * @return a map equal to this map except that nothing maps to
+	 *     {@code key}; this map if nothing did.
+	 */
+	PersistentIntMap<V> remove(final int key) {
+		if (root == null) {
+			return this;
+		}
+		final Node updated = root.remove(key, 0);
+		if (updated == root) {
+			return this;
+		}
+		return updated == null ? empty() : new PersistentIntMap<>(updated, size - 1);
+	}
+
+	/**
+	 * Calls {@code action} with every value of this map, in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	void forEachValue(final Consumer<? super V> action) {
+		if (root != null) {
+			root.forEach(entry -> action.accept((V) entry.value));
+		}
+	}
+
+	/**
+	 * A key mapped to a value.
+	 */
+	private static final class Entry {
+		final int key;
+		final Object value;
+
+		Entry(final int key, final Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * A branch of the trie: one child, entry or node, per bit of bitmap.
+	 */
+	private static final class Node {
+		static final Node EMPTY = new Node(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] children;
+
+		Node(final int bitmap, final Object[] children) {
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+
+		Node put(final int key, final Object value, final int shift, final boolean[] added) {
+			final int bit = 1 << ((key >>> shift) & MASK);
+			final int index = Integer.bitCount(bitmap & (bit - 1));
+			if ((bitmap & bit) == 0) {
+				final Object[] copy = new Object[children.length + 1];
+				System.arraycopy(children, 0, copy, 0, index);
+				copy[index] = new Entry(key, value);
+				System.arraycopy(children, index, copy, index + 1, children.length - index);
+				added[0] = true;
+				return new Node(bitmap | bit, copy);
+			}
+			final Object child = children[index];
+			final Object replacement;
+			if (child instanceof Node) {
+				replacement = ((Node) child).put(key, value, shift + BITS, added);
+			} else if (((Entry) child).key == key) {
+				if (((Entry) child).value == value) {
+					return this;
+				}
+				replacement = new Entry(key, value);
+			} else {
+				final Entry entry = (Entry) child;
+				replacement = EMPTY
+						.put(entry.key, entry.value, shift + BITS, new boolean[1])
+						.put(key, value, shift + BITS, added);
+			}
+			if (replacement == child) {
+				return this;
+			}
+			final Object[] copy = Arrays.copyOf(children, children.length);
+			copy[index] = replacement;
+			return new Node(bitmap, copy);
+		}
+
+		/**
+		 * @return this node without {@code key}: this node if it doesn't
+		 *     hold {@code key}, null if it would be empty.
+		 */
+		Node remove(final int key, final int shift) {
+			final int bit = 1 << ((key >>> shift) & MASK);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			final int index = Integer.bitCount(bitmap & (bit - 1));
+			final Object child = children[index];
+			if (child instanceof Node) {
+				final Node replacement = ((Node) child).remove(key, shift + BITS);
+				if (replacement == child) {
+					return this;
+				}
+				if (replacement != null) {
+					final Object[] copy = Arrays.copyOf(children, children.length);
+					copy[index] = replacement;
+					return new Node(bitmap, copy);
+				}
+			} else if (((Entry) child).key != key) {
+				return this;
+			}
+			if (children.length == 1) {
+				return null;
+			}
+			final Object[] copy = new Object[children.length - 1];
+			System.arraycopy(children, 0, copy, 0, index);
+			System.arraycopy(children, index + 1, copy, index, copy.length - index);
+			return new Node(bitmap & ~bit, copy);
+		}
+
+		void forEach(final Consumer<Entry> action) {
+			for (Object child : children) {
+				if (child instanceof Node) {
+					((Node) child).forEach(action);
+				} else {
+					action.accept((Entry) child);
+				}
+			}
+		}
+	}
+}
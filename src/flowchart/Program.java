@@ -0,0 +1,220 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * The jump table of a flowchart: for every symbol reachable from the start
+ * symbol, the index of the symbol to go to next.
+ *
+ * <p>Symbols are numbered like the {@link FrozenFlowchart} the program is
+ * resolved from, unless the program was laid out again by
+ * {@link Optimizer}. A program is resolved once and never changes, so any
+ * number of executions can share it.
+ */
+final class Program {
+	private final FrozenFlowchart chart;
+	private final int[] origin;
+	private final int start;
+	private final int end;
+	private final boolean[] reachable;
+	private final int[] next;
+	private final int[] alt;
+
+	// Abstraction Function
+	//	represents the execution order of chart from symbol start to symbol
+	//	end: after an activity i comes next[i], after a decision i comes next[i]
+	//	if its predicate holds and alt[i] otherwise. Symbol i is the symbol
+	//	origin[i] of chart.
+	//
+	// Representation Invariant
+	//	- origin, reachable, next, alt have the same length; origin has no
+	//	  duplicates.
+	//	- start, end are symbol indices of the program.
+	//	- reachable[i] iff i is reachable from start without passing through end.
+	//	- for every reachable i != end, next[i] is the index of the first target of i;
+	//	  alt[i] is the index of the no branch if i is a decision, NONE otherwise.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned.
+
+	private Program(final FrozenFlowchart chart) {
+		this.chart = chart;
+		final int n = chart.size();
+		this.origin = new int[n];
+		for (int i = 0; i < n; i++) {
+			origin[i] = i;
+		}
+		this.start = chart.startIndex();
+		this.end = chart.endIndex();
+		if (start == FrozenFlowchart.NONE || end == FrozenFlowchart.NONE) {
+			throw new IllegalArgumentException("a program needs a start and an end symbol");
+		}
+		this.reachable = new boolean[n];
+		this.next = new int[n];
+		this.alt = new int[n];
+
+		final int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		reachable[start] = true;
+		queue[tail++] = start;
+		while (head < tail) {
+			final int symbol = queue[head++];
+			next[symbol] = FrozenFlowchart.NONE;
+			alt[symbol] = FrozenFlowchart.NONE;
+			if (symbol == end) {
+				continue;
+			}
+			final int slots = chart.slots(symbol);
+			if (slots == 0) {
+				throw new IllegalArgumentException(
+						"an end symbol other than the end is reachable: " + chart.symbol(symbol));
+			}
+			for (int slot = 0; slot < slots; slot++) {
+				final int target = chart.target(symbol, slot);
+				if (target == FrozenFlowchart.NONE) {
+					throw new IllegalArgumentException(
+							"symbol has an unconnected target: " + chart.symbol(symbol));
+				}
+				if (slot == 0) {
+					next[symbol] = target;
+				} else {
+					alt[symbol] = target;
+				}
+				if (!reachable[target]) {
+					reachable[target] = true;
+					queue[tail++] = target;
+				}
+			}
+		}
+		checkRep();
+	}
+
+	/**
+	 * Creates a program whose symbols are all reachable.
+	 */
+	Program(final FrozenFlowchart chart, final int[] origin,
+			final int[] next, final int[] alt, final int start, final int end) {
+		this.chart = chart;
+		this.origin = origin;
+		this.start = start;
+		this.end = end;
+		this.reachable = new boolean[origin.length];
+		Arrays.fill(reachable, true);
+		this.next = next;
+		this.alt = alt;
+		checkRep();
+	}
+
+	private void checkRep() {
+		assert reachable.length == origin.length;
+		assert next.length == origin.length && alt.length == origin.length;
+		assert start != FrozenFlowchart.NONE && end != FrozenFlowchart.NONE;
+	}
+
+	/**
+	 * Resolves the jump table of a flowchart.
+	 *
+	 * @param chart Flowchart having a start and an end symbol.
+	 * @return the program of {@code chart}.
+	 * @throws IllegalArgumentException if {@code chart} has no start or no end
+	 *     symbol, or if a symbol reachable from the start other than the end
+	 *     has an unconnected target.
+	 */
+	static Program of(final Flowchart chart) {
+		return new Program(FrozenFlowchart.of(chart));
+	}
+
+	/**
+	 * @return the snapshot this program was resolved from.
+	 */
+	FrozenFlowchart chart() {
+		return chart;
+	}
+
+	/**
+	 * @param symbol the index of a symbol.
+	 * @return the symbol of the flowchart at {@code symbol}.
+	 */
+	Flowchart symbol(final int symbol) {
+		return chart.symbol(origin[symbol]);
+	}
+
+	/**
+	 * @return the number of symbols, reachable or not.
+	 */
+	int size() {
+		return next.length;
+	}
+
+	/**
+	 * @return the index of the start symbol.
+	 */
+	int start() {
+		return start;
+	}
+
+	/**
+	 * @return the index of the end symbol.
+	 */
+	int end() {
+		return end;
+	}
+
+	/**
+	 * @param symbol the index of a symbol.
+	 * @return true iff {@code symbol} is reachable from the start symbol.
+	 */
+	boolean isReachable(final int symbol) {
+		return reachable[symbol];
+	}
+
+	/**
+	 * @param symbol the index of a symbol.
+	 * @return true iff {@code symbol} is a decision.
+	 */
+	boolean isDecision(final int symbol) {
+		return chart.kind(origin[symbol]) == Kind.DECISION;
+	}
+
+	/**
+	 * @param symbol the index of a reachable symbol other than the end.
+	 * @return the index of the target of an activity or of the yes branch of
+	 *     a decision.
+	 */
+	int next(final int symbol) {
+		return next[symbol];
+	}
+
+	/**
+	 * @param symbol the index of a reachable decision.
+	 * @return the index of its no branch.
+	 */
+	int alt(final int symbol) {
+		return alt[symbol];
+	}
+
+	/**
+	 * Returns a successor of a symbol, visiting the targets of every symbol
+	 * the same way whatever its kind.
+	 *
+	 * @param symbol the index of a reachable symbol.
+	 * @param slot any non-negative number.
+	 * @return the target of {@code symbol} in {@code slot}, or
+	 *     {@link FrozenFlowchart#NONE} if {@code symbol} is the end or has no
+	 *     such slot.
+	 */
+	int successor(final int symbol, final int slot) {
+		if (symbol == end) {
+			return FrozenFlowchart.NONE;
+		}
+		switch (slot) {
+		case 0:
+			return next[symbol];
+		case 1:
+			return alt[symbol];
+		default:
+			return FrozenFlowchart.NONE;
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package flowchart;
+
+import java.util.Arrays;
+
+/**
+ * An index answering whether a symbol of a flowchart can reach another.
+ *
+ * <p>The index is built from a snapshot of the flowchart, in time linear in
+ * its size, by condensing its loops into strongly connected components:
+ * two symbols of the same component reach each other, and the components
+ * form an acyclic graph. Then:
+ * <ul>
+ * <li>for charts of at most {@value #CLOSURE_LIMIT} components, the index
+ *     keeps the transitive closure of the components as one bit set per
+ *     component, and every query is a single bit test;
+ * <li>for larger charts, it labels every component with its depth-first
+ *     interval and the smallest interval it can reach. The labels answer
+ *     most queries at once, and the others by a search that only visits
+ *     components whose labels can contain the target.
+ * </ul>
+ * Whether a symbol can reach the end symbol is always a single lookup.
+ *
+ * <p>An index is immutable, so any number of threads can query it. Later
+ * changes to the flowchart are not reflected; build a new index to take
+ * them into account.
+ */
+public final class ReachabilityIndex {
+	static final int CLOSURE_LIMIT = 4096;
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private final FrozenFlowchart chart;
+	private final Components components;
+	private final boolean[] reachesEnd;
+	private final int words;
+	private final long[] closure;
+	private final int[] successorOffsets;
+	private final int[] successors;
+	private final int[] pre;
+	private final int[] post;
+	private final int[] low;
+	private final ThreadLocal<Search> searches;
+
+	// Abstraction Function
+	//	represents the reachability relation of chart: symbol i reaches symbol
+	//	j iff components.of(i) reaches components.of(j) in the graph of
+	//	components, whose successors of component c are
+	//	successors[successorOffsets[c]..successorOffsets[c+1]).
+	//
+	// Representation Invariant
+	//	- reachesEnd[i] iff chart has an end symbol reachable from i.
+	//	- closure is null iff components.count() > CLOSURE_LIMIT; otherwise
+	//	  bit d of closure[c * words..(c + 1) * words) is set iff c reaches d.
+	//	- pre, post, low are null iff closure is not; otherwise pre[c], post[c]
+	//	  number c in a depth-first traversal of the components, and low[c] is
+	//	  the smallest post of a component reachable from c.
+	//
+	// Safety from Exposure
+	//	- all fields are private and final; the arrays are never returned.
+
+	/**
+	 * Scratch space of a search, reused by all the searches of a thread.
+	 */
+	private static final class Search {
+		final int[] marks;
+		final int[] stack;
+		int mark = 0;
+
+		Search(final int size) {
+			this.marks = new int[size];
+			this.stack = new int[size];
+		}
+	}
+
+	private ReachabilityIndex(final FrozenFlowchart chart) {
+		this.chart = chart;
+		this.components = new Components(chart);
+		this.reachesEnd = reachesEnd(chart);
+		final int count = components.count();
+
+		// successors of every component, without duplicates
+		this.successorOffsets = new int[count + 1];
+		final int[] memberOffsets = new int[count + 1];
+		final int[] members = members(chart, components, memberOffsets);
+		final int[] last = new int[count];
+		Arrays.fill(last, NONE);
+		final IntList targets = new IntList();
+		for (int c = 0; c < count; c++) {
+			successorOffsets[c] = targets.size();
+			for (int k = memberOffsets[c]; k < memberOffsets[c + 1]; k++) {
+				final int symbol = members[k];
+				for (int slot = 0; slot < chart.slots(symbol); slot++) {
+					final int target = chart.target(symbol, slot);
+					if (target == NONE) {
+						continue;
+					}
+					final int d = components.of(target);
+					if (d != c && last[d] != c) {
+						last[d] = c;
+						targets.add(d);
+					}
+				}
+			}
+		}
+		successorOffsets[count] = targets.size();
+		this.successors = targets.toArray();
+
+		if (count <= CLOSURE_LIMIT) {
+			this.words = (count + 63) >>> 6;
+			this.closure = transitiveClosure(count);
+			this.pre = null;
+			this.post = null;
+			this.low = null;
+			this.searches = null;
+		} else {
+			this.words = 0;
+			this.closure = null;
+			this.pre = new int[count];
+			this.post = new int[count];
+			this.low = new int[count];
+			label(count);
+			this.searches = ThreadLocal.withInitial(() -> new Search(count));
+		}
+	}
+
+	/**
+	 * Builds the reachability index of a flowchart.
+	 *
+	 * <p>The flowchart is the part of {@code chart} connected to its start or
+	 * end symbol, as {@link Flowchart#freeze()} snapshots it.
+	 *
+	 * @param chart Flowchart to index.
+	 * @return the reachability index of {@code chart} as it is now.
+	 */
+	public static ReachabilityIndex of(final Flowchart chart) {
+		return new ReachabilityIndex(FrozenFlowchart.of(chart));
+	}
+
+	private static boolean[] reachesEnd(final FrozenFlowchart chart) {
+		final boolean[] reaches = new boolean[chart.size()];
+		final int end = chart.endIndex();
+		if (end == NONE) {
+			return reaches;
+		}
+		final int[] queue = new int[chart.size()];
+		int tail = 0;
+		reaches[end] = true;
+		queue[tail++] = end;
+		for (int head = 0; head < tail; head++) {
+			final int symbol = queue[head];
+			for (int k = 0; k < chart.sourceCount(symbol); k++) {
+				final int source = chart.source(symbol, k);
+				if (!reaches[source]) {
+					reaches[source] = true;
+					queue[tail++] = source;
+				}
+			}
+		}
+		return reaches;
+	}
+
+	/**
+	 * @param memberOffsets receives, for every component c, the range
+	 *     [memberOffsets[c]..memberOffsets[c+1]) of its members.
+	 * @return the symbols of {@code chart} ordered by component.
+	 */
+	private static int[] members(
+			final FrozenFlowchart chart,
+			final Components components,
+			final int[] memberOffsets) {
+		final int count = components.count();
+		for (int c = 0; c < count; c++) {
+			memberOffsets[c + 1] = memberOffsets[c] + components.size(c);
+		}
+		final int[] next = Arrays.copyOf(memberOffsets, count);
+		final int[] members = new int[chart.size()];
+		for (int symbol = 0; symbol < chart.size(); symbol++) {
+			members[next[components.of(symbol)]++] = symbol;
+		}
+		return members;
+	}
+
+	/**
+	 * Components are numbered so that successors come first, so every row
+	 * is complete by the time the rows of its predecessors need it.
+	 */
+	private long[] transitiveClosure(final int count) {
+		final long[] rows = new long[count * words];
+		for (int c = 0; c < count; c++) {
+			final int row = c * words;
+			rows[row + (c >>> 6)] |= 1L << c;
+			for (int k = successorOffsets[c]; k < successorOffsets[c + 1]; k++) {
+				final int successor = successors[k] * words;
+				for (int w = 0; w < words; w++) {
+					rows[row + w] |= rows[successor + w];
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Numbers the components in a depth-first traversal, starting from the
+	 * components without predecessors.
+	 */
+	private void label(final int count) {
+		final boolean[] visited = new boolean[count];
+		final int[] stack = new int[count];
+		final int[] next = new int[count];
+		int preorder = 0;
+		int postorder = 0;
+		// components with larger numbers come first in topological order
+		for (int root = count - 1; root >= 0; root--) {
+			if (visited[root]) {
+				continue;
+			}
+			int top = 0;
+			stack[top++] = root;
+			visited[root] = true;
+			pre[root] = preorder++;
+			next[root] = successorOffsets[root];
+			while (top > 0) {
+				final int c = stack[top - 1];
+				if (next[c] < successorOffsets[c + 1]) {
+					final int d = successors[next[c]++];
+					if (!visited[d]) {
+						visited[d] = true;
+						pre[d] = preorder++;
+						next[d] = successorOffsets[d];
+						stack[top++] = d;
+					}
+					continue;
+				}
+				top--;
+				post[c] = postorder++;
+				low[c] = post[c];
+				for (int k = successorOffsets[c]; k < successorOffsets[c + 1]; k++) {
+					low[c] = Math.min(low[c], low[successors[k]]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param from Flowchart representing a symbol.
+	 * @return true iff the flowchart has an end symbol and {@code from} is
+	 *     the end symbol or can reach it.
+	 */
+	public boolean canReachEnd(final Flowchart from) {
+		final int symbol = chart.indexOf(from);
+		return symbol != NONE && reachesEnd[symbol];
+	}
+
+	/**
+	 * @param from Flowchart representing a symbol.
+	 * @param to Flowchart representing a symbol.
+	 * @return true iff {@code from} is {@code to} or there is a path of
+	 *     connections from {@code from} to {@code to}.
+	 */
+	public boolean canReach(final Flowchart from, final Flowchart to) {
+		final int source = chart.indexOf(from);
+		final int target = chart.indexOf(to);
+		if (source == NONE || target == NONE) {
+			return from.equals(to);
+		}
+		final int c = components.of(source);
+		final int d = components.of(target);
+		if (c == d) {
+			return true;
+		}
+		if (d > c) {
+			// d comes before c in topological order
+			return false;
+		}
+		if (closure != null) {
+			return (closure[c * words + (d >>> 6)] & (1L << d)) != 0;
+		}
+		return search(c, d);
+	}
+
+	private boolean contains(final int c, final int d) {
+		return low[c] <= low[d] && post[d] <= post[c];
+	}
+
+	private boolean isDescendant(final int c, final int d) {
+		return pre[c] <= pre[d] && post[d] <= post[c];
+	}
+
+	/**
+	 * @return true iff component c reaches component d, searching only the
+	 *     components whose labels contain the label of d.
+	 */
+	private boolean search(final int c, final int d) {
+		if (!contains(c, d)) {
+			return false;
+		}
+		if (isDescendant(c, d)) {
+			return true;
+		}
+		final Search search = searches.get();
+		if (++search.mark == Integer.MAX_VALUE) {
+			Arrays.fill(search.marks, 0);
+			search.mark = 1;
+		}
+		int top = 0;
+		search.stack[top++] = c;
+		search.marks[c] = search.mark;
+		while (top > 0) {
+			final int current = search.stack[--top];
+			for (int k = successorOffsets[current]; k < successorOffsets[current + 1]; k++) {
+				final int successor = successors[k];
+				if (successor == d || isDescendant(successor, d)) {
+					return true;
+				}
+				if (search.marks[successor] != search.mark && contains(successor, d)) {
+					search.marks[successor] = search.mark;
+					search.stack[top++] = successor;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,182 @@
+package flowchart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Growable memory outside the heap, addressed by long offsets.
+ *
+ * <p>The memory is a sequence of segments of {@code 1 << bits} bytes, each
+ * a direct buffer or a region of a file mapped read-write, so it can grow
+ * past the 2 GB of a single buffer and, backed by a file, past the memory
+ * of the machine. A segment is allocated or mapped the first time an
+ * offset in it is accessed; bytes never written read as zero.
+ *
+ * <p>An int or a long at an offset that is a multiple of its size never
+ * straddles two segments; byte arrays can.
+ */
+final class Segments implements Closeable {
+	private final int bits;
+	private final int mask;
+	private final FileChannel channel;
+	private ByteBuffer[] segments = new ByteBuffer[1];
+
+	// Abstraction Function
+	//	represents the bytes whose byte at offset o is byte (o & mask) of
+	//	segments[o >>> bits], or zero if that segment is null.
+	//
+	// Representation Invariant
+	//	- mask == (1 << bits) - 1.
+	//	- every segment is null or a buffer of capacity 1 << bits, direct if
+	//	  channel is null and mapping region [k << bits, (k + 1) << bits) of
+	//	  channel otherwise.
+	//
+	// Safety from Exposure
+	//	- all fields are private and segments are never returned.
+
+	/**
+	 * Creates memory in direct buffers.
+	 *
+	 * @param bits the log2 of the size of a segment.
+	 */
+	Segments(final int bits) {
+		this(bits, null);
+	}
+
+	/**
+	 * Creates memory backed by a file; the bytes already in it are kept.
+	 *
+	 * @param bits the log2 of the size of a segment.
+	 * @param channel the file, open for reading and writing; closed by
+	 *     {@link #close}.
+	 */
+	Segments(final int bits, final FileChannel channel) {
+		assert bits >= 3 && bits <= 30;
+		this.bits = bits;
+		this.mask = (1 << bits) - 1;
+		this.channel = channel;
+	}
+
+	private ByteBuffer segment(final long offset) {
+		final int k = (int) (offset >>> bits);
+		if (k >= segments.length) {
+			segments = Arrays.copyOf(segments, Math.max(k + 1, segments.length * 2));
+		}
+		ByteBuffer segment = segments[k];
+		if (segment == null) {
+			segment = channel == null ? ByteBuffer.allocateDirect(1 << bits) : map(k);
+			segments[k] = segment;
+		}
+		return segment;
+	}
+
+	private ByteBuffer map(final int k) {
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, (long) k << bits, 1 << bits);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	byte getByte(final long offset) {
+		return segment(offset).get((int) (offset & mask));
+	}
+
+	void putByte(final long offset, final byte value) {
+		segment(offset).put((int) (offset & mask), value);
+	}
+
+	int getInt(final long offset) {
+		return segment(offset).getInt((int) (offset & mask));
+	}
+
+	void putInt(final long offset, final int value) {
+		segment(offset).putInt((int) (offset & mask), value);
+	}
+
+	long getLong(final long offset) {
+		return segment(offset).getLong((int) (offset & mask));
+	}
+
+	void putLong(final long offset, final long value) {
+		segment(offset).putLong((int) (offset & mask), value);
+	}
+
+	/**
+	 * Copies {@code bytes.length} bytes starting at {@code offset} into
+	 * {@code bytes}.
+	 */
+	void get(final long offset, final byte[] bytes) {
+		int done = 0;
+		while (done < bytes.length) {
+			final long at = offset + done;
+			final ByteBuffer segment = segment(at).duplicate();
+			final int position = (int) (at & mask);
+			final int count = Math.min(bytes.length - done, (1 << bits) - position);
+			segment.position(position);
+			segment.get(bytes, done, count);
+			done += count;
+		}
+	}
+
+	/**
+	 * Copies {@code bytes} to the memory starting at {@code offset}.
+	 */
+	void put(final long offset, final byte[] bytes) {
+		int done = 0;
+		while (done < bytes.length) {
+			final long at = offset + done;
+			final ByteBuffer segment = segment(at).duplicate();
+			final int position = (int) (at & mask);
+			final int count = Math.min(bytes.length - done, (1 << bits) - position);
+			segment.position(position);
+			segment.put(bytes, done, count);
+			done += count;
+		}
+	}
+
+	/**
+	 * Sets {@code length} bytes starting at {@code offset} to zero.
+	 *
+	 * @param offset a multiple of 8.
+	 * @param length a multiple of 8.
+	 */
+	void clear(final long offset, final long length) {
+		for (long at = offset; at < offset + length; at += Long.BYTES) {
+			putLong(at, 0L);
+		}
+	}
+
+	/**
+	 * Writes the mapped segments changed so far back to the file; does
+	 * nothing for direct memory.
+	 */
+	void force() {
+		if (channel == null) {
+			return;
+		}
+		for (ByteBuffer segment : segments) {
+			if (segment != null) {
+				((MappedByteBuffer) segment).force();
+			}
+		}
+	}
+
+	/**
+	 * Writes the mapped segments back and closes the file. Direct buffers
+	 * are released when they are garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+		Arrays.fill(segments, null);
+		if (channel != null) {
+			channel.close();
+		}
+	}
+}
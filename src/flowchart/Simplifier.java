@@ -0,0 +1,330 @@
+package flowchart;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Simplifies the jump table of a flowchart so that executions take fewer
+ * steps.
+ *
+ * <ul>
+ * <li>A decision whose branches go to the same symbol, or whose predicate
+ * is known to be constant, is folded away: whatever led to it leads to the
+ * symbol it would go to, and its other branch is dropped if nothing else
+ * reaches it.
+ * <li>Symbols no longer reachable from the start symbol are dropped.
+ * <li>A chain of activities, each the only target of the one before it
+ * and reached from nothing else, is fused into one step running their
+ * actions in order. The start symbol can begin a chain.
+ * </ul>
+ *
+ * <p>The flowchart itself is left as it is; the simplified jump table is
+ * executed by the {@link Interpreter} returned. Folding a decision skips
+ * its predicate, so predicates must have no side effects. {@link #prune}
+ * removes the unreachable symbols from the flowchart itself.
+ */
+public final class Simplifier {
+
+	private Simplifier() {
+	}
+
+	/**
+	 * A simplified program and the symbols each of its steps runs.
+	 */
+	static final class Plan {
+		final Program program;
+		final int[][] steps;
+
+		// Abstraction Function
+		//	represents program, whose step i runs the actions of the symbols
+		//	steps[i] of program.chart() in order.
+		//
+		// Representation Invariant
+		//	- steps.length == program.size(); steps[i][0] is program.symbol(i).
+		//
+		// Safety from Exposure
+		//	- package-private, for the simplifier and its tests.
+
+		Plan(final Program program, final int[][] steps) {
+			this.program = program;
+			this.steps = steps;
+		}
+	}
+
+	/**
+	 * Creates an interpreter for a simplified flowchart.
+	 *
+	 * <p>Executions by the interpreter run the same actions in the same order
+	 * as executions by {@code new Interpreter<>(chart, actions, predicates)}.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision.
+	 * @return an interpreter for {@code chart}.
+	 * @throws IllegalArgumentException as {@link Interpreter} does.
+	 */
+	public static <T> Interpreter<T> simplify(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates) {
+		return simplify(chart, actions, predicates, Collections.<Flowchart, Boolean>emptyMap());
+	}
+
+	/**
+	 * Creates an interpreter for a simplified flowchart, some of whose
+	 * decisions always answer the same.
+	 *
+	 * <p>Executions by the interpreter run the same actions in the same order
+	 * as executions by {@code new Interpreter<>(chart, actions, predicates)},
+	 * as long as the predicate of every decision in {@code constants} would
+	 * answer its value there.
+	 *
+	 * @param chart Flowchart to execute.
+	 * @param actions the action of each activity; activities without an
+	 *     action do nothing.
+	 * @param predicates the predicate of each decision; constant decisions
+	 *     need none.
+	 * @param constants the answer of each constant decision.
+	 * @return an interpreter for {@code chart}.
+	 * @throws IllegalArgumentException as {@link Interpreter} does.
+	 */
+	public static <T> Interpreter<T> simplify(
+			final Flowchart chart,
+			final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+			final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+			final Map<? extends Flowchart, Boolean> constants) {
+		final Plan plan = plan(Program.of(chart), constants);
+		final FrozenFlowchart frozen = plan.program.chart();
+		final Map<Flowchart, Consumer<? super T>> fused = new HashMap<>(actions);
+		final Subchart.Actions<T> resolved = new Subchart.Actions<>(actions, predicates, null);
+		for (int[] step : plan.steps) {
+			if (step.length < 2) {
+				continue;
+			}
+			@SuppressWarnings("unchecked")
+			final Consumer<? super T>[] run = (Consumer<? super T>[]) new Consumer<?>[step.length];
+			int count = 0;
+			for (int symbol : step) {
+				final Consumer<? super T> action = resolved.get(frozen.symbol(symbol));
+				if (action != null) {
+					run[count++] = action;
+				}
+			}
+			final Consumer<? super T>[] steps = Arrays.copyOf(run, count);
+			fused.put(frozen.symbol(step[0]), context -> {
+				for (Consumer<? super T> action : steps) {
+					action.accept(context);
+				}
+			});
+		}
+		return new Interpreter<>(plan.program, fused, predicates);
+	}
+
+	/**
+	 * Removes the symbols of a flowchart that cannot be reached from its
+	 * start symbol.
+	 *
+	 * <p>The symbols looked at are those connected to the start or the end
+	 * symbol, following connections either way, as {@link Flowchart#freeze}
+	 * does; a symbol connected to neither is not found. The end symbol is
+	 * kept even if it cannot be reached, so the flowchart keeps its end. The
+	 * symbols are removed by one call to {@link Flowchart#removeSymbols}.
+	 *
+	 * @param chart Flowchart to prune.
+	 * @return the Flowchart made from removing the unreachable symbols, or
+	 *     {@code chart} if there were none.
+	 * @throws NoSuchElementException if {@code chart} has no start symbol.
+	 * @throws UnsupportedOperationException if {@code chart} has unreachable
+	 *     symbols and can't remove symbols.
+	 */
+	public static Flowchart prune(final Flowchart chart) {
+		final Flowchart start = chart.getStart();
+		final Set<Flowchart> reachable = new HashSet<>();
+		final Deque<Flowchart> queue = new ArrayDeque<>();
+		reachable.add(start);
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			chart.forEachTarget(queue.poll(), (target, slot) -> {
+				if (reachable.add(target)) {
+					queue.add(target);
+				}
+			});
+		}
+
+		final Flowchart end = endOf(chart);
+		final Set<Flowchart> connected = new HashSet<>(reachable);
+		final List<Flowchart> unreachable = new ArrayList<>();
+		if (end != null && connected.add(end)) {
+			queue.add(end);
+		}
+		for (Flowchart symbol : reachable) {
+			queue.add(symbol);
+		}
+		while (!queue.isEmpty()) {
+			final Flowchart symbol = queue.poll();
+			final Consumer<Flowchart> visit = other -> {
+				if (connected.add(other)) {
+					queue.add(other);
+					if (!other.equals(end)) {
+						unreachable.add(other);
+					}
+				}
+			};
+			chart.forEachTarget(symbol, (target, slot) -> visit.accept(target));
+			chart.forEachSource(symbol, visit);
+		}
+		if (unreachable.isEmpty()) {
+			return chart;
+		}
+		final Flowchart pruned = chart.removeSymbols(unreachable);
+		return pruned == null ? chart : pruned;
+	}
+
+	/**
+	 * @return the end symbol of {@code chart}, or null if it has none.
+	 */
+	private static Flowchart endOf(final Flowchart chart) {
+		try {
+			return chart.getEnd();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param program a program numbered like its chart.
+	 * @return the simplified plan of {@code program}.
+	 */
+	static Plan plan(final Program program, final Map<? extends Flowchart, Boolean> constants) {
+		final int n = program.size();
+		final int end = program.end();
+		// the symbol each symbol leads to, through folded decisions
+		final int[] forward = new int[n];
+		for (int i = 0; i < n; i++) {
+			forward[i] = i;
+			if (!program.isReachable(i) || !program.isDecision(i)) {
+				continue;
+			}
+			final Boolean constant = constants.get(program.symbol(i));
+			if (constant != null) {
+				forward[i] = constant ? program.next(i) : program.alt(i);
+			} else if (program.next(i) == program.alt(i)) {
+				forward[i] = program.next(i);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			resolve(forward, i);
+		}
+
+		// successors after folding, and how many reachable symbols lead to each
+		final int[] next = new int[n];
+		final int[] alt = new int[n];
+		final int[] sources = new int[n];
+		final boolean[] reached = new boolean[n];
+		final int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		final int start = forward[program.start()];
+		reached[start] = true;
+		queue[tail++] = start;
+		while (head < tail) {
+			final int symbol = queue[head++];
+			next[symbol] = FrozenFlowchart.NONE;
+			alt[symbol] = FrozenFlowchart.NONE;
+			if (symbol == end) {
+				continue;
+			}
+			for (int slot = 0; slot < (program.isDecision(symbol) ? 2 : 1); slot++) {
+				final int target = forward[program.successor(symbol, slot)];
+				if (slot == 0) {
+					next[symbol] = target;
+				} else {
+					alt[symbol] = target;
+				}
+				sources[target]++;
+				if (!reached[target]) {
+					reached[target] = true;
+					queue[tail++] = target;
+				}
+			}
+		}
+
+		// fuse chains, numbering the steps in breadth-first order
+		final int[] position = new int[n];
+		Arrays.fill(position, FrozenFlowchart.NONE);
+		final int[] last = new int[n];
+		final boolean[] fused = new boolean[n];
+		final IntList chain = new IntList();
+		final int[][] steps = new int[tail][];
+		int size = 0;
+		for (int k = 0; k < tail; k++) {
+			final int symbol = queue[k];
+			if (fused[symbol]) {
+				continue;
+			}
+			chain.clear();
+			chain.add(symbol);
+			int current = symbol;
+			while (current != end && !program.isDecision(current)) {
+				final int target = next[current];
+				if (target == end || program.isDecision(target) || sources[target] != 1
+						|| target == symbol || position[target] != FrozenFlowchart.NONE) {
+					break;
+				}
+				fused[target] = true;
+				chain.add(target);
+				current = target;
+			}
+			position[symbol] = size;
+			last[size] = current;
+			steps[size++] = chain.toArray();
+		}
+		final int[] origin = new int[size];
+		final int[] laidNext = new int[size];
+		final int[] laidAlt = new int[size];
+		for (int i = 0; i < size; i++) {
+			origin[i] = steps[i][0];
+			final int tailSymbol = last[i];
+			laidNext[i] = next[tailSymbol] == FrozenFlowchart.NONE ? FrozenFlowchart.NONE : position[next[tailSymbol]];
+			laidAlt[i] = alt[tailSymbol] == FrozenFlowchart.NONE ? FrozenFlowchart.NONE : position[alt[tailSymbol]];
+		}
+		return new Plan(new Program(program.chart(), origin, laidNext, laidAlt, position[start], position[end]),
+				Arrays.copyOf(steps, size));
+	}
+
+	/**
+	 * Points {@code forward[symbol]} at the first symbol that is not folded,
+	 * unfolding a decision if folded decisions lead around in a loop.
+	 */
+	private static int resolve(final int[] forward, final int symbol) {
+		int current = symbol;
+		int steps = 0;
+		while (forward[current] != current) {
+			if (++steps > forward.length) {
+				// folded decisions in a loop: keep this one
+				forward[current] = current;
+				break;
+			}
+			current = forward[current];
+		}
+		int path = symbol;
+		while (forward[path] != path) {
+			final int following = forward[path];
+			forward[path] = current;
+			path = following;
+		}
+		return current;
+	}
+}
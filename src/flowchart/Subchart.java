@@ -0,0 +1,130 @@
+package flowchart;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * An activity that stands for a whole flowchart.
+ *
+ * <p>A subchart is connected like any activity, and traversals, snapshots
+ * and analyses of its flowchart see it as one. Executions enter it at the
+ * start symbol of the flowchart it references and leave it at the end
+ * symbol, then carry on to its target. Any number of subcharts, in any
+ * number of flowcharts, can reference the same flowchart: it is never
+ * copied into them.
+ */
+class Subchart extends Activity {
+	private final Flowchart chart;
+
+	// Abstraction Function
+	//	represents an activity whose execution is an execution of chart.
+	//
+	// Representation Invariant
+	//	- chart is not null.
+	//
+	// Safety from Exposure
+	//	- chart is final; it is shared on purpose, and never changed here.
+
+	Subchart(final String label, final int id, final SymbolTable table, final Flowchart chart) {
+		super(label, id, table);
+		this.chart = chart;
+	}
+
+	/**
+	 * @return the flowchart this subchart stands for.
+	 */
+	final Flowchart chart() {
+		return chart;
+	}
+
+	/**
+	 * The actions of the activities of one interpreter, in which every
+	 * subchart without an action of its own executes its flowchart.
+	 *
+	 * <p>The flowchart of a subchart is resolved the first time an execution
+	 * reaches the subchart, once for all the subcharts referencing it, so a
+	 * flowchart no execution enters is never resolved. Errors in it surface
+	 * then, as the {@link IllegalArgumentException} an {@link Interpreter}
+	 * would throw.
+	 *
+	 * @param <T> the type of the context of an execution.
+	 */
+	static final class Actions<T> {
+		private final Map<? extends Flowchart, ? extends Consumer<? super T>> actions;
+		private final Function<Flowchart, Consumer<T>> expand;
+		private final Map<Flowchart, Consumer<T>> expansions = new HashMap<>();
+
+		// Abstraction Function
+		//	represents the action of symbol s: actions.get(s) if any; for a
+		//	subchart without one, expansions.get(s.chart()), made by expand.
+		//
+		// Safety from Exposure
+		//	- all fields are private and final; expansions is never returned.
+
+		/**
+		 * @param actions the action of each activity.
+		 * @param predicates the predicate of each decision; the flowcharts of
+		 *     the subcharts are executed with {@code actions} and
+		 *     {@code predicates} too.
+		 * @param instrumentation where the executions of the flowcharts of the
+		 *     subcharts record their branches and latencies, or null.
+		 */
+		Actions(final Map<? extends Flowchart, ? extends Consumer<? super T>> actions,
+				final Map<? extends Flowchart, ? extends Predicate<? super T>> predicates,
+				final Instrumentation instrumentation) {
+			this.actions = actions;
+			this.expand = chart -> new Expansion<>(() -> new Interpreter<T>(
+					chart, actions, predicates, instrumentation));
+		}
+
+		/**
+		 * @return the action of {@code symbol}, or null if it has none.
+		 */
+		Consumer<? super T> get(final Flowchart symbol) {
+			final Consumer<? super T> action = actions.get(symbol);
+			if (action != null || !(symbol instanceof Subchart)) {
+				return action;
+			}
+			return expansions.computeIfAbsent(((Subchart) symbol).chart, expand);
+		}
+	}
+
+	/**
+	 * Executes a flowchart by an interpreter created the first time it is
+	 * needed.
+	 */
+	private static final class Expansion<T> implements Consumer<T> {
+		private final Supplier<Interpreter<T>> resolve;
+		private volatile Interpreter<T> interpreter = null;
+
+		// Abstraction Function
+		//	represents running the interpreter made by resolve.
+		//
+		// Thread safety
+		//	- interpreter is made at most once, under the lock on this, and
+		//	  published through the volatile field.
+
+		Expansion(final Supplier<Interpreter<T>> resolve) {
+			this.resolve = resolve;
+		}
+
+		@Override
+		public void accept(final T context) {
+			Interpreter<T> interpreter = this.interpreter;
+			if (interpreter == null) {
+				synchronized (this) {
+					interpreter = this.interpreter;
+					if (interpreter == null) {
+						interpreter = resolve.get();
+						this.interpreter = interpreter;
+					}
+				}
+			}
+			interpreter.run(context);
+		}
+	}
+}
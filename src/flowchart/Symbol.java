@@ -0,0 +1,485 @@
+package flowchart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A single symbol of a flowchart.
+ *
+ * <p>A symbol is identified by its label within the {@link SymbolTable}
+ * that created it and carries a dense id unique to that table. Symbols
+ * of the same table form one flowchart: every {@link Flowchart} method
+ * called on a symbol operates on the flowchart of its table, and rejects
+ * symbols from other tables.
+ *
+ * <p>Symbols are interned, so two symbols are equal iff they are the same
+ * object.
+ *
+ * <p>The connections of a table's symbols are the indexed edge records of
+ * its {@link Edges}, so disconnecting a slot takes constant time and
+ * removing a symbol takes time proportional to its degree. A removed
+ * symbol is no longer a symbol of its flowchart: methods given it throw
+ * {@link IllegalArgumentException}.
+ */
+abstract class Symbol implements Flowchart {
+	private static final int NONE = Edges.NONE;
+
+	private final String label;
+	private final int id;
+	private final SymbolTable table;
+	private final int[] out;
+	private int in = NONE;
+	private boolean removed = false;
+
+	// Abstraction Function
+	//	represents the symbol labelled label in the flowchart of table, whose
+	//	target in slot k is the target of edge record out[k] of table.edges()
+	//	(none if NONE), and whose sources are the sources of the records
+	//	linked from in; or no symbol at all once removed.
+	//
+	// Representation Invariant
+	//	- label is a non-empty string containing at least one non-whitespace character
+	//	  that identifies this symbol within table unless removed.
+	//	- table.symbol(id) == this.
+	//	- out.length == kind().slots().
+	//	- a removed symbol has no edges.
+	//
+	// Safety from Exposure
+	//	- all fields are private; label, id and table are final and
+	//	  immutable, and out is never returned.
+
+	Symbol(final String label, final int id, final SymbolTable table, final int slots) {
+		this.label = label;
+		this.id = id;
+		this.table = table;
+		this.out = new int[slots];
+		Arrays.fill(out, NONE);
+	}
+
+	/**
+	 * @return the label that identifies this symbol.
+	 */
+	final String label() {
+		return label;
+	}
+
+	/**
+	 * @return the id of this symbol, unique within its table.
+	 */
+	final int id() {
+		return id;
+	}
+
+	/**
+	 * @return the table this symbol belongs to.
+	 */
+	final SymbolTable table() {
+		return table;
+	}
+
+	/**
+	 * @return the kind of this symbol.
+	 */
+	abstract Kind kind();
+
+	/**
+	 * @return true iff this symbol has been removed from its flowchart.
+	 */
+	final boolean isRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @param slot a target slot of this symbol, in {@code [0, kind().slots())}.
+	 * @return the edge record of {@code slot}, or NONE if not connected.
+	 */
+	final int out(final int slot) {
+		return out[slot];
+	}
+
+	/**
+	 * @param slot a target slot of this symbol, in {@code [0, kind().slots())}.
+	 * @param edge the new edge record of {@code slot}, or NONE.
+	 */
+	final void out(final int slot, final int edge) {
+		out[slot] = edge;
+	}
+
+	/**
+	 * @return the first edge record into this symbol, or NONE if it has no
+	 *     sources.
+	 */
+	final int in() {
+		return in;
+	}
+
+	/**
+	 * @param edge the new first edge record into this symbol, or NONE.
+	 */
+	final void in(final int edge) {
+		in = edge;
+	}
+
+	/**
+	 * @param slot a target slot of this symbol, in {@code [0, kind().slots())}.
+	 * @return the target in {@code slot}, or {@code null} if not connected.
+	 */
+	final Symbol target(final int slot) {
+		final int edge = out[slot];
+		return edge == NONE ? null : table.edges().target(edge);
+	}
+
+	/**
+	 * Performs an action for every source of this symbol, once each.
+	 */
+	final void forEachSource(final Consumer<? super Symbol> action) {
+		final Edges edges = table.edges();
+		for (int edge = in; edge != NONE; edge = edges.next(edge)) {
+			final Symbol source = edges.source(edge);
+			// a decision whose branches both go here is linked twice
+			if (edges.slot(edge) == 0 || source.target(0) != this) {
+				action.accept(source);
+			}
+		}
+	}
+
+	/**
+	 * @return true iff this symbol has no sources.
+	 */
+	final boolean hasNoSources() {
+		return in == NONE;
+	}
+
+	@Override
+	public final int hashCode() {
+		return id;
+	}
+
+	@Override
+	public final boolean equals(final Object that) {
+		return this == that;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+
+	/**
+	 * Returns {@code symbol} as a symbol of this flowchart.
+	 *
+	 * @throws IllegalArgumentException if {@code symbol} is not a symbol
+	 *     of this flowchart.
+	 */
+	private Symbol member(final Flowchart symbol) {
+		if (!(symbol instanceof Symbol) || ((Symbol) symbol).table != table
+				|| ((Symbol) symbol).removed) {
+			throw new IllegalArgumentException("not a symbol of this flowchart: " + symbol);
+		}
+		return (Symbol) symbol;
+	}
+
+	/**
+	 * @return true iff {@code target} can be connected to a target slot of
+	 *     {@code source}.
+	 */
+	private boolean canConnect(final Symbol source, final Symbol target) {
+		return target != source
+				&& target.kind() != Kind.START
+				&& target != table.start()
+				&& source != table.end();
+	}
+
+	/**
+	 * Connects a target slot of {@code source} to {@code target}, replacing
+	 * the edge of the slot if it was connected.
+	 */
+	private static void connect(final Symbol source, final int slot, final Symbol target) {
+		final Edges edges = source.table.edges();
+		final int edge = source.out[slot];
+		if (edge != NONE) {
+			if (edges.target(edge) == target) {
+				return;
+			}
+			edges.remove(edge);
+		}
+		edges.add(source, slot, target);
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		final Symbol symbol = member(start);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("start must be an activity: " + start);
+		}
+		if (!symbol.hasNoSources()) {
+			throw new IllegalArgumentException("start must have no sources: " + start);
+		}
+		synchronized (table) {
+			final Symbol current = table.start();
+			if (current != null && !reset) {
+				return current;
+			}
+			table.start(symbol);
+			return symbol;
+		}
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		return setStart(start, false);
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		final Symbol symbol = member(end);
+		if (symbol.kind() != Kind.END && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("end must be an activity: " + end);
+		}
+		if (symbol.kind() == Kind.ACTIVITY && symbol.target(0) != null) {
+			throw new IllegalArgumentException("end must have no targets: " + end);
+		}
+		synchronized (table) {
+			final Symbol current = table.end();
+			if (current != null && !reset) {
+				return current;
+			}
+			table.end(symbol);
+			return symbol;
+		}
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		return setEnd(end, false);
+	}
+
+	@Override
+	public Flowchart getStart() {
+		final Symbol start = table.start();
+		if (start == null) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return start;
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		final Symbol end = table.end();
+		if (end == null) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return end;
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		final Symbol symbol = member(source);
+		switch (symbol.kind()) {
+		case START:
+		case ACTIVITY:
+			return Collections.<Flowchart>singletonList(symbol.target(0));
+		case DECISION:
+			return Collections.unmodifiableList(
+					Arrays.<Flowchart>asList(symbol.target(0), symbol.target(1)));
+		default:
+			return Collections.emptyList();
+		}
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		final List<Flowchart> sources = new ArrayList<>();
+		member(target).forEachSource(sources::add);
+		return Collections.unmodifiableList(sources);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		final Symbol symbol = member(source);
+		for (int slot = 0; slot < symbol.kind().slots(); slot++) {
+			final Symbol target = symbol.target(slot);
+			if (target != null) {
+				action.accept(target, slot);
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		member(target).forEachSource(action);
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = member(target);
+		if (!canConnect(from, to)) {
+			return null;
+		}
+		connect(from, 0, to);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		final Symbol from = activity(source);
+		final Symbol to = member(target);
+		if (!canConnect(from, to)) {
+			return null;
+		}
+		final Symbol current = from.target(0);
+		if (current != null) {
+			return current == to ? this : null;
+		}
+		connect(from, 0, to);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		final Symbol from = decision(source);
+		final Symbol yes = member(yesBranch);
+		final Symbol no = member(noBranch);
+		if (!canConnect(from, yes) || !canConnect(from, no)) {
+			return null;
+		}
+		connect(from, 0, yes);
+		connect(from, 1, no);
+		return this;
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 0, member(yesBranch), reset);
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		return connectBranch(decision(source), 1, member(noBranch), reset);
+	}
+
+	private Flowchart connectBranch(
+			final Symbol source,
+			final int slot,
+			final Symbol branch,
+			final boolean reset) {
+		if (!canConnect(source, branch)) {
+			return null;
+		}
+		if (source.target(slot) == null || reset) {
+			connect(source, slot, branch);
+		}
+		return this;
+	}
+
+	@Override
+	public Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		final Symbol from = member(source);
+		final Symbol to = member(target);
+		final Edges edges = table.edges();
+		boolean disconnected = false;
+		for (int slot = 0; slot < from.out.length; slot++) {
+			final int edge = from.out[slot];
+			if (edge != NONE && edges.target(edge) == to) {
+				edges.remove(edge);
+				disconnected = true;
+			}
+		}
+		return disconnected ? this : null;
+	}
+
+	@Override
+	public Flowchart removeSymbol(final Flowchart symbol) {
+		if (isRemoved(symbol)) {
+			return null;
+		}
+		remove(member(symbol));
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The edge records freed are compacted once, after every symbol has
+	 * been removed.
+	 */
+	@Override
+	public Flowchart removeSymbols(final Collection<? extends Flowchart> symbols) {
+		final List<Symbol> members = new ArrayList<>(symbols.size());
+		for (Flowchart symbol : symbols) {
+			if (!isRemoved(symbol)) {
+				members.add(member(symbol));
+			}
+		}
+		final Edges edges = table.edges();
+		edges.beginBulk();
+		try {
+			boolean removed = false;
+			for (Symbol member : members) {
+				if (!member.removed) {
+					remove(member);
+					removed = true;
+				}
+			}
+			return removed ? this : null;
+		} finally {
+			edges.endBulk();
+		}
+	}
+
+	private boolean isRemoved(final Flowchart symbol) {
+		return symbol instanceof Symbol
+				&& ((Symbol) symbol).table == table
+				&& ((Symbol) symbol).removed;
+	}
+
+	/**
+	 * Removes the edges of {@code symbol}, then the symbol itself from its
+	 * table.
+	 */
+	private static void remove(final Symbol symbol) {
+		final Edges edges = symbol.table.edges();
+		for (int slot = 0; slot < symbol.out.length; slot++) {
+			if (symbol.out[slot] != NONE) {
+				edges.remove(symbol.out[slot]);
+			}
+		}
+		while (symbol.in != NONE) {
+			edges.remove(symbol.in);
+		}
+		symbol.table.remove(symbol);
+		symbol.removed = true;
+	}
+
+	private Symbol activity(final Flowchart source) {
+		final Symbol symbol = member(source);
+		if (symbol.kind() != Kind.START && symbol.kind() != Kind.ACTIVITY) {
+			throw new IllegalArgumentException("source must be an activity: " + source);
+		}
+		return symbol;
+	}
+
+	private Symbol decision(final Flowchart source) {
+		final Symbol symbol = member(source);
+		if (symbol.kind() != Kind.DECISION) {
+			throw new IllegalArgumentException("source must be a decision: " + source);
+		}
+		return symbol;
+	}
+}
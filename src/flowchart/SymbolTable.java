@@ -0,0 +1,289 @@
+package flowchart;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The symbols of a flowchart, interned by label.
+ *
+ * <p>Every symbol of a table has a unique label and a dense id: ids are
+ * handed out from zero in order of creation, so structures indexed by
+ * symbol can be flat arrays instead of hash maps. Looking a symbol up by
+ * its label takes constant time and allocates nothing.
+ *
+ * <p>A table also records the start and end symbols of the flowchart its
+ * symbols belong to, and holds the {@link Edges} connecting them.
+ *
+ * <p>A removed symbol keeps its id, which is never handed out again, but
+ * its label is free to identify a new symbol.
+ *
+ * <p>A table is the scope of the labels of its symbols, and keeps them
+ * alive as long as it is reachable. The static {@link Flowchart#instantiate}
+ * methods intern into one table shared by the whole process, which is
+ * never released; a table made with {@link #SymbolTable()} is owned by the
+ * caller, its labels don't collide with those of any other table, and its
+ * symbols are garbage collected together with it.
+ */
+public final class SymbolTable {
+	private static final SymbolTable SHARED = new SymbolTable();
+
+	private final ConcurrentHashMap<String, Symbol> byLabel = new ConcurrentHashMap<>();
+	private volatile Symbol[] byId = new Symbol[16];
+	private volatile int size = 0;
+	private Symbol start = null;
+	private Symbol end = null;
+	private final Edges edges = new Edges();
+
+	// Abstraction Function
+	//	represents the symbols byId[0..size) of a flowchart whose start
+	//	symbol is start (none if null) and whose end symbol is end (none if null).
+	//
+	// Representation Invariant
+	//	- byId[i].id() == i and byId[i].table() == this for 0 <= i < size.
+	//	- byLabel maps byId[i].label() to byId[i] for 0 <= i < size unless
+	//	  byId[i] is removed, and nothing else.
+	//	- start is null or a start or activity symbol of this table, not removed.
+	//	- end is null or an end or activity symbol of this table, not removed.
+	//
+	// Safety from Exposure
+	//	- all fields are private; byId is never returned, and edges is only
+	//	  handed to the symbols of this table.
+	//
+	// Thread safety
+	//	- lookups read byLabel without locking; symbols are created while
+	//	  holding the lock on this table, and published through byLabel
+	//	  after byId and size.
+
+	/**
+	 * Makes an empty table, owned by the caller.
+	 */
+	public SymbolTable() {
+		// no symbols, no start and no end yet
+	}
+
+	/**
+	 * @return the process-wide table used by {@link Flowchart#instantiate(String)}.
+	 */
+	static SymbolTable shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the symbol of this table labelled {@code label}, creating it
+	 * as an activity symbol if it doesn't exist.
+	 *
+	 * <p>Like {@link Flowchart#instantiate(String)}, but for this table:
+	 * every call with the same label returns the same symbol, whatever its
+	 * kind, and the symbols of other tables are never returned.
+	 *
+	 * @param label String that identifies the symbol.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or blank.
+	 */
+	public Flowchart instantiate(final String label) {
+		return intern(label, Kind.ACTIVITY);
+	}
+
+	/**
+	 * Returns the symbol of this table labelled {@code label}, creating it
+	 * as a start symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateStart(final String label) {
+		return intern(label, Kind.START);
+	}
+
+	/**
+	 * Returns the symbol of this table labelled {@code label}, creating it
+	 * as a decision symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateDecision(final String label) {
+		return intern(label, Kind.DECISION);
+	}
+
+	/**
+	 * Returns the symbol of this table labelled {@code label}, creating it
+	 * as an end symbol if it doesn't exist.
+	 *
+	 * @see #instantiate(String)
+	 */
+	public Flowchart instantiateEnd(final String label) {
+		return intern(label, Kind.END);
+	}
+
+	/**
+	 * Returns the symbol of this table labelled {@code label}, creating it
+	 * as a subchart of {@code chart} if it doesn't exist.
+	 *
+	 * @see Flowchart#instantiateSubchart(String, Flowchart)
+	 */
+	public Flowchart instantiateSubchart(final String label, final Flowchart chart) {
+		return subchart(label, chart);
+	}
+
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as a symbol
+	 * of kind {@code kind} if it doesn't exist.
+	 *
+	 * <p>A symbol is never re-created: if {@code label} already identifies
+	 * a symbol, that symbol is returned whatever its kind.
+	 *
+	 * @param label String that identifies the symbol.
+	 * @param kind the kind of the symbol to create.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or contains
+	 *     no non-whitespace character.
+	 */
+	Symbol intern(final String label, final Kind kind) {
+		return intern(label, kind, null);
+	}
+
+	/**
+	 * Returns the symbol labelled {@code label}, creating it as a
+	 * {@link Subchart} of {@code chart} if it doesn't exist.
+	 *
+	 * <p>As for {@link #intern}, if {@code label} already identifies a
+	 * symbol, that symbol is returned whatever it is.
+	 *
+	 * @param label String that identifies the symbol.
+	 * @param chart the flowchart the subchart stands for.
+	 * @return the symbol labelled {@code label}.
+	 * @throws IllegalArgumentException if {@code label} is null or contains
+	 *     no non-whitespace character, or if {@code chart} is null.
+	 */
+	Symbol subchart(final String label, final Flowchart chart) {
+		if (chart == null) {
+			throw new IllegalArgumentException("a subchart needs a flowchart");
+		}
+		return intern(label, Kind.ACTIVITY, chart);
+	}
+
+	private Symbol intern(final String label, final Kind kind, final Flowchart chart) {
+		final Symbol symbol = label == null ? null : byLabel.get(label);
+		if (symbol != null) {
+			return symbol;
+		}
+		checkLabel(label);
+		synchronized (this) {
+			final Symbol existing = byLabel.get(label);
+			if (existing != null) {
+				return existing;
+			}
+			final Symbol created = chart == null
+					? create(label, kind, size)
+					: new Subchart(label, size, this, chart);
+			Symbol[] symbols = byId;
+			if (size == symbols.length) {
+				symbols = Arrays.copyOf(symbols, size * 2);
+			}
+			symbols[size] = created;
+			byId = symbols;
+			size = size + 1;
+			byLabel.put(label, created);
+			return created;
+		}
+	}
+
+	private Symbol create(final String label, final Kind kind, final int id) {
+		switch (kind) {
+		case START:
+			return new Start(label, id, this);
+		case ACTIVITY:
+			return new Activity(label, id, this);
+		case DECISION:
+			return new Decision(label, id, this);
+		case END:
+			return new End(label, id, this);
+		default:
+			throw new AssertionError(kind);
+		}
+	}
+
+	private static void checkLabel(final String label) {
+		if (label == null || label.trim().isEmpty()) {
+			throw new IllegalArgumentException("label must contain a non-whitespace character");
+		}
+	}
+
+	/**
+	 * @param label String that identifies a symbol.
+	 * @return the symbol labelled {@code label}, or {@code null} if none exists.
+	 */
+	Symbol lookup(final String label) {
+		return byLabel.get(label);
+	}
+
+	/**
+	 * @param id the id of a symbol of this table.
+	 * @return the symbol having {@code id}.
+	 * @throws NoSuchElementException if no symbol has {@code id}.
+	 */
+	Symbol symbol(final int id) {
+		if (id < 0 || id >= size) {
+			throw new NoSuchElementException("no symbol with id " + id);
+		}
+		return byId[id];
+	}
+
+	/**
+	 * @return the number of symbols in this table; every id is less than it.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the edges connecting the symbols of this table.
+	 */
+	Edges edges() {
+		return edges;
+	}
+
+	/**
+	 * Stops {@code symbol} from being looked up by its label, and from being
+	 * the start or end symbol.
+	 *
+	 * @param symbol a symbol of this table.
+	 */
+	synchronized void remove(final Symbol symbol) {
+		byLabel.remove(symbol.label(), symbol);
+		if (start == symbol) {
+			start = null;
+		}
+		if (end == symbol) {
+			end = null;
+		}
+	}
+
+	/**
+	 * @return the start symbol, or {@code null} if none has been set.
+	 */
+	synchronized Symbol start() {
+		return start;
+	}
+
+	/**
+	 * @param start the new start symbol, or {@code null}.
+	 */
+	synchronized void start(final Symbol start) {
+		this.start = start;
+	}
+
+	/**
+	 * @return the end symbol, or {@code null} if none has been set.
+	 */
+	synchronized Symbol end() {
+		return end;
+	}
+
+	/**
+	 * @param end the new end symbol, or {@code null}.
+	 */
+	synchronized void end(final Symbol end) {
+		this.end = end;
+	}
+}
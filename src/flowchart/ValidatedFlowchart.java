@@ -0,0 +1,543 @@
+package flowchart;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A flowchart that keeps track of whether it is valid as it changes.
+ *
+ * <p>A flowchart is valid if it has a start and an end symbol and every
+ * symbol in it is dangling-free: reachable from the start, able to reach
+ * the end, and, unless it is the end, connected in all of its target slots.
+ * Every change goes through to the wrapped flowchart and then updates
+ * reachability from the start and to the end incrementally:
+ * <ul>
+ * <li>a new connection only visits the symbols that become reachable;
+ * <li>a removed connection only visits the symbols that were reachable
+ *     through it, and re-derives those still reachable some other way;
+ * <li>only moving the start or the end, or removing symbols, recomputes
+ *     reachability from scratch, once per call to {@link #removeSymbols}.
+ * </ul>
+ * so {@link #isValid()} and {@link #getDanglingSymbols()} answer without
+ * scanning the flowchart.
+ *
+ * <p>All the symbols of a validated flowchart must come from the same
+ * table. Changes made to the wrapped flowchart other than through this one
+ * are not seen.
+ */
+public final class ValidatedFlowchart implements Flowchart {
+	private static final int NONE = FrozenFlowchart.NONE;
+
+	private Flowchart chart;
+	private SymbolTable table = null;
+	private Symbol start = null;
+	private Symbol end = null;
+	private int[] yes = new int[0];
+	private int[] no = new int[0];
+	private int[] degree = new int[0];
+	private boolean[] known = new boolean[0];
+	private boolean[] reached = new boolean[0];
+	private boolean[] reaching = new boolean[0];
+	private final Set<Symbol> dangling = new LinkedHashSet<>();
+	private final IntList queue = new IntList();
+	private final IntList region = new IntList();
+	private final Consumer<Flowchart> markReaching = source -> {
+		final int id = ((Symbol) source).id();
+		if (!reaching[id]) {
+			reaching[id] = true;
+			queue.add(id);
+		}
+	};
+
+	// Abstraction Function
+	//	represents chart, in which the symbols mentioned so far are the symbols
+	//	of table whose id i has known[i], with target slots yes[i] and no[i].
+	//
+	// Representation Invariant
+	//	- yes, no, degree, known, reached, reaching have the same length,
+	//	  greater than the id of every known symbol.
+	//	- yes[i], no[i] mirror the target slots of symbol i in chart (NONE if
+	//	  unconnected or inexistent); degree[i] is the number of slots holding i.
+	//	- reached[i] iff start is not null and i is reachable from start.
+	//	- reaching[i] iff end is not null and end is reachable from i.
+	//	- dangling holds exactly the known symbols that are connected or are
+	//	  the start or end, and that are not reached, not reaching, or not the
+	//	  end and have an unconnected slot.
+	//
+	// Safety from Exposure
+	//	- all fields are private; getDanglingSymbols returns a copy.
+
+	/**
+	 * Wraps a flowchart, computing its validity from scratch once.
+	 *
+	 * @param chart Flowchart to keep track of; later changes must be made
+	 *     through the returned flowchart.
+	 */
+	public ValidatedFlowchart(final Flowchart chart) {
+		this.chart = chart;
+		final FrozenFlowchart snapshot = FrozenFlowchart.of(chart);
+		for (int i = 0; i < snapshot.size(); i++) {
+			final int id = id(snapshot.symbol(i));
+			known[id] = true;
+			for (int slot = 0; slot < snapshot.slots(i); slot++) {
+				final int target = snapshot.target(i, slot);
+				setSlot(id, slot, target == NONE ? NONE : id(snapshot.symbol(target)));
+			}
+		}
+		// every symbol of the snapshot passed id(), so they are all symbols
+		this.start = snapshot.startIndex() == NONE ? null : (Symbol) snapshot.symbol(snapshot.startIndex());
+		this.end = snapshot.endIndex() == NONE ? null : (Symbol) snapshot.symbol(snapshot.endIndex());
+		recomputeReached();
+		recomputeReaching();
+	}
+
+	/**
+	 * @return true iff this flowchart has a start and an end symbol and no
+	 *     dangling symbol.
+	 */
+	public boolean isValid() {
+		return start != null && end != null && dangling.isEmpty();
+	}
+
+	/**
+	 * @return the symbols that are unreachable from the start, cannot reach
+	 *     the end, or have an unconnected target; in no particular order.
+	 */
+	public Set<Flowchart> getDanglingSymbols() {
+		return Collections.unmodifiableSet(new LinkedHashSet<Flowchart>(dangling));
+	}
+
+	private int id(final Flowchart flowchart) {
+		if (!(flowchart instanceof Symbol)) {
+			throw new IllegalArgumentException("not a symbol: " + flowchart);
+		}
+		final Symbol symbol = (Symbol) flowchart;
+		if (table == null) {
+			table = symbol.table();
+		} else if (symbol.table() != table) {
+			throw new IllegalArgumentException("not a symbol of this flowchart: " + symbol);
+		}
+		final int id = symbol.id();
+		if (id >= known.length) {
+			final int length = known.length;
+			final int capacity = Math.max(id + 1, length * 2);
+			yes = Arrays.copyOf(yes, capacity);
+			no = Arrays.copyOf(no, capacity);
+			degree = Arrays.copyOf(degree, capacity);
+			Arrays.fill(yes, length, capacity, NONE);
+			Arrays.fill(no, length, capacity, NONE);
+			known = Arrays.copyOf(known, capacity);
+			reached = Arrays.copyOf(reached, capacity);
+			reaching = Arrays.copyOf(reaching, capacity);
+		}
+		return id;
+	}
+
+	private void setSlot(final int id, final int slot, final int target) {
+		final int previous = slot(id, slot);
+		if (previous != NONE) {
+			degree[previous]--;
+		}
+		if (target != NONE) {
+			degree[target]++;
+		}
+		if (slot == 0) {
+			yes[id] = target;
+		} else {
+			no[id] = target;
+		}
+	}
+
+	private int slot(final int id, final int slot) {
+		return slot == 0 ? yes[id] : no[id];
+	}
+
+	private boolean isTarget(final int source, final int target) {
+		return yes[source] == target || no[source] == target;
+	}
+
+	/**
+	 * Brings the membership of symbol {@code id} in dangling up to date.
+	 */
+	private void refresh(final int id) {
+		if (!known[id]) {
+			return;
+		}
+		final Symbol symbol = table.symbol(id);
+		if (degree[id] == 0 && yes[id] == NONE && no[id] == NONE
+				&& symbol != start && symbol != end) {
+			// no longer part of the flowchart
+			dangling.remove(symbol);
+			return;
+		}
+		boolean unconnected = false;
+		if (symbol != end) {
+			for (int slot = 0; slot < symbol.kind().slots(); slot++) {
+				unconnected |= slot(id, slot) == NONE;
+			}
+		}
+		if (!reached[id] || !reaching[id] || unconnected) {
+			dangling.add(symbol);
+		} else {
+			dangling.remove(symbol);
+		}
+	}
+
+	private void recomputeReached() {
+		Arrays.fill(reached, false);
+		if (start != null) {
+			reach(id(start));
+		}
+		refreshAll();
+	}
+
+	private void recomputeReaching() {
+		Arrays.fill(reaching, false);
+		if (end != null) {
+			reachBack(id(end));
+		}
+		refreshAll();
+	}
+
+	private void refreshAll() {
+		for (int id = 0; id < known.length; id++) {
+			refresh(id);
+		}
+	}
+
+	/**
+	 * Marks {@code from} and every symbol reachable from it as reached.
+	 */
+	private void reach(final int from) {
+		if (reached[from]) {
+			return;
+		}
+		queue.clear();
+		reached[from] = true;
+		queue.add(from);
+		for (int head = 0; head < queue.size(); head++) {
+			final int id = queue.get(head);
+			refresh(id);
+			for (int slot = 0; slot < 2; slot++) {
+				final int target = slot(id, slot);
+				if (target != NONE && !reached[target]) {
+					reached[target] = true;
+					queue.add(target);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks {@code from} and every symbol that can reach it as reaching.
+	 */
+	private void reachBack(final int from) {
+		if (reaching[from]) {
+			return;
+		}
+		queue.clear();
+		reaching[from] = true;
+		queue.add(from);
+		for (int head = 0; head < queue.size(); head++) {
+			final int id = queue.get(head);
+			refresh(id);
+			chart.forEachSource(table.symbol(id), markReaching);
+		}
+	}
+
+	/**
+	 * Updates reached after the connection to {@code target} was removed:
+	 * unmarks the symbols that were reached through {@code target}, then
+	 * marks again those that are still reached through another source.
+	 */
+	private void unreach(final int target) {
+		if (!reached[target] || (start != null && target == start.id())) {
+			return;
+		}
+		region.clear();
+		reached[target] = false;
+		region.add(target);
+		for (int head = 0; head < region.size(); head++) {
+			final int id = region.get(head);
+			for (int slot = 0; slot < 2; slot++) {
+				final int next = slot(id, slot);
+				if (next != NONE && reached[next] && next != start.id()) {
+					reached[next] = false;
+					region.add(next);
+				}
+			}
+		}
+		final int[] affected = region.toArray();
+		for (int id : affected) {
+			for (Flowchart source : chart.getSources(table.symbol(id))) {
+				if (reached[((Symbol) source).id()]) {
+					reach(id);
+					break;
+				}
+			}
+		}
+		for (int id : affected) {
+			refresh(id);
+		}
+	}
+
+	/**
+	 * Updates reaching after the connection from {@code source} was removed:
+	 * unmarks the symbols that reached the end through {@code source}, then
+	 * marks again those that still reach it through another target.
+	 */
+	private void unreachBack(final int source) {
+		if (!reaching[source] || (end != null && source == end.id())) {
+			return;
+		}
+		region.clear();
+		reaching[source] = false;
+		region.add(source);
+		for (int head = 0; head < region.size(); head++) {
+			final int id = region.get(head);
+			for (Flowchart previous : chart.getSources(table.symbol(id))) {
+				final int s = ((Symbol) previous).id();
+				if (reaching[s] && s != end.id()) {
+					reaching[s] = false;
+					region.add(s);
+				}
+			}
+		}
+		final int[] affected = region.toArray();
+		for (int id : affected) {
+			for (int slot = 0; slot < 2; slot++) {
+				final int next = slot(id, slot);
+				if (next != NONE && reaching[next]) {
+					reachBack(id);
+					break;
+				}
+			}
+		}
+		for (int id : affected) {
+			refresh(id);
+		}
+	}
+
+	/**
+	 * Records the targets of {@code source} after a successful change, and
+	 * updates reachability for every slot that changed.
+	 */
+	private void update(final Flowchart result, final Flowchart source) {
+		if (result == null) {
+			return;
+		}
+		chart = result;
+		final int id = id(source);
+		known[id] = true;
+		final List<Flowchart> targets = chart.getTargets(source);
+		for (int slot = 0; slot < targets.size(); slot++) {
+			final int previous = slot(id, slot);
+			final int target = targets.get(slot) == null ? NONE : id(targets.get(slot));
+			if (previous == target) {
+				continue;
+			}
+			setSlot(id, slot, target);
+			if (target != NONE) {
+				known[target] = true;
+				if (reached[id]) {
+					reach(target);
+				}
+				if (reaching[target]) {
+					reachBack(id);
+				}
+				refresh(target);
+			}
+			if (previous != NONE && !isTarget(id, previous)) {
+				unreach(previous);
+				unreachBack(id);
+				refresh(previous);
+			}
+		}
+		refresh(id);
+	}
+
+	@Override
+	public Flowchart setStart(final Flowchart start, final boolean reset) {
+		final Flowchart current = chart.setStart(start, reset);
+		final int id = id(current);
+		known[id] = true;
+		if (current != this.start) {
+			this.start = (Symbol) current;
+			recomputeReached();
+		}
+		return current;
+	}
+
+	@Override
+	public Flowchart setStartIfAbsent(final Flowchart start) {
+		return setStart(start, false);
+	}
+
+	@Override
+	public Flowchart setEnd(final Flowchart end, final boolean reset) {
+		final Flowchart current = chart.setEnd(end, reset);
+		final int id = id(current);
+		known[id] = true;
+		if (current != this.end) {
+			this.end = (Symbol) current;
+			recomputeReaching();
+		}
+		return current;
+	}
+
+	@Override
+	public Flowchart setEndIfAbsent(final Flowchart end) {
+		return setEnd(end, false);
+	}
+
+	@Override
+	public Flowchart getStart() {
+		if (start == null) {
+			throw new NoSuchElementException("no start symbol");
+		}
+		return start;
+	}
+
+	@Override
+	public Flowchart getEnd() {
+		if (end == null) {
+			throw new NoSuchElementException("no end symbol");
+		}
+		return end;
+	}
+
+	@Override
+	public List<Flowchart> getTargets(final Flowchart source) {
+		return chart.getTargets(source);
+	}
+
+	@Override
+	public List<Flowchart> getSources(final Flowchart target) {
+		return chart.getSources(target);
+	}
+
+	@Override
+	public void forEachTarget(final Flowchart source, final ObjIntConsumer<? super Flowchart> action) {
+		chart.forEachTarget(source, action);
+	}
+
+	@Override
+	public void forEachSource(final Flowchart target, final Consumer<? super Flowchart> action) {
+		chart.forEachSource(target, action);
+	}
+
+	@Override
+	public Flowchart connectActivity(final Flowchart source, final Flowchart target) {
+		final Flowchart result = chart.connectActivity(source, target);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectActivityIfAbsent(final Flowchart source, final Flowchart target) {
+		final Flowchart result = chart.connectActivityIfAbsent(source, target);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectDecision(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final Flowchart noBranch) {
+		final Flowchart result = chart.connectDecision(source, yesBranch, noBranch);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectToYesBranch(
+			final Flowchart source,
+			final Flowchart yesBranch,
+			final boolean reset) {
+		final Flowchart result = chart.connectToYesBranch(source, yesBranch, reset);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart connectToNoBranch(
+			final Flowchart source,
+			final Flowchart noBranch,
+			final boolean reset) {
+		final Flowchart result = chart.connectToNoBranch(source, noBranch, reset);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart disconnect(final Flowchart source, final Flowchart target) {
+		final Flowchart result = chart.disconnect(source, target);
+		update(result, source);
+		return result == null ? null : this;
+	}
+
+	@Override
+	public Flowchart removeSymbol(final Flowchart symbol) {
+		final int id = id(symbol);
+		final Flowchart result = chart.removeSymbol(symbol);
+		if (result == null) {
+			return null;
+		}
+		chart = result;
+		forget(id);
+		recomputeReached();
+		recomputeReaching();
+		return this;
+	}
+
+	@Override
+	public Flowchart removeSymbols(final Collection<? extends Flowchart> symbols) {
+		for (Flowchart symbol : symbols) {
+			id(symbol);
+		}
+		final Flowchart result = chart.removeSymbols(symbols);
+		if (result == null) {
+			return null;
+		}
+		chart = result;
+		for (Flowchart symbol : symbols) {
+			forget(id(symbol));
+		}
+		recomputeReached();
+		recomputeReaching();
+		return this;
+	}
+
+	/**
+	 * Drops symbol {@code id} and every connection to or from it, leaving
+	 * reachability to be recomputed.
+	 */
+	private void forget(final int id) {
+		for (int source = 0; source < known.length; source++) {
+			for (int slot = 0; slot < 2; slot++) {
+				if (slot(source, slot) == id) {
+					setSlot(source, slot, NONE);
+				}
+			}
+		}
+		setSlot(id, 0, NONE);
+		setSlot(id, 1, NONE);
+		final Symbol symbol = table.symbol(id);
+		if (symbol == start) {
+			start = null;
+		}
+		if (symbol == end) {
+			end = null;
+		}
+		known[id] = false;
+		dangling.remove(symbol);
+	}
+}
@@ -0,0 +1,337 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncInterpreterTest {
+	// Testing strategy
+	// submit
+	//	  stages already complete, completed later by another thread
+	//	  loop of many steps completed at once: no stack overflow
+	//	  action that fails, stage that fails
+	//	  executions in flight < max, = max with room in the queue, queue full
+	//	  cancelled while queued, while running; timeout while running
+	//	  cancelled first, in the middle and last in the queue
+	//	  next execution admitted by a timeout: not on the timer thread
+	//	  submitted while another thread is in a long synchronous step
+	//	  subchart without an action
+	// AsyncInterpreter
+	//	  bounds not positive
+
+	private Flowchart start;
+	private Flowchart count;
+	private Flowchart wait;
+	private Flowchart loop;
+	private Flowchart end;
+	private final Map<Flowchart, Function<List<String>, CompletionStage<?>>> actions = new HashMap<>();
+	private final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+	private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+	/**
+	 * start -> count -> wait -> loop? -yes-> count, loop? -no-> end; wait
+	 * completes when the test completes it, count at once.
+	 */
+	@Before
+	public void setUp() {
+		final SymbolTable table = new SymbolTable();
+		start = table.intern("start", Kind.START);
+		count = table.intern("count", Kind.ACTIVITY);
+		wait = table.intern("wait", Kind.ACTIVITY);
+		loop = table.intern("loop?", Kind.DECISION);
+		end = table.intern("end", Kind.END);
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		start.connectActivity(start, count);
+		start.connectActivity(count, wait);
+		start.connectActivity(wait, loop);
+		start.connectDecision(loop, count, end);
+		actions.put(count, trace -> {
+			trace.add("count");
+			return CompletableFuture.completedFuture(null);
+		});
+		actions.put(wait, trace -> {
+			final CompletableFuture<Void> stage = new CompletableFuture<>();
+			synchronized (pending) {
+				pending.add(stage);
+			}
+			return stage;
+		});
+		predicates.put(loop, trace -> trace.size() < 2);
+	}
+
+	/**
+	 * Completes the stages waited for so far, on another thread.
+	 */
+	private void release() throws InterruptedException {
+		final List<CompletableFuture<Void>> stages;
+		synchronized (pending) {
+			stages = new ArrayList<>(pending);
+			pending.clear();
+		}
+		final Thread thread = new Thread(() -> stages.forEach(stage -> stage.complete(null)));
+		thread.start();
+		thread.join();
+	}
+
+	/**
+	 * @return how many stages were waited for so far.
+	 */
+	private int waiting() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	@Test
+	public void testSubmit() throws Exception {
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 2, 1);
+		final CompletableFuture<List<String>> first = interpreter.submit(new ArrayList<>());
+		final CompletableFuture<List<String>> second = interpreter.submit(new ArrayList<>());
+		final CompletableFuture<List<String>> third = interpreter.submit(new ArrayList<>());
+		final CompletableFuture<List<String>> rejected = interpreter.submit(new ArrayList<>());
+		assertEquals(2, interpreter.getInFlightCount());
+		assertEquals(1, interpreter.getQueuedCount());
+		try {
+			rejected.get();
+			fail("queue full, execution admitted");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+
+		while (!(first.isDone() && second.isDone() && third.isDone())) {
+			assertFalse(pending.isEmpty());
+			release();
+		}
+		for (CompletableFuture<List<String>> execution : Arrays.asList(first, second, third)) {
+			assertEquals(Arrays.asList("count", "count"), execution.get());
+		}
+		assertEquals(0, interpreter.getInFlightCount());
+		assertEquals(0, interpreter.getQueuedCount());
+	}
+
+	@Test
+	public void testManyStepsAtOnce() throws Exception {
+		actions.put(wait, trace -> CompletableFuture.completedFuture(null));
+		predicates.put(loop, trace -> trace.size() < 100_000);
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 1, 100);
+		final List<CompletableFuture<List<String>>> executions = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			executions.add(interpreter.submit(new ArrayList<>()));
+		}
+		for (CompletableFuture<List<String>> execution : executions) {
+			assertEquals(100_000, execution.get().size());
+		}
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 1, 0);
+		actions.put(count, trace -> {
+			throw new IllegalStateException("count");
+		});
+		final CompletableFuture<List<String>> thrown =
+				new AsyncInterpreter<>(start, actions, predicates, 1, 0).submit(new ArrayList<>());
+		try {
+			thrown.get();
+			fail("action threw, execution completed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		final CompletableFuture<List<String>> failed = interpreter.submit(new ArrayList<>());
+		synchronized (pending) {
+			pending.get(0).completeExceptionally(new IllegalStateException("wait"));
+		}
+		try {
+			failed.get();
+			fail("stage failed, execution completed");
+		} catch (ExecutionException e) {
+			assertEquals("wait", e.getCause().getMessage());
+		}
+		assertEquals(0, interpreter.getInFlightCount());
+	}
+
+	@Test
+	public void testCancelAndTimeout() throws Exception {
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 1, 2);
+		final CompletableFuture<List<String>> running = interpreter.submit(new ArrayList<>());
+		final CompletableFuture<List<String>> queued = interpreter.submit(new ArrayList<>());
+		final List<String> late = new ArrayList<>();
+		final CompletableFuture<List<String>> timed = interpreter.submit(late, 10, TimeUnit.MILLISECONDS);
+		assertEquals(2, interpreter.getQueuedCount());
+
+		assertTrue(queued.cancel(true));
+		assertEquals(1, interpreter.getQueuedCount());
+		assertTrue(running.cancel(true));
+		assertEquals(0, interpreter.getQueuedCount());
+		assertEquals(1, interpreter.getInFlightCount());
+		try {
+			timed.get(10, TimeUnit.SECONDS);
+			fail("timeout elapsed, execution completed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		// the pool thread frees the place after it wakes this one up
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (interpreter.getInFlightCount() != 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertEquals(0, interpreter.getInFlightCount());
+
+		release();
+		release();
+		assertTrue(running.isCancelled());
+		assertEquals(Arrays.asList("count"), late);
+		try {
+			queued.join();
+			fail("cancelled execution completed");
+		} catch (CancellationException expected) {
+			// never started
+		}
+	}
+
+	@Test
+	public void testQueueOrder() {
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 1, 3);
+		final CompletableFuture<List<String>> running = interpreter.submit(new ArrayList<>());
+		final List<List<String>> traces = new ArrayList<>();
+		final List<CompletableFuture<List<String>>> queued = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			traces.add(new ArrayList<>());
+			queued.add(interpreter.submit(traces.get(i)));
+		}
+		assertEquals(3, interpreter.getQueuedCount());
+
+		assertTrue(queued.get(1).cancel(true));
+		assertEquals(2, interpreter.getQueuedCount());
+		assertTrue(running.cancel(true));
+		assertEquals(Arrays.asList("count"), traces.get(0));
+		assertEquals(1, interpreter.getQueuedCount());
+		assertTrue(queued.get(0).cancel(true));
+		assertEquals(Arrays.asList("count"), traces.get(2));
+		assertEquals(0, interpreter.getQueuedCount());
+		assertTrue(traces.get(1).isEmpty());
+
+		final CompletableFuture<List<String>> last = interpreter.submit(new ArrayList<>());
+		assertEquals(1, interpreter.getQueuedCount());
+		assertTrue(last.cancel(true));
+		assertEquals(0, interpreter.getQueuedCount());
+		assertEquals(1, interpreter.getInFlightCount());
+	}
+
+	@Test
+	public void testTimeoutAdmitsOffTimer() throws Exception {
+		actions.put(count, trace -> {
+			trace.add(Thread.currentThread().getName());
+			return CompletableFuture.completedFuture(null);
+		});
+		final AsyncInterpreter<List<String>> interpreter = new AsyncInterpreter<>(start, actions, predicates, 1, 1);
+		final CompletableFuture<List<String>> timed = interpreter.submit(new ArrayList<>(), 10, TimeUnit.MILLISECONDS);
+		final List<String> trace = new ArrayList<>();
+		final CompletableFuture<List<String>> next = interpreter.submit(trace);
+		try {
+			timed.get(10, TimeUnit.SECONDS);
+			fail("timeout elapsed, execution completed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		// next waits once it has taken its first step
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (waiting() < 2 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertEquals(2, waiting());
+		assertEquals(0, interpreter.getQueuedCount());
+		assertEquals(1, trace.size());
+		assertFalse(trace.get(0).equals("flowchart-timeouts"));
+
+		while (!next.isDone()) {
+			release();
+		}
+		assertEquals(2, next.get().size());
+	}
+
+	@Test
+	public void testTwoThreads() throws Exception {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart begin = table.intern("begin", Kind.START);
+		final Flowchart work = table.intern("work", Kind.ACTIVITY);
+		final Flowchart done = table.intern("done", Kind.END);
+		begin.setStart(begin, false);
+		begin.setEnd(done, false);
+		begin.connectActivity(begin, work);
+		begin.connectActivity(work, done);
+		final CountDownLatch working = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(1);
+		final Map<Flowchart, Function<String, CompletionStage<?>>> steps = new HashMap<>();
+		steps.put(work, context -> {
+			if (context.equals("slow")) {
+				working.countDown();
+				try {
+					finish.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return CompletableFuture.completedFuture(null);
+		});
+		final AsyncInterpreter<String> interpreter =
+				new AsyncInterpreter<>(begin, steps, new HashMap<Flowchart, Predicate<String>>(), 100, 0);
+
+		final Thread slow = new Thread(() -> interpreter.submit("slow"));
+		slow.start();
+		working.await();
+		try {
+			assertEquals("fast", interpreter.submit("fast").get(10, TimeUnit.SECONDS));
+		} finally {
+			finish.countDown();
+			slow.join();
+		}
+		assertEquals(0, interpreter.getInFlightCount());
+	}
+
+	@Test
+	public void testSubchart() throws Exception {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart outer = table.intern("outer start", Kind.START);
+		final Flowchart outerEnd = table.intern("outer end", Kind.END);
+		final Flowchart first = table.subchart("first", start);
+		final Flowchart second = table.subchart("second", start);
+		outer.setStart(outer, false);
+		outer.setEnd(outerEnd, false);
+		outer.connectActivity(outer, first);
+		outer.connectActivity(first, second);
+		outer.connectActivity(second, outerEnd);
+		predicates.put(loop, trace -> trace.size() % 2 == 1);
+
+		final CompletableFuture<List<String>> execution =
+				new AsyncInterpreter<>(outer, actions, predicates, 1, 0).submit(new ArrayList<>());
+		while (!execution.isDone()) {
+			release();
+		}
+		assertEquals(Arrays.asList("count", "count", "count", "count"), execution.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoRoom() {
+		new AsyncInterpreter<>(start, actions, predicates, 0, 10);
+	}
+}
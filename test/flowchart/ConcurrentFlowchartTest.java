@@ -0,0 +1,217 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class ConcurrentFlowchartTest {
+	// Testing strategy
+	// connectActivityIfAbsent: Flowchart, Flowchart -> Flowchart
+	//	  threads racing on the same source
+	// setStartIfAbsent: Flowchart -> Flowchart
+	//	  threads racing to set different starts
+	//	  thread setting a start or end while another connects it
+	// connectActivity: Flowchart, Flowchart -> Flowchart
+	//	  threads connecting disjoint chains, sources consistent afterwards
+	//	  threads replacing the target of the same source
+	// removeSymbol: Flowchart -> Flowchart
+	//	  thread removing a symbol while another connects to it
+
+	private static final int THREADS = 8;
+
+	private final SymbolTable table = new SymbolTable();
+
+	private static void race(final Runnable task) throws InterruptedException {
+		final CountDownLatch ready = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			final Thread thread = new Thread(() -> {
+				try {
+					ready.await();
+				} catch (InterruptedException e) {
+					throw new AssertionError(e);
+				}
+				task.run();
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		ready.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	@Test
+	public void testConnectIfAbsentRace() throws InterruptedException {
+		final Flowchart chart = new ConcurrentFlowchart();
+		final Flowchart source = table.intern("source", Kind.ACTIVITY);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger successes = new AtomicInteger();
+		race(() -> {
+			final Flowchart target = table.intern("t" + next.getAndIncrement(), Kind.ACTIVITY);
+			if (chart.connectActivityIfAbsent(source, target) != null) {
+				successes.incrementAndGet();
+			}
+		});
+		assertEquals(1, successes.get());
+		final Flowchart target = chart.getTargets(source).get(0);
+		assertEquals(Collections.singletonList(source), chart.getSources(target));
+	}
+
+	@Test
+	public void testSetStartIfAbsentRace() throws InterruptedException {
+		final Flowchart chart = new ConcurrentFlowchart();
+		final AtomicInteger next = new AtomicInteger();
+		final List<Flowchart> starts = Collections.synchronizedList(new ArrayList<Flowchart>());
+		race(() -> starts.add(chart.setStartIfAbsent(
+				table.intern("s" + next.getAndIncrement(), Kind.START))));
+		for (Flowchart start : starts) {
+			assertSame(chart.getStart(), start);
+		}
+	}
+
+	/**
+	 * Runs two tasks at once, on two threads.
+	 */
+	private static void race(final Runnable first, final Runnable second) throws InterruptedException {
+		final CountDownLatch ready = new CountDownLatch(2);
+		final Thread thread = new Thread(() -> {
+			ready.countDown();
+			try {
+				ready.await();
+			} catch (InterruptedException e) {
+				throw new AssertionError(e);
+			}
+			second.run();
+		});
+		thread.start();
+		ready.countDown();
+		ready.await();
+		first.run();
+		thread.join();
+	}
+
+	/**
+	 * @return true iff {@code symbol} is what {@code getter} gets.
+	 */
+	private static boolean is(final Flowchart symbol, final Supplier<Flowchart> getter) {
+		try {
+			return getter.get() == symbol;
+		} catch (NoSuchElementException e) {
+			return false;
+		}
+	}
+
+	@Test
+	public void testSetStartWhileConnecting() throws InterruptedException {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		for (int round = 0; round < 2000; round++) {
+			final Flowchart chart = new ConcurrentFlowchart();
+			race(() -> {
+				try {
+					chart.setStart(b, true);
+				} catch (IllegalArgumentException e) {
+					// b already had a source
+				}
+			}, () -> chart.connectActivity(a, b));
+			final boolean start = is(b, chart::getStart);
+			final boolean connected = chart.getTargets(a).get(0) == b;
+			assertTrue(start != connected);
+			assertEquals(connected, !chart.getSources(b).isEmpty());
+		}
+	}
+
+	@Test
+	public void testSetEndWhileConnecting() throws InterruptedException {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		for (int round = 0; round < 2000; round++) {
+			final Flowchart chart = new ConcurrentFlowchart();
+			race(() -> {
+				try {
+					chart.setEnd(a, true);
+				} catch (IllegalArgumentException e) {
+					// a already had a target
+				}
+			}, () -> chart.connectActivity(a, b));
+			final boolean end = is(a, chart::getEnd);
+			final boolean connected = chart.getTargets(a).get(0) == b;
+			assertTrue(end != connected);
+		}
+	}
+
+	@Test
+	public void testConnectChains() throws InterruptedException {
+		final Flowchart chart = new ConcurrentFlowchart();
+		final Flowchart join = table.intern("join", Kind.END);
+		final AtomicInteger next = new AtomicInteger();
+		race(() -> {
+			final int thread = next.getAndIncrement();
+			Flowchart previous = table.intern("c" + thread + ".0", Kind.ACTIVITY);
+			for (int i = 1; i < 1000; i++) {
+				final Flowchart activity = table.intern("c" + thread + "." + i, Kind.ACTIVITY);
+				assertNotNull(chart.connectActivity(previous, activity));
+				previous = activity;
+			}
+			chart.connectActivity(previous, join);
+		});
+		assertEquals(THREADS, chart.getSources(join).size());
+		for (int thread = 0; thread < THREADS; thread++) {
+			for (int i = 1; i < 1000; i++) {
+				assertEquals(Collections.singletonList(table.lookup("c" + thread + "." + (i - 1))),
+						chart.getSources(table.lookup("c" + thread + "." + i)));
+			}
+		}
+	}
+
+	@Test
+	public void testReplaceTargetRace() throws InterruptedException {
+		final Flowchart chart = new ConcurrentFlowchart();
+		final Flowchart source = table.intern("source", Kind.ACTIVITY);
+		final List<Flowchart> targets = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			targets.add(table.intern("t" + i, Kind.ACTIVITY));
+		}
+		final AtomicInteger seed = new AtomicInteger();
+		race(() -> {
+			final Random random = new Random(seed.getAndIncrement());
+			for (int i = 0; i < 10_000; i++) {
+				chart.connectActivity(source, targets.get(random.nextInt(targets.size())));
+			}
+		});
+		final Flowchart target = chart.getTargets(source).get(0);
+		for (Flowchart other : targets) {
+			assertEquals(other == target ? Collections.singletonList(source) : Collections.emptyList(),
+					chart.getSources(other));
+		}
+	}
+
+	@Test
+	public void testRemoveWhileConnecting() throws InterruptedException {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		final Flowchart removed = table.intern("removed", Kind.ACTIVITY);
+		for (int round = 0; round < 2000; round++) {
+			final Flowchart chart = new ConcurrentFlowchart();
+			chart.connectActivity(b, removed);
+			chart.connectActivity(removed, b);
+			race(() -> chart.removeSymbol(removed), () -> chart.connectActivity(a, removed));
+			final boolean connected = chart.getTargets(a).get(0) == removed;
+			assertEquals(connected, chart.getSources(removed).contains(a));
+			assertNull(chart.getTargets(removed).get(0));
+			assertNull(chart.getTargets(b).get(0));
+			assertTrue(chart.getSources(b).isEmpty());
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class DominatorsTest {
+	// Testing strategy
+	// dominates, postDominates, getImmediateDominator, getImmediatePostDominator
+	//	  diamond: decision dominates both branches, branches merge at the join
+	//	  random charts with loops, compared with removing a symbol and searching again
+
+	@Test
+	public void testDiamond() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final Symbol d = table.intern("d", Kind.DECISION);
+		final Symbol yes = table.intern("yes", Kind.ACTIVITY);
+		final Symbol no = table.intern("no", Kind.ACTIVITY);
+		final Symbol join = table.intern("join", Kind.ACTIVITY);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, d);
+		d.connectDecision(d, yes, no);
+		yes.connectActivity(yes, join);
+		no.connectActivity(no, join);
+		join.connectActivity(join, end);
+
+		final Dominators dominators = Dominators.of(start);
+		assertTrue(dominators.dominates(d, end));
+		assertFalse(dominators.dominates(yes, join));
+		assertSame(d, dominators.getImmediateDominator(join));
+		assertNull(dominators.getImmediateDominator(start));
+		assertSame(join, dominators.getImmediatePostDominator(d));
+		assertTrue(dominators.postDominates(join, start));
+		assertFalse(dominators.postDominates(no, d));
+		assertNull(dominators.getImmediatePostDominator(end));
+	}
+
+	/**
+	 * @return the symbols reachable from {@code from} without going through
+	 *     {@code removed}, following targets or sources.
+	 */
+	private static Set<Flowchart> reachable(
+			final Flowchart chart, final Flowchart from,
+			final Flowchart removed, final boolean forward) {
+		final Set<Flowchart> reached = new HashSet<>();
+		if (from == removed) {
+			return reached;
+		}
+		final ArrayDeque<Flowchart> queue = new ArrayDeque<>();
+		reached.add(from);
+		queue.add(from);
+		while (!queue.isEmpty()) {
+			final Flowchart symbol = queue.remove();
+			for (Flowchart next : forward ? chart.getTargets(symbol) : chart.getSources(symbol)) {
+				if (next != null && next != removed && reached.add(next)) {
+					queue.add(next);
+				}
+			}
+		}
+		return reached;
+	}
+
+	@Test
+	public void testRandomCharts() {
+		for (long seed = 0; seed < 5; seed++) {
+			final SymbolTable table = new SymbolTable();
+			final Random random = new Random(seed);
+			final Symbol start = table.intern("start", Kind.START);
+			final Symbol end = table.intern("end", Kind.END);
+			start.setStart(start, false);
+			end.setEnd(end, false);
+			final int n = 40;
+			final Symbol[] symbols = new Symbol[n + 2];
+			symbols[0] = start;
+			symbols[n + 1] = end;
+			for (int i = 1; i <= n; i++) {
+				symbols[i] = table.intern("s" + i, random.nextInt(3) == 0 ? Kind.DECISION : Kind.ACTIVITY);
+			}
+			for (int i = 0; i <= n; i++) {
+				final Symbol next = symbols[1 + random.nextInt(n + 1)];
+				if (symbols[i].kind() == Kind.DECISION) {
+					symbols[i].connectDecision(symbols[i], symbols[i + 1], next == symbols[i] ? end : next);
+				} else {
+					symbols[i].connectActivity(symbols[i], next == symbols[i] ? symbols[i + 1] : next);
+				}
+			}
+			final Flowchart chart = start.freeze();
+			final Dominators dominators = Dominators.of(chart);
+			final Set<Flowchart> fromStart = reachable(chart, start, null, true);
+			final Set<Flowchart> toEnd = reachable(chart, end, null, false);
+			final List<Flowchart> all = Arrays.<Flowchart>asList(symbols);
+			for (Flowchart a : all) {
+				final Set<Flowchart> avoidingForward = reachable(chart, start, a, true);
+				final Set<Flowchart> avoidingBackward = reachable(chart, end, a, false);
+				for (Flowchart b : all) {
+					final boolean dominates = fromStart.contains(a) && fromStart.contains(b)
+							&& !avoidingForward.contains(b);
+					final boolean postDominates = toEnd.contains(a) && toEnd.contains(b)
+							&& !avoidingBackward.contains(b);
+					assertEquals(a + " dom " + b, dominates, dominators.dominates(a, b));
+					assertEquals(a + " pdom " + b, postDominates, dominators.postDominates(a, b));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ExecutionPathTest {
+	// Testing strategy
+	// all
+	//	  chain of k diamonds: 2^k paths, sequential and parallel find the same set
+	//	  loop: only paths through no symbol twice
+	//	  decision whose branches have the same target: two paths
+	//	  start symbol that is also the end symbol: one empty path
+	// count
+	//	  chart without loops: matches all
+	//	  loop reachable from the start: throws
+	// getSymbols, isYes, toString
+
+	/**
+	 * @return a chart of k diamonds in a row, each a decision whose branches
+	 *     join at an activity.
+	 */
+	private static Symbol diamonds(final SymbolTable table, final int k) {
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		Symbol last = start;
+		for (int i = 0; i < k; i++) {
+			final Symbol d = table.intern("d" + i, Kind.DECISION);
+			final Symbol yes = table.intern("yes" + i, Kind.ACTIVITY);
+			final Symbol no = table.intern("no" + i, Kind.ACTIVITY);
+			final Symbol join = table.intern("join" + i, Kind.ACTIVITY);
+			last.connectActivity(last, d);
+			d.connectDecision(d, yes, no);
+			yes.connectActivity(yes, join);
+			no.connectActivity(no, join);
+			last = join;
+		}
+		last.connectActivity(last, end);
+		return start;
+	}
+
+	@Test
+	public void testDiamonds() {
+		final Flowchart start = diamonds(new SymbolTable(), 12).freeze();
+		final Set<ExecutionPath> sequential = ExecutionPath.all(start).collect(Collectors.toSet());
+		assertEquals(1 << 12, sequential.size());
+		final List<ExecutionPath> parallel = ExecutionPath.all(start).parallel().collect(Collectors.toList());
+		assertEquals(1 << 12, parallel.size());
+		assertEquals(sequential, new HashSet<>(parallel));
+		assertEquals(BigInteger.valueOf(1 << 12), ExecutionPath.count(start));
+		assertEquals(BigInteger.ONE.shiftLeft(200), ExecutionPath.count(diamonds(new SymbolTable(), 200)));
+	}
+
+	@Test
+	public void testSymbols() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = diamonds(table, 2);
+		final ExecutionPath path = ExecutionPath.all(start)
+				.filter(p -> p.toString().equals("NY"))
+				.findFirst().get();
+		assertEquals(2, path.getDecisionCount());
+		assertFalse(path.isYes(0));
+		assertTrue(path.isYes(1));
+		assertEquals(Arrays.asList("start", "d0", "no0", "join0", "d1", "yes1", "join1", "end"),
+				path.getSymbols().stream().map(Object::toString).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testSameBranches() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final Symbol d = table.intern("d", Kind.DECISION);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, d);
+		d.connectDecision(d, end, end);
+		assertEquals(new HashSet<>(Arrays.asList("Y", "N")),
+				ExecutionPath.all(start).map(ExecutionPath::toString).collect(Collectors.toSet()));
+		assertEquals(BigInteger.valueOf(2), ExecutionPath.count(start));
+	}
+
+	@Test
+	public void testStartIsEnd() {
+		final Symbol only = new SymbolTable().intern("only", Kind.ACTIVITY);
+		only.setStart(only, false);
+		only.setEnd(only, false);
+		final List<ExecutionPath> paths = ExecutionPath.all(only).collect(Collectors.toList());
+		assertEquals(1, paths.size());
+		assertEquals(0, paths.get(0).getDecisionCount());
+		assertEquals(Arrays.asList(only), paths.get(0).getSymbols());
+		assertEquals(BigInteger.ONE, ExecutionPath.count(only));
+		assertEquals(1, ExecutionPath.all(only).parallel().count());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLoop() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final Symbol body = table.intern("body", Kind.ACTIVITY);
+		final Symbol test = table.intern("test", Kind.DECISION);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, body);
+		body.connectActivity(body, test);
+		test.connectDecision(test, body, end);
+		final List<ExecutionPath> paths = ExecutionPath.all(start).collect(Collectors.toList());
+		assertEquals(1, paths.size());
+		assertEquals(Arrays.asList("start", "body", "test", "end"),
+				paths.get(0).getSymbols().stream().map(Object::toString).collect(Collectors.toList()));
+		ExecutionPath.count(start);
+	}
+}
@@ -0,0 +1,109 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class FlowchartBuilderTest {
+	// Testing strategy
+	// build: void -> Flowchart
+	//	  valid chart given one connection at a time and in bulk
+	//	  one violation, several violations reported together
+	//	  violations: no start, no end, decision connected as activity, self loop,
+	//	  connection into start, dangling symbol
+	// connect*: symbol of another table or removed, alone or in a batch
+
+	private final SymbolTable table = new SymbolTable();
+	private final Flowchart start = table.intern("start", Kind.START);
+	private final Flowchart end = table.intern("end", Kind.END);
+
+	@Test
+	public void testBuildBulk() {
+		final int n = 1000;
+		final Flowchart[] sources = new Flowchart[n];
+		final Flowchart[] targets = new Flowchart[n];
+		Flowchart previous = start;
+		for (int i = 0; i < n; i++) {
+			sources[i] = previous;
+			targets[i] = table.intern("a" + i, Kind.ACTIVITY);
+			previous = targets[i];
+		}
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart chart = new FlowchartBuilder()
+				.setStart(start)
+				.setEnd(end)
+				.connectActivities(sources, targets)
+				.connectActivity(previous, d)
+				.connectDecisions(new Flowchart[] {d}, new Flowchart[] {targets[0]}, new Flowchart[] {end})
+				.build();
+		assertSame(start, chart.getStart());
+		assertSame(end, chart.getEnd());
+		assertEquals(Arrays.asList(targets[0], end), chart.getTargets(d));
+		assertEquals(2, chart.getSources(targets[0]).size());
+		assertEquals(Collections.singletonList(d), chart.getSources(end));
+	}
+
+	@Test
+	public void testBuildReportsEveryViolation() {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart dangling = table.intern("dangling", Kind.ACTIVITY);
+		final FlowchartBuilder builder = new FlowchartBuilder()
+				.setStart(start)
+				.connectActivity(start, a)
+				.connectActivity(a, a)
+				.connectActivity(d, start)
+				.connectActivity(dangling, end);
+		try {
+			builder.build();
+			fail("expected InvalidFlowchartException");
+		} catch (InvalidFlowchartException e) {
+			final String violations = e.getViolations().toString();
+			assertTrue(violations, violations.contains("no end symbol"));
+			assertTrue(violations, violations.contains("connected to itself: a"));
+			assertTrue(violations, violations.contains("connected as an activity: d"));
+			assertTrue(violations, violations.contains("connected to the start: d"));
+			assertTrue(violations, violations.contains("has no source: dangling"));
+			assertTrue(violations, violations.contains("has no source: d"));
+		}
+	}
+
+	@Test
+	public void testSymbolsFromAnotherTable() {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart removed = table.intern("removed", Kind.ACTIVITY);
+		removed.removeSymbol(removed);
+		final Flowchart foreign = new SymbolTable().intern("x", Kind.ACTIVITY);
+		final FlowchartBuilder builder = new FlowchartBuilder().setStart(start).setEnd(end);
+		final Runnable[] rejected = {
+				() -> builder.connectActivity(start, foreign),
+				() -> builder.connectActivity(start, removed),
+				() -> builder.connectDecision(d, a, foreign),
+				() -> builder.connectActivities(new Flowchart[] {start, a}, new Flowchart[] {a, foreign}),
+				() -> builder.connectDecisions(
+						new Flowchart[] {d, d}, new Flowchart[] {a, a}, new Flowchart[] {end, removed}),
+		};
+		for (Runnable call : rejected) {
+			try {
+				call.run();
+				fail("symbol of another table or removed staged");
+			} catch (IllegalArgumentException expected) {
+				// nothing staged
+			}
+		}
+
+		// the connections staged afterwards are paired as given
+		final Flowchart chart = builder
+				.connectActivity(start, a)
+				.connectActivity(a, d)
+				.connectDecision(d, a, end)
+				.build();
+		assertEquals(Collections.singletonList(a), chart.getTargets(start));
+		assertEquals(Collections.singletonList(d), chart.getTargets(a));
+		assertEquals(Arrays.asList(a, end), chart.getTargets(d));
+	}
+}
@@ -2,6 +2,13 @@ package flowchart;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 import org.junit.Test;
 
 public class FlowchartTest {
@@ -46,10 +53,305 @@ public class FlowchartTest {
 	//					  has one branch,
 	//					  has both branches
 	//	  Symbol:source, Symbol:target as Activity, Decision
+	// instantiate: String -> Flowchart
+	//	  label seen before, not seen before, blank
+	//	  shared table, tables of the caller's own with the same labels
+	// freeze: void -> Flowchart
+	//	  chart with and without decisions, snapshot unaffected by later edits
+	// forEachTarget, forEachSource: Flowchart, action -> void
+	//	  decision with one unconnected branch, symbol with several sources
+	//	  symbols, frozen, concurrent and persistent charts agree
+	// disconnect: Flowchart, Flowchart -> Flowchart
+	//	  activity, decision with both branches to the target, not connected
+	// removeSymbol: Flowchart -> Flowchart
+	//	  symbol with sources and targets, the start, removed twice, label reused
+	// removeSymbols: Collection -> Flowchart
+	//	  many symbols at once, edge records compacted, chart still usable
 	
 	@Test
 	public void test() {
 		fail("Not yet implemented");
 	}
 
+
+	@Test
+	public void testInstantiateInternsLabels() {
+		final Flowchart a = Flowchart.instantiate("test-instantiate-a");
+		assertSame(a, Flowchart.instantiate("test-instantiate-a"));
+		assertSame(a, Flowchart.instantiateDecision("test-instantiate-a"));
+		assertNotSame(a, Flowchart.instantiate("test-instantiate-b"));
+		assertEquals(Kind.DECISION, Kind.of(Flowchart.instantiateDecision("test-instantiate-c")));
+	}
+
+	@Test
+	public void testInstantiateInOwnTable() {
+		final SymbolTable first = new SymbolTable();
+		final SymbolTable second = new SymbolTable();
+		final Flowchart start = first.instantiateStart("test-instantiate-a");
+		assertSame(start, first.instantiate("test-instantiate-a"));
+		assertEquals(Kind.START, Kind.of(start));
+		assertNotSame(start, second.instantiateStart("test-instantiate-a"));
+		assertNotSame(start, Flowchart.instantiate("test-instantiate-a"));
+
+		final Flowchart end = first.instantiateEnd("end");
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		start.connectActivity(start, end);
+		assertEquals(Collections.singletonList(end), start.getTargets(start));
+		try {
+			second.instantiateEnd("end").getStart();
+			fail("start of another table found");
+		} catch (NoSuchElementException expected) {
+			// the tables are separate flowcharts
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInstantiateBlankLabel() {
+		Flowchart.instantiate(" \t");
+	}
+
+	@Test
+	public void testSymbolIdsAreDense() {
+		final SymbolTable table = new SymbolTable();
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, table.intern("s" + i, Kind.ACTIVITY).id());
+		}
+		assertEquals(100, table.size());
+		assertSame(table.lookup("s42"), table.symbol(42));
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testGetStartNoneExists() {
+		new SymbolTable().intern("a", Kind.ACTIVITY).getStart();
+	}
+
+	@Test
+	public void testSetStart() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.START);
+		assertSame(a, a.setStartIfAbsent(a));
+		assertSame(a, a.setStart(b, false));
+		assertSame(b, a.setStart(b, true));
+		assertSame(b, a.getStart());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetStartDecision() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		d.setStart(d, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetEndHavingTarget() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		a.connectActivity(a, b);
+		a.setEnd(a, true);
+	}
+
+	@Test
+	public void testConnectActivity() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		final Flowchart c = table.intern("c", Kind.ACTIVITY);
+		assertNotNull(a.connectActivity(a, b));
+		assertNotNull(a.connectActivity(c, b));
+		assertEquals(Collections.singletonList(b), a.getTargets(a));
+		assertEquals(new HashSet<>(Arrays.asList(a, c)), new HashSet<>(a.getSources(b)));
+
+		assertNotNull(a.connectActivity(a, c));
+		assertEquals(Collections.singletonList(c), a.getTargets(a));
+		assertEquals(Collections.singletonList(c), a.getSources(b));
+		assertNull(a.connectActivityIfAbsent(a, b));
+		assertNull(a.connectActivity(a, a));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConnectActivityFromDecision() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		d.connectActivity(d, table.intern("a", Kind.ACTIVITY));
+	}
+
+	@Test
+	public void testConnectDecision() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart yes = table.intern("yes", Kind.ACTIVITY);
+		final Flowchart no = table.intern("no", Kind.END);
+		assertNull(d.connectDecision(d, d, no));
+		assertEquals(Arrays.asList(null, null), d.getTargets(d));
+
+		assertNotNull(d.connectDecision(d, yes, no));
+		assertEquals(Arrays.asList(yes, no), d.getTargets(d));
+		assertEquals(Collections.singletonList(d), d.getSources(no));
+
+		assertNotNull(d.connectToYesBranch(d, no, false));
+		assertEquals(Arrays.asList(yes, no), d.getTargets(d));
+		assertNotNull(d.connectToYesBranch(d, no, true));
+		assertEquals(Arrays.asList(no, no), d.getTargets(d));
+		assertEquals(Collections.emptyList(), d.getSources(yes));
+		assertEquals(Collections.singletonList(d), d.getSources(no));
+	}
+
+	@Test
+	public void testFreeze() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart end = table.intern("end", Kind.END);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, d);
+		start.connectDecision(d, a, end);
+
+		final Flowchart frozen = start.freeze();
+		assertSame(start, frozen.getStart());
+		assertSame(end, frozen.getEnd());
+		assertEquals(Collections.singletonList(a), frozen.getTargets(start));
+		assertEquals(Arrays.asList(a, end), frozen.getTargets(d));
+		assertEquals(Collections.emptyList(), frozen.getTargets(end));
+		assertEquals(new HashSet<>(Arrays.asList(start, d)), new HashSet<>(frozen.getSources(a)));
+		assertSame(frozen, frozen.freeze());
+
+		start.connectDecision(d, end, end);
+		assertEquals(Arrays.asList(a, end), frozen.getTargets(d));
+		assertEquals(Collections.singletonList(d), start.freeze().getSources(end));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFrozenIsImmutable() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		a.setStart(a, true);
+		a.freeze().connectActivity(a, table.intern("b", Kind.ACTIVITY));
+	}
+
+	@Test
+	public void testForEachTargetAndSource() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol d = table.intern("d", Kind.DECISION);
+		final Symbol a = table.intern("a", Kind.ACTIVITY);
+		start.setStart(start, false);
+		start.connectActivity(start, d);
+		start.connectToNoBranch(d, a, false);
+		start.connectActivity(a, d);
+		final Flowchart concurrent = new ConcurrentFlowchart()
+				.connectActivity(start, d)
+				.connectToNoBranch(d, a, false)
+				.connectActivity(a, d);
+		final Flowchart persistent = PersistentFlowchart.empty()
+				.connectActivity(start, d)
+				.connectToNoBranch(d, a, false)
+				.connectActivity(a, d);
+
+		for (Flowchart chart : Arrays.asList(start, start.freeze(), concurrent, persistent)) {
+			final StringBuilder targets = new StringBuilder();
+			chart.forEachTarget(d, (target, slot) -> targets.append(slot).append(target));
+			assertEquals("1a", targets.toString());
+			final HashSet<Flowchart> sources = new HashSet<>();
+			chart.forEachSource(d, sources::add);
+			assertEquals(new HashSet<>(Arrays.asList(start, a)), sources);
+		}
+	}
+
+	@Test
+	public void testDisconnect() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol d = table.intern("d", Kind.DECISION);
+		final Symbol a = table.intern("a", Kind.ACTIVITY);
+		start.connectActivity(start, d);
+		start.connectDecision(d, a, a);
+		assertEquals(Collections.singletonList(d), start.getSources(a));
+
+		assertSame(start, start.disconnect(d, a));
+		assertEquals(Arrays.asList(null, null), start.getTargets(d));
+		assertTrue(start.getSources(a).isEmpty());
+		assertNull(start.disconnect(d, a));
+		assertSame(start, start.disconnect(start, d));
+		assertTrue(start.getSources(d).isEmpty());
+		assertEquals(0, table.edges().size());
+	}
+
+	@Test
+	public void testRemoveSymbol() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol d = table.intern("d", Kind.DECISION);
+		final Symbol a = table.intern("a", Kind.ACTIVITY);
+		final Symbol b = table.intern("b", Kind.ACTIVITY);
+		start.setStart(start, false);
+		start.connectActivity(start, d);
+		start.connectDecision(d, a, b);
+		start.connectActivity(b, d);
+
+		assertSame(start, start.removeSymbol(d));
+		assertEquals(Collections.singletonList(null), start.getTargets(start));
+		assertEquals(Collections.singletonList(null), start.getTargets(b));
+		assertTrue(start.getSources(a).isEmpty());
+		assertEquals(0, table.edges().size());
+		assertNull(start.removeSymbol(d));
+		assertNull(table.lookup("d"));
+		try {
+			start.connectActivity(b, d);
+			fail("connected a removed symbol");
+		} catch (IllegalArgumentException expected) {
+			// removed symbols are not in the flowchart
+		}
+		final Flowchart again = table.intern("d", Kind.ACTIVITY);
+		assertNotSame(d, again);
+		assertSame(start, start.connectActivity(b, again));
+
+		start.removeSymbol(start);
+		assertNull(table.start());
+	}
+
+	@Test
+	public void testRemoveSymbolsCompacts() {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final List<Flowchart> odd = new ArrayList<>();
+		Symbol previous = start;
+		for (int i = 0; i < 100; i++) {
+			final Symbol decision = table.intern("d" + i, Kind.DECISION);
+			if (previous == start) {
+				start.connectActivity(start, decision);
+			} else {
+				start.connectToYesBranch(previous, decision, false);
+			}
+			start.connectToNoBranch(decision, end, false);
+			if (i % 2 == 1) {
+				odd.add(decision);
+			}
+			previous = decision;
+		}
+		start.connectToYesBranch(previous, end, false);
+		assertEquals(201, table.edges().size());
+
+		// every odd decision has a source and two targets
+		assertSame(start, start.removeSymbols(odd));
+		assertEquals(51, table.edges().size());
+		assertEquals(51, table.edges().capacity());
+		assertEquals(50, start.getSources(end).size());
+		for (int i = 0; i < 100; i += 2) {
+			final Flowchart decision = table.lookup("d" + i);
+			assertEquals(Arrays.asList(null, end), start.getTargets(decision));
+			assertEquals(i == 0 ? 1 : 0, start.getSources(decision).size());
+		}
+		assertNull(start.removeSymbols(odd));
+
+		start.connectToYesBranch(table.lookup("d0"), table.lookup("d2"), false);
+		assertEquals(Collections.singletonList(table.lookup("d0")), start.getSources(table.lookup("d2")));
+		assertEquals(52, table.edges().size());
+	}
 }
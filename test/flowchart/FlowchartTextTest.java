@@ -0,0 +1,130 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class FlowchartTextTest {
+	// Testing strategy
+	// writeDot, writeMermaid, readDot, readMermaid
+	//	  round trip of a chart with every kind, a loop and quoted labels
+	//	  DOT with subgraphs and blocks before, around and between statements
+	//	  hand-written text: chains, comments, attributes, unlabelled decision edges
+	//	  text that isn't a flowchart
+
+	private final SymbolTable table = new SymbolTable();
+
+	private Symbol sample() {
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final Symbol a = table.intern("say \"hi\"", Kind.ACTIVITY);
+		final Symbol d = table.intern("again?", Kind.DECISION);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, a);
+		a.connectActivity(a, d);
+		d.connectDecision(d, a, end);
+		return start;
+	}
+
+	private void assertSample(final Flowchart chart, final SymbolTable table) {
+		final Flowchart start = table.lookup("start");
+		final Flowchart a = table.lookup("say \"hi\"");
+		final Flowchart d = table.lookup("again?");
+		final Flowchart end = table.lookup("end");
+		assertSame(start, chart.getStart());
+		assertSame(end, chart.getEnd());
+		assertEquals(Kind.START, Kind.of(start));
+		assertEquals(Kind.DECISION, Kind.of(d));
+		assertEquals(Kind.END, Kind.of(end));
+		assertEquals(Collections.singletonList(a), chart.getTargets(start));
+		assertEquals(Collections.singletonList(d), chart.getTargets(a));
+		assertEquals(Arrays.asList(a, end), chart.getTargets(d));
+	}
+
+	@Test
+	public void testDotRoundTrip() throws IOException {
+		final StringBuilder text = new StringBuilder();
+		FlowchartWriter.writeDot(sample(), text);
+		final SymbolTable read = new SymbolTable();
+		final Flowchart chart = new ConcurrentFlowchart();
+		FlowchartReader.readDot(new StringReader(text.toString()), chart, read);
+		assertSample(chart, read);
+	}
+
+	@Test
+	public void testDotSubgraphRoundTrip() throws IOException {
+		final StringBuilder written = new StringBuilder();
+		FlowchartWriter.writeDot(sample(), written);
+		// the symbols in a subgraph, the connections after it and a block
+		final String text = written.toString();
+		final int symbols = text.indexOf('\n') + 1;
+		final int edges = text.lastIndexOf('\n', text.indexOf("->")) + 1;
+		final String nested = text.substring(0, symbols)
+				+ "\tsubgraph cluster_symbols {\n\t\tlabel=\"symbols\";\n"
+				+ text.substring(symbols, edges)
+				+ "\t}\n\t{ rank=same; }\n"
+				+ text.substring(edges);
+		final SymbolTable read = new SymbolTable();
+		final Flowchart chart = new ConcurrentFlowchart();
+		FlowchartReader.readDot(new StringReader(nested), chart, read);
+		assertSample(chart, read);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDotSubgraphNotClosed() throws IOException {
+		FlowchartReader.readDot(new StringReader("digraph { subgraph s { a -> b }"), new ConcurrentFlowchart(), table);
+	}
+
+	@Test
+	public void testMermaidRoundTrip() throws IOException {
+		final StringBuilder text = new StringBuilder();
+		FlowchartWriter.writeMermaid(sample(), text);
+		final SymbolTable read = new SymbolTable();
+		final Flowchart chart = new ConcurrentFlowchart();
+		FlowchartReader.readMermaid(new StringReader(text.toString()), chart, read);
+		assertSample(chart, read);
+	}
+
+	@Test
+	public void testReadHandWrittenDot() throws IOException {
+		final String text = "strict digraph G {\n"
+				+ "  rankdir=LR; // comment\n"
+				+ "  node [fontname=Arial];\n"
+				+ "  /* the loop */\n"
+				+ "  d -> a [label=\"no\"];\n"
+				+ "  a -> b -> d;\n"
+				+ "  d -> c [label=yes]\n"
+				+ "}\n";
+		final Flowchart chart = new ConcurrentFlowchart();
+		FlowchartReader.readDot(new StringReader(text), chart, table);
+		final Flowchart d = table.lookup("d");
+		assertEquals(Kind.DECISION, Kind.of(d));
+		assertEquals(Arrays.asList(table.lookup("c"), table.lookup("a")), chart.getTargets(d));
+		assertEquals(Collections.singletonList(d), chart.getTargets(table.lookup("b")));
+	}
+
+	@Test
+	public void testReadHandWrittenMermaid() throws IOException {
+		final String text = "%% generated\n"
+				+ "graph LR\n"
+				+ "  A[Prepare] --> B{Ready?}\n"
+				+ "  B -- yes --> C[Serve]\n"
+				+ "  B --> A\n"
+				+ "  classDef hot fill:#f00\n";
+		final Flowchart chart = new ConcurrentFlowchart();
+		FlowchartReader.readMermaid(new StringReader(text), chart, table);
+		final Flowchart ready = table.lookup("Ready?");
+		assertEquals(Arrays.asList(table.lookup("Serve"), table.lookup("Prepare")), chart.getTargets(ready));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadNotDot() throws IOException {
+		FlowchartReader.readDot(new StringReader("graph { a -- b }"), new ConcurrentFlowchart(), table);
+	}
+}
@@ -0,0 +1,84 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class InstrumentationTest {
+	// Testing strategy
+	// Interpreter with an instrumentation
+	//	  loop: yes and no counts of the decision, latency counts of every symbol
+	//	  two interpreters sharing an instrumentation add up
+	//	  snapshot taken before executions does not change
+	// Histogram
+	//	  empty, one value, values spread over many powers of two
+	//	  bucket boundaries: every value falls in a bucket that contains it
+
+	@Test
+	public void testLoop() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart end = table.intern("end", Kind.END);
+		final Flowchart count = table.intern("count", Kind.ACTIVITY);
+		final Flowchart loop = table.intern("loop?", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, count);
+		start.connectActivity(count, loop);
+		start.connectDecision(loop, count, end);
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+		actions.put(count, trace -> trace.add("count"));
+		predicates.put(loop, trace -> trace.size() < 3);
+
+		final Instrumentation instrumentation = new Instrumentation();
+		final Instrumentation.Snapshot before = instrumentation.snapshot();
+		new Interpreter<>(start, actions, predicates, instrumentation).run(new ArrayList<>());
+		new Interpreter<>(start, actions, predicates, instrumentation).run(new ArrayList<>());
+		final Instrumentation.Snapshot after = instrumentation.snapshot();
+		assertEquals(4, after.getYesCount(loop));
+		assertEquals(2, after.getNoCount(loop));
+		assertEquals(6, after.getLatency(count).getCount());
+		assertEquals(2, after.getLatency(end).getCount());
+		assertEquals(6, after.getLatency(loop).getCount());
+		assertEquals(0, before.getYesCount(loop));
+		assertEquals(0, before.getLatency(count).getCount());
+	}
+
+	@Test
+	public void testHistogram() {
+		final Instrumentation.Recorder recorder = new Instrumentation.Recorder();
+		assertEquals(0, recorder.snapshot().getMaxValue());
+		assertEquals(0, recorder.snapshot().getValueAtPercentile(50));
+		for (long value = 1; value <= 1000; value++) {
+			recorder.record(value * 1000);
+		}
+		final Instrumentation.Histogram histogram = recorder.snapshot();
+		assertEquals(1000, histogram.getCount());
+		final long median = histogram.getValueAtPercentile(50);
+		assertTrue(median >= 500_000 && median <= 500_000 + 500_000 / Instrumentation.SUB_BUCKETS);
+		final long max = histogram.getMaxValue();
+		assertTrue(max >= 1_000_000 && max <= 1_000_000 + 1_000_000 / Instrumentation.SUB_BUCKETS);
+		assertEquals(histogram.getValueAtPercentile(100), max);
+	}
+
+	@Test
+	public void testBuckets() {
+		int last = 0;
+		for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 1 << 20, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+			final int bucket = Instrumentation.bucket(value);
+			assertTrue(bucket >= last && bucket < Instrumentation.BUCKETS);
+			assertTrue(Instrumentation.highest(bucket) >= value);
+			assertTrue(bucket == 0 || Instrumentation.highest(bucket - 1) < value);
+			last = bucket;
+		}
+		assertEquals(Instrumentation.BUCKETS - 1, Instrumentation.bucket(Long.MAX_VALUE));
+	}
+}
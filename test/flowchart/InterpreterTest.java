@@ -0,0 +1,231 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class InterpreterTest {
+	// Testing strategy
+	// Interpreter(Flowchart, Map, Map)
+	//	  chart complete, missing a target, missing a predicate
+	// run: T -> void
+	//	  chart without decisions, with a decision, with a loop
+	//	  activity with and without an action
+	// Compiler.compile(Flowchart, Map, Map)
+	//	  chart without loops, with shared symbols, with a loop
+	//	  activity with and without an action
+	//	  chart longer than MAX_CODE_LENGTH (falls back)
+	// BatchInterpreter.run: T[] -> void
+	//	  empty batch, records split by a decision and joined again, loop
+
+	private final SymbolTable table = new SymbolTable();
+	private final Flowchart start = table.intern("start", Kind.START);
+	private final Flowchart end = table.intern("end", Kind.END);
+
+	private Flowchart activity(final String label) {
+		return table.intern(label, Kind.ACTIVITY);
+	}
+
+	private static Consumer<List<String>> append(final String label) {
+		return trace -> trace.add(label);
+	}
+
+	/**
+	 * start -> count -> loop? -yes-> count
+	 *                        -no--> end
+	 * where loop? holds while the trace has fewer than 3 items.
+	 */
+	private Flowchart loop(
+			final Map<Flowchart, Consumer<List<String>>> actions,
+			final Map<Flowchart, Predicate<List<String>>> predicates) {
+		final Flowchart count = activity("count");
+		final Flowchart loop = table.intern("loop?", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, count);
+		start.connectActivity(count, loop);
+		start.connectDecision(loop, count, end);
+		actions.put(count, append("count"));
+		actions.put(end, append("end"));
+		predicates.put(loop, trace -> trace.size() < 3);
+		return start;
+	}
+
+	@Test
+	public void testRunLinear() {
+		final Flowchart a = activity("a");
+		final Flowchart b = activity("b");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, b);
+		start.connectActivity(b, end);
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		actions.put(start, append("start"));
+		actions.put(b, append("b"));
+		final Interpreter<List<String>> interpreter = new Interpreter<>(
+				start, actions, Collections.<Flowchart, Predicate<List<String>>>emptyMap());
+
+		final List<String> trace = new ArrayList<>();
+		interpreter.run(trace);
+		assertEquals(Arrays.asList("start", "b"), trace);
+	}
+
+	@Test
+	public void testRunLoop() {
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+		final Interpreter<List<String>> interpreter =
+				new Interpreter<>(loop(actions, predicates), actions, predicates);
+
+		final List<String> trace = new ArrayList<>();
+		interpreter.run(trace);
+		assertEquals(Arrays.asList("count", "count", "count", "end"), trace);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingPredicate() {
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+		final Flowchart chart = loop(actions, predicates);
+		new Interpreter<>(chart, actions, Collections.<Flowchart, Predicate<List<String>>>emptyMap());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnconnectedTarget() {
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, activity("dangling"));
+		new Interpreter<Object>(start, Collections.<Flowchart, Consumer<Object>>emptyMap(),
+				Collections.<Flowchart, Predicate<Object>>emptyMap());
+	}
+
+	@Test
+	public void testCompileBranches() {
+		final Flowchart a = activity("a");
+		final Flowchart b = activity("b");
+		final Flowchart c = activity("c");
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, d);
+		start.connectDecision(d, b, c);
+		start.connectActivity(b, c);
+		start.connectActivity(c, end);
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		for (String label : Arrays.asList("a", "b", "c", "end")) {
+			actions.put(table.lookup(label), append(label));
+		}
+		final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+		predicates.put(d, trace -> trace.size() == 1);
+		final Consumer<List<String>> compiled = Compiler.compile(start, actions, predicates);
+
+		final List<String> trace = new ArrayList<>();
+		compiled.accept(trace);
+		assertEquals(Arrays.asList("a", "b", "c", "end"), trace);
+
+		predicates.put(d, trace2 -> false);
+		final List<String> other = new ArrayList<>();
+		Compiler.<List<String>>compile(start, actions, predicates).accept(other);
+		assertEquals(Arrays.asList("a", "c", "end"), other);
+	}
+
+	@Test
+	public void testCompileLoop() {
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+		final Consumer<List<String>> compiled =
+				Compiler.compile(loop(actions, predicates), actions, predicates);
+
+		final List<String> trace = new ArrayList<>();
+		compiled.accept(trace);
+		assertEquals(Arrays.asList("count", "count", "count", "end"), trace);
+	}
+
+	@Test
+	public void testCompileTooLong() {
+		final int length = Compiler.MAX_CODE_LENGTH / 10 + 1;
+		final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+		final List<String> expected = new ArrayList<>();
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		Flowchart previous = start;
+		for (int i = 0; i < length; i++) {
+			final Flowchart activity = activity("a" + i);
+			start.connectActivity(previous, activity);
+			actions.put(activity, append("a" + i));
+			expected.add("a" + i);
+			previous = activity;
+		}
+		start.connectActivity(previous, end);
+		final Consumer<List<String>> compiled = Compiler.compile(
+				start, actions, Collections.<Flowchart, Predicate<List<String>>>emptyMap());
+
+		final List<String> trace = new ArrayList<>();
+		compiled.accept(trace);
+		assertEquals(expected, trace);
+	}
+
+	@Test
+	public void testBatchSplitsAndJoins() {
+		final Flowchart even = activity("even");
+		final Flowchart odd = activity("odd");
+		final Flowchart join = activity("join");
+		final Flowchart d = table.intern("even?", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, d);
+		start.connectDecision(d, even, odd);
+		start.connectActivity(even, join);
+		start.connectActivity(odd, join);
+		start.connectActivity(join, end);
+		final List<Integer> batches = new ArrayList<>();
+		final Map<Flowchart, BatchInterpreter.Action<int[]>> actions = new HashMap<>();
+		actions.put(even, BatchInterpreter.Action.<int[]>of(record -> record[0] *= 10));
+		actions.put(odd, BatchInterpreter.Action.<int[]>of(record -> record[0] = -record[0]));
+		actions.put(join, (records, selection, count) -> batches.add(count));
+		final Map<Flowchart, BatchInterpreter.Condition<int[]>> conditions = new HashMap<>();
+		conditions.put(d, BatchInterpreter.Condition.<int[]>of(record -> record[0] % 2 == 0));
+		final BatchInterpreter<int[]> interpreter = new BatchInterpreter<>(start, actions, conditions);
+
+		final int[][] records = { {1}, {2}, {3}, {4} };
+		interpreter.run(records);
+		assertArrayEquals(new int[] {-1}, records[0]);
+		assertArrayEquals(new int[] {20}, records[1]);
+		assertArrayEquals(new int[] {-3}, records[2]);
+		assertArrayEquals(new int[] {40}, records[3]);
+		assertEquals(Collections.singletonList(4), batches);
+		interpreter.run(new int[0][]);
+	}
+
+	@Test
+	public void testBatchLoop() {
+		final Flowchart count = activity("count");
+		final Flowchart loop = table.intern("loop?", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, count);
+		start.connectActivity(count, loop);
+		start.connectDecision(loop, count, end);
+		final Map<Flowchart, BatchInterpreter.Action<int[]>> actions = new HashMap<>();
+		actions.put(count, BatchInterpreter.Action.<int[]>of(record -> record[1]++));
+		final Map<Flowchart, BatchInterpreter.Condition<int[]>> conditions = new HashMap<>();
+		conditions.put(loop, BatchInterpreter.Condition.<int[]>of(record -> record[1] < record[0]));
+
+		final int[][] records = { {1, 0}, {5, 0}, {3, 0} };
+		new BatchInterpreter<>(start, actions, conditions).run(records);
+		assertEquals(1, records[0][1]);
+		assertEquals(5, records[1][1]);
+		assertEquals(3, records[2][1]);
+	}
+}
@@ -0,0 +1,100 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class LoopAnalysisTest {
+	// Testing strategy
+	// getLoops, getLoop: -> loops, their headers and exits
+	//	  chart without loops, with two loops, with a loop without exits
+	//	  a loop as long as the chart, deeper than the call stack allows
+
+	private final SymbolTable table = new SymbolTable();
+	private final Symbol start = table.intern("start", Kind.START);
+	private final Symbol end = table.intern("end", Kind.END);
+
+	private Symbol activity(final String label) {
+		return table.intern(label, Kind.ACTIVITY);
+	}
+
+	private Symbol decision(final String label) {
+		return table.intern(label, Kind.DECISION);
+	}
+
+	@Test
+	public void testNoLoops() {
+		start.setStart(start, false);
+		start.connectActivity(start, end);
+		assertEquals(Collections.emptyList(), LoopAnalysis.of(start).getLoops());
+		assertNull(LoopAnalysis.of(start).getLoop(start));
+	}
+
+	@Test
+	public void testLoopsWithHeadersAndExits() {
+		// start -> a -> d1 -(yes)-> a, d1 -(no)-> b -> d2 -(yes)-> c -> b, d2 -(no)-> end
+		final Symbol a = activity("a");
+		final Symbol b = activity("b");
+		final Symbol c = activity("c");
+		final Symbol d1 = decision("d1");
+		final Symbol d2 = decision("d2");
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, a);
+		a.connectActivity(a, d1);
+		d1.connectDecision(d1, a, b);
+		b.connectActivity(b, d2);
+		d2.connectDecision(d2, c, end);
+		c.connectActivity(c, b);
+
+		final LoopAnalysis analysis = LoopAnalysis.of(start);
+		assertEquals(2, analysis.getLoops().size());
+		final LoopAnalysis.Loop first = analysis.getLoop(a);
+		assertEquals(first, analysis.getLoop(d1));
+		assertEquals(new HashSet<>(Arrays.asList(a, d1)), new HashSet<>(first.getSymbols()));
+		assertEquals(Collections.singletonList(a), first.getHeaders());
+		assertEquals(Collections.singletonList(d1), first.getExits());
+		final LoopAnalysis.Loop second = analysis.getLoop(c);
+		assertFalse(first.equals(second));
+		assertEquals(Collections.singletonList(b), second.getHeaders());
+		assertEquals(Collections.singletonList(d2), second.getExits());
+		assertNull(analysis.getLoop(end));
+	}
+
+	@Test
+	public void testLoopWithoutExits() {
+		final Symbol a = activity("a");
+		final Symbol b = activity("b");
+		start.setStart(start, false);
+		start.connectActivity(start, a);
+		a.connectActivity(a, b);
+		b.connectActivity(b, a);
+		final LoopAnalysis.Loop loop = LoopAnalysis.of(start).getLoop(b);
+		assertEquals(Collections.emptyList(), loop.getExits());
+	}
+
+	@Test
+	public void testDeepLoop() {
+		final int n = 200_000;
+		final Symbol first = activity("a0");
+		start.setStart(start, false);
+		start.connectActivity(start, first);
+		Symbol previous = first;
+		for (int i = 1; i < n; i++) {
+			final Symbol next = activity("a" + i);
+			previous.connectActivity(previous, next);
+			previous = next;
+		}
+		final Symbol d = decision("d");
+		previous.connectActivity(previous, d);
+		d.connectDecision(d, first, end);
+		final LoopAnalysis.Loop loop = LoopAnalysis.of(start).getLoop(d);
+		assertEquals(n + 1, loop.getSymbols().size());
+		assertEquals(Collections.singletonList(first), loop.getHeaders());
+		assertEquals(Collections.singletonList(d), loop.getExits());
+	}
+}
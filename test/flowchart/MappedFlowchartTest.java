@@ -0,0 +1,125 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class MappedFlowchartTest {
+	// Testing strategy
+	// write, open: Flowchart, Path -> MappedFlowchart
+	//	  chart with activities, a decision with both branches and a loop
+	//	  labels with non-ASCII characters
+	//	  file that isn't a flowchart
+	// getSymbol: String -> Flowchart
+	//	  label in the chart, not in the chart
+	// handles
+	//	  same symbol from different queries, same label in another opening,
+	//	  symbol of a table passed to the chart, symbols of a snapshot
+
+	@Test
+	public void testWriteAndOpen() throws IOException {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		final Symbol a = table.intern("prepare caf\u00e9", Kind.ACTIVITY);
+		final Symbol d = table.intern("done?", Kind.DECISION);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		start.connectActivity(start, a);
+		a.connectActivity(a, d);
+		d.connectDecision(d, end, a);
+
+		final Path path = Files.createTempFile("flowchart", ".bin");
+		try {
+			MappedFlowchart.write(start, path);
+			final MappedFlowchart mapped = MappedFlowchart.open(path);
+			assertEquals(4, mapped.size());
+			final Flowchart mappedStart = mapped.getStart();
+			assertEquals("start", mappedStart.toString());
+			final Flowchart mappedA = mapped.getTargets(mappedStart).get(0);
+			assertEquals("prepare caf\u00e9", mappedA.toString());
+			assertEquals(mappedA, mapped.getSymbol("prepare caf\u00e9"));
+			final Flowchart mappedD = mapped.getSymbol("done?");
+			assertEquals(Arrays.asList(mapped.getEnd(), mappedA), mapped.getTargets(mappedD));
+			assertEquals(2, mapped.getSources(mappedA).size());
+			assertEquals(Collections.singletonList(mappedD), mapped.getSources(mapped.getEnd()));
+			assertEquals(Kind.DECISION, Kind.of(mappedD));
+
+			// runs like the original
+			final StringBuilder trace = new StringBuilder();
+			new Interpreter<StringBuilder>(mapped,
+					Collections.singletonMap(mappedA, sb -> sb.append('a')),
+					Collections.singletonMap(mappedD, sb -> sb.length() == 2)).run(trace);
+			assertEquals("aa", trace.toString());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testHandles() throws IOException {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		start.connectActivity(start, end);
+
+		final Path path = Files.createTempFile("flowchart", ".bin");
+		try {
+			MappedFlowchart.write(start, path);
+			final MappedFlowchart mapped = MappedFlowchart.open(path);
+			final Flowchart mappedEnd = mapped.getTargets(mapped.getStart()).get(0);
+			assertNotSame(mappedEnd, mapped.getEnd());
+			assertEquals(mappedEnd, mapped.getEnd());
+			assertEquals(mappedEnd.hashCode(), mapped.getSymbol("end").hashCode());
+			assertEquals(Collections.singletonList(mapped.getStart()), mappedEnd.getSources(mappedEnd));
+			assertFalse(mappedEnd.equals(MappedFlowchart.open(path).getEnd()));
+			assertFalse(mappedEnd.equals(end));
+			final Flowchart frozen = mapped.freeze();
+			assertEquals(mapped.getStart(), frozen.getStart());
+			assertEquals(Collections.singletonList(mappedEnd), frozen.getTargets(mapped.getStart()));
+			assertEquals(Collections.singletonList(mapped.getStart()), frozen.getSources(mappedEnd));
+			try {
+				mapped.getSources(end);
+				fail("symbol of a table accepted by a mapped chart");
+			} catch (IllegalArgumentException expected) {
+				// not a handle of the chart
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testGetSymbolMissing() throws IOException {
+		final SymbolTable table = new SymbolTable();
+		final Symbol start = table.intern("start", Kind.START);
+		start.setStart(start, false);
+		final Path path = Files.createTempFile("flowchart", ".bin");
+		try {
+			MappedFlowchart.write(start, path);
+			MappedFlowchart.open(path).getSymbol("missing");
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotAFlowchartFile() throws IOException {
+		final Path path = Files.createTempFile("flowchart", ".bin");
+		try {
+			Files.write(path, "digraph {}".getBytes("UTF-8"));
+			MappedFlowchart.open(path);
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class MemoizationTest {
+	// Testing strategy
+	// cache: Flowchart, int, key, function, apply -> Consumer
+	//	  activity, decision, capacity 0
+	//	  keys repeated, more keys than the capacity, null result
+	//	  one stripe, many stripes; working set smaller than the capacity
+	// snapshot
+	//	  hits, misses, evictions and size; activity never cached
+
+	/**
+	 * A context: the input of the cached function and where its result goes.
+	 */
+	private static final class Context {
+		final int input;
+		String output;
+
+		Context(final int input) {
+			this.input = input;
+		}
+	}
+
+	@Test
+	public void testCache() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart score = table.intern("score", Kind.ACTIVITY);
+		final Flowchart end = table.intern("end", Kind.END);
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		start.connectActivity(start, score);
+		start.connectActivity(score, end);
+
+		final AtomicInteger calls = new AtomicInteger();
+		final Memoization memoization = new Memoization();
+		final Map<Flowchart, Consumer<Context>> actions = new HashMap<>();
+		actions.put(score, memoization.<Context, Integer, String>cache(score, 100,
+				context -> context.input,
+				input -> {
+					calls.incrementAndGet();
+					return input < 0 ? null : "score " + input;
+				},
+				(context, result) -> context.output = result));
+		final Interpreter<Context> interpreter =
+				new Interpreter<>(start, actions, new HashMap<Flowchart, Predicate<Context>>());
+
+		for (int input : Arrays.asList(1, 2, 1, -1, 1, -1)) {
+			final Context context = new Context(input);
+			interpreter.run(context);
+			assertEquals(input < 0 ? null : "score " + input, context.output);
+		}
+		assertEquals(3, calls.get());
+		final Memoization.Snapshot snapshot = memoization.snapshot();
+		assertEquals(3, snapshot.getHitCount(score));
+		assertEquals(3, snapshot.getMissCount(score));
+		assertEquals(0, snapshot.getEvictionCount(score));
+		assertEquals(3, snapshot.getSize(score));
+		assertEquals(0, snapshot.getMissCount(start));
+	}
+
+	@Test
+	public void testEviction() {
+		final Flowchart activity = new SymbolTable().intern("square", Kind.ACTIVITY);
+		for (int capacity : new int[] {1, 3, 64}) {
+			final Memoization memoization = new Memoization();
+			final Consumer<int[]> square = memoization.<int[], Integer, Integer>cache(activity, capacity,
+					context -> context[0], input -> input * input, (context, result) -> context[1] = result);
+			for (int i = 0; i < 1000; i++) {
+				final int[] context = {i % 200, 0};
+				square.accept(context);
+				assertEquals(context[0] * context[0], context[1]);
+			}
+			final Memoization.Snapshot snapshot = memoization.snapshot();
+			assertEquals(capacity, snapshot.getSize(activity));
+			assertEquals(1000, snapshot.getHitCount(activity) + snapshot.getMissCount(activity));
+			assertEquals(snapshot.getMissCount(activity) - capacity, snapshot.getEvictionCount(activity));
+			assertTrue(snapshot.getMissCount(activity) >= 200);
+		}
+
+		final Memoization memoization = new Memoization();
+		final Consumer<int[]> square = memoization.<int[], Integer, Integer>cache(activity, 1000,
+				context -> context[0], input -> input * input, (context, result) -> context[1] = result);
+		for (int i = 0; i < 1000; i++) {
+			square.accept(new int[] {i % 200, 0});
+		}
+		assertEquals(200, memoization.snapshot().getMissCount(activity));
+		assertEquals(800, memoization.snapshot().getHitCount(activity));
+	}
+
+	@Test
+	public void testWorkingSet() {
+		final Flowchart activity = new SymbolTable().intern("square", Kind.ACTIVITY);
+		final int[][] cases = {{16, 2, 16}, {16, 16, 1}, {4096, 2000, 1}};
+		for (int[] c : cases) {
+			final int capacity = c[0];
+			final int keys = c[1];
+			final int stride = c[2];
+			final Memoization memoization = new Memoization();
+			final Consumer<int[]> square = memoization.<int[], Integer, Integer>cache(activity, capacity,
+					context -> context[0], input -> input * input, (context, result) -> context[1] = result);
+			for (int i = 0; i < 10 * keys; i++) {
+				square.accept(new int[] {i % keys * stride, 0});
+			}
+			final Memoization.Snapshot snapshot = memoization.snapshot();
+			assertEquals(keys, snapshot.getMissCount(activity));
+			assertEquals(9 * keys, snapshot.getHitCount(activity));
+			assertEquals(0, snapshot.getEvictionCount(activity));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCacheDecision() {
+		new Memoization().<Object, Object, Object>cache(new SymbolTable().intern("d", Kind.DECISION), 1,
+				context -> context, input -> input, (context, result) -> { });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCacheNothing() {
+		new Memoization().<Object, Object, Object>cache(new SymbolTable().intern("a", Kind.ACTIVITY), 0,
+				context -> context, input -> input, (context, result) -> { });
+	}
+}
@@ -0,0 +1,223 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class OffHeapFlowchartTest {
+	// Testing strategy
+	// instantiate: String -> Flowchart
+	//	  label seen before, not seen before, non-ASCII, blank
+	// connect*, getTargets, getSources: same answers as a chart of symbols
+	//	  decision with both branches to the same symbol, reset connection
+	// disconnect, removeSymbol
+	//	  symbol with sources and targets, the start, labels still interned
+	//	  after many removals
+	// map: Path -> OffHeapFlowchart
+	//	  new directory, reopened after close
+	// freeze
+	//	  snapshot labelled and connected like the chart, answering its handles
+	// Interpreter, FlowchartWriter
+	//	  actions and predicates bound to handles, text written from handles
+
+	@Test
+	public void testInstantiate() {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		final Flowchart a = chart.instantiate("caf\u00e9");
+		assertEquals(a, chart.instantiateDecision("caf\u00e9"));
+		assertEquals(a.hashCode(), chart.instantiate("caf\u00e9").hashCode());
+		assertEquals("caf\u00e9", a.toString());
+		assertEquals(Kind.ACTIVITY, Kind.of(a));
+		assertEquals(Kind.DECISION, Kind.of(chart.instantiateDecision("d")));
+		assertFalse(a.equals(chart.instantiate("b")));
+		assertFalse(a.equals(OffHeapFlowchart.allocate().instantiate("caf\u00e9")));
+		assertEquals(3, chart.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInstantiateBlank() {
+		OffHeapFlowchart.allocate().instantiate("  ");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testForeignSymbol() {
+		OffHeapFlowchart.allocate().getTargets(new SymbolTable().intern("a", Kind.ACTIVITY));
+	}
+
+	/**
+	 * start -> a -> d? -yes-> b -> end, d? -no-> a
+	 */
+	private static void build(final Flowchart chart, final Flowchart start, final Flowchart a,
+			final Flowchart b, final Flowchart d, final Flowchart end) {
+		chart.setStart(start, false);
+		chart.setEnd(end, false);
+		chart.connectActivity(start, a);
+		chart.connectActivity(a, d);
+		chart.connectDecision(d, b, b);
+		chart.connectToNoBranch(d, a, true);
+		chart.connectActivity(b, end);
+	}
+
+	@Test
+	public void testConnectLikeSymbols() {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		final Flowchart start = chart.instantiateStart("start");
+		final Flowchart a = chart.instantiate("a");
+		final Flowchart b = chart.instantiate("b");
+		final Flowchart d = chart.instantiateDecision("d");
+		final Flowchart end = chart.instantiateEnd("end");
+		build(chart, start, a, b, d, end);
+		final SymbolTable table = new SymbolTable();
+		final Symbol symbols = table.intern("start", Kind.START);
+		build(symbols, symbols, table.intern("a", Kind.ACTIVITY), table.intern("b", Kind.ACTIVITY),
+				table.intern("d", Kind.DECISION), table.intern("end", Kind.END));
+
+		for (Flowchart symbol : Arrays.asList(start, a, b, d, end)) {
+			final Symbol expected = table.lookup(symbol.toString());
+			assertEquals(symbols.getTargets(expected).toString(), chart.getTargets(symbol).toString());
+			assertEquals(new HashSet<>(Arrays.asList(symbols.getSources(expected).toString())),
+					new HashSet<>(Arrays.asList(chart.getSources(symbol).toString())));
+		}
+		assertEquals(start, chart.getStart());
+		assertEquals(end, a.getEnd());
+		assertNull(chart.connectActivity(a, start));
+		assertNull(chart.connectActivity(a, a));
+		assertNull(chart.connectActivityIfAbsent(start, b));
+
+		final StringBuilder targets = new StringBuilder();
+		chart.forEachTarget(d, (target, slot) -> targets.append(slot).append(target));
+		assertEquals("0b1a", targets.toString());
+	}
+
+	@Test
+	public void testRemove() {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		final Flowchart start = chart.instantiateStart("start");
+		final Flowchart a = chart.instantiate("a");
+		final Flowchart b = chart.instantiate("b");
+		final Flowchart d = chart.instantiateDecision("d");
+		final Flowchart end = chart.instantiateEnd("end");
+		build(chart, start, a, b, d, end);
+
+		assertSame(chart, chart.disconnect(d, a));
+		assertEquals(Arrays.asList(b, null), chart.getTargets(d));
+		assertEquals(Collections.singletonList(start), chart.getSources(a));
+		assertNull(chart.disconnect(d, a));
+
+		assertSame(chart, chart.removeSymbol(d));
+		assertEquals(Collections.singletonList(null), chart.getTargets(a));
+		assertTrue(chart.getSources(b).isEmpty());
+		assertNull(chart.removeSymbol(d));
+		try {
+			chart.getTargets(d);
+			fail("removed symbol still in the chart");
+		} catch (IllegalArgumentException expected) {
+			// removed symbols are not in the flowchart
+		}
+		assertFalse(d.equals(chart.instantiateDecision("d")));
+
+		chart.removeSymbol(start);
+		try {
+			chart.getStart();
+			fail("removed start still in the chart");
+		} catch (NoSuchElementException expected) {
+			// the chart has no start
+		}
+	}
+
+	@Test
+	public void testManyRemovals() {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		for (int i = 0; i < 1000; i++) {
+			chart.instantiate("s" + i);
+		}
+		for (int i = 0; i < 1000; i += 3) {
+			chart.removeSymbol(chart.instantiate("s" + i));
+		}
+		for (int i = 0; i < 1000; i++) {
+			if (i % 3 != 0) {
+				assertEquals(i, chart.instantiate("s" + i).hashCode());
+			}
+		}
+		assertEquals(1000, chart.size());
+		for (int i = 0; i < 1000; i += 3) {
+			assertTrue(chart.instantiate("s" + i).hashCode() >= 1000);
+		}
+		assertEquals(1334, chart.size());
+	}
+
+	@Test
+	public void testMapAndReopen() throws IOException {
+		final Path directory = Files.createTempDirectory("flowchart");
+		try {
+			try (OffHeapFlowchart chart = OffHeapFlowchart.map(directory)) {
+				build(chart, chart.instantiateStart("start"), chart.instantiate("a"), chart.instantiate("b"),
+						chart.instantiateDecision("d"), chart.instantiateEnd("end"));
+			}
+			try (OffHeapFlowchart chart = OffHeapFlowchart.map(directory)) {
+				assertEquals(5, chart.size());
+				assertEquals("start", chart.getStart().toString());
+				final Flowchart d = chart.instantiateDecision("d");
+				assertEquals("[b, a]", chart.getTargets(d).toString());
+				assertEquals(5, chart.size());
+			}
+		} finally {
+			for (String file : new String[] {"symbols", "labels", "index"}) {
+				Files.deleteIfExists(directory.resolve(file));
+			}
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testFreeze() {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		final Flowchart d = chart.instantiateDecision("d");
+		build(chart, chart.instantiateStart("start"), chart.instantiate("a"), chart.instantiate("b"), d,
+				chart.instantiateEnd("end"));
+		chart.instantiate("unconnected");
+
+		final FrozenFlowchart frozen = (FrozenFlowchart) chart.freeze();
+		assertEquals(5, frozen.size());
+		assertEquals("start", frozen.getStart().toString());
+		final Flowchart a = frozen.getTargets(frozen.getStart()).get(0);
+		final Flowchart frozenD = frozen.getTargets(a).get(0);
+		assertEquals("[b, a]", frozen.getTargets(frozenD).toString());
+		assertEquals(Kind.DECISION, Kind.of(frozenD));
+		assertEquals(d, frozenD);
+		assertEquals(chart.getStart(), frozen.getStart());
+	}
+
+	@Test
+	public void testInterpret() throws IOException {
+		final OffHeapFlowchart chart = OffHeapFlowchart.allocate();
+		final Flowchart a = chart.instantiate("a");
+		final Flowchart b = chart.instantiate("b");
+		final Flowchart d = chart.instantiateDecision("d");
+		build(chart, chart.instantiateStart("start"), a, b, d, chart.instantiateEnd("end"));
+
+		final Map<Flowchart, Consumer<StringBuilder>> actions = new HashMap<>();
+		actions.put(a, trace -> trace.append('a'));
+		actions.put(b, trace -> trace.append('b'));
+		final StringBuilder trace = new StringBuilder();
+		new Interpreter<StringBuilder>(chart, actions,
+				Collections.singletonMap(d, t -> t.length() >= 2)).run(trace);
+		assertEquals("aab", trace.toString());
+
+		final StringBuilder dot = new StringBuilder();
+		FlowchartWriter.writeDot(chart, dot);
+		assertTrue(dot.toString(), dot.indexOf("\"start\" [shape=Mdiamond, start=true]") >= 0);
+		assertTrue(dot.toString(), dot.indexOf("\"d\" -> \"a\" [label=no]") >= 0);
+	}
+}
@@ -0,0 +1,147 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class OptimizerTest {
+	// Testing strategy
+	// plan
+	//	  decision whose no branch is hot: the no branch follows it
+	//	  and-chain of independent decisions: most likely to fail first
+	//	  same chain, decisions not independent: order kept
+	// optimize
+	//	  same actions in the same order as the plain interpreter, for every input
+
+	private final SymbolTable table = new SymbolTable();
+	private final Flowchart start = table.intern("start", Kind.START);
+	private final Flowchart end = table.intern("end", Kind.END);
+	private final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+	private final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+
+	private Flowchart activity(final String label) {
+		final Flowchart activity = table.intern(label, Kind.ACTIVITY);
+		actions.put(activity, trace -> trace.add(label));
+		return activity;
+	}
+
+	/**
+	 * start -> a? -yes-> b? -yes-> c? -yes-> pass -> end
+	 * where every no branch goes to fail -> end, and the predicate of x?
+	 * holds iff the trace has no x in it yet.
+	 */
+	private List<Flowchart> chain() {
+		final Flowchart pass = activity("pass");
+		final Flowchart fail = activity("fail");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		final List<Flowchart> decisions = new ArrayList<>();
+		for (String label : new String[] {"a", "b", "c"}) {
+			final Flowchart decision = table.intern(label + "?", Kind.DECISION);
+			predicates.put(decision, trace -> !trace.contains(label));
+			decisions.add(decision);
+		}
+		start.connectActivity(start, decisions.get(0));
+		start.connectDecision(decisions.get(0), decisions.get(1), fail);
+		start.connectDecision(decisions.get(1), decisions.get(2), fail);
+		start.connectDecision(decisions.get(2), pass, fail);
+		start.connectActivity(pass, end);
+		start.connectActivity(fail, end);
+		return decisions;
+	}
+
+	/**
+	 * @return the profile of running the chart on traces holding the
+	 *     labels of each of {@code inputs}.
+	 */
+	private Instrumentation.Snapshot profile(final String... inputs) {
+		final Instrumentation instrumentation = new Instrumentation();
+		final Interpreter<List<String>> interpreter = new Interpreter<>(start, actions, predicates, instrumentation);
+		for (String input : inputs) {
+			interpreter.run(trace(input));
+		}
+		return instrumentation.snapshot();
+	}
+
+	private static List<String> trace(final String input) {
+		final List<String> trace = new ArrayList<>();
+		for (char c : input.toCharArray()) {
+			trace.add(String.valueOf(c));
+		}
+		return trace;
+	}
+
+	@Test
+	public void testHotBranchFollows() {
+		final Flowchart decision = table.intern("d?", Kind.DECISION);
+		final Flowchart yes = activity("yes");
+		final Flowchart no = activity("no");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, decision);
+		start.connectDecision(decision, yes, no);
+		start.connectActivity(yes, end);
+		start.connectActivity(no, end);
+		predicates.put(decision, trace -> trace.isEmpty());
+
+		final Program program = Optimizer.plan(Program.of(start), profile("x", "x", "x", ""),
+				Collections.<Flowchart>emptySet());
+		final int at = indexOf(program, decision);
+		assertSame(no, program.symbol(at + 1));
+		assertSame(no, program.symbol(program.alt(at)));
+		assertSame(yes, program.symbol(program.next(at)));
+	}
+
+	private static int indexOf(final Program program, final Flowchart symbol) {
+		for (int i = 0; i < program.size(); i++) {
+			if (program.symbol(i) == symbol) {
+				return i;
+			}
+		}
+		throw new AssertionError(symbol + " not laid out");
+	}
+
+	@Test
+	public void testChainReordered() {
+		final List<Flowchart> decisions = chain();
+		// c? fails half the time, b? once in twenty, a? never
+		final String[] inputs = new String[20];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = i == 0 ? "bc" : i % 2 == 0 ? "c" : "";
+		}
+		final Instrumentation.Snapshot profile = profile(inputs);
+		final Program program = Optimizer.plan(Program.of(start), profile, new HashSet<>(decisions));
+		final int first = program.next(program.start());
+		assertSame(decisions.get(2), program.symbol(first));
+		assertSame(decisions.get(1), program.symbol(program.next(first)));
+		assertSame(decisions.get(0), program.symbol(program.next(program.next(first))));
+
+		final Interpreter<List<String>> plain = new Interpreter<>(start, actions, predicates);
+		final Interpreter<List<String>> optimized = Optimizer.optimize(
+				start, actions, predicates, profile, new HashSet<>(decisions));
+		for (String input : new String[] {"", "a", "b", "c", "ab", "ac", "bc", "abc"}) {
+			final List<String> expected = trace(input);
+			final List<String> actual = trace(input);
+			plain.run(expected);
+			optimized.run(actual);
+			assertEquals(input, expected, actual);
+		}
+	}
+
+	@Test
+	public void testChainNotIndependent() {
+		final List<Flowchart> decisions = chain();
+		final Program program = Optimizer.plan(Program.of(start), profile("c", "c", "bc"),
+				Collections.<Flowchart>emptySet());
+		assertSame(decisions.get(0), program.symbol(program.next(program.start())));
+	}
+}
@@ -0,0 +1,136 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PersistentFlowchartTest {
+	// Testing strategy
+	// PersistentIntMap.put, remove, get
+	//	  random keys compared against a HashMap, older versions unchanged
+	// connectActivity, connectDecision: -> PersistentFlowchart
+	//	  old version unchanged, new version connected, unsuccessful connection
+	// withStart, withEnd: -> PersistentFlowchart
+	//	  no start yet, start exists with and without reset
+	// disconnect, removeSymbol, removeSymbols: -> PersistentFlowchart
+	//	  old version unchanged, sources and targets updated, start removed,
+	//	  symbol not in the version
+
+	private final SymbolTable table = new SymbolTable();
+
+	@Test
+	public void testIntMapAgainstHashMap() {
+		final Random random = new Random(42);
+		final Map<Integer, Integer> expected = new HashMap<>();
+		PersistentIntMap<Integer> map = PersistentIntMap.empty();
+		for (int i = 0; i < 20000; i++) {
+			final int key = random.nextInt(5000) * (random.nextBoolean() ? 1 : 977);
+			if (random.nextInt(3) == 0) {
+				expected.remove(key);
+				map = map.remove(key);
+			} else {
+				expected.put(key, i);
+				map = map.put(key, i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		final int[] count = new int[1];
+		map.forEachValue(value -> count[0]++);
+		assertEquals(expected.size(), count[0]);
+	}
+
+	@Test
+	public void testIntMapVersions() {
+		final PersistentIntMap<String> one = PersistentIntMap.<String>empty().put(1, "a");
+		final PersistentIntMap<String> two = one.put(33, "b");
+		assertNull(one.get(33));
+		assertEquals("b", two.get(33));
+		assertEquals(1, two.remove(33).size());
+		assertEquals("a", two.remove(33).get(1));
+		assertSame(two, two.remove(7));
+	}
+
+	@Test
+	public void testConnectMakesNewVersion() {
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		final Flowchart c = table.intern("c", Kind.ACTIVITY);
+		final PersistentFlowchart empty = PersistentFlowchart.empty();
+		final PersistentFlowchart first = empty.connectActivity(a, b);
+		final PersistentFlowchart second = first.connectActivity(a, c);
+
+		assertEquals(Collections.singletonList(null), empty.getTargets(a));
+		assertEquals(Collections.singletonList(b), first.getTargets(a));
+		assertEquals(Collections.singletonList(a), first.getSources(b));
+		assertEquals(Collections.singletonList(c), second.getTargets(a));
+		assertEquals(Collections.emptyList(), second.getSources(b));
+		assertEquals(Collections.singletonList(a), second.getSources(c));
+		assertNull(second.connectActivity(a, a));
+		assertNull(second.connectActivityIfAbsent(a, b));
+	}
+
+	@Test
+	public void testDecisionAndTerminals() {
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart end = table.intern("end", Kind.END);
+		final PersistentFlowchart chart = PersistentFlowchart.empty()
+				.withStart(start, false)
+				.withEnd(end, false)
+				.connectActivity(start, d)
+				.connectDecision(d, a, end)
+				.connectActivity(a, end);
+		assertSame(start, chart.getStart());
+		assertEquals(Arrays.asList(a, end), chart.getTargets(d));
+		assertEquals(2, chart.getSources(end).size());
+		final Flowchart b = table.intern("b", Kind.ACTIVITY);
+		assertSame(chart, chart.withStart(b, false));
+		assertSame(b, chart.withStart(b, true).getStart());
+		assertSame(start, chart.getStart());
+
+		final Flowchart frozen = chart.freeze();
+		assertEquals(Arrays.asList(a, end), frozen.getTargets(d));
+	}
+
+	@Test
+	public void testRemove() {
+		final Flowchart start = table.intern("start", Kind.START);
+		final Flowchart d = table.intern("d", Kind.DECISION);
+		final Flowchart a = table.intern("a", Kind.ACTIVITY);
+		final Flowchart end = table.intern("end", Kind.END);
+		final PersistentFlowchart chart = PersistentFlowchart.empty()
+				.withStart(start, false)
+				.withEnd(end, false)
+				.connectActivity(start, d)
+				.connectDecision(d, a, end)
+				.connectActivity(a, end);
+
+		final PersistentFlowchart disconnected = chart.disconnect(d, end);
+		assertEquals(Arrays.asList(a, null), disconnected.getTargets(d));
+		assertEquals(Collections.singletonList(a), disconnected.getSources(end));
+		assertEquals(2, chart.getSources(end).size());
+		assertNull(disconnected.disconnect(d, end));
+
+		final PersistentFlowchart removed = chart.removeSymbol(d);
+		assertEquals(Collections.singletonList(null), removed.getTargets(start));
+		assertEquals(Collections.singletonList(a), removed.getSources(end));
+		assertTrue(removed.getSources(a).isEmpty());
+		assertEquals(Arrays.asList(a, end), chart.getTargets(d));
+		assertNull(removed.removeSymbol(d));
+
+		final PersistentFlowchart bare = chart.removeSymbols(Arrays.asList(start, d, a));
+		assertTrue(bare.getSources(end).isEmpty());
+		assertSame(end, bare.getEnd());
+		assertSame(PersistentFlowchart.empty(), bare.removeSymbol(end));
+	}
+}
@@ -0,0 +1,100 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ReachabilityIndexTest {
+	// Testing strategy
+	// canReach, canReachEnd: Flowchart -> boolean
+	//	  charts with loops, of fewer and more than CLOSURE_LIMIT components
+	//	  symbol reaching itself, symbol not in the chart
+	//	  compared with a breadth-first search over getTargets
+
+	private static List<Symbol> randomChart(final SymbolTable table, final int n, final long seed) {
+		final Random random = new Random(seed);
+		final Symbol start = table.intern("start", Kind.START);
+		final Symbol end = table.intern("end", Kind.END);
+		start.setStart(start, false);
+		end.setEnd(end, false);
+		final List<Symbol> symbols = new ArrayList<>();
+		symbols.add(start);
+		for (int i = 0; i < n; i++) {
+			symbols.add(table.intern("s" + i, random.nextInt(4) == 0 ? Kind.DECISION : Kind.ACTIVITY));
+		}
+		symbols.add(end);
+		for (int i = 0; i <= n; i++) {
+			final Symbol source = symbols.get(i);
+			// mostly forward connections, some going back to make loops
+			final Symbol next = symbols.get(i + 1);
+			if (source.kind() == Kind.DECISION) {
+				final int branch = random.nextInt(10) == 0 && i > 1
+						? i - 1 - random.nextInt(Math.min(i - 1, 4))
+						: Math.min(n + 1, i + 2 + random.nextInt(50));
+				source.connectDecision(source, next, symbols.get(branch));
+			} else {
+				source.connectActivity(source, next);
+			}
+		}
+		return symbols;
+	}
+
+	private static Set<Flowchart> reachable(final Flowchart chart, final Flowchart from) {
+		final Set<Flowchart> reached = new HashSet<>();
+		final ArrayDeque<Flowchart> queue = new ArrayDeque<>();
+		reached.add(from);
+		queue.add(from);
+		while (!queue.isEmpty()) {
+			for (Flowchart target : chart.getTargets(queue.remove())) {
+				if (target != null && reached.add(target)) {
+					queue.add(target);
+				}
+			}
+		}
+		return reached;
+	}
+
+	private static void check(final int n) {
+		final SymbolTable table = new SymbolTable();
+		final List<Symbol> symbols = randomChart(table, n, n);
+		final Flowchart chart = symbols.get(0).freeze();
+		final ReachabilityIndex index = ReachabilityIndex.of(chart);
+		final Random random = new Random(0);
+		for (int i = 0; i < 20; i++) {
+			final Symbol from = symbols.get(random.nextInt(symbols.size()));
+			final Set<Flowchart> reached = reachable(chart, from);
+			assertTrue(index.canReachEnd(from));
+			for (Symbol to : symbols) {
+				assertEquals(from + " -> " + to, reached.contains(to), index.canReach(from, to));
+			}
+		}
+	}
+
+	@Test
+	public void testSmallChart() {
+		check(500);
+	}
+
+	@Test
+	public void testLargeChart() {
+		check(2 * ReachabilityIndex.CLOSURE_LIMIT);
+	}
+
+	@Test
+	public void testSymbolNotInChart() {
+		final SymbolTable table = new SymbolTable();
+		final List<Symbol> symbols = randomChart(table, 10, 0);
+		final Symbol other = table.intern("other", Kind.ACTIVITY);
+		final ReachabilityIndex index = ReachabilityIndex.of(symbols.get(0));
+		assertTrue(index.canReach(other, other));
+		assertFalse(index.canReach(symbols.get(0), other));
+		assertFalse(index.canReachEnd(other));
+	}
+}
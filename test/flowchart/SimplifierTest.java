@@ -0,0 +1,154 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class SimplifierTest {
+	// Testing strategy
+	// plan, simplify
+	//	  chain of activities from the start: one step
+	//	  decision whose branches go to the same symbol: folded, chains fused across it
+	//	  constant decision without a predicate: folded, dead branch dropped
+	//	  loop: a symbol reached from two symbols begins a step
+	//	  same trace as the plain interpreter
+	// prune
+	//	  unreachable symbols leading into reachable ones; unreachable end: kept
+	//	  nothing unreachable: same chart; persistent chart: new version
+
+	private final SymbolTable table = new SymbolTable();
+	private final Flowchart start = table.intern("start", Kind.START);
+	private final Flowchart end = table.intern("end", Kind.END);
+	private final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+	private final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+
+	private Flowchart activity(final String label) {
+		final Flowchart activity = table.intern(label, Kind.ACTIVITY);
+		actions.put(activity, trace -> trace.add(label));
+		return activity;
+	}
+
+	private List<String> run(final Interpreter<List<String>> interpreter) {
+		final List<String> trace = new ArrayList<>();
+		interpreter.run(trace);
+		return trace;
+	}
+
+	@Test
+	public void testSameBranches() {
+		final Flowchart a = activity("a");
+		final Flowchart b = activity("b");
+		final Flowchart d = table.intern("d?", Kind.DECISION);
+		final Flowchart c = activity("c");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, b);
+		start.connectActivity(b, d);
+		start.connectDecision(d, c, c);
+		start.connectActivity(c, end);
+		actions.put(start, trace -> trace.add("start"));
+		predicates.put(d, trace -> true);
+
+		final Simplifier.Plan plan = Simplifier.plan(Program.of(start), Collections.<Flowchart, Boolean>emptyMap());
+		assertEquals(2, plan.program.size());
+		assertEquals(Arrays.asList(start, a, b, c), symbols(plan, plan.program.start()));
+		assertEquals(Arrays.asList("start", "a", "b", "c"),
+				run(Simplifier.simplify(start, actions, predicates)));
+	}
+
+	private static List<Flowchart> symbols(final Simplifier.Plan plan, final int step) {
+		final List<Flowchart> symbols = new ArrayList<>();
+		for (int symbol : plan.steps[step]) {
+			symbols.add(plan.program.chart().symbol(symbol));
+		}
+		return symbols;
+	}
+
+	@Test
+	public void testConstant() {
+		final Flowchart d = table.intern("d?", Kind.DECISION);
+		final Flowchart yes = activity("yes");
+		final Flowchart no = activity("no");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, d);
+		start.connectDecision(d, yes, no);
+		start.connectActivity(yes, end);
+		start.connectActivity(no, end);
+
+		final Map<Flowchart, Boolean> constants = Collections.singletonMap(d, false);
+		final Simplifier.Plan plan = Simplifier.plan(Program.of(start), constants);
+		assertEquals(2, plan.program.size());
+		assertEquals(Arrays.asList(start, no), symbols(plan, plan.program.start()));
+		assertEquals(Arrays.asList("no"), run(Simplifier.simplify(start, actions, predicates, constants)));
+	}
+
+	@Test
+	public void testLoop() {
+		final Flowchart a = activity("a");
+		final Flowchart b = activity("b");
+		final Flowchart loop = table.intern("loop?", Kind.DECISION);
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, b);
+		start.connectActivity(b, loop);
+		start.connectDecision(loop, a, end);
+		predicates.put(loop, trace -> trace.size() < 6);
+
+		final Simplifier.Plan plan = Simplifier.plan(Program.of(start), Collections.<Flowchart, Boolean>emptyMap());
+		assertEquals(4, plan.program.size());
+		assertEquals(Arrays.asList(a, b), symbols(plan, plan.program.next(plan.program.start())));
+		assertEquals(run(new Interpreter<>(start, actions, predicates)),
+				run(Simplifier.simplify(start, actions, predicates)));
+	}
+
+	@Test
+	public void testPrune() {
+		final Flowchart a = activity("a");
+		final Flowchart b = activity("b");
+		final Flowchart d = table.intern("d?", Kind.DECISION);
+		final Flowchart orphan = activity("orphan");
+		final Flowchart dead = activity("dead");
+		start.setStart(start, true);
+		start.setEnd(end, true);
+		start.connectActivity(start, a);
+		start.connectActivity(a, d);
+		start.connectDecision(d, b, end);
+		start.connectActivity(b, end);
+		start.connectActivity(orphan, dead);
+		start.connectActivity(dead, b);
+		assertSame(start, Simplifier.prune(start));
+		assertEquals(Collections.singletonList(a), start.getSources(d));
+		assertEquals(Collections.singletonList(d), start.getSources(b));
+		assertNull(table.lookup("orphan"));
+		assertNull(table.lookup("dead"));
+		assertSame(start, Simplifier.prune(start));
+
+		final SymbolTable other = new SymbolTable();
+		final Flowchart s = other.intern("s", Kind.START);
+		final Flowchart x = other.intern("x", Kind.ACTIVITY);
+		final Flowchart y = other.intern("y", Kind.ACTIVITY);
+		final Flowchart e = other.intern("e", Kind.END);
+		final Flowchart persistent = PersistentFlowchart.empty()
+				.withStart(s, true).withEnd(e, true)
+				.connectActivity(x, e)
+				.connectActivity(y, e);
+		final Flowchart pruned = Simplifier.prune(persistent);
+		assertNotSame(persistent, pruned);
+		assertEquals(new HashSet<>(Arrays.asList(x, y)), new HashSet<>(persistent.getSources(e)));
+		assertEquals(Collections.emptyList(), pruned.getSources(e));
+		assertEquals(e, pruned.getEnd());
+	}
+}
@@ -0,0 +1,152 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+public class SubchartTest {
+	// Testing strategy
+	// subchart: String, Flowchart -> Symbol
+	//	  label not seen before, seen before as an activity, null chart
+	// Interpreter, Compiler, Simplifier, BatchInterpreter
+	//	  subchart executed in place, twice in one parent, in two parents
+	//	  subchart with an action of its own: the action runs instead
+	//	  subchart of an invalid chart on a branch never taken: never resolved
+	//	  subchart of an invalid chart that is reached
+	// freeze, ExecutionPath
+	//	  the subchart is one activity
+
+	private final Map<Flowchart, Consumer<List<String>>> actions = new HashMap<>();
+	private final Map<Flowchart, Predicate<List<String>>> predicates = new HashMap<>();
+
+	/**
+	 * @return start -> each step -> end, in table.
+	 */
+	private static Symbol line(final SymbolTable table, final String prefix, final Flowchart... steps) {
+		final Symbol start = table.intern(prefix + "start", Kind.START);
+		final Symbol end = table.intern(prefix + "end", Kind.END);
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		Flowchart previous = start;
+		for (Flowchart step : steps) {
+			start.connectActivity(previous, step);
+			previous = step;
+		}
+		start.connectActivity(previous, end);
+		return start;
+	}
+
+	/**
+	 * @return an activity appending its label to the trace.
+	 */
+	private Flowchart activity(final SymbolTable table, final String label) {
+		final Flowchart activity = table.intern(label, Kind.ACTIVITY);
+		actions.put(activity, trace -> trace.add(label));
+		return activity;
+	}
+
+	private static List<String> run(final Consumer<List<String>> execution) {
+		final List<String> trace = new ArrayList<>();
+		execution.accept(trace);
+		return trace;
+	}
+
+	@Test
+	public void testSubchart() {
+		final SymbolTable table = new SymbolTable();
+		final Flowchart sub = table.subchart("sub", line(new SymbolTable(), "x"));
+		assertEquals(Kind.ACTIVITY, Kind.of(sub));
+		assertSame(sub, table.subchart("sub", line(new SymbolTable(), "y")));
+		assertSame(sub, table.intern("sub", Kind.DECISION));
+		assertFalse(table.subchart("a", line(new SymbolTable(), "z")) instanceof Decision);
+		assertFalse(table.intern("b", Kind.ACTIVITY) instanceof Subchart);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubchartOfNothing() {
+		new SymbolTable().subchart("sub", null);
+	}
+
+	@Test
+	public void testExecutedInPlace() {
+		final SymbolTable shared = new SymbolTable();
+		final Flowchart shared1 = activity(shared, "s1");
+		final Flowchart shared2 = activity(shared, "s2");
+		final Symbol body = line(shared, "shared ", shared1, shared2);
+
+		final SymbolTable parent = new SymbolTable();
+		final Flowchart first = parent.subchart("first", body);
+		final Flowchart second = parent.subchart("second", body);
+		final Flowchart a = activity(parent, "a");
+		final Symbol chart = line(parent, "", first, a, second);
+		final SymbolTable other = new SymbolTable();
+		final Symbol otherChart = line(other, "other ", activity(other, "b"), other.subchart("again", body));
+
+		final List<String> expected = Arrays.asList("s1", "s2", "a", "s1", "s2");
+		assertEquals(expected, run(new Interpreter<>(chart, actions, predicates)::run));
+		assertEquals(expected, run(Compiler.compile(chart, actions, predicates)));
+		assertEquals(expected, run(Simplifier.simplify(chart, actions, predicates)::run));
+		assertEquals(Arrays.asList("b", "s1", "s2"), run(new Interpreter<>(otherChart, actions, predicates)::run));
+
+		final Map<Flowchart, BatchInterpreter.Action<List<String>>> batchActions = new HashMap<>();
+		actions.forEach((symbol, action) -> batchActions.put(symbol, BatchInterpreter.Action.of(action)));
+		final List<List<String>> contexts = Arrays.asList(new ArrayList<String>(), new ArrayList<String>());
+		@SuppressWarnings("unchecked")
+		final List<String>[] batch = contexts.toArray((List<String>[]) new List<?>[contexts.size()]);
+		new BatchInterpreter<List<String>>(chart, batchActions,
+				Collections.<Flowchart, BatchInterpreter.Condition<List<String>>>emptyMap()).run(batch);
+		assertEquals(expected, batch[0]);
+		assertEquals(expected, batch[1]);
+
+		actions.put(second, trace -> trace.add("instead"));
+		assertEquals(Arrays.asList("s1", "s2", "a", "instead"),
+				run(new Interpreter<>(chart, actions, predicates)::run));
+	}
+
+	@Test
+	public void testLazy() {
+		final SymbolTable broken = new SymbolTable();
+		final Flowchart unfinished = broken.intern("unfinished start", Kind.START);
+		unfinished.setStart(unfinished, false);
+
+		final SymbolTable parent = new SymbolTable();
+		final Flowchart sub = parent.subchart("sub", unfinished);
+		final Flowchart d = parent.intern("d", Kind.DECISION);
+		final Flowchart a = activity(parent, "a");
+		final Symbol start = parent.intern("start", Kind.START);
+		final Symbol end = parent.intern("end", Kind.END);
+		start.setStart(start, false);
+		start.setEnd(end, false);
+		start.connectActivity(start, d);
+		start.connectDecision(d, a, sub);
+		start.connectActivity(a, end);
+		start.connectActivity(sub, end);
+		predicates.put(d, trace -> trace.isEmpty());
+
+		final Interpreter<List<String>> interpreter = new Interpreter<>(start, actions, predicates);
+		assertEquals(Collections.singletonList("a"), run(interpreter::run));
+		try {
+			run(trace -> {
+				trace.add("taken");
+				interpreter.run(trace);
+			});
+			fail("executed a subchart without an end");
+		} catch (IllegalArgumentException expected) {
+			// resolved when first reached
+		}
+
+		final FrozenFlowchart frozen = FrozenFlowchart.of(start);
+		assertEquals(5, frozen.size());
+		assertEquals(Collections.singletonList(end), frozen.getTargets(sub));
+		assertEquals(2, ExecutionPath.all(start).count());
+	}
+}
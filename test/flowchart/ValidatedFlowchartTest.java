@@ -0,0 +1,128 @@
+package flowchart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class ValidatedFlowchartTest {
+	// Testing strategy
+	// isValid, getDanglingSymbols: void -> boolean, Set
+	//	  wrapping an empty chart, a valid chart
+	//	  connections making the chart valid, resets making it invalid again
+	//	  symbol still reached through another source after a reset
+	//	  decision with one unconnected branch
+	//	  wrapping a concurrent chart, a persistent chart
+	//	  connection removed, symbol removed, symbols removed in bulk,
+	//	  wrapping symbols and a concurrent chart
+
+	private final SymbolTable table = new SymbolTable();
+	private final Symbol start = table.intern("start", Kind.START);
+	private final Symbol end = table.intern("end", Kind.END);
+	private final Symbol a = table.intern("a", Kind.ACTIVITY);
+	private final Symbol b = table.intern("b", Kind.ACTIVITY);
+	private final Symbol d = table.intern("d", Kind.DECISION);
+
+	@Test
+	public void testEmpty() {
+		final ValidatedFlowchart chart = new ValidatedFlowchart(new ConcurrentFlowchart());
+		assertFalse(chart.isValid());
+		assertEquals(Collections.emptySet(), chart.getDanglingSymbols());
+	}
+
+	@Test
+	public void testConnectAndReset() {
+		final ValidatedFlowchart chart = new ValidatedFlowchart(new ConcurrentFlowchart());
+		chart.setStart(start, false);
+		chart.setEnd(end, false);
+		assertFalse(chart.isValid());
+		assertEquals(new HashSet<>(Arrays.asList(start, end)), chart.getDanglingSymbols());
+
+		chart.connectActivity(start, a);
+		chart.connectActivity(a, d);
+		chart.connectToYesBranch(d, b, false);
+		chart.connectActivity(b, end);
+		assertEquals(Collections.singleton(d), chart.getDanglingSymbols());
+
+		chart.connectToNoBranch(d, a, false);
+		assertTrue(chart.isValid());
+
+		chart.connectToYesBranch(d, end, true);
+		assertFalse(chart.isValid());
+		assertEquals(Collections.singleton(b), chart.getDanglingSymbols());
+
+		chart.connectActivity(b, a);
+		chart.connectActivity(start, b);
+		assertTrue(chart.isValid());
+	}
+
+	@Test
+	public void testResetKeepsOtherPaths() {
+		final Flowchart chart = new ConcurrentFlowchart();
+		chart.setStart(start, false);
+		chart.setEnd(end, false);
+		chart.connectActivity(start, d);
+		chart.connectDecision(d, a, b);
+		chart.connectActivity(a, end);
+		chart.connectActivity(b, a);
+		final ValidatedFlowchart validated = new ValidatedFlowchart(chart);
+		assertTrue(validated.isValid());
+
+		validated.connectToYesBranch(d, b, true);
+		assertTrue(validated.isValid());
+		validated.connectActivity(b, end);
+		assertEquals(Collections.singleton(a), validated.getDanglingSymbols());
+	}
+
+	@Test
+	public void testPersistent() {
+		final PersistentFlowchart chart = PersistentFlowchart.empty()
+				.withStart(start, false)
+				.withEnd(end, false);
+		final ValidatedFlowchart validated = new ValidatedFlowchart(chart);
+		validated.connectActivity(start, a);
+		assertEquals(new HashSet<>(Arrays.asList(start, a, end)), validated.getDanglingSymbols());
+		validated.connectActivity(a, end);
+		assertTrue(validated.isValid());
+		assertFalse(new ValidatedFlowchart(chart).isValid());
+	}
+
+	@Test
+	public void testRemove() {
+		for (boolean concurrent : new boolean[] {false, true}) {
+			final SymbolTable table = new SymbolTable();
+			final Symbol start = table.intern("start", Kind.START);
+			final Symbol end = table.intern("end", Kind.END);
+			final Symbol a = table.intern("a", Kind.ACTIVITY);
+			final Symbol b = table.intern("b", Kind.ACTIVITY);
+			final Symbol d = table.intern("d", Kind.DECISION);
+			final ValidatedFlowchart chart = new ValidatedFlowchart(concurrent ? new ConcurrentFlowchart() : start);
+			chart.setStart(start, false);
+			chart.setEnd(end, false);
+			chart.connectActivity(start, d);
+			chart.connectDecision(d, a, b);
+			chart.connectActivity(a, end);
+			chart.connectActivity(b, end);
+			assertTrue(chart.isValid());
+
+			chart.disconnect(d, b);
+			assertEquals(new HashSet<>(Arrays.asList(d, b)), chart.getDanglingSymbols());
+			chart.connectToNoBranch(d, b, false);
+			assertTrue(chart.isValid());
+
+			chart.removeSymbol(a);
+			assertEquals(Collections.singleton(d), chart.getDanglingSymbols());
+			chart.connectToYesBranch(d, end, true);
+			assertTrue(chart.isValid());
+
+			chart.removeSymbols(Arrays.asList(d, b));
+			assertEquals(new HashSet<>(Arrays.asList(start, end)), chart.getDanglingSymbols());
+			chart.removeSymbol(end);
+			assertFalse(chart.isValid());
+			assertEquals(Collections.singleton(start), chart.getDanglingSymbols());
+		}
+	}
+}